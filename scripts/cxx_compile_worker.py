@@ -0,0 +1,99 @@
+#!/usr/bin/env python3
+"""A reference worker for cxx.compile_worker.
+
+Buck sends each compilation as a job of the worker protocol, whose arguments
+are a JSON object:
+
+    {
+      "cwd": "/path/to/cell",
+      "env": {"PATH": "/usr/bin", ...},
+      "argv": ["clang++", "-c", "foo.cpp", "-o", "foo.o"]
+    }
+
+This worker runs argv from cwd with exactly the environment env, writing its
+output to the stdout and stderr files of the job. It starts the compiler
+directly, without a shell or env(1) in between, and CPython 3.10 or later
+starts it with vfork() on Linux, so the memory of the worker is not copied for
+each job. Workers that compile in process, such as compile servers, can read
+the same jobs.
+"""
+
+import codecs
+import json
+import os
+import subprocess
+import sys
+
+
+def read_messages(fd):
+    """Yields the messages of the JSON array Buck streams to fd."""
+    decoder = json.JSONDecoder()
+    utf8 = codecs.getincrementaldecoder("utf-8")()
+    buffer = ""
+    while True:
+        buffer = buffer.lstrip()
+        if buffer.startswith("]"):
+            return
+        if buffer[:1] in ("[", ","):
+            buffer = buffer[1:]
+            continue
+        if buffer:
+            try:
+                message, end = decoder.raw_decode(buffer)
+            except ValueError:
+                pass
+            else:
+                buffer = buffer[end:]
+                yield message
+                continue
+        chunk = os.read(fd, 65536)
+        if not chunk:
+            return
+        buffer += utf8.decode(chunk)
+
+
+def run_job(args_path, stdout_path, stderr_path):
+    with open(args_path) as args:
+        job = json.load(args)
+    with open(stdout_path, "wb") as stdout, open(stderr_path, "wb") as stderr:
+        try:
+            return subprocess.call(
+                job["argv"],
+                cwd=job["cwd"],
+                env=job["env"],
+                stdin=subprocess.DEVNULL,
+                stdout=stdout,
+                stderr=stderr,
+            )
+        except OSError as e:
+            stderr.write("{}: {}\n".format(job["argv"][0], e).encode("utf-8"))
+            return 1
+
+
+def main():
+    out = sys.stdout
+    separator = "["
+    for message in read_messages(sys.stdin.fileno()):
+        if message.get("type") == "handshake":
+            reply = {
+                "id": message["id"],
+                "type": "handshake",
+                "protocol_version": "0",
+                "capabilities": [],
+            }
+        elif message.get("type") == "command":
+            exit_code = run_job(
+                message["args_path"], message["stdout_path"], message["stderr_path"]
+            )
+            reply = {"id": message["id"], "type": "result", "exit_code": exit_code}
+        else:
+            reply = {"id": message.get("id", -1), "type": "error", "exit_code": 1}
+        out.write(separator + json.dumps(reply))
+        out.flush()
+        separator = ","
+    out.write("]")
+    out.flush()
+
+
+if __name__ == "__main__":
+    main()
@@ -22,8 +22,11 @@ import com.android.tools.r8.D8Command;
 import com.android.tools.r8.Diagnostic;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
+import com.android.tools.r8.origin.Origin;
 import com.facebook.buck.android.toolchain.AndroidPlatformTarget;
 import com.facebook.buck.event.ConsoleEvent;
+import com.facebook.buck.event.PerfEventId;
+import com.facebook.buck.event.SimplePerfEvent;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.shell.ShellStep;
 import com.facebook.buck.step.ExecutionContext;
@@ -102,6 +105,7 @@ public class DxStep extends ShellStep {
   private final Optional<String> maxHeapSize;
   private final String dexTool;
   private final boolean intermediate;
+  private final Optional<PerClassDexCache> perClassDexCache;
 
   @Nullable private Collection<String> resourcesReferencedInCode;
 
@@ -197,6 +201,40 @@ public class DxStep extends ShellStep {
       String dexTool,
       boolean intermediate,
       @Nullable Collection<Path> classpathFiles) {
+    this(
+        filesystem,
+        androidPlatformTarget,
+        outputDexFile,
+        filesToDex,
+        options,
+        maxHeapSize,
+        dexTool,
+        intermediate,
+        classpathFiles,
+        Optional.empty());
+  }
+
+  /**
+   * @param outputDexFile path to the file where the generated classes.dex should go.
+   * @param filesToDex each element in this set is a path to a .class file, a zip file of .class
+   *     files, or a directory of .class files.
+   * @param options to pass to {@code dx}.
+   * @param maxHeapSize The max heap size used for out of process dex.
+   * @param dexTool the tool used to perform dexing.
+   * @param classpathFiles specifies classpath for interface static and default methods desugaring.
+   * @param perClassDexCache cache of the dex code of single classes, only used with D8.
+   */
+  DxStep(
+      ProjectFilesystem filesystem,
+      AndroidPlatformTarget androidPlatformTarget,
+      Path outputDexFile,
+      Iterable<Path> filesToDex,
+      EnumSet<Option> options,
+      Optional<String> maxHeapSize,
+      String dexTool,
+      boolean intermediate,
+      @Nullable Collection<Path> classpathFiles,
+      Optional<PerClassDexCache> perClassDexCache) {
     super(filesystem.getRootPath());
     this.filesystem = filesystem;
     this.androidPlatformTarget = androidPlatformTarget;
@@ -207,6 +245,7 @@ public class DxStep extends ShellStep {
     this.maxHeapSize = maxHeapSize;
     this.dexTool = dexTool;
     this.intermediate = intermediate;
+    this.perClassDexCache = perClassDexCache;
 
     Preconditions.checkArgument(
         !options.contains(Option.RUN_IN_PROCESS)
@@ -328,27 +367,66 @@ public class DxStep extends ShellStep {
         boolean outputToDex = outputDexFile.getFileName().toString().endsWith(".dex");
         Path output = outputToDex ? Files.createTempDirectory("buck-d8") : outputDexFile;
 
-        D8Command.Builder builder =
-            D8Command.builder(diagnosticsHandler)
-                .addProgramFiles(inputs)
-                .setIntermediate(intermediate)
-                .addLibraryFiles(androidPlatformTarget.getAndroidJar())
-                .setMode(
-                    options.contains(Option.NO_OPTIMIZE)
-                        ? CompilationMode.DEBUG
-                        : CompilationMode.RELEASE)
-                .setOutput(output, OutputMode.DexIndexed)
-                .setDisableDesugaring(options.contains(Option.NO_DESUGAR));
-        if (classpathFiles != null && !classpathFiles.isEmpty()) {
-          // classpathFiles is needed only for D8 java 8 desugar
-          ImmutableSet.Builder<Path> absolutePaths = ImmutableSet.builder();
+        CompilationMode mode =
+            options.contains(Option.NO_OPTIMIZE) ? CompilationMode.DEBUG : CompilationMode.RELEASE;
+        boolean desugar = !options.contains(Option.NO_DESUGAR);
+        // classpathFiles is needed only for D8 java 8 desugar
+        ImmutableSet.Builder<Path> absolutePaths = ImmutableSet.builder();
+        if (classpathFiles != null) {
           for (Path classpathFile : classpathFiles) {
             absolutePaths.add(filesystem.getPathForRelativeExistingPath(classpathFile));
           }
-          builder.addClasspathFiles(absolutePaths.build());
         }
-        D8Command d8Command = builder.build();
-        com.android.tools.r8.D8.run(d8Command);
+        ImmutableSet<Path> absoluteClasspathFiles = absolutePaths.build();
+
+        Optional<ImmutableList<byte[]>> cachedDexFiles = Optional.empty();
+        if (perClassDexCache.isPresent()) {
+          cachedDexFiles =
+              perClassDexCache
+                  .get()
+                  .getDexFiles(
+                      inputs,
+                      absoluteClasspathFiles,
+                      androidPlatformTarget.getAndroidJar(),
+                      mode,
+                      desugar,
+                      diagnosticsHandler);
+        }
+
+        D8Command d8Command;
+        try (SharedD8Resources.Compilation compilation =
+            SharedD8Resources.INSTANCE.newCompilation()) {
+          D8Command.Builder builder =
+              D8Command.builder(diagnosticsHandler)
+                  .setIntermediate(intermediate)
+                  .setMode(mode)
+                  .setOutput(output, OutputMode.DexIndexed)
+                  .setDisableDesugaring(!desugar);
+          compilation.addLibraryFile(builder, androidPlatformTarget.getAndroidJar());
+          if (cachedDexFiles.isPresent()) {
+            // The classes are already dexed (and desugared), they only need to be merged.
+            for (byte[] dexFile : cachedDexFiles.get()) {
+              builder.addDexProgramData(dexFile, Origin.unknown());
+            }
+          } else {
+            builder.addProgramFiles(inputs);
+            compilation.addClasspathFiles(builder, absoluteClasspathFiles);
+          }
+          d8Command = builder.build();
+          try (SimplePerfEvent.Scope scope =
+              SimplePerfEvent.scope(
+                  context.getBuckEventBus(),
+                  PerfEventId.of("d8"),
+                  "output",
+                  outputDexFile.getFileName(),
+                  "inputs",
+                  inputs.size())) {
+            compilation.run(d8Command);
+            compilation
+                .getAllocatedBytes()
+                .ifPresent(bytes -> scope.appendFinishedInfo("allocated_bytes", bytes));
+          }
+        }
 
         if (outputToDex) {
           File[] outputs = output.toFile().listFiles();
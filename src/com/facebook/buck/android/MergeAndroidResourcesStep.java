@@ -36,6 +36,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -46,7 +49,15 @@ import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharSource;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -63,11 +74,36 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class MergeAndroidResourcesStep implements Step {
   private static final Logger LOG = Logger.get(MergeAndroidResourcesStep.class);
 
+  /**
+   * Parsed symbols files, keyed by the hash of their contents. Most R.txt files do not change
+   * between two builds, yet every rule merging them used to parse all of them again.
+   */
+  private static final Cache<HashCode, ImmutableList<RDotTxtEntry>> PARSED_SYMBOLS_FILES =
+      CacheBuilder.newBuilder().softValues().build();
+
+  /**
+   * Generated R.java files, keyed by the hash of the package, its resources and the options they
+   * are written with, so that only the packages whose resources or ids changed are generated again.
+   */
+  private static final Cache<HashCode, byte[]> GENERATED_R_DOT_JAVA_FILES =
+      CacheBuilder.newBuilder()
+          .maximumWeight(64 * 1024 * 1024)
+          .weigher((Weigher<HashCode, byte[]>) (key, contents) -> contents.length)
+          .build();
+
+  /** How many symbols files were parsed rather than found in {@link #PARSED_SYMBOLS_FILES}. */
+  @VisibleForTesting static final AtomicLong SYMBOLS_FILES_PARSED = new AtomicLong();
+
+  /** How many R.java files were generated rather than reused. */
+  @VisibleForTesting static final AtomicLong R_DOT_JAVA_FILES_GENERATED = new AtomicLong();
+
   private final ProjectFilesystem filesystem;
   private final SourcePathResolver pathResolver;
   private final ImmutableList<HasAndroidResourceDeps> androidResourceDeps;
@@ -216,14 +252,9 @@ public class MergeAndroidResourcesStep implements Step {
       } else {
         // re-assign Ids
         ImmutableSet.Builder<RDotTxtEntry> uberRdotTxtEntries = ImmutableSet.builder();
-        uberRDotTxt.forEach(
-            rDot -> {
-              try {
-                RDotTxtEntry.readResources(filesystem, rDot).forEach(uberRdotTxtEntries::add);
-              } catch (IOException e) {
-                throw new RuntimeException(e);
-              }
-            });
+        for (Path rDot : uberRDotTxt) {
+          uberRdotTxtEntries.addAll(readSymbolsFile(filesystem, rDot));
+        }
         uberRDotTxtIds =
             Optional.of(
                 uberRdotTxtEntries
@@ -335,68 +366,97 @@ public class MergeAndroidResourcesStep implements Step {
     for (String rDotJavaPackage : packageToResources.keySet()) {
       Path outputFile = getPathToRDotJava(rDotJavaPackage);
       filesystem.mkdirs(outputFile.getParent());
-      try (ThrowingPrintWriter writer =
-          new ThrowingPrintWriter(filesystem.newFileOutputStream(outputFile))) {
-        writer.format("package %s;\n\n", rDotJavaPackage);
-        writer.format("public class %s {\n", rName);
-
-        ImmutableList.Builder<String> customDrawablesBuilder = ImmutableList.builder();
-        ImmutableList.Builder<String> grayscaleImagesBuilder = ImmutableList.builder();
-        RType lastType = null;
-
-        for (RDotTxtEntry res : packageToResources.get(rDotJavaPackage)) {
-          RType type = res.type;
-          if (!type.equals(lastType)) {
-            // If the previous type needs to be closed, close it.
-            if (lastType != null) {
-              writer.println("  }\n");
-            }
+      SortedSet<RDotTxtEntry> resources = packageToResources.get(rDotJavaPackage);
+      HashCode key = hashRDotJavaInputs(rDotJavaPackage, resources);
+      byte[] contents = GENERATED_R_DOT_JAVA_FILES.getIfPresent(key);
+      if (contents == null) {
+        contents = generateRDotJava(rDotJavaPackage, resources);
+        R_DOT_JAVA_FILES_GENERATED.incrementAndGet();
+        GENERATED_R_DOT_JAVA_FILES.put(key, contents);
+      }
+      filesystem.writeBytesToPath(contents, outputFile);
+    }
+  }
 
-            // Now start the block for the new type.
-            writer.format("  public static class %s {\n", type);
-            lastType = type;
-          }
+  private HashCode hashRDotJavaInputs(String rDotJavaPackage, Iterable<RDotTxtEntry> resources) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    hasher.putUnencodedChars(rName).putByte((byte) 0);
+    hasher.putBoolean(forceFinalResourceIds);
+    hasher.putUnencodedChars(rDotJavaPackage).putByte((byte) 0);
+    for (RDotTxtEntry res : resources) {
+      hasher.putInt(res.type.ordinal());
+      hasher.putInt(res.idType.ordinal());
+      hasher.putInt(res.customType.ordinal());
+      hasher.putUnencodedChars(res.name).putByte((byte) 0);
+      hasher.putUnencodedChars(res.idValue).putByte((byte) 0);
+    }
+    return hasher.hash();
+  }
 
-          // Write out the resource.
-          // Write as an int.
-          writer.format(
-              "    public static%s%s %s=%s;\n",
-              forceFinalResourceIds ? " final " : " ", res.idType, res.name, res.idValue);
-
-          if (type == RType.DRAWABLE && res.customType == RDotTxtEntry.CustomDrawableType.CUSTOM) {
-            customDrawablesBuilder.add(res.idValue);
-          } else if (type == RType.DRAWABLE
-              && res.customType == RDotTxtEntry.CustomDrawableType.GRAYSCALE_IMAGE) {
-            grayscaleImagesBuilder.add(res.idValue);
+  private byte[] generateRDotJava(String rDotJavaPackage, Iterable<RDotTxtEntry> resources)
+      throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ThrowingPrintWriter writer = new ThrowingPrintWriter(output)) {
+      writer.format("package %s;\n\n", rDotJavaPackage);
+      writer.format("public class %s {\n", rName);
+
+      ImmutableList.Builder<String> customDrawablesBuilder = ImmutableList.builder();
+      ImmutableList.Builder<String> grayscaleImagesBuilder = ImmutableList.builder();
+      RType lastType = null;
+
+      for (RDotTxtEntry res : resources) {
+        RType type = res.type;
+        if (!type.equals(lastType)) {
+          // If the previous type needs to be closed, close it.
+          if (lastType != null) {
+            writer.println("  }\n");
           }
-        }
 
-        // If some type was written (e.g., the for loop was entered), then the last type needs to be
-        // closed.
-        if (lastType != null) {
-          writer.println("  }\n");
+          // Now start the block for the new type.
+          writer.format("  public static class %s {\n", type);
+          lastType = type;
         }
 
-        ImmutableList<String> customDrawables = customDrawablesBuilder.build();
-        if (customDrawables.size() > 0) {
-          // Add a new field for the custom drawables.
-          writer.format("  public static final int[] custom_drawables = ");
-          writer.format("{ %s };\n", Joiner.on(",").join(customDrawables));
-          writer.format("\n");
+        // Write out the resource.
+        // Write as an int.
+        writer.format(
+            "    public static%s%s %s=%s;\n",
+            forceFinalResourceIds ? " final " : " ", res.idType, res.name, res.idValue);
+
+        if (type == RType.DRAWABLE && res.customType == RDotTxtEntry.CustomDrawableType.CUSTOM) {
+          customDrawablesBuilder.add(res.idValue);
+        } else if (type == RType.DRAWABLE
+            && res.customType == RDotTxtEntry.CustomDrawableType.GRAYSCALE_IMAGE) {
+          grayscaleImagesBuilder.add(res.idValue);
         }
+      }
 
-        ImmutableList<String> grayscaleImages = grayscaleImagesBuilder.build();
-        if (grayscaleImages.size() > 0) {
-          // Add a new field for the custom drawables.
-          writer.format("  public static final int[] grayscale_images = ");
-          writer.format("{ %s };\n", Joiner.on(",").join(grayscaleImages));
-          writer.format("\n");
-        }
+      // If some type was written (e.g., the for loop was entered), then the last type needs to be
+      // closed.
+      if (lastType != null) {
+        writer.println("  }\n");
+      }
+
+      ImmutableList<String> customDrawables = customDrawablesBuilder.build();
+      if (customDrawables.size() > 0) {
+        // Add a new field for the custom drawables.
+        writer.format("  public static final int[] custom_drawables = ");
+        writer.format("{ %s };\n", Joiner.on(",").join(customDrawables));
+        writer.format("\n");
+      }
 
-        // Close the class definition.
-        writer.println("}");
+      ImmutableList<String> grayscaleImages = grayscaleImagesBuilder.build();
+      if (grayscaleImages.size() > 0) {
+        // Add a new field for the custom drawables.
+        writer.format("  public static final int[] grayscale_images = ");
+        writer.format("{ %s };\n", Joiner.on(",").join(grayscaleImages));
+        writer.format("\n");
       }
+
+      // Close the class definition.
+      writer.println("}");
     }
+    return output.toByteArray();
   }
 
   @VisibleForTesting
@@ -447,13 +507,7 @@ public class MergeAndroidResourcesStep implements Step {
       // Read the symbols file and parse each line as a Resource.
       List<RDotTxtEntry> linesInSymbolsFile;
       try {
-        linesInSymbolsFile =
-            filesystem
-                .readLines(symbolsFile)
-                .stream()
-                .filter(input -> !Strings.isNullOrEmpty(input))
-                .map(MergeAndroidResourcesStep::parseEntryOrThrow)
-                .collect(Collectors.toList());
+        linesInSymbolsFile = new ArrayList<>(readSymbolsFile(filesystem, symbolsFile));
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
@@ -661,6 +715,30 @@ public class MergeAndroidResourcesStep implements Step {
     return styleableResourceMap;
   }
 
+  /** Returns the entries of a symbols file, parsing it only if its contents were not seen yet. */
+  @VisibleForTesting
+  static ImmutableList<RDotTxtEntry> readSymbolsFile(ProjectFilesystem filesystem, Path symbolsFile)
+      throws IOException {
+    byte[] contents;
+    try (InputStream input = filesystem.newFileInputStream(symbolsFile)) {
+      contents = ByteStreams.toByteArray(input);
+    }
+    HashCode hash = Hashing.murmur3_128().hashBytes(contents);
+    ImmutableList<RDotTxtEntry> entries = PARSED_SYMBOLS_FILES.getIfPresent(hash);
+    if (entries == null) {
+      entries =
+          CharSource.wrap(new String(contents, StandardCharsets.UTF_8))
+              .readLines()
+              .stream()
+              .filter(input -> !Strings.isNullOrEmpty(input))
+              .map(MergeAndroidResourcesStep::parseEntryOrThrow)
+              .collect(ImmutableList.toImmutableList());
+      SYMBOLS_FILES_PARSED.incrementAndGet();
+      PARSED_SYMBOLS_FILES.put(hash, entries);
+    }
+    return entries;
+  }
+
   private static RDotTxtEntry parseEntryOrThrow(String line) {
     Optional<RDotTxtEntry> parsedEntry = RDotTxtEntry.parse(line);
     Preconditions.checkState(parsedEntry.isPresent(), "Should be able to match '%s'.", line);
@@ -878,7 +878,8 @@ class NonPreDexedDexBuildable extends AbstractBuildRule {
             xzCompressionLevel,
             dxMaxHeapSize,
             dexTool,
-            desugarInterfaceMethods);
+            desugarInterfaceMethods,
+            Optional.of(getBinPath("__smart_dex__/.class_dex_cache")));
     steps.add(smartDexingCommand);
 
     if (reorderClassesIntraDex) {
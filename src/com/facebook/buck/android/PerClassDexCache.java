@@ -0,0 +1,481 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.android;
+
+import com.android.tools.r8.ByteDataView;
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexFilePerClassFileConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.Version;
+import com.android.tools.r8.origin.Origin;
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.jvm.java.classes.ClasspathTraversal;
+import com.facebook.buck.jvm.java.classes.FileLike;
+import com.facebook.buck.jvm.java.classes.FileLikes;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Content addressed cache of the dex code of single classes, shared by the dex steps of an app.
+ *
+ * <p>Merging dex files is a lot cheaper than converting class files to dex. So instead of dexing
+ * all the classes of a dex file whenever one of them changes, every class is dexed on its own (as
+ * an intermediate dex file) and cached under a hash of its class file, and the dex file is then
+ * merged from the cached dex files of its classes. When desugaring, the dex code of a class also
+ * depends on its supertypes, so their class files are part of the key as well.
+ */
+class PerClassDexCache {
+  private static final Logger LOG = Logger.get(PerClassDexCache.class);
+
+  /** Bump this whenever the way entries are produced changes. */
+  private static final String CACHE_VERSION = "1";
+
+  private static final String DEX_EXTENSION = ".dex";
+
+  /** Entries that were not used for this long are deleted by {@link #removeStaleEntries()}. */
+  private static final long MAX_ENTRY_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+  /**
+   * How often the last use of an entry is recorded, and how often the cache is swept for stale
+   * entries. Much shorter than {@link #MAX_ENTRY_AGE_MILLIS}, so used entries are never removed.
+   */
+  private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+  /** File in the cache directory whose modification time is when the cache was last swept. */
+  private static final String LAST_SWEEP_FILE = "last_sweep";
+
+  private final ProjectFilesystem filesystem;
+  private final Path cacheDir;
+
+  /** Headers of the classes of the inputs used as classpath, they are the same for all steps. */
+  private final ConcurrentMap<Path, ImmutableMap<String, ClassHeader>> classpathHeaders =
+      new ConcurrentHashMap<>();
+
+  /** Hashes of the contents of the android jars, they are the same for all steps. */
+  private final ConcurrentMap<Path, String> androidJarHashes = new ConcurrentHashMap<>();
+
+  /** @param cacheDir directory the dex files of classes are stored in, relative to the root. */
+  PerClassDexCache(ProjectFilesystem filesystem, Path cacheDir) {
+    this.filesystem = filesystem;
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * Returns the dex files of all the classes in {@code programFiles}, dexing the classes that are
+   * not in the cache yet.
+   *
+   * @param programFiles class files, jars and directories of class files, as absolute paths.
+   * @param classpathFiles other inputs the classes may depend on, as absolute paths.
+   * @return nothing if the inputs contain something else than class files, such as dex files.
+   */
+  Optional<ImmutableList<byte[]>> getDexFiles(
+      Collection<Path> programFiles,
+      Collection<Path> classpathFiles,
+      Path androidJar,
+      CompilationMode mode,
+      boolean desugar,
+      DiagnosticsHandler diagnosticsHandler)
+      throws IOException, CompilationFailedException {
+    Optional<SortedMap<String, byte[]>> maybeProgramClasses = readClasses(programFiles);
+    if (!maybeProgramClasses.isPresent()) {
+      return Optional.empty();
+    }
+    SortedMap<String, byte[]> programClasses = maybeProgramClasses.get();
+
+    Map<String, ClassHeader> headers = new HashMap<>();
+    if (desugar) {
+      for (Path classpathFile : classpathFiles) {
+        headers.putAll(getClasspathHeaders(classpathFile));
+      }
+    }
+    for (Map.Entry<String, byte[]> programClass : programClasses.entrySet()) {
+      headers.put(programClass.getKey(), ClassHeader.read(programClass.getValue()));
+    }
+
+    Hasher optionsHasher =
+        Hashing.sha1()
+            .newHasher()
+            .putUnencodedChars(CACHE_VERSION)
+            .putByte((byte) 0)
+            .putUnencodedChars(Version.LABEL)
+            .putByte((byte) 0)
+            .putUnencodedChars(mode.name())
+            .putBoolean(desugar)
+            .putUnencodedChars(getAndroidJarHash(androidJar));
+    String optionsHash = optionsHasher.hash().toString();
+
+    Map<String, byte[]> dexFiles = new HashMap<>();
+    Map<String, String> missingKeys = new HashMap<>();
+    for (String className : programClasses.keySet()) {
+      String key = computeKey(optionsHash, className, headers, desugar);
+      Optional<byte[]> dexFile = readEntry(key);
+      if (dexFile.isPresent()) {
+        dexFiles.put(className, dexFile.get());
+      } else {
+        missingKeys.put(className, key);
+      }
+    }
+
+    if (!missingKeys.isEmpty()) {
+      LOG.debug(
+          "Dexing %d of %d classes, the others are cached.",
+          missingKeys.size(), programClasses.size());
+      dexClasses(
+          programClasses,
+          missingKeys,
+          classpathFiles,
+          androidJar,
+          mode,
+          desugar,
+          diagnosticsHandler,
+          dexFiles);
+    }
+
+    ImmutableList.Builder<byte[]> result = ImmutableList.builder();
+    for (String className : programClasses.keySet()) {
+      byte[] dexFile = dexFiles.get(className);
+      if (dexFile == null) {
+        LOG.warn("D8 did not produce a dex file for %s, not using the dex cache.", className);
+        return Optional.empty();
+      }
+      result.add(dexFile);
+    }
+    return Optional.of(result.build());
+  }
+
+  /**
+   * Deletes the entries that were not used recently. Walking the whole cache is slow, so this does
+   * nothing if the cache was already swept within the last day.
+   */
+  void removeStaleEntries() throws IOException {
+    Path root = filesystem.resolve(cacheDir);
+    if (!Files.isDirectory(root)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    Path lastSweep = root.resolve(LAST_SWEEP_FILE);
+    try {
+      if (Files.getLastModifiedTime(lastSweep).toMillis() > now - TOUCH_INTERVAL_MILLIS) {
+        return;
+      }
+      Files.setLastModifiedTime(lastSweep, FileTime.fromMillis(now));
+    } catch (NoSuchFileException e) {
+      Files.write(lastSweep, new byte[0]);
+    }
+    long oldestAllowed = now - MAX_ENTRY_AGE_MILLIS;
+    try (Stream<Path> entries = Files.walk(root)) {
+      entries
+          .filter(path -> path.getFileName().toString().endsWith(DEX_EXTENSION))
+          .forEach(
+              path -> {
+                try {
+                  if (Files.getLastModifiedTime(path).toMillis() < oldestAllowed) {
+                    Files.deleteIfExists(path);
+                  }
+                } catch (NoSuchFileException e) {
+                  // Removed concurrently, which is what we wanted.
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void dexClasses(
+      SortedMap<String, byte[]> programClasses,
+      Map<String, String> missingKeys,
+      Collection<Path> classpathFiles,
+      Path androidJar,
+      CompilationMode mode,
+      boolean desugar,
+      DiagnosticsHandler diagnosticsHandler,
+      Map<String, byte[]> dexFiles)
+      throws IOException, CompilationFailedException {
+    Map<String, String> classNamesByDescriptor = new HashMap<>();
+    for (String className : missingKeys.keySet()) {
+      classNamesByDescriptor.put(toDescriptor(className), className);
+    }
+    Map<String, byte[]> producedDexFiles = new ConcurrentHashMap<>();
+
+    D8Command.Builder builder =
+        D8Command.builder(diagnosticsHandler)
+            .setIntermediate(true)
+            .setMode(mode)
+            .setDisableDesugaring(!desugar)
+            .setProgramConsumer(
+                new DexFilePerClassFileConsumer() {
+                  @Override
+                  public void accept(
+                      String primaryClassDescriptor,
+                      ByteDataView data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    String className = classNamesByDescriptor.get(primaryClassDescriptor);
+                    if (className != null) {
+                      producedDexFiles.put(className, data.copyByteData());
+                    }
+                  }
+
+                  @Override
+                  public void finished(DiagnosticsHandler handler) {}
+                });
+    for (String className : missingKeys.keySet()) {
+      builder.addClassProgramData(programClasses.get(className), Origin.unknown());
+    }
+    try (SharedD8Resources.Compilation compilation = SharedD8Resources.INSTANCE.newCompilation()) {
+      compilation.addLibraryFile(builder, androidJar);
+      if (desugar) {
+        // The classes that are not dexed again are still needed to desugar their subclasses.
+        builder.addClasspathResourceProvider(
+            new InMemoryClassFileResourceProvider(programClasses, missingKeys.keySet()));
+        compilation.addClasspathFiles(builder, classpathFiles);
+      }
+      compilation.run(builder.build());
+    }
+
+    for (Map.Entry<String, byte[]> dexFile : producedDexFiles.entrySet()) {
+      writeEntry(missingKeys.get(dexFile.getKey()), dexFile.getValue());
+    }
+    dexFiles.putAll(producedDexFiles);
+  }
+
+  @VisibleForTesting
+  static String computeKey(
+      String optionsHash, String className, Map<String, ClassHeader> headers, boolean desugar) {
+    ClassHeader header = headers.get(className);
+    Hasher hasher =
+        Hashing.sha1()
+            .newHasher()
+            .putUnencodedChars(optionsHash)
+            .putByte((byte) 0)
+            .putUnencodedChars(className)
+            .putByte((byte) 0)
+            .putUnencodedChars(header.hash);
+    if (desugar) {
+      // Desugaring default and static interface methods copies code between supertypes and their
+      // subclasses. Supertypes that are not among the inputs come from the android jar.
+      Set<String> supertypes = new TreeSet<>();
+      Deque<String> toVisit = new ArrayDeque<>(header.getSupertypes());
+      while (!toVisit.isEmpty()) {
+        String supertype = toVisit.pop();
+        ClassHeader supertypeHeader = headers.get(supertype);
+        if (supertypeHeader != null && supertypes.add(supertype)) {
+          toVisit.addAll(supertypeHeader.getSupertypes());
+        }
+      }
+      for (String supertype : supertypes) {
+        hasher
+            .putByte((byte) 0)
+            .putUnencodedChars(supertype)
+            .putByte((byte) 0)
+            .putUnencodedChars(headers.get(supertype).hash);
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  private String getAndroidJarHash(Path androidJar) throws IOException {
+    String hash = androidJarHashes.get(androidJar);
+    if (hash == null) {
+      hash = filesystem.computeSha1(androidJar).getHash();
+      androidJarHashes.putIfAbsent(androidJar, hash);
+    }
+    return hash;
+  }
+
+  private Map<String, ClassHeader> getClasspathHeaders(Path classpathFile) throws IOException {
+    ImmutableMap<String, ClassHeader> headers = classpathHeaders.get(classpathFile);
+    if (headers != null) {
+      return headers;
+    }
+    Optional<SortedMap<String, byte[]>> classes = readClasses(ImmutableList.of(classpathFile));
+    ImmutableMap.Builder<String, ClassHeader> builder = ImmutableMap.builder();
+    if (classes.isPresent()) {
+      for (Map.Entry<String, byte[]> entry : classes.get().entrySet()) {
+        builder.put(entry.getKey(), ClassHeader.read(entry.getValue()));
+      }
+    }
+    headers = builder.build();
+    classpathHeaders.putIfAbsent(classpathFile, headers);
+    return headers;
+  }
+
+  /** Reads the class files of the inputs, by class name. */
+  private Optional<SortedMap<String, byte[]>> readClasses(Collection<Path> inputs)
+      throws IOException {
+    SortedMap<String, byte[]> classes = new TreeMap<>();
+    List<String> unsupportedFiles = new ArrayList<>();
+    new ClasspathTraversal(inputs, filesystem) {
+      @Override
+      public void visit(FileLike fileLike) throws IOException {
+        String path = fileLike.getRelativePath();
+        if (FileLikes.isClassFile(fileLike)) {
+          byte[] bytes;
+          try (InputStream input = fileLike.getInput()) {
+            bytes = ByteStreams.toByteArray(input);
+          }
+          classes.put(new ClassReader(bytes).getClassName(), bytes);
+        } else if (path.endsWith(DEX_EXTENSION)) {
+          unsupportedFiles.add(path);
+        }
+      }
+    }.traverse();
+    if (!unsupportedFiles.isEmpty()) {
+      LOG.debug("Not using the dex cache for inputs containing %s.", unsupportedFiles);
+      return Optional.empty();
+    }
+    return Optional.of(classes);
+  }
+
+  private Path getEntryPath(String key) {
+    return filesystem.resolve(cacheDir).resolve(key.substring(0, 2)).resolve(key + DEX_EXTENSION);
+  }
+
+  private Optional<byte[]> readEntry(String key) throws IOException {
+    Path entry = getEntryPath(key);
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(entry);
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    }
+    // Keeps the entry from being removed as stale. Recording every use would turn each cache hit
+    // into a write, so this is only done when the last recorded use is a day old.
+    long now = System.currentTimeMillis();
+    if (Files.getLastModifiedTime(entry).toMillis() < now - TOUCH_INTERVAL_MILLIS) {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(now));
+    }
+    return Optional.of(bytes);
+  }
+
+  private void writeEntry(String key, byte[] dexFile) throws IOException {
+    Path entry = getEntryPath(key);
+    Files.createDirectories(entry.getParent());
+    // Other steps may be reading or writing the same entry, so it is replaced atomically.
+    Path tmp = Files.createTempFile(entry.getParent(), key, ".tmp");
+    try {
+      Files.write(tmp, dexFile);
+      Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static String toDescriptor(String className) {
+    return "L" + className + ";";
+  }
+
+  /** What the cache needs to know about a class to compute the keys of its subclasses. */
+  @VisibleForTesting
+  static final class ClassHeader {
+    private final String hash;
+    @Nullable private final String superName;
+    private final ImmutableList<String> interfaces;
+
+    private ClassHeader(String hash, @Nullable String superName, ImmutableList<String> interfaces) {
+      this.hash = hash;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+
+    static ClassHeader read(byte[] classFile) {
+      ClassReader reader = new ClassReader(classFile);
+      return new ClassHeader(
+          Hashing.sha1().hashBytes(classFile).toString(),
+          reader.getSuperName(),
+          ImmutableList.copyOf(reader.getInterfaces()));
+    }
+
+    private List<String> getSupertypes() {
+      List<String> supertypes = new ArrayList<>(interfaces);
+      if (superName != null) {
+        supertypes.add(superName);
+      }
+      return supertypes;
+    }
+  }
+
+  /** Serves the given classes, except for the excluded ones, to D8. */
+  private static final class InMemoryClassFileResourceProvider
+      implements ClassFileResourceProvider {
+    private final Map<String, byte[]> classesByDescriptor = new HashMap<>();
+
+    private InMemoryClassFileResourceProvider(
+        Map<String, byte[]> classes, Set<String> excludedClassNames) {
+      for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+        if (!excludedClassNames.contains(entry.getKey())) {
+          classesByDescriptor.put(toDescriptor(entry.getKey()), entry.getValue());
+        }
+      }
+    }
+
+    @Override
+    public Set<String> getClassDescriptors() {
+      return new HashSet<>(classesByDescriptor.keySet());
+    }
+
+    @Override
+    @Nullable
+    public ProgramResource getProgramResource(String descriptor) {
+      byte[] bytes = classesByDescriptor.get(descriptor);
+      if (bytes == null) {
+        return null;
+      }
+      return ProgramResource.fromBytes(
+          Origin.unknown(), ProgramResource.Kind.CF, bytes, ImmutableSet.of(descriptor));
+    }
+  }
+}
@@ -372,7 +372,9 @@ public class PreDexMerge extends AbstractBuildRuleWithDeclaredAndExtraDeps {
             xzCompressionLevel,
             dxMaxHeapSize,
             dexTool,
-            false));
+            false,
+            // The inputs are dex files already.
+            Optional.empty()));
 
     for (PreDexedFilesSorter.Result result : sortResults.values()) {
       if (!result.apkModule.equals(apkModuleGraph.getRootAPKModule())) {
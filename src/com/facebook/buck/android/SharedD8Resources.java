@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.android;
+
+import com.android.tools.r8.ArchiveClassFileProvider;
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.util.concurrent.MostExecutors;
+import com.facebook.buck.util.zip.ZipFileIndex;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.management.ThreadMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+
+/**
+ * State shared by all the D8 compilations running in the daemon.
+ *
+ * <p>Every D8 compilation used to start as many threads as there are cores, so the parallel dex
+ * steps of an app ran many times more threads than the machine has, and each of them indexed the
+ * android jar and the classpath jars again. Compilations now share one bounded thread pool and the
+ * class file providers of the jars they read, as long as the jars do not change. Providers hold
+ * their jar open, so they are closed once they are evicted and no running compilation uses them.
+ *
+ * <p>Whether a jar changed is decided by a hash of its central directory rather than by its size
+ * and modification time, as jars fetched from a cache are rewritten in place with the fixed
+ * modification time of cached artifacts.
+ */
+final class SharedD8Resources {
+  private static final Logger LOG = Logger.get(SharedD8Resources.class);
+
+  /** The instance used by the dex steps. */
+  static final SharedD8Resources INSTANCE =
+      new SharedD8Resources(Runtime.getRuntime().availableProcessors(), 1000);
+
+  /** Measures the bytes allocated by threads, if the JVM can. */
+  @Nullable private static final ThreadMXBean THREADS = getThreadMXBean();
+
+  private final ExecutorService executorService;
+  private final int maxCachedArchives;
+  private final Map<Path, CachedArchive> archives;
+
+  @VisibleForTesting
+  SharedD8Resources(int threadsCount, int maxCachedArchives) {
+    this.executorService =
+        MostExecutors.newMultiThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("d8-%d").setDaemon(true).build(),
+            threadsCount);
+    this.maxCachedArchives = maxCachedArchives;
+    this.archives = new LinkedHashMap<>(16, 0.75f, /* accessOrder */ true);
+  }
+
+  @Nullable
+  private static ThreadMXBean getThreadMXBean() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof ThreadMXBean)) {
+      return null;
+    }
+    ThreadMXBean allocationThreads = (ThreadMXBean) threads;
+    return allocationThreads.isThreadAllocatedMemorySupported()
+            && allocationThreads.isThreadAllocatedMemoryEnabled()
+        ? allocationThreads
+        : null;
+  }
+
+  /** Starts a compilation, the jars it reads are kept open until it is closed. */
+  Compilation newCompilation() {
+    return new Compilation();
+  }
+
+  /** A compilation using the shared resources. */
+  final class Compilation implements AutoCloseable {
+    private final List<CachedArchive> usedArchives = new ArrayList<>();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private Compilation() {}
+
+    /** Runs the compilation on the shared thread pool. */
+    void run(D8Command command) throws CompilationFailedException {
+      long allocatedBefore = getCurrentThreadAllocatedBytes();
+      try {
+        D8.run(command, new MeasuredExecutorService());
+      } finally {
+        allocatedBytes.addAndGet(getCurrentThreadAllocatedBytes() - allocatedBefore);
+      }
+    }
+
+    /**
+     * Returns the bytes allocated by the compilation, on the thread running it and on the threads
+     * of the shared pool, if the JVM can measure them.
+     */
+    OptionalLong getAllocatedBytes() {
+      return THREADS == null ? OptionalLong.empty() : OptionalLong.of(allocatedBytes.get());
+    }
+
+    /** Adds the android jar, or any other jar, as a library of the compilation. */
+    void addLibraryFile(D8Command.Builder builder, Path file) throws IOException {
+      if (Files.isRegularFile(file)) {
+        builder.addLibraryResourceProvider(getClassFileProvider(file));
+      } else {
+        builder.addLibraryFiles(file);
+      }
+    }
+
+    /** Adds jars and directories of classes to the classpath of the compilation. */
+    void addClasspathFiles(D8Command.Builder builder, Collection<Path> files) throws IOException {
+      for (Path file : files) {
+        if (Files.isRegularFile(file)) {
+          builder.addClasspathResourceProvider(getClassFileProvider(file));
+        } else {
+          builder.addClasspathFiles(file);
+        }
+      }
+    }
+
+    /**
+     * Returns the provider for the classes of a jar, creating it if the jar changed since it was
+     * last read.
+     */
+    @VisibleForTesting
+    ClassFileResourceProvider getClassFileProvider(Path jar) throws IOException {
+      CachedArchive archive = acquireArchive(jar);
+      usedArchives.add(archive);
+      return archive.provider;
+    }
+
+    @Override
+    public void close() {
+      for (CachedArchive archive : usedArchives) {
+        releaseArchive(archive);
+      }
+      usedArchives.clear();
+    }
+
+    /**
+     * Runs the tasks of the compilation on the shared pool, counting the bytes each of them
+     * allocates. Compilations don't own the pool, so they can't shut it down.
+     */
+    private final class MeasuredExecutorService extends AbstractExecutorService {
+      @Override
+      public void execute(Runnable task) {
+        executorService.execute(
+            () -> {
+              long allocatedBefore = getCurrentThreadAllocatedBytes();
+              try {
+                task.run();
+              } finally {
+                allocatedBytes.addAndGet(getCurrentThreadAllocatedBytes() - allocatedBefore);
+              }
+            });
+      }
+
+      @Override
+      public void shutdown() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public List<Runnable> shutdownNow() {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public boolean isShutdown() {
+        return false;
+      }
+
+      @Override
+      public boolean isTerminated() {
+        return false;
+      }
+
+      @Override
+      public boolean awaitTermination(long timeout, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+      }
+    }
+  }
+
+  private static long getCurrentThreadAllocatedBytes() {
+    return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private CachedArchive acquireArchive(Path jar) throws IOException {
+    HashCode hash = hashContents(jar);
+    synchronized (archives) {
+      CachedArchive cached = archives.get(jar);
+      if (cached != null && cached.hash.equals(hash)) {
+        cached.users++;
+        return cached;
+      }
+    }
+    // Indexing the jar happens outside of the lock, two compilations needing the same new jar
+    // index it twice, which is rare and harmless.
+    CachedArchive archive = new CachedArchive(jar, new ArchiveClassFileProvider(jar), hash);
+    archive.users++;
+    synchronized (archives) {
+      CachedArchive replaced = archives.put(jar, archive);
+      if (replaced != null) {
+        evict(replaced);
+      }
+      if (archives.size() > maxCachedArchives) {
+        Iterator<CachedArchive> leastRecentlyUsed = archives.values().iterator();
+        evict(leastRecentlyUsed.next());
+        leastRecentlyUsed.remove();
+      }
+    }
+    return archive;
+  }
+
+  /**
+   * Hashes the central directory of a jar, which holds the CRC of every entry, or the whole jar if
+   * its central directory can't be read.
+   */
+  private static HashCode hashContents(Path jar) throws IOException {
+    try {
+      return ZipFileIndex.hashCentralDirectory(jar);
+    } catch (ZipException e) {
+      return com.google.common.io.Files.asByteSource(jar.toFile()).hash(Hashing.sha1());
+    }
+  }
+
+  private void releaseArchive(CachedArchive archive) {
+    synchronized (archives) {
+      archive.users--;
+      if (archive.evicted && archive.users == 0) {
+        close(archive);
+      }
+    }
+  }
+
+  /** Closes a provider that is no longer cached, or lets its last user close it. */
+  private static void evict(CachedArchive archive) {
+    archive.evicted = true;
+    if (archive.users == 0) {
+      close(archive);
+    }
+  }
+
+  private static void close(CachedArchive archive) {
+    try {
+      archive.provider.close();
+    } catch (IOException e) {
+      LOG.warn(e, "Failed to close the classes of %s.", archive.jar);
+    }
+  }
+
+  private static final class CachedArchive {
+    private final Path jar;
+    private final ArchiveClassFileProvider provider;
+    private final HashCode hash;
+
+    /** The compilations using the provider, guarded by the archives map. */
+    private int users;
+
+    private boolean evicted;
+
+    private CachedArchive(Path jar, ArchiveClassFileProvider provider, HashCode hash) {
+      this.jar = jar;
+      this.provider = provider;
+      this.hash = hash;
+    }
+  }
+}
@@ -98,6 +98,7 @@ public class SmartDexingStep implements Step {
   private final OptionalInt xzCompressionLevel;
   private final Optional<String> dxMaxHeapSize;
   private final String dexTool;
+  private final Optional<Path> perClassDexCacheDir;
 
   /**
    * @param primaryOutputPath Path for the primary dex artifact.
@@ -110,6 +111,9 @@ public class SmartDexingStep implements Step {
    *     invocation will be started with the corresponding jar files (value) as the input.
    * @param successDir Directory where success artifacts are written.
    * @param executorService The thread pool to execute the dx command on.
+   * @param perClassDexCacheDir Directory where the dex code of single classes is cached, so that
+   *     only the classes that changed need to be dexed again. Only used with D8, and only for
+   *     inputs made of class files.
    */
   public SmartDexingStep(
       AndroidPlatformTarget androidPlatformTarget,
@@ -126,7 +130,8 @@ public class SmartDexingStep implements Step {
       OptionalInt xzCompressionLevel,
       Optional<String> dxMaxHeapSize,
       String dexTool,
-      boolean desugarInterfaceMethods) {
+      boolean desugarInterfaceMethods,
+      Optional<Path> perClassDexCacheDir) {
     this.androidPlatformTarget = androidPlatformTarget;
     this.buildContext = buildContext;
     this.filesystem = filesystem;
@@ -149,6 +154,7 @@ public class SmartDexingStep implements Step {
     this.xzCompressionLevel = xzCompressionLevel;
     this.dxMaxHeapSize = dxMaxHeapSize;
     this.dexTool = dexTool;
+    this.perClassDexCacheDir = perClassDexCacheDir;
   }
 
   /**
@@ -174,7 +180,14 @@ public class SmartDexingStep implements Step {
       throws IOException, InterruptedException {
     try {
       Multimap<Path, Path> outputToInputs = outputToInputsSupplier.get();
-      runDxCommands(context, outputToInputs);
+      Optional<PerClassDexCache> perClassDexCache =
+          perClassDexCacheDir
+              .filter(dir -> dexTool.equals(DxStep.D8))
+              .map(dir -> new PerClassDexCache(filesystem, dir));
+      runDxCommands(context, outputToInputs, perClassDexCache);
+      if (perClassDexCache.isPresent()) {
+        perClassDexCache.get().removeStaleEntries();
+      }
       if (secondaryOutputDir.isPresent()) {
         removeExtraneousSecondaryArtifacts(
             secondaryOutputDir.get(), outputToInputs.keySet(), filesystem);
@@ -224,12 +237,16 @@ public class SmartDexingStep implements Step {
     return StepExecutionResults.SUCCESS;
   }
 
-  private void runDxCommands(ExecutionContext context, Multimap<Path, Path> outputToInputs)
+  private void runDxCommands(
+      ExecutionContext context,
+      Multimap<Path, Path> outputToInputs,
+      Optional<PerClassDexCache> perClassDexCache)
       throws StepFailedException, InterruptedException {
     DefaultStepRunner stepRunner = new DefaultStepRunner();
     // Invoke dx commands in parallel for maximum thread utilization.  In testing, dx revealed
     // itself to be CPU (and not I/O) bound making it a good candidate for parallelization.
-    Stream<ImmutableList<Step>> dxSteps = generateDxCommands(filesystem, outputToInputs);
+    Stream<ImmutableList<Step>> dxSteps =
+        generateDxCommands(filesystem, outputToInputs, perClassDexCache);
 
     ImmutableList<Callable<Void>> callables =
         dxSteps
@@ -301,7 +318,9 @@ public class SmartDexingStep implements Step {
    * to a {@code .dex} file.
    */
   private Stream<ImmutableList<Step>> generateDxCommands(
-      ProjectFilesystem filesystem, Multimap<Path, Path> outputToInputs) {
+      ProjectFilesystem filesystem,
+      Multimap<Path, Path> outputToInputs,
+      Optional<PerClassDexCache> perClassDexCache) {
 
     ImmutableMap<Path, Sha1HashCode> dexInputHashes = dexInputHashesProvider.getDexInputHashes();
     ImmutableSet<Path> allDexInputPaths = ImmutableSet.copyOf(outputToInputs.values());
@@ -327,7 +346,8 @@ public class SmartDexingStep implements Step {
                     desugarInterfaceMethods
                         ? Sets.difference(
                             allDexInputPaths, ImmutableSet.copyOf(outputInputsPair.getValue()))
-                        : null))
+                        : null,
+                    perClassDexCache))
         .filter(dxPseudoRule -> !dxPseudoRule.checkIsCached())
         .map(
             dxPseudoRule -> {
@@ -362,6 +382,7 @@ public class SmartDexingStep implements Step {
     private final Optional<String> dxMaxHeapSize;
     private final String dexTool;
     @Nullable private final Collection<Path> classpathFiles;
+    private final Optional<PerClassDexCache> perClassDexCache;
 
     public DxPseudoRule(
         AndroidPlatformTarget androidPlatformTarget,
@@ -375,7 +396,8 @@ public class SmartDexingStep implements Step {
         OptionalInt xzCompressionLevel,
         Optional<String> dxMaxHeapSize,
         String dexTool,
-        @Nullable Collection<Path> classpathFiles) {
+        @Nullable Collection<Path> classpathFiles,
+        Optional<PerClassDexCache> perClassDexCache) {
       this.androidPlatformTarget = androidPlatformTarget;
       this.buildContext = buildContext;
       this.filesystem = filesystem;
@@ -388,6 +410,7 @@ public class SmartDexingStep implements Step {
       this.dxMaxHeapSize = dxMaxHeapSize;
       this.dexTool = dexTool;
       this.classpathFiles = classpathFiles;
+      this.perClassDexCache = perClassDexCache;
     }
 
     /**
@@ -439,7 +462,8 @@ public class SmartDexingStep implements Step {
           xzCompressionLevel,
           dxMaxHeapSize,
           dexTool,
-          classpathFiles);
+          classpathFiles,
+          perClassDexCache);
       steps.add(
           new WriteFileStep(filesystem, newInputsHash, outputHashPath, /* executable */ false));
     }
@@ -464,6 +488,34 @@ public class SmartDexingStep implements Step {
       Optional<String> dxMaxHeapSize,
       String dexTool,
       @Nullable Collection<Path> classpathFiles) {
+    createDxStepForDxPseudoRule(
+        androidPlatformTarget,
+        steps,
+        context,
+        filesystem,
+        filesToDex,
+        outputPath,
+        dxOptions,
+        xzCompressionLevel,
+        dxMaxHeapSize,
+        dexTool,
+        classpathFiles,
+        Optional.empty());
+  }
+
+  static void createDxStepForDxPseudoRule(
+      AndroidPlatformTarget androidPlatformTarget,
+      ImmutableList.Builder<Step> steps,
+      BuildContext context,
+      ProjectFilesystem filesystem,
+      Collection<Path> filesToDex,
+      Path outputPath,
+      EnumSet<Option> dxOptions,
+      OptionalInt xzCompressionLevel,
+      Optional<String> dxMaxHeapSize,
+      String dexTool,
+      @Nullable Collection<Path> classpathFiles,
+      Optional<PerClassDexCache> perClassDexCache) {
 
     String output = outputPath.toString();
 
@@ -479,7 +531,8 @@ public class SmartDexingStep implements Step {
               dxMaxHeapSize,
               dexTool,
               false,
-              classpathFiles));
+              classpathFiles,
+              perClassDexCache));
       // We need to make sure classes.dex is STOREd in the .dex.jar file, otherwise .XZ
       // compression won't be effective.
       Path repackedJar = Paths.get(output.replaceAll("\\.xz$", ""));
@@ -520,7 +573,8 @@ public class SmartDexingStep implements Step {
               dxMaxHeapSize,
               dexTool,
               false,
-              classpathFiles));
+              classpathFiles,
+              perClassDexCache));
       steps.add(
           new RepackZipEntriesStep(
               filesystem,
@@ -552,7 +606,8 @@ public class SmartDexingStep implements Step {
               dxMaxHeapSize,
               dexTool,
               false,
-              classpathFiles));
+              classpathFiles,
+              perClassDexCache));
       if (DexStore.JAR.matchesPath(outputPath)) {
         steps.add(
             new DexJarAnalysisStep(
@@ -30,6 +30,7 @@ import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
 import com.facebook.buck.util.ThrowingPrintWriter;
 import com.facebook.buck.util.json.ObjectMappers;
+import com.facebook.buck.util.types.Either;
 import com.facebook.buck.util.xml.DocumentLocation;
 import com.facebook.buck.util.xml.PositionalXmlHandler;
 import com.facebook.buck.util.xml.XmlDomParserWithLineNumbers;
@@ -37,28 +38,35 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Ordering;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-import org.w3c.dom.Attr;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 /**
@@ -78,15 +86,15 @@ public class MiniAapt implements Step {
   private static final String PUBLIC_FILENAME = "public.xml";
   private static final String CUSTOM_DRAWABLE_PREFIX = "app-";
 
-  private static final XPathExpression ANDROID_ID_USAGE =
-      createExpression(
-          "//@*[starts-with(., '@') and "
-              + "not(starts-with(., '@+')) and "
-              + "not(starts-with(., '@android:')) and "
-              + "not(starts-with(., '@null'))]");
+  /**
+   * The ids defined and the resources referenced by the xml files outside of {@code values}
+   * directories, keyed by the hash of the file. They are kept for the lifetime of the daemon, since
+   * most of these files do not change from one build to the next.
+   */
+  private static final Cache<HashCode, XmlFileIds> XML_FILE_IDS =
+      CacheBuilder.newBuilder().softValues().build();
 
-  private static final XPathExpression ANDROID_ID_DEFINITION =
-      createExpression("//@*[starts-with(., '@+') and " + "not(starts-with(., '@+android:id'))]");
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
 
   private static final ImmutableMap<String, RType> RESOURCE_TYPES = getResourceTypes();
 
@@ -164,12 +172,12 @@ public class MiniAapt implements Step {
     }
   }
 
-  private static XPathExpression createExpression(String expressionStr) {
-    try {
-      return XPathFactory.newInstance().newXPath().compile(expressionStr);
-    } catch (XPathExpressionException e) {
-      throw new RuntimeException(e);
-    }
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // Like the DOM parser used for values files, resources are not parsed with namespaces, since
+    // many of them use the android: prefix without declaring it.
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    return factory;
   }
 
   private static ImmutableMap<String, RType> getResourceTypes() {
@@ -195,7 +203,7 @@ public class MiniAapt implements Step {
     try {
       collectResources(filesystem, context.getBuckEventBus());
       processXmlFilesForIds(filesystem, references);
-    } catch (XPathExpressionException | ResourceParseException e) {
+    } catch (ResourceParseException e) {
       context.logError(e, "Error parsing resources to generate resource IDs for %s.", resDirectory);
       return StepExecutionResults.ERROR;
     }
@@ -356,9 +364,8 @@ public class MiniAapt implements Step {
     boolean isCustomDrawable = false;
     if (filename.endsWith(".xml")) {
       try (InputStream stream = filesystem.newFileInputStream(resourceFile)) {
-        Document dom = parseXml(resourceFile, stream);
-        Element root = dom.getDocumentElement();
-        isCustomDrawable = root.getNodeName().startsWith(CUSTOM_DRAWABLE_PREFIX);
+        isCustomDrawable =
+            readRootElementName(resourceFile, stream).startsWith(CUSTOM_DRAWABLE_PREFIX);
       }
     } else if (isGrayscaleImageProcessingEnabled) {
       isGrayscaleImage = filename.endsWith(".g.png");
@@ -528,9 +535,10 @@ public class MiniAapt implements Step {
 
   void processXmlFilesForIds(
       ProjectFilesystem filesystem, ImmutableSet.Builder<RDotTxtEntry> references)
-      throws IOException, XPathExpressionException, ResourceParseException {
+      throws IOException, ResourceParseException {
     Path absoluteResDir = resolver.getAbsolutePath(resDirectory);
     Path relativeResDir = resolver.getRelativePath(resDirectory);
+    List<Path> xmlFiles = new ArrayList<>();
     for (Path path :
         filesystem.getFilesUnderPath(absoluteResDir, input -> input.toString().endsWith(".xml"))) {
       String dirname = relativeResDir.relativize(path).getName(0).toString();
@@ -538,56 +546,137 @@ public class MiniAapt implements Step {
         // Ignore files under values* directories.
         continue;
       }
-      processXmlFile(filesystem, path, references);
+      xmlFiles.add(path);
+    }
+
+    // Files are scanned in parallel, but their ids are collected in order, so that the first
+    // definition of an id, and the first error, do not depend on the scheduling.
+    List<Either<XmlFileIds, Exception>> scannedFiles =
+        xmlFiles
+            .parallelStream()
+            .map(
+                path -> {
+                  try {
+                    return Either.<XmlFileIds, Exception>ofLeft(scanXmlFile(filesystem, path));
+                  } catch (IOException | ResourceParseException e) {
+                    return Either.<XmlFileIds, Exception>ofRight(e);
+                  }
+                })
+            .collect(Collectors.toList());
+    for (int i = 0; i < xmlFiles.size(); i++) {
+      Either<XmlFileIds, Exception> scannedFile = scannedFiles.get(i);
+      if (scannedFile.isRight()) {
+        Exception e = scannedFile.getRight();
+        if (e instanceof ResourceParseException) {
+          throw (ResourceParseException) e;
+        }
+        throw (IOException) e;
+      }
+      processXmlFileIds(xmlFiles.get(i), scannedFile.getLeft(), references);
     }
   }
 
   @VisibleForTesting
   void processXmlFile(
       ProjectFilesystem filesystem, Path xmlFile, ImmutableSet.Builder<RDotTxtEntry> references)
-      throws IOException, XPathExpressionException, ResourceParseException {
-    try (InputStream stream = filesystem.newFileInputStream(xmlFile)) {
-      Document dom = parseXml(xmlFile, stream);
-      NodeList nodesWithIds =
-          (NodeList) ANDROID_ID_DEFINITION.evaluate(dom, XPathConstants.NODESET);
-      for (int i = 0; i < nodesWithIds.getLength(); i++) {
-        String resourceName = nodesWithIds.item(i).getNodeValue();
-        if (!resourceName.startsWith(ID_DEFINITION_PREFIX)) {
-          throw new ResourceParseException("Invalid definition of a resource: '%s'", resourceName);
-        }
-        Preconditions.checkState(resourceName.startsWith(ID_DEFINITION_PREFIX));
+      throws IOException, ResourceParseException {
+    processXmlFileIds(xmlFile, scanXmlFile(filesystem, xmlFile), references);
+  }
 
-        Element ownerElement = ((Attr) nodesWithIds.item(i)).getOwnerElement();
-        DocumentLocation location = extractDocumentLocation(ownerElement);
-        resourceCollector.addIntResourceIfNotPresent(
-            RType.ID, resourceName.substring(ID_DEFINITION_PREFIX.length()), xmlFile, location);
+  private void processXmlFileIds(
+      Path xmlFile, XmlFileIds ids, ImmutableSet.Builder<RDotTxtEntry> references)
+      throws ResourceParseException {
+    for (int i = 0; i < ids.definitions.size(); i++) {
+      String resourceName = ids.definitions.get(i);
+      if (!resourceName.startsWith(ID_DEFINITION_PREFIX)) {
+        throw new ResourceParseException("Invalid definition of a resource: '%s'", resourceName);
       }
+      Preconditions.checkState(resourceName.startsWith(ID_DEFINITION_PREFIX));
 
-      NodeList nodesUsingIds = (NodeList) ANDROID_ID_USAGE.evaluate(dom, XPathConstants.NODESET);
-      for (int i = 0; i < nodesUsingIds.getLength(); i++) {
-        String resourceName = nodesUsingIds.item(i).getNodeValue();
-        int slashPosition = resourceName.indexOf('/');
-        if (resourceName.charAt(0) != '@' || slashPosition == -1) {
-          throw new ResourceParseException("Invalid definition of a resource: '%s'", resourceName);
-        }
+      DocumentLocation location = ids.definitionLocations.get(i);
+      resourceCollector.addIntResourceIfNotPresent(
+          RType.ID, resourceName.substring(ID_DEFINITION_PREFIX.length()), xmlFile, location);
+    }
 
-        String rawRType = resourceName.substring(1, slashPosition);
-        String name = resourceName.substring(slashPosition + 1);
+    for (int i = 0; i < ids.usages.size(); i++) {
+      String resourceName = ids.usages.get(i);
+      int slashPosition = resourceName.indexOf('/');
+      if (resourceName.charAt(0) != '@' || slashPosition == -1) {
+        throw new ResourceParseException("Invalid definition of a resource: '%s'", resourceName);
+      }
 
-        String nodeName = nodesUsingIds.item(i).getNodeName();
-        if (name.startsWith("android:") || nodeName.startsWith("tools:")) {
-          continue;
-        }
-        if (!RESOURCE_TYPES.containsKey(rawRType)) {
-          throw new ResourceParseException("Invalid reference '%s' in '%s'", resourceName, xmlFile);
-        }
-        RType rType = Objects.requireNonNull(RESOURCE_TYPES.get(rawRType));
+      String rawRType = resourceName.substring(1, slashPosition);
+      String name = resourceName.substring(slashPosition + 1);
+
+      String nodeName = ids.usageAttributeNames.get(i);
+      if (name.startsWith("android:") || nodeName.startsWith("tools:")) {
+        continue;
+      }
+      if (!RESOURCE_TYPES.containsKey(rawRType)) {
+        throw new ResourceParseException("Invalid reference '%s' in '%s'", resourceName, xmlFile);
+      }
+      RType rType = Objects.requireNonNull(RESOURCE_TYPES.get(rawRType));
+
+      references.add(new FakeRDotTxtEntry(IdType.INT, rType, sanitizeName(name)));
+    }
+  }
+
+  /** Returns the ids defined and used by an xml file, scanning it if it was not seen yet. */
+  private static XmlFileIds scanXmlFile(ProjectFilesystem filesystem, Path xmlFile)
+      throws IOException, ResourceParseException {
+    byte[] contents;
+    try (InputStream stream = filesystem.newFileInputStream(xmlFile)) {
+      contents = ByteStreams.toByteArray(stream);
+    }
+    HashCode hash = Hashing.murmur3_128().hashBytes(contents);
+    XmlFileIds ids = XML_FILE_IDS.getIfPresent(hash);
+    if (ids == null) {
+      ids = XmlFileIds.scan(xmlFile, contents);
+      XML_FILE_IDS.put(hash, ids);
+    }
+    return ids;
+  }
 
-        references.add(new FakeRDotTxtEntry(IdType.INT, rType, sanitizeName(name)));
+  private static String readRootElementName(Path filepath, InputStream inputStream)
+      throws ResourceParseException {
+    XMLStreamReader reader = createXmlStreamReader(filepath, inputStream);
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          return getQualifiedName(reader.getPrefix(), reader.getLocalName());
+        }
       }
+      throw new ResourceParseException("Error parsing xml file '%s': no root element.", filepath);
+    } catch (XMLStreamException e) {
+      throw new ResourceParseException(
+          "Error parsing xml file '%s': %s.", filepath, e.getMessage());
+    } finally {
+      closeQuietly(reader);
+    }
+  }
+
+  private static XMLStreamReader createXmlStreamReader(Path filepath, InputStream inputStream)
+      throws ResourceParseException {
+    try {
+      return XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+    } catch (XMLStreamException e) {
+      throw new ResourceParseException(
+          "Error parsing xml file '%s': %s.", filepath, e.getMessage());
+    }
+  }
+
+  private static void closeQuietly(XMLStreamReader reader) {
+    try {
+      reader.close();
+    } catch (XMLStreamException e) {
+      // The underlying stream is closed by the caller.
     }
   }
 
+  private static String getQualifiedName(String prefix, String localName) {
+    return Strings.isNullOrEmpty(prefix) ? localName : prefix + ":" + localName;
+  }
+
   private static Document parseXml(Path filepath, InputStream inputStream)
       throws IOException, ResourceParseException {
     try {
@@ -678,6 +767,74 @@ public class MiniAapt implements Step {
     return getShortName() + " " + resDirectory;
   }
 
+  /**
+   * The attributes of an xml file that define ids ({@code @+id/...}) and reference other resources
+   * ({@code @string/...}), in document order. They are validated when added to the collector, so
+   * that they do not depend on the path of the file.
+   */
+  private static final class XmlFileIds {
+    private final ImmutableList<String> definitions;
+    private final ImmutableList<DocumentLocation> definitionLocations;
+    private final ImmutableList<String> usages;
+    private final ImmutableList<String> usageAttributeNames;
+
+    private XmlFileIds(
+        ImmutableList<String> definitions,
+        ImmutableList<DocumentLocation> definitionLocations,
+        ImmutableList<String> usages,
+        ImmutableList<String> usageAttributeNames) {
+      this.definitions = definitions;
+      this.definitionLocations = definitionLocations;
+      this.usages = usages;
+      this.usageAttributeNames = usageAttributeNames;
+    }
+
+    private static XmlFileIds scan(Path xmlFile, byte[] contents) throws ResourceParseException {
+      ImmutableList.Builder<String> definitions = ImmutableList.builder();
+      ImmutableList.Builder<DocumentLocation> definitionLocations = ImmutableList.builder();
+      ImmutableList.Builder<String> usages = ImmutableList.builder();
+      ImmutableList.Builder<String> usageAttributeNames = ImmutableList.builder();
+
+      XMLStreamReader reader = createXmlStreamReader(xmlFile, new ByteArrayInputStream(contents));
+      try {
+        while (reader.hasNext()) {
+          if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          // The location of the end of the start tag, as reported by the DOM parser.
+          Location location = reader.getLocation();
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String value = reader.getAttributeValue(i);
+            if (value.startsWith("@+")) {
+              if (!value.startsWith("@+android:id")) {
+                definitions.add(value);
+                definitionLocations.add(
+                    DocumentLocation.of(
+                        location.getLineNumber() - 1, location.getColumnNumber() - 1));
+              }
+            } else if (value.startsWith("@")
+                && !value.startsWith("@android:")
+                && !value.startsWith("@null")) {
+              usages.add(value);
+              usageAttributeNames.add(
+                  getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)));
+            }
+          }
+        }
+      } catch (XMLStreamException e) {
+        throw new ResourceParseException(
+            "Error parsing xml file '%s': %s.", xmlFile, e.getMessage());
+      } finally {
+        closeQuietly(reader);
+      }
+      return new XmlFileIds(
+          definitions.build(),
+          definitionLocations.build(),
+          usages.build(),
+          usageAttributeNames.build());
+    }
+  }
+
   @VisibleForTesting
   static class ResourceParseException extends Exception {
 
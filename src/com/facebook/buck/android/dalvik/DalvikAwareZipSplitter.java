@@ -48,7 +48,8 @@ import javax.annotation.Nullable;
  * Implementation of {@link ZipSplitter} that uses estimates from {@link DalvikStatsTool} to
  * determine how many classes to pack into a dex.
  *
- * <p>It does three passes through the .class files:
+ * <p>It does three passes through the .class files, after computing the estimates of all of them
+ * in parallel:
  *
  * <ul>
  *   <li>During the first pass, it uses the {@code requiredInPrimaryZip} predicate to filter the set
@@ -176,6 +177,19 @@ public class DalvikAwareZipSplitter implements ZipSplitter {
     ImmutableMap.Builder<String, FileLike> entriesBuilder = ImmutableMap.builder();
     List<String> additionalDexStoreEntries = new ArrayList<>();
 
+    // Compute the stats of every class up front, in parallel, so that the passes below only have
+    // to look them up.
+    LOG.verbose("Traversing classpath for class stats");
+
+    classpathTraverser.traverse(
+        new ClasspathTraversal(inFiles, filesystem) {
+          @Override
+          public void visit(FileLike entry) throws IOException {
+            dalvikStatsCache.prefetch(entry);
+          }
+        });
+    dalvikStatsCache.finishPrefetch();
+
     // Iterate over all of the inFiles and add all entries that match the requiredInPrimaryZip
     // predicate.
     LOG.verbose("Traversing classpath for primary zip");
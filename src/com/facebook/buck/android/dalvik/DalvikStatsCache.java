@@ -17,19 +17,44 @@
 package com.facebook.buck.android.dalvik;
 
 import com.facebook.buck.jvm.java.classes.FileLike;
-import com.google.common.collect.MapMaker;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
-/** Cache to memoize results from DalvikStatsTool. */
+/**
+ * Cache to memoize results from DalvikStatsTool.
+ *
+ * <p>The stats of a class only depend on its bytecode, so they are kept for the lifetime of the
+ * daemon keyed by the hash of the class, and most classes are not analyzed again when the app is
+ * split on the next build. Stats are looked up by the jar and path of the entry during a split,
+ * since the zip splitter visits every entry more than once, and {@link #prefetch} computes them
+ * in parallel up front.
+ */
 class DalvikStatsCache {
 
-  private final ConcurrentMap<FileLike, DalvikStatsTool.Stats> cache;
+  /** Stats of all the classes seen by the daemon, by hash of the class file. */
+  private static final Cache<HashCode, DalvikStatsTool.Stats> STATS_BY_CONTENTS =
+      CacheBuilder.newBuilder().softValues().build();
 
-  DalvikStatsCache() {
-    cache = new MapMaker().weakKeys().makeMap();
-  }
+  /** Classes read by {@link #prefetch} are analyzed in batches of about this many bytes. */
+  private static final long PREFETCH_BATCH_BYTES = 32 * 1024 * 1024;
+
+  private final ConcurrentMap<String, DalvikStatsTool.Stats> cache = new ConcurrentHashMap<>();
+  private final List<PendingEntry> pendingEntries = new ArrayList<>();
+  private long pendingBytes = 0;
 
   DalvikStatsTool.Stats getStats(FileLike entry) {
     String name = entry.getRelativePath();
@@ -39,19 +64,81 @@ class DalvikStatsCache {
       return DalvikStatsTool.Stats.ZERO;
     }
 
-    DalvikStatsTool.Stats stats = cache.get(entry);
+    String key = getKey(entry);
+    DalvikStatsTool.Stats stats = cache.get(key);
     if (stats != null) {
       return stats;
     }
 
     try (InputStream is = entry.getInput()) {
-      stats = DalvikStatsTool.getEstimate(is);
-      cache.put(entry, stats);
+      stats = getStats(name, ByteStreams.toByteArray(is));
+      cache.put(key, stats);
       return stats;
     } catch (IOException e) {
       throw new RuntimeException(String.format("Error calculating size for %s.", name), e);
-    } catch (RuntimeException e) {
-      throw new RuntimeException(String.format("Error calculating size for %s.", name), e);
+    }
+  }
+
+  /**
+   * Reads a class that will be looked up later, and computes its stats along with the other
+   * prefetched classes. The stats are only guaranteed to be available after {@link
+   * #finishPrefetch}.
+   */
+  void prefetch(FileLike entry) throws IOException {
+    String name = entry.getRelativePath();
+    if (!name.endsWith(".class")) {
+      return;
+    }
+    byte[] contents;
+    try (InputStream is = entry.getInput()) {
+      contents = ByteStreams.toByteArray(is);
+    }
+    pendingEntries.add(new PendingEntry(getKey(entry), name, contents));
+    pendingBytes += contents.length;
+    if (pendingBytes >= PREFETCH_BATCH_BYTES) {
+      finishPrefetch();
+    }
+  }
+
+  /** Computes the stats of the classes prefetched so far, in parallel. */
+  void finishPrefetch() {
+    pendingEntries
+        .parallelStream()
+        .forEach(entry -> cache.put(entry.key, getStats(entry.name, entry.contents)));
+    pendingEntries.clear();
+    pendingBytes = 0;
+  }
+
+  private static DalvikStatsTool.Stats getStats(String name, byte[] contents) {
+    HashCode hash = Hashing.murmur3_128().hashBytes(contents);
+    try {
+      // Identical classes in different jars are only analyzed once, even in parallel.
+      return STATS_BY_CONTENTS.get(
+          hash, () -> DalvikStatsTool.getEstimate(new ByteArrayInputStream(contents)));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new RuntimeException(
+          String.format("Error calculating size for %s.", name), e.getCause());
+    }
+  }
+
+  @VisibleForTesting
+  Map<String, DalvikStatsTool.Stats> getCachedStats() {
+    return cache;
+  }
+
+  private static String getKey(FileLike entry) {
+    return entry.getContainer() + "!" + entry.getRelativePath();
+  }
+
+  private static final class PendingEntry {
+    private final String key;
+    private final String name;
+    private final byte[] contents;
+
+    private PendingEntry(String key, String name, byte[] contents) {
+      this.key = key;
+      this.name = name;
+      this.contents = contents;
     }
   }
 }
@@ -29,14 +29,20 @@ import com.google.common.io.ByteStreams;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.function.Function;
@@ -107,6 +113,8 @@ import java.util.zip.ZipFile;
  * different package ids.
  */
 public class ExoResourcesRewriter {
+  private static final String RESOURCES_ARSC = "resources.arsc";
+
   private ExoResourcesRewriter() {}
 
   public static void rewrite(
@@ -136,6 +144,14 @@ public class ExoResourcesRewriter {
       // Write the full (rearranged) resources to the exo resources.
       try (ResourcesZipBuilder zipBuilder = new ResourcesZipBuilder(exoResources)) {
         for (ZipEntry entry : apkZip.getEntries()) {
+          if (entry.getName().equals(RESOURCES_ARSC)) {
+            // The rewritten table is written from the buffer it was rewritten in.
+            zipBuilder.addEntry(
+                apkZip.getResourceTableData(),
+                RESOURCES_ARSC,
+                entry.getMethod() == ZipEntry.STORED ? 0 : Deflater.BEST_COMPRESSION);
+            continue;
+          }
           addEntry(
               zipBuilder,
               entry.getName(),
@@ -152,9 +168,9 @@ public class ExoResourcesRewriter {
                 ImmutableMap.copyOf(Maps.transformValues(closure.idsByType, Set::size)));
         addEntry(
             zipBuilder,
-            "resources.arsc",
+            RESOURCES_ARSC,
             primaryResourceTable.serialize(),
-            apkZip.getEntry("resources.arsc").getMethod() == ZipEntry.STORED
+            apkZip.getEntry(RESOURCES_ARSC).getMethod() == ZipEntry.STORED
                 ? 0
                 : Deflater.BEST_COMPRESSION,
             false);
@@ -259,13 +275,16 @@ public class ExoResourcesRewriter {
   }
 
   private static class ApkZip implements Closeable, UsedResourcesFinder.ApkContentProvider {
+    private final Path inputPath;
     private final ZipFile zipFile;
     private final SortedMap<String, ZipEntry> entries;
     private final Map<String, byte[]> entryContents;
     private final Map<String, ResourcesXml> xmlEntries;
+    private final Supplier<ByteBuffer> resourceTableData;
     private final Supplier<ResourceTable> resourceTable;
 
     public ApkZip(Path inputPath) throws IOException {
+      this.inputPath = inputPath;
       this.zipFile = new ZipFile(inputPath.toFile());
       this.entries =
           Collections.list(zipFile.entries())
@@ -275,9 +294,9 @@ public class ExoResourcesRewriter {
                       Ordering.natural(), ZipEntry::getName, e -> e));
       this.entryContents = new HashMap<>();
       this.xmlEntries = new HashMap<>();
+      this.resourceTableData = MoreSuppliers.memoize(this::readResourceTable);
       this.resourceTable =
-          MoreSuppliers.memoize(
-              () -> ResourceTable.get(ResChunk.wrap(getContent("resources.arsc"))));
+          MoreSuppliers.memoize(() -> ResourceTable.get(ResChunk.slice(getResourceTableData(), 0)));
     }
 
     @Override
@@ -285,6 +304,94 @@ public class ExoResourcesRewriter {
       return resourceTable.get();
     }
 
+    /** The content of resources.arsc, which the resource table is a view of. */
+    ByteBuffer getResourceTableData() {
+      return resourceTableData.get().duplicate();
+    }
+
+    private ByteBuffer readResourceTable() {
+      ZipEntry entry = entries.get(RESOURCES_ARSC);
+      if (entry.getMethod() == ZipEntry.STORED) {
+        try {
+          Optional<ByteBuffer> mapped = mapStoredEntry(entry);
+          if (mapped.isPresent()) {
+            return mapped.get();
+          }
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return ResChunk.wrap(getContent(RESOURCES_ARSC));
+    }
+
+    /**
+     * aapt stores resources.arsc uncompressed, so it can be mapped rather than read into the heap.
+     * The mapping is private: the pages that are rewritten get copied, the others stay shared with
+     * the page cache, and the input is never modified (though private mappings need a channel
+     * opened for writing).
+     */
+    private Optional<ByteBuffer> mapStoredEntry(ZipEntry entry) throws IOException {
+      if (!Files.isWritable(inputPath)) {
+        return Optional.empty();
+      }
+      try (FileChannel channel =
+          FileChannel.open(inputPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        if (channel.size() > Integer.MAX_VALUE) {
+          return Optional.empty();
+        }
+        ByteBuffer zip = channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size());
+        zip.order(ByteOrder.LITTLE_ENDIAN);
+        OptionalInt localHeaderOffset = findLocalHeaderOffset(zip, entry.getName());
+        if (!localHeaderOffset.isPresent()
+            || zip.getInt(localHeaderOffset.getAsInt()) != ZipEntry.LOCSIG) {
+          return Optional.empty();
+        }
+        int offset = localHeaderOffset.getAsInt();
+        int dataOffset =
+            offset
+                + ZipEntry.LOCHDR
+                + Short.toUnsignedInt(zip.getShort(offset + ZipEntry.LOCNAM))
+                + Short.toUnsignedInt(zip.getShort(offset + ZipEntry.LOCEXT));
+        return Optional.of(ResChunk.slice(zip, dataOffset, (int) entry.getSize()));
+      }
+    }
+
+    /** Looks an entry up in the central directory of a (non zip64) zip file. */
+    private static OptionalInt findLocalHeaderOffset(ByteBuffer zip, String name) {
+      byte[] nameBytes = name.getBytes(Charsets.UTF_8);
+      int endOffset = zip.limit() - ZipEntry.ENDHDR;
+      int minEndOffset = Math.max(0, endOffset - 0xffff);
+      while (endOffset >= minEndOffset && zip.getInt(endOffset) != ZipEntry.ENDSIG) {
+        endOffset--;
+      }
+      if (endOffset < minEndOffset) {
+        return OptionalInt.empty();
+      }
+      int entriesCount = Short.toUnsignedInt(zip.getShort(endOffset + ZipEntry.ENDTOT));
+      int offset = zip.getInt(endOffset + ZipEntry.ENDOFF);
+      for (int i = 0; i < entriesCount; i++) {
+        if (zip.getInt(offset) != ZipEntry.CENSIG) {
+          return OptionalInt.empty();
+        }
+        int nameLength = Short.toUnsignedInt(zip.getShort(offset + ZipEntry.CENNAM));
+        if (nameLength == nameBytes.length) {
+          boolean matches = true;
+          for (int j = 0; j < nameLength && matches; j++) {
+            matches = zip.get(offset + ZipEntry.CENHDR + j) == nameBytes[j];
+          }
+          if (matches) {
+            return OptionalInt.of(zip.getInt(offset + ZipEntry.CENOFF));
+          }
+        }
+        offset +=
+            ZipEntry.CENHDR
+                + nameLength
+                + Short.toUnsignedInt(zip.getShort(offset + ZipEntry.CENEXT))
+                + Short.toUnsignedInt(zip.getShort(offset + ZipEntry.CENCOM));
+      }
+      return OptionalInt.empty();
+    }
+
     @Override
     public ResourcesXml getXml(String path) {
       return xmlEntries.computeIfAbsent(path, this::extractXml);
@@ -20,7 +20,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.primitives.Shorts;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.Arrays;
 
 /**
  * ResChunk is the base of most structures in Android's .arsc and compiled .xml files. It consists
@@ -132,8 +131,12 @@ public abstract class ResChunk {
 
   // These are some utilities used widely by subclasses for dealing with ByteBuffers.
   static ByteBuffer copy(ByteBuffer buf) {
-    return wrap(
-        Arrays.copyOfRange(buf.array(), buf.arrayOffset(), buf.arrayOffset() + buf.limit()));
+    // The buffer may be a view of a mapped file, which has no backing array.
+    byte[] data = new byte[buf.limit()];
+    ByteBuffer source = buf.duplicate();
+    source.position(0);
+    source.get(data);
+    return wrap(data);
   }
 
   public static ByteBuffer wrap(byte[] data) {
@@ -17,7 +17,6 @@
 package com.facebook.buck.android.resources;
 
 import com.google.common.base.Preconditions;
-import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
@@ -58,7 +57,6 @@ public class ResTableType extends ResChunk {
 
   @Nullable
   public static ResTableType slice(ResTableType type, int count) {
-    ByteArrayOutputStream output = new ByteArrayOutputStream();
     int currentOffset = 0;
     ByteBuffer entryOffsets = wrap(new byte[count * 4]);
     for (int i = 0; i < count; i++) {
@@ -67,16 +65,27 @@ public class ResTableType extends ResChunk {
         entryOffsets.putInt(i * 4, -1);
       } else {
         entryOffsets.putInt(i * 4, currentOffset);
-        int dataSize = type.getEntrySizeAtOffset(offset);
-        currentOffset += dataSize;
-        output.write(type.entryData.array(), type.entryData.arrayOffset() + offset, dataSize);
+        currentOffset += type.getEntrySizeAtOffset(offset);
       }
     }
-
-    byte[] entryData = output.toByteArray();
-    if (entryData.length == 0) {
+    if (currentOffset == 0) {
       return null;
     }
+
+    // Sizes are known now, so the entries are copied straight into a buffer of the right size.
+    // They are read through the buffer, since it may be a view of a mapped file.
+    byte[] entryData = new byte[currentOffset];
+    ByteBuffer source = type.entryData.duplicate();
+    int outputOffset = 0;
+    for (int i = 0; i < count; i++) {
+      int offset = type.getEntryValueOffset(i);
+      if (offset != -1) {
+        int dataSize = type.getEntrySizeAtOffset(offset);
+        source.position(offset);
+        source.get(entryData, outputOffset, dataSize);
+        outputOffset += dataSize;
+      }
+    }
     int headerSize = type.getHeaderSize();
     int chunkSize = headerSize + count * 4 + entryData.length;
 
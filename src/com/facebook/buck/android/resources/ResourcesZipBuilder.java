@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
@@ -60,6 +61,22 @@ public class ResourcesZipBuilder implements Closeable {
     }
   }
 
+  /**
+   * Adds an entry with the remaining content of {@code data}, which is streamed into the zip
+   * rather than copied, so that it can be a view of a mapped file.
+   */
+  public void addEntry(ByteBuffer data, String name, int compressionLevel) throws IOException {
+    CRC32 crc32 = new CRC32();
+    crc32.update(data.duplicate());
+    addEntry(
+        new ByteBufferInputStream(data.duplicate()),
+        data.remaining(),
+        crc32.getValue(),
+        name,
+        compressionLevel,
+        false);
+  }
+
   @Override
   public void close() throws IOException {
     if (!hasManifest) {
@@ -76,4 +93,35 @@ public class ResourcesZipBuilder implements Closeable {
     }
     builder.close();
   }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
 }
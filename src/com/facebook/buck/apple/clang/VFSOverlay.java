@@ -43,9 +43,11 @@ public class VFSOverlay {
   @JsonProperty
   private final int version = 0;
 
-  @SuppressWarnings("PMD.UnusedPrivateField")
   @JsonProperty("case-sensitive")
-  private final boolean case_sensitive = false;
+  private final boolean caseSensitive;
+
+  @JsonProperty("use-external-names")
+  private final boolean useExternalNames;
 
   @JsonProperty("roots")
   private ImmutableList<VirtualDirectory> computeRoots() {
@@ -72,7 +74,21 @@ public class VFSOverlay {
   private final ImmutableSortedMap<Path, Path> overlays;
 
   public VFSOverlay(ImmutableSortedMap<Path, Path> overlays) {
+    this(overlays, false, true);
+  }
+
+  /**
+   * @param caseSensitive whether clang should only match the virtual paths with the case they are
+   *     given in, as it would on a case-sensitive filesystem.
+   * @param useExternalNames whether clang should report files by their real paths, in diagnostics,
+   *     depfiles and {@code __FILE__}, and look up includes relative to them in their real
+   *     directory, rather than use their virtual paths as it would for symbolic links.
+   */
+  public VFSOverlay(
+      ImmutableSortedMap<Path, Path> overlays, boolean caseSensitive, boolean useExternalNames) {
     this.overlays = overlays;
+    this.caseSensitive = caseSensitive;
+    this.useExternalNames = useExternalNames;
   }
 
   public String render() throws IOException {
@@ -44,6 +44,7 @@ import com.facebook.buck.core.module.BuckModuleManager;
 import com.facebook.buck.core.module.impl.BuckModuleJarHashProvider;
 import com.facebook.buck.core.module.impl.DefaultBuckModuleManager;
 import com.facebook.buck.core.plugin.impl.BuckPluginManagerFactory;
+import com.facebook.buck.core.resources.ResourceUsageHistory;
 import com.facebook.buck.core.resources.ResourcesConfig;
 import com.facebook.buck.core.rulekey.RuleKey;
 import com.facebook.buck.core.rules.config.ConfigurationRuleDescription;
@@ -975,6 +976,29 @@ public final class Main {
                         listeningDecorator(Executors.newCachedThreadPool()),
                         ExecutorPool.CPU.toString(),
                         EXECUTOR_SERVICES_TIMEOUT_SECONDS);
+            // Create a thread pool for build steps bound by disk I/O, so that they do not occupy
+            // threads of the cpu pool.
+            ThrowingCloseableWrapper<ListeningExecutorService, InterruptedException>
+                diskIoStepExecutorService =
+                    getExecutorWrapper(
+                        buckConfig.getNumDiskIoThreads() > 0
+                            ? listeningDecorator(
+                                MostExecutors.newMultiThreadExecutor(
+                                    "Disk IO", buckConfig.getNumDiskIoThreads()))
+                            : newDirectExecutorService(),
+                        ExecutorPool.DISK_IO.toString(),
+                        EXECUTOR_SERVICES_TIMEOUT_SECONDS);
+            // Create a thread pool for compressing the entries of zips written by build steps.
+            ThrowingCloseableWrapper<ListeningExecutorService, InterruptedException>
+                zipCompressionExecutorService =
+                    getExecutorWrapper(
+                        buckConfig.getNumZipCompressionThreads() > 0
+                            ? listeningDecorator(
+                                MostExecutors.newMultiThreadExecutor(
+                                    "Zip Compression", buckConfig.getNumZipCompressionThreads()))
+                            : newDirectExecutorService(),
+                        ExecutorPool.ZIP_COMPRESSION.toString(),
+                        EXECUTOR_SERVICES_TIMEOUT_SECONDS);
             // Create a thread pool for network I/O tasks
             ThrowingCloseableWrapper<ListeningExecutorService, InterruptedException>
                 networkExecutorService =
@@ -1020,6 +1044,11 @@ public final class Main {
                     buckConfig.getCountersFlushIntervalMillis());
             PerfStatsTracking perfStatsTracking =
                 new PerfStatsTracking(buildEventBus, invocationInfo);
+            // Declared before the process tracker so that it is saved after the tracker is closed.
+            ResourceUsageHistory resourceUsageHistory =
+                buckConfig.isProcessTrackerEnabled() && platform != Platform.WINDOWS
+                    ? createResourceUsageHistory(buckConfig)
+                    : null;
             ProcessTracker processTracker =
                 buckConfig.isProcessTrackerEnabled() && platform != Platform.WINDOWS
                     ? new ProcessTracker(
@@ -1065,17 +1094,23 @@ public final class Main {
           LOG.debug(invocationInfo.toLogLine());
 
           buildEventBus.register(HANG_MONITOR.getHangMonitor());
+          if (resourceUsageHistory != null) {
+            buildEventBus.register(resourceUsageHistory);
+          }
 
-          ImmutableMap<ExecutorPool, ListeningExecutorService> executors =
-              ImmutableMap.of(
-                  ExecutorPool.CPU,
-                  cpuExecutorService.get(),
-                  ExecutorPool.NETWORK,
-                  networkExecutorService.get(),
-                  ExecutorPool.PROJECT,
-                  projectExecutorService.get(),
-                  ExecutorPool.REMOTE,
-                  remoteExecutorService.get());
+          ImmutableMap.Builder<ExecutorPool, ListeningExecutorService> executorsBuilder =
+              ImmutableMap.<ExecutorPool, ListeningExecutorService>builder()
+                  .put(ExecutorPool.CPU, cpuExecutorService.get())
+                  .put(ExecutorPool.NETWORK, networkExecutorService.get())
+                  .put(ExecutorPool.PROJECT, projectExecutorService.get())
+                  .put(ExecutorPool.REMOTE, remoteExecutorService.get());
+          if (buckConfig.getNumDiskIoThreads() > 0) {
+            executorsBuilder.put(ExecutorPool.DISK_IO, diskIoStepExecutorService.get());
+          }
+          if (buckConfig.getNumZipCompressionThreads() > 0) {
+            executorsBuilder.put(ExecutorPool.ZIP_COMPRESSION, zipCompressionExecutorService.get());
+          }
+          ImmutableMap<ExecutorPool, ListeningExecutorService> executors = executorsBuilder.build();
 
           // No need to kick off ProgressEstimator for commands that
           // don't build anything -- it has overhead and doesn't seem
@@ -1366,6 +1401,15 @@ public final class Main {
     }
   }
 
+  @Nullable
+  private static ResourceUsageHistory createResourceUsageHistory(BuckConfig buckConfig) {
+    ResourcesConfig resourcesConfig = buckConfig.getView(ResourcesConfig.class);
+    if (!resourcesConfig.isResourceUsageHistoryEnabled()) {
+      return null;
+    }
+    return ResourceUsageHistory.load(resourcesConfig.getResourceUsageHistoryFile());
+  }
+
   private boolean isRemoteExecutionBuild(BuckCommand command, BuckConfig config) {
     ModernBuildRuleBuildStrategy strategy =
         config.getView(ModernBuildRuleConfig.class).getBuildStrategy();
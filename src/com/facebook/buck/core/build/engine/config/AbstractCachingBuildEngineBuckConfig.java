@@ -71,6 +71,7 @@ abstract class AbstractCachingBuildEngineBuckConfig implements ConfigView<BuckCo
     return ResourceAwareSchedulingInfo.of(
         resourcesConfig.isResourceAwareSchedulingEnabled(),
         resourcesConfig.getDefaultResourceAmounts(),
-        resourcesConfig.getResourceAmountsPerRuleType());
+        resourcesConfig.getResourceAmountsPerRuleType(),
+        resourcesConfig.getMemoryPressureBackoffPercent());
   }
 }
@@ -20,6 +20,7 @@ import com.facebook.buck.core.util.immutables.BuckStyleTuple;
 import com.facebook.buck.util.concurrent.ResourceAmounts;
 import com.facebook.buck.util.concurrent.ResourceAmountsEstimator;
 import com.facebook.buck.util.concurrent.WeightedListeningExecutorService;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import org.immutables.value.Value;
@@ -30,7 +31,7 @@ abstract class AbstractResourceAwareSchedulingInfo {
 
   public static final ResourceAwareSchedulingInfo NON_AWARE_SCHEDULING_INFO =
       ResourceAwareSchedulingInfo.of(
-          false, ResourceAmountsEstimator.DEFAULT_AMOUNTS, ImmutableMap.of());
+          false, ResourceAmountsEstimator.DEFAULT_AMOUNTS, ImmutableMap.of(), 0);
 
   public abstract boolean isResourceAwareSchedulingEnabled();
 
@@ -39,12 +40,34 @@ abstract class AbstractResourceAwareSchedulingInfo {
   /** Map from the value of {@link BuildRule#getType()} to the required resources. */
   public abstract ImmutableMap<String, ResourceAmounts> getAmountsPerRuleType();
 
+  /**
+   * Percentage of physical memory that should stay available. While less memory is available,
+   * rules are admitted with twice their memory amount. Zero disables the backoff.
+   */
+  public abstract int getMemoryPressureBackoffPercent();
+
   public ResourceAmounts getResourceAmountsForRule(BuildRule rule) {
     if (isRuleResourceFree(rule)) {
       return ResourceAmounts.zero();
-    } else {
-      return getResourceAmountsForRuleOrDefaultAmounts(rule);
     }
+    ResourceAmounts amounts = getResourceAmountsForRuleOrDefaultAmounts(rule);
+    if (getMemoryPressureBackoffPercent() > 0) {
+      amounts =
+          applyMemoryPressureBackoff(
+              amounts, ResourceAmountsEstimator.getRecentFreePhysicalMemoryPercent());
+    }
+    return amounts;
+  }
+
+  @VisibleForTesting
+  ResourceAmounts applyMemoryPressureBackoff(ResourceAmounts amounts, int freeMemoryPercent) {
+    if (freeMemoryPercent >= getMemoryPressureBackoffPercent()) {
+      return amounts;
+    }
+    // The scheduler caps amounts to its maximum amounts, but doubling must not overflow first.
+    int memory = (int) Math.min(2L * amounts.getMemory(), Integer.MAX_VALUE);
+    return ResourceAmounts.of(
+        amounts.getCpu(), memory, amounts.getDiskIO(), amounts.getNetworkIO());
   }
 
   public WeightedListeningExecutorService adjustServiceDefaultWeightsTo(
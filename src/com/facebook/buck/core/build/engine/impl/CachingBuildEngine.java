@@ -39,6 +39,7 @@ import com.facebook.buck.core.build.engine.type.MetadataStorage;
 import com.facebook.buck.core.build.event.BuildRuleEvent;
 import com.facebook.buck.core.build.stats.BuildRuleDurationTracker;
 import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.resources.ResourceUsageHistory;
 import com.facebook.buck.core.rulekey.RuleKey;
 import com.facebook.buck.core.rulekey.calculator.ParallelRuleKeyCalculator;
 import com.facebook.buck.core.rules.BuildRule;
@@ -93,7 +94,8 @@ public class CachingBuildEngine implements BuildEngine, Closeable {
   public static final ResourceAmounts SCHEDULING_MORE_WORK_RESOURCE_AMOUNTS =
       ResourceAmounts.zero();
 
-  static final String BUILD_RULE_TYPE_CONTEXT_KEY = "build_rule_type";
+  static final String BUILD_RULE_TYPE_CONTEXT_KEY =
+      ResourceUsageHistory.BUILD_RULE_TYPE_CONTEXT_KEY;
   static final String STEP_TYPE_CONTEXT_KEY = "step_type";
   private final ConcurrentLinkedQueue<ListenableFuture<Void>> asyncCallbacks;
 
@@ -80,6 +80,7 @@ import com.facebook.buck.rules.keys.RuleKeyDiagnostics;
 import com.facebook.buck.rules.keys.RuleKeyFactories;
 import com.facebook.buck.rules.keys.RuleKeyType;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepFailedException;
 import com.facebook.buck.step.StepRunner;
@@ -1262,6 +1263,9 @@ class CachingBuildRuleBuilder {
     private final CacheResult cacheResult;
     private final SettableFuture<Optional<BuildResult>> future = SettableFuture.create();
     @Nullable private final T pipelineState;
+    // Set when the steps of the rule should run on the disk I/O pool, once the scope of the rule
+    // has been closed on the current thread.
+    @Nullable private Callable<Void> diskIoSteps;
 
     public BuildRuleSteps(CacheResult cacheResult, @Nullable T pipelineState) {
       this.cacheResult = cacheResult;
@@ -1289,6 +1293,25 @@ class CachingBuildRuleBuilder {
           executeCommandsNowThatDepsAreBuilt(buildExecutor);
         }
 
+        if (diskIoSteps != null) {
+          // The scope of the rule is only held by one thread at a time, so the steps are submitted
+          // after this thread closed it, and reopen it on the disk I/O thread.
+          Callable<Void> steps = diskIoSteps;
+          future.setFuture(
+              Futures.transform(
+                  Objects.requireNonNull(executionContext.getExecutors().get(ExecutorPool.DISK_IO))
+                      .submit(
+                          () -> {
+                            try (Scope ignored = buildRuleScope()) {
+                              return steps.call();
+                            }
+                          }),
+                  ignored ->
+                      Optional.of(success(BuildRuleSuccessType.BUILT_LOCALLY, cacheResult)),
+                  MoreExecutors.directExecutor()));
+          return;
+        }
+
         // Set the future outside of the scope, to match the behavior of other steps that use
         // futures provided by the ExecutorService.
         future.set(Optional.of(success(BuildRuleSuccessType.BUILT_LOCALLY, cacheResult)));
@@ -1330,6 +1353,20 @@ class CachingBuildRuleBuilder {
       executor.executeCommands(
           contextWithContextualExecutor, buildRuleBuildContext, buildableContext, stepRunner);
 
+      if (diskIoSteps != null) {
+        Callable<Void> steps = diskIoSteps;
+        diskIoSteps =
+            () -> {
+              steps.call();
+              logBuildCompleted(start);
+              return null;
+            };
+        return;
+      }
+      logBuildCompleted(start);
+    }
+
+    private void logBuildCompleted(long start) {
       long end = System.nanoTime();
       LOG.debug(
           "Build completed: %s %s (%dns)",
@@ -1357,6 +1394,29 @@ class CachingBuildRuleBuilder {
         }
       }
 
+      // When every step of the rule is bound by disk I/O, run them on the disk I/O pool. This
+      // returns the current thread, along with the resources the rule holds in the cpu pool, to
+      // rules that need the cpu while the steps wait on the disk.
+      ListeningExecutorService diskIoExecutor =
+          executionContext.getExecutors().get(ExecutorPool.DISK_IO);
+      if (diskIoExecutor != null
+          && pipelineState == null
+          && !steps.isEmpty()
+          && steps.stream().allMatch(step -> step.getExecutorPool() == ExecutorPool.DISK_IO)) {
+        diskIoSteps =
+            () -> {
+              runSteps(executionContext, stepRunner, steps);
+              return null;
+            };
+        return;
+      }
+
+      runSteps(executionContext, stepRunner, steps);
+    }
+
+    private void runSteps(
+        ExecutionContext executionContext, StepRunner stepRunner, List<? extends Step> steps)
+        throws StepFailedException, InterruptedException {
       Optional<BuildTarget> optionalTarget = Optional.of(rule.getBuildTarget());
       for (Step step : steps) {
         stepRunner.runStepForBuildTarget(executionContext, step, optionalTarget);
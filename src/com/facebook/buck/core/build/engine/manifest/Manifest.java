@@ -32,6 +32,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -39,25 +41,36 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 public class Manifest {
 
   private static final Logger LOG = Logger.get(Manifest.class);
 
-  private static final int VERSION = 0;
+  /** Version 0 stored hashes as hex strings, version 1 stores their bytes. */
+  private static final int VERSION = 1;
+
+  private static final byte UNKNOWN = 0;
+  private static final byte MATCH = 1;
+  private static final byte MISMATCH = 2;
 
   private final RuleKey key;
 
   @VisibleForTesting final List<String> inputs;
   private final Map<String, Integer> inputIndices;
 
-  @VisibleForTesting final List<Pair<Integer, HashCode>> hashes;
+  /** The index in {@link #inputs} of the input of each hash. */
+  private int[] hashInputIndices;
+
+  @VisibleForTesting final List<HashCode> hashes;
   private final Map<HashCode, Integer> hashIndices;
 
   @VisibleForTesting final List<Pair<RuleKey, int[]>> entries;
@@ -67,6 +80,7 @@ public class Manifest {
     this.key = key;
     inputs = new ArrayList<>();
     inputIndices = new HashMap<>();
+    hashInputIndices = new int[16];
     hashes = new ArrayList<>();
     hashIndices = new HashMap<>();
     entries = new ArrayList<>();
@@ -74,11 +88,12 @@ public class Manifest {
 
   /** Deserialize an existing manifest from the given {@link InputStream}. */
   public Manifest(InputStream rawInput) throws IOException {
-    DataInputStream input = new DataInputStream(rawInput);
+    DataInputStream input = new DataInputStream(new BufferedInputStream(rawInput));
 
     // Verify the manifest version.
     int version = input.readInt();
-    Preconditions.checkState(version == VERSION, "invalid version: %s != %s", version, VERSION);
+    Preconditions.checkState(
+        version == VERSION || version == 0, "invalid version: %s != %s", version, VERSION);
 
     key = new RuleKey(input.readUTF());
 
@@ -94,12 +109,20 @@ public class Manifest {
 
     int numberOfHashes = input.readInt();
     LOG.verbose("%s: loading %d hash entries", this.key, numberOfHashes);
+    hashInputIndices = new int[Math.max(numberOfHashes, 16)];
     hashes = new ArrayList<>(numberOfHashes);
     hashIndices = new HashMap<>(numberOfHashes);
     for (int index = 0; index < numberOfHashes; index++) {
-      int inputIndex = input.readInt();
-      HashCode inputHash = HashCode.fromString(input.readUTF());
-      hashes.add(new Pair<>(inputIndex, inputHash));
+      hashInputIndices[index] = input.readInt();
+      HashCode inputHash;
+      if (version == 0) {
+        inputHash = HashCode.fromString(input.readUTF());
+      } else {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        inputHash = HashCode.fromBytes(bytes);
+      }
+      hashes.add(inputHash);
       hashIndices.put(inputHash, index);
     }
 
@@ -133,14 +156,24 @@ public class Manifest {
 
     Integer hashIndex = hashIndices.get(hash);
     if (hashIndex == null) {
-      hashes.add(new Pair<>(inputIndex, hash));
-      hashIndex = hashes.size() - 1;
+      hashIndex = hashes.size();
+      if (hashIndex == hashInputIndices.length) {
+        hashInputIndices = Arrays.copyOf(hashInputIndices, hashIndex * 2);
+      }
+      hashInputIndices[hashIndex] = inputIndex;
+      hashes.add(hash);
       hashIndices.put(hash, hashIndex);
     }
 
     return hashIndex;
   }
 
+  /** Returns the input the hash with the given index is for. */
+  @VisibleForTesting
+  String getHashInput(int hashIndex) {
+    return inputs.get(hashInputIndices[hashIndex]);
+  }
+
   /** Hash the files pointed to by the source paths. */
   @VisibleForTesting
   static HashCode hashSourcePathGroup(
@@ -167,33 +200,6 @@ public class Manifest {
     }
   }
 
-  private boolean hashesMatch(
-      FileHashCache fileHashCache,
-      SourcePathResolver resolver,
-      ImmutableListMultimap<String, SourcePath> universe,
-      int[] hashIndices)
-      throws IOException {
-    for (int hashIndex : hashIndices) {
-      Pair<Integer, HashCode> hashEntry = hashes.get(hashIndex);
-      String input = inputs.get(hashEntry.getFirst());
-      ImmutableList<SourcePath> candidates = universe.get(input);
-      if (candidates.isEmpty()) {
-        return false;
-      }
-      HashCode onDiskHeaderHash;
-      try {
-        onDiskHeaderHash = hashSourcePathGroup(fileHashCache, resolver, candidates);
-      } catch (NoSuchFileException e) {
-        return false;
-      }
-      HashCode inputHash = hashEntry.getSecond();
-      if (!inputHash.equals(onDiskHeaderHash)) {
-        return false;
-      }
-    }
-    return true;
-  }
-
   /**
    * @return the {@link RuleKey} of the entry that matches the on disk hashes provided by {@code
    *     fileHashCache}.
@@ -201,28 +207,81 @@ public class Manifest {
   public Optional<RuleKey> lookup(
       FileHashCache fileHashCache, SourcePathResolver resolver, ImmutableSet<SourcePath> universe)
       throws IOException {
-    // Create a set of all paths we care about.
-    ImmutableSet.Builder<String> interestingPathsBuilder = new ImmutableSet.Builder<>();
-    for (Pair<?, int[]> entry : entries) {
-      for (int hashIndex : entry.getSecond()) {
-        interestingPathsBuilder.add(inputs.get(hashes.get(hashIndex).getFirst()));
-      }
-    }
-    ImmutableSet<String> interestingPaths = interestingPathsBuilder.build();
-
     // Create a multimap from paths we care about to SourcePaths that maps to them.
     ImmutableListMultimap<String, SourcePath> mappedUniverse =
-        index(universe, sourcePathToManifestHeaderFunction(resolver), interestingPaths::contains);
+        index(universe, sourcePathToManifestHeaderFunction(resolver), inputIndices::containsKey);
 
     // Find a matching entry.
+    Lookup lookup = new Lookup(fileHashCache, resolver, mappedUniverse);
     for (Pair<RuleKey, int[]> entry : entries) {
-      if (hashesMatch(fileHashCache, resolver, mappedUniverse, entry.getSecond())) {
+      if (lookup.hashesMatch(entry.getSecond())) {
         return Optional.of(entry.getFirst());
       }
     }
     return Optional.empty();
   }
 
+  /**
+   * The state of a {@link #lookup}. Entries of a manifest mostly share their hashes, so each input
+   * is hashed at most once, and each hash compared at most once, whatever the number of entries.
+   */
+  private class Lookup {
+    private final FileHashCache fileHashCache;
+    private final SourcePathResolver resolver;
+    private final ImmutableListMultimap<String, SourcePath> universe;
+
+    /** Whether each hash matches its input on disk, or {@link #UNKNOWN} until it is needed. */
+    private final byte[] hashMatches = new byte[hashes.size()];
+    /** The hash of each input on disk, if it was hashed and exists. */
+    private final HashCode[] inputHashes = new HashCode[inputs.size()];
+
+    private final BitSet hashedInputs = new BitSet(inputs.size());
+
+    private Lookup(
+        FileHashCache fileHashCache,
+        SourcePathResolver resolver,
+        ImmutableListMultimap<String, SourcePath> universe) {
+      this.fileHashCache = fileHashCache;
+      this.resolver = resolver;
+      this.universe = universe;
+    }
+
+    private boolean hashesMatch(int[] entryHashIndices) throws IOException {
+      // Reject entries with a hash already known not to match before hashing anything new.
+      for (int hashIndex : entryHashIndices) {
+        if (hashMatches[hashIndex] == MISMATCH) {
+          return false;
+        }
+      }
+      for (int hashIndex : entryHashIndices) {
+        if (hashMatches[hashIndex] == UNKNOWN) {
+          HashCode onDiskHash = getInputHash(hashInputIndices[hashIndex]);
+          hashMatches[hashIndex] = hashes.get(hashIndex).equals(onDiskHash) ? MATCH : MISMATCH;
+        }
+        if (hashMatches[hashIndex] == MISMATCH) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Nullable
+    private HashCode getInputHash(int inputIndex) throws IOException {
+      if (!hashedInputs.get(inputIndex)) {
+        hashedInputs.set(inputIndex);
+        ImmutableList<SourcePath> candidates = universe.get(inputs.get(inputIndex));
+        if (!candidates.isEmpty()) {
+          try {
+            inputHashes[inputIndex] = hashSourcePathGroup(fileHashCache, resolver, candidates);
+          } catch (NoSuchFileException e) {
+            // Leave the input without a hash, so that it matches no entry.
+          }
+        }
+      }
+      return inputHashes[inputIndex];
+    }
+  }
+
   private static Function<SourcePath, String> sourcePathToManifestHeaderFunction(
       SourcePathResolver resolver) {
     return input -> sourcePathToManifestHeader(input, resolver);
@@ -267,7 +326,7 @@ public class Manifest {
 
   /** Serializes the manifest to the given {@link OutputStream}. */
   public void serialize(OutputStream rawOutput) throws IOException {
-    DataOutputStream output = new DataOutputStream(rawOutput);
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(rawOutput));
 
     output.writeInt(VERSION);
 
@@ -279,9 +338,11 @@ public class Manifest {
     }
 
     output.writeInt(hashes.size());
-    for (Pair<Integer, HashCode> hash : hashes) {
-      output.writeInt(hash.getFirst());
-      output.writeUTF(hash.getSecond().toString());
+    for (int hashIndex = 0; hashIndex < hashes.size(); hashIndex++) {
+      output.writeInt(hashInputIndices[hashIndex]);
+      byte[] bytes = hashes.get(hashIndex).asBytes();
+      output.writeByte(bytes.length);
+      output.write(bytes);
     }
 
     output.writeInt(entries.size());
@@ -292,6 +353,7 @@ public class Manifest {
       }
       output.writeUTF(entry.getFirst().toString());
     }
+    output.flush();
   }
 
   public int size() {
@@ -593,6 +593,22 @@ public class BuckConfig {
     return (int) Math.ceil(ratio * getNumThreads());
   }
 
+  /**
+   * @return the number of threads used to run build steps that are bound by disk I/O, such as
+   *     copying files and creating symlink trees. Zero, the default, disables the dedicated pool.
+   */
+  public int getNumDiskIoThreads() {
+    return config.getLong("build", "disk_io_threads").orElse(0L).intValue();
+  }
+
+  /**
+   * @return the number of threads used to compress the entries of zips and jars in the background,
+   *     while their next entries are read. Zero, the default, compresses them as they are written.
+   */
+  public int getNumZipCompressionThreads() {
+    return config.getLong("build", "zip_compression_threads").orElse(0L).intValue();
+  }
+
   /** @return the number of threads to be used for the scheduled executor thread pool. */
   public int getNumThreadsForSchedulerPool() {
     return config.getLong("build", "scheduler_threads").orElse((long) 2).intValue();
@@ -26,6 +26,7 @@ import com.facebook.buck.util.concurrent.ResourceAmountsEstimator;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.nio.file.Path;
 import org.immutables.value.Value;
 
 @Value.Immutable(builder = false, copy = false)
@@ -54,8 +55,61 @@ abstract class AbstractResourcesConfig implements ConfigView<BuckConfig> {
         .getBooleanValue(RESOURCES_SECTION_HEADER, "resource_aware_scheduling_enabled", false);
   }
 
+  /**
+   * @return whether per rule type resource usage of spawned processes should be recorded across
+   *     builds and used to derive resource amounts of rule types without explicit configuration.
+   */
+  @Value.Lazy
+  public boolean isResourceUsageHistoryEnabled() {
+    return getDelegate()
+        .getBooleanValue(RESOURCES_SECTION_HEADER, "resource_usage_history_enabled", false);
+  }
+
+  @Value.Lazy
+  public Path getResourceUsageHistoryFile() {
+    return getDelegate()
+        .getFilesystem()
+        .resolve(getDelegate().getFilesystem().getBuckPaths().getBuckOut())
+        .resolve(ResourceUsageHistory.RESOURCE_USAGE_HISTORY_JSON);
+  }
+
+  /**
+   * @return percentage of physical memory that should stay available. While less memory is
+   *     available, rules acquire twice their usual memory amount, so fewer of them run
+   *     concurrently. Zero disables the backoff.
+   */
+  @Value.Lazy
+  public int getMemoryPressureBackoffPercent() {
+    return getDelegate()
+        .getInteger(RESOURCES_SECTION_HEADER, "memory_pressure_backoff_percent")
+        .orElse(isResourceUsageHistoryEnabled() ? 10 : 0);
+  }
+
+  /**
+   * @return resource amounts per rule type. Amounts configured in [resources_per_rule] take
+   *     precedence over the ones learned from resource usage history.
+   */
   @Value.Lazy
   public ImmutableMap<String, ResourceAmounts> getResourceAmountsPerRuleType() {
+    ImmutableMap<String, ResourceAmounts> configured = getConfiguredResourceAmountsPerRuleType();
+    if (!isResourceUsageHistoryEnabled()) {
+      return configured;
+    }
+    ImmutableMap<String, ResourceAmounts> learned =
+        ResourceUsageHistory.load(getResourceUsageHistoryFile())
+            .getLearnedAmountsPerRuleType(getMaximumResourceAmounts());
+    ImmutableMap.Builder<String, ResourceAmounts> result = ImmutableMap.builder();
+    result.putAll(configured);
+    learned.forEach(
+        (ruleType, amounts) -> {
+          if (!configured.containsKey(ruleType)) {
+            result.put(ruleType, amounts);
+          }
+        });
+    return result.build();
+  }
+
+  private ImmutableMap<String, ResourceAmounts> getConfiguredResourceAmountsPerRuleType() {
     ImmutableMap.Builder<String, ResourceAmounts> result = ImmutableMap.builder();
     ImmutableMap<String, String> entries =
         getDelegate().getEntriesForSection(RESOURCES_PER_RULE_SECTION_HEADER);
@@ -116,11 +170,17 @@ abstract class AbstractResourcesConfig implements ConfigView<BuckConfig> {
   @Value.Lazy
   public ResourceAmounts getMaximumResourceAmounts() {
     ResourceAmounts estimated = ResourceAmountsEstimator.getEstimatedAmounts();
+    // Learned amounts describe memory of spawned processes, which is bounded by the machine's
+    // physical memory rather than by the heap of the Buck process.
+    int estimatedMemory =
+        isResourceUsageHistoryEnabled()
+            ? ResourceAmountsEstimator.getPhysicalMemoryCap()
+            : estimated.getMemory();
     return ResourceAmounts.of(
         getDelegate().getNumThreads(estimated.getCpu()),
         getDelegate()
             .getInteger(RESOURCES_SECTION_HEADER, "max_memory_resource")
-            .orElse(estimated.getMemory()),
+            .orElse(estimatedMemory),
         getDelegate()
             .getInteger(RESOURCES_SECTION_HEADER, "max_disk_io_resource")
             .orElse(estimated.getDiskIO()),
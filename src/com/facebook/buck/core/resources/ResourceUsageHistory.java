@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.core.resources;
+
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.util.ProcessResourceConsumption;
+import com.facebook.buck.util.concurrent.ResourceAmounts;
+import com.facebook.buck.util.concurrent.ResourceAmountsEstimator;
+import com.facebook.buck.util.json.ObjectMappers;
+import com.facebook.buck.util.perf.ProcessTracker;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.eventbus.Subscribe;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the peak resident memory and the highest average CPU parallelism (CPU time over wall
+ * time) of the processes spawned on behalf of each build rule type, as reported by {@link
+ * ProcessTracker}, and persists them across builds.
+ *
+ * <p>The recorded values are used to derive the {@link ResourceAmounts} a rule of a given type
+ * should acquire before it is allowed to run, so that memory-heavy rules (links, dexing) are not
+ * co-scheduled beyond what the machine can handle. Values for a rule type observed during the
+ * current build replace the ones recorded by earlier builds, so the history follows changes in the
+ * code being built.
+ */
+public class ResourceUsageHistory implements AutoCloseable {
+
+  private static final Logger LOG = Logger.get(ResourceUsageHistory.class);
+
+  public static final String RESOURCE_USAGE_HISTORY_JSON = ".resourceusagehistory.json";
+
+  /** Key under which the build engine records the rule type in the process executor context. */
+  public static final String BUILD_RULE_TYPE_CONTEXT_KEY = "build_rule_type";
+
+  private static final String PEAK_MEM_RESIDENT = "peakMemResident";
+  private static final String AVERAGE_PARALLELISM_PERMILLE = "averageParallelismPermille";
+
+  /** The name {@link #AVERAGE_PARALLELISM_PERMILLE} was stored under by earlier versions. */
+  private static final String LEGACY_PEAK_CPU_PERMILLE = "peakCpuPermille";
+
+  private final Path storageFile;
+  private final Map<String, Map<String, Number>> usagePerRuleType;
+  private final Set<String> ruleTypesObservedInThisBuild = ConcurrentHashMap.newKeySet();
+
+  private ResourceUsageHistory(Path storageFile, Map<String, Map<String, Number>> usage) {
+    this.storageFile = storageFile;
+    this.usagePerRuleType = new ConcurrentHashMap<>(usage);
+  }
+
+  /** Loads the history from {@code storageFile}, starting from scratch if it cannot be read. */
+  public static ResourceUsageHistory load(Path storageFile) {
+    Map<String, Map<String, Number>> usage = null;
+    if (Files.exists(storageFile)) {
+      try {
+        byte[] bytes = Files.readAllBytes(storageFile);
+        usage =
+            ObjectMappers.READER.readValue(
+                ObjectMappers.createParser(bytes),
+                new TypeReference<HashMap<String, Map<String, Number>>>() {});
+      } catch (IOException e) {
+        LOG.warn("Unable to load resource usage history: " + e.getMessage());
+      }
+    }
+    if (usage == null) {
+      usage = new HashMap<>();
+    }
+    for (Map<String, Number> ruleTypeUsage : usage.values()) {
+      Number legacyParallelism = ruleTypeUsage.remove(LEGACY_PEAK_CPU_PERMILLE);
+      if (legacyParallelism != null) {
+        ruleTypeUsage.putIfAbsent(AVERAGE_PARALLELISM_PERMILLE, legacyParallelism);
+      }
+    }
+    return new ResourceUsageHistory(storageFile, usage);
+  }
+
+  @Subscribe
+  public void processResourceConsumption(ProcessTracker.ProcessResourceConsumptionEvent event) {
+    Optional<String> ruleType =
+        event.getContext().map(context -> context.get(BUILD_RULE_TYPE_CONTEXT_KEY));
+    if (ruleType.isPresent() && event.getResourceConsumption().isPresent()) {
+      recordUsage(ruleType.get(), event.getResourceConsumption().get());
+    }
+  }
+
+  @VisibleForTesting
+  void recordUsage(String ruleType, ProcessResourceConsumption consumption) {
+    // Processes only report their total CPU time, so this is their parallelism averaged over their
+    // lifetime rather than their peak.
+    long parallelismPermille =
+        consumption.getCpuReal() > 0
+            ? consumption.getCpuTotal() * 1000 / consumption.getCpuReal()
+            : 1000;
+    boolean firstInThisBuild = ruleTypesObservedInThisBuild.add(ruleType);
+    usagePerRuleType.compute(
+        ruleType,
+        (type, previous) -> {
+          long memResident = consumption.getMemResident();
+          long parallelism = parallelismPermille;
+          if (previous != null && !firstInThisBuild) {
+            memResident = Math.max(memResident, previous.get(PEAK_MEM_RESIDENT).longValue());
+            parallelism =
+                Math.max(parallelism, previous.get(AVERAGE_PARALLELISM_PERMILLE).longValue());
+          }
+          Map<String, Number> usage = new HashMap<>();
+          usage.put(PEAK_MEM_RESIDENT, memResident);
+          usage.put(AVERAGE_PARALLELISM_PERMILLE, parallelism);
+          return usage;
+        });
+  }
+
+  /**
+   * @param maximumAmounts the amounts available to the build. Learned amounts never exceed them.
+   * @return resource amounts for every rule type present in the history.
+   */
+  public ImmutableMap<String, ResourceAmounts> getLearnedAmountsPerRuleType(
+      ResourceAmounts maximumAmounts) {
+    ImmutableMap.Builder<String, ResourceAmounts> result = ImmutableMap.builder();
+    for (Map.Entry<String, Map<String, Number>> entry : usagePerRuleType.entrySet()) {
+      Number memResident = entry.getValue().get(PEAK_MEM_RESIDENT);
+      Number parallelismPermille = entry.getValue().get(AVERAGE_PARALLELISM_PERMILLE);
+      if (memResident == null || parallelismPermille == null) {
+        continue;
+      }
+      int cpu = (int) ((parallelismPermille.longValue() + 999) / 1000);
+      int memory =
+          (int)
+              ((memResident.longValue() + ResourceAmountsEstimator.MEMORY_UNIT_BYTES - 1)
+                  / ResourceAmountsEstimator.MEMORY_UNIT_BYTES);
+      result.put(
+          entry.getKey(),
+          ResourceAmounts.of(
+              clamp(cpu, maximumAmounts.getCpu()),
+              clamp(memory, maximumAmounts.getMemory()),
+              0,
+              0));
+    }
+    return result.build();
+  }
+
+  private static int clamp(int amount, int maximum) {
+    return Math.max(1, Math.min(amount, maximum));
+  }
+
+  /** Writes the history back to its storage file. */
+  @Override
+  public void close() {
+    try {
+      Files.createDirectories(storageFile.getParent());
+      ObjectMappers.WRITER.writeValue(storageFile.toFile(), usagePerRuleType);
+    } catch (IOException e) {
+      LOG.warn("Unable to save resource usage history: " + e.getLocalizedMessage());
+    }
+  }
+}
@@ -38,6 +38,7 @@ import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
 import com.facebook.buck.step.fs.MakeCleanDirectoryStep;
+import com.facebook.buck.step.fs.MkdirStep;
 import com.facebook.buck.step.fs.SymlinkTreeMergeStep;
 import com.facebook.buck.step.fs.SymlinkTreeStep;
 import com.google.common.annotations.VisibleForTesting;
@@ -214,12 +215,18 @@ public class SymlinkTree extends AbstractBuildRule
   @Override
   public ImmutableList<Step> getBuildSteps(
       BuildContext context, BuildableContext buildableContext) {
+    BuildCellRelativePath rootPath =
+        BuildCellRelativePath.fromCellRelativePath(
+            context.getBuildCellRootPath(), getProjectFilesystem(), root);
     return new ImmutableList.Builder<Step>()
         .add(getVerifyStep())
+        // Without merged directories SymlinkTreeStep updates an existing tree in place, which is
+        // much cheaper than recreating every link. Merged directories would clash with links left
+        // over from the previous build, so those trees still start from an empty directory.
         .addAll(
-            MakeCleanDirectoryStep.of(
-                BuildCellRelativePath.fromCellRelativePath(
-                    context.getBuildCellRootPath(), getProjectFilesystem(), root)))
+            directoriesToMerge.isEmpty()
+                ? ImmutableList.of(MkdirStep.of(rootPath))
+                : MakeCleanDirectoryStep.of(rootPath))
         .add(
             new SymlinkTreeStep(
                 category,
@@ -296,6 +296,53 @@ abstract class AbstractCxxSourceRuleFactory {
                     outputName)));
   }
 
+  /**
+   * @return whether the PIC compile of a source would produce the same object as its non-PIC
+   *     compile, because the platform flags already make the non-PIC compile position-independent.
+   *     Static and shared builds of a library then preprocess and compile the source only once.
+   */
+  private boolean sharesNonPicCompile(CxxSource source) {
+    if (getPicType() != PicType.PIC || !getCxxBuckConfig().shouldShareIdenticalPicCompiles()) {
+      return false;
+    }
+    CxxSource.Type compiledType =
+        CxxSourceTypes.isPreprocessableType(source.getType())
+            ? CxxSourceTypes.getPreprocessorOutputType(source.getType())
+            : source.getType();
+    Compiler compiler =
+        CxxSourceTypes.getCompiler(getCxxPlatform(), compiledType).resolve(getActionGraphBuilder());
+    ImmutableSet<String> pdcFlags =
+        ImmutableSet.<String>builder()
+            .addAll(PicType.PDC.getFlags(compiler))
+            .addAll(CxxSourceTypes.getPlatformCompilerFlags(getCxxPlatform(), compiledType))
+            .build();
+    return pdcFlags.containsAll(PicType.PIC.getFlags(compiler));
+  }
+
+  /** @return the worker to run compilations in, instead of starting a compiler for each. */
+  @Value.Lazy
+  protected Optional<CxxCompileWorker> getCompileWorker() {
+    return CxxCompileWorker.fromConfig(getCxxBuckConfig());
+  }
+
+  /** @return the factory for the non-PIC compiles of the same sources. */
+  @Value.Lazy
+  protected CxxSourceRuleFactory getNonPicFactory() {
+    return CxxSourceRuleFactory.of(
+        getProjectFilesystem(),
+        getBaseBuildTarget(),
+        getActionGraphBuilder(),
+        getPathResolver(),
+        getRuleFinder(),
+        getCxxBuckConfig(),
+        getCxxPlatform(),
+        getCxxPreprocessorInput(),
+        getCompilerFlags(),
+        getPrefixHeader(),
+        getPrecompiledHeader(),
+        PicType.PDC);
+  }
+
   public BuildTarget createInferCaptureBuildTarget(String name) {
     String outputName = CxxFlavorSanitizer.sanitize(getCompileFlavorSuffix(name));
     return getBaseBuildTarget()
@@ -383,7 +430,8 @@ abstract class AbstractCxxSourceRuleFactory {
             getCxxPlatform().getCompilerDebugPathSanitizer(),
             compiler,
             flags,
-            getCxxPlatform().getUseArgFile());
+            getCxxPlatform().getUseArgFile(),
+            getCompileWorker());
 
     // TODO(steveo): this does not account for `precompiledHeaderRule`.
 
@@ -401,6 +449,9 @@ abstract class AbstractCxxSourceRuleFactory {
 
   @VisibleForTesting
   public CxxPreprocessAndCompile requireCompileBuildRule(String name, CxxSource source) {
+    if (sharesNonPicCompile(source)) {
+      return getNonPicFactory().requireCompileBuildRule(name, source);
+    }
     CxxPreprocessAndCompile rule =
         (CxxPreprocessAndCompile)
             getActionGraphBuilder()
@@ -508,7 +559,8 @@ abstract class AbstractCxxSourceRuleFactory {
                     getCxxPlatform(), CxxSourceTypes.getPreprocessorOutputType(source.getType()))
                 .resolve(getActionGraphBuilder()),
             computeCompilerFlags(source.getType(), source.getFlags()),
-            getCxxPlatform().getUseArgFile());
+            getCxxPlatform().getUseArgFile(),
+            getCompileWorker());
 
     PreprocessorDelegateCacheValue preprocessorDelegateValue =
         preprocessorDelegates.apply(
@@ -561,6 +613,9 @@ abstract class AbstractCxxSourceRuleFactory {
   @VisibleForTesting
   public CxxPreprocessAndCompile requirePreprocessAndCompileBuildRule(
       String name, CxxSource source) {
+    if (sharesNonPicCompile(source)) {
+      return getNonPicFactory().requirePreprocessAndCompileBuildRule(name, source);
+    }
     CxxPreprocessAndCompile rule =
         (CxxPreprocessAndCompile)
             getActionGraphBuilder()
@@ -93,6 +93,14 @@ abstract class AbstractCxxSymlinkTreeHeaders extends CxxHeaders implements AddsT
   @CustomFieldBehavior(HeaderMapInputsBehavior.class)
   public abstract Optional<SourcePath> getHeaderMap();
 
+  /**
+   * The overlay is deliberately left out of rule keys: it holds the absolute paths of the checkout
+   * it was written in, and everything it says is already in {@link #getNameToPathMap()}.
+   */
+  @Override
+  @CustomFieldBehavior(HeaderMapInputsBehavior.class)
+  public abstract Optional<SourcePath> getVFSOverlay();
+
   @Value.Auxiliary
   @CustomFieldBehavior(NameToPathMapInputsBehavior.class)
   abstract ImmutableSortedMap<Path, SourcePath> getNameToPathMap();
@@ -113,6 +121,7 @@ abstract class AbstractCxxSymlinkTreeHeaders extends CxxHeaders implements AddsT
       ruleFinder.getRule(getIncludeRoot().getRight()).ifPresent(builder);
     }
     getHeaderMap().flatMap(ruleFinder::getRule).ifPresent(builder);
+    getVFSOverlay().flatMap(ruleFinder::getRule).ifPresent(builder);
 
     // return a stream of the cached dependencies, or compute and store it
     return Stream.concat(
@@ -145,6 +154,7 @@ abstract class AbstractCxxSymlinkTreeHeaders extends CxxHeaders implements AddsT
     builder.setIncludeType(includeType);
     builder.setRoot(symlinkTree.getRootSourcePath());
     builder.setNameToPathMap(symlinkTree.getLinks());
+    symlinkTree.getVFSOverlaySourcePath().ifPresent(builder::setVFSOverlay);
 
     if (includeType == CxxPreprocessables.IncludeType.LOCAL) {
       builder.setIncludeRoot(Either.ofLeft(symlinkTree.getIncludeSourcePath()));
@@ -169,6 +179,7 @@ abstract class AbstractCxxSymlinkTreeHeaders extends CxxHeaders implements AddsT
         CxxSymlinkTreeHeaders instance, ValueVisitor<E> serializer) throws E {
       INCLUDE_TYPE_TYPE_INFO.visit(instance.getIncludeType(), serializer);
       HEADER_MAP_TYPE_INFO.visit(instance.getHeaderMap(), serializer);
+      HEADER_MAP_TYPE_INFO.visit(instance.getVFSOverlay(), serializer);
       serializer.visitSourcePath(instance.getRoot());
       INCLUDE_ROOT_TYPE_INFO.visit(instance.getIncludeRoot(), serializer);
       ImmutableSortedMap<Path, SourcePath> nameToPathMap = instance.getNameToPathMap();
@@ -188,6 +199,7 @@ abstract class AbstractCxxSymlinkTreeHeaders extends CxxHeaders implements AddsT
       Builder builder = CxxSymlinkTreeHeaders.builder();
       builder.setIncludeType(INCLUDE_TYPE_TYPE_INFO.createNotNull(deserializer));
       builder.setHeaderMap(HEADER_MAP_TYPE_INFO.createNotNull(deserializer));
+      builder.setVFSOverlay(HEADER_MAP_TYPE_INFO.createNotNull(deserializer));
       builder.setRoot(deserializer.createSourcePath());
       builder.setIncludeRoot(INCLUDE_ROOT_TYPE_INFO.createNotNull(deserializer));
       int nameToPathMapSize = deserializer.createInteger();
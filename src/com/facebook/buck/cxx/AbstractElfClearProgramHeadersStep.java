@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.core.util.immutables.BuckStylePackageVisibleTuple;
 import com.facebook.buck.cxx.toolchain.elf.Elf;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
@@ -26,17 +24,16 @@ import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import org.immutables.value.Value;
 
 /** A step which zeros out the program headers of an ELF file. */
 @Value.Immutable
 @BuckStylePackageVisibleTuple
-abstract class AbstractElfClearProgramHeadersStep implements Step {
+abstract class AbstractElfClearProgramHeadersStep implements Step, ElfRewrite {
 
   abstract ProjectFilesystem getFilesystem();
 
@@ -44,24 +41,22 @@ abstract class AbstractElfClearProgramHeadersStep implements Step {
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-        FileChannel.open(
-            getFilesystem().resolve(getPath()),
-            StandardOpenOption.READ,
-            StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-      Preconditions.checkState(
-          elf.header.e_phoff == (int) elf.header.e_phoff,
-          "program headers are expected to be within 4GB of beginning of file");
-      buffer.position((int) elf.header.e_phoff);
-      for (int index = 0; index < elf.header.e_phnum * elf.header.e_phentsize; index++) {
-        buffer.put((byte) 0);
-      }
-    }
+    ElfRewrite.rewriteInPlace(getFilesystem().resolve(getPath()), ImmutableList.of(this));
     return StepExecutionResults.SUCCESS;
   }
 
+  @Override
+  public void rewrite(ByteBuffer buffer) throws IOException {
+    Elf elf = new Elf(buffer);
+    Preconditions.checkState(
+        elf.header.e_phoff == (int) elf.header.e_phoff,
+        "program headers are expected to be within 4GB of beginning of file");
+    buffer.position((int) elf.header.e_phoff);
+    for (int index = 0; index < elf.header.e_phnum * elf.header.e_phentsize; index++) {
+      buffer.put((byte) 0);
+    }
+  }
+
   @Override
   public final String getShortName() {
     return "clear_program_headers";
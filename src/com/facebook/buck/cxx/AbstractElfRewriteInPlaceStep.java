@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.core.util.immutables.BuckStylePackageVisibleTuple;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.StepExecutionResults;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.immutables.value.Value;
+
+/**
+ * A step which applies several {@link ElfRewrite}s to an ELF file, reading and writing the file
+ * once rather than once per rewrite.
+ */
+@Value.Immutable
+@BuckStylePackageVisibleTuple
+abstract class AbstractElfRewriteInPlaceStep implements Step {
+
+  abstract ProjectFilesystem getFilesystem();
+
+  abstract Path getPath();
+
+  abstract ImmutableList<ElfRewrite> getRewrites();
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+    ElfRewrite.rewriteInPlace(getFilesystem().resolve(getPath()), getRewrites());
+    return StepExecutionResults.SUCCESS;
+  }
+
+  @Override
+  public final String getShortName() {
+    return "elf_rewrite_in_place";
+  }
+
+  @Override
+  public String getDescription(ExecutionContext context) {
+    return "Rewrite ELF file " + getPath();
+  }
+}
@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.core.util.immutables.BuckStylePackageVisibleTuple;
 import com.facebook.buck.cxx.toolchain.elf.Elf;
 import com.facebook.buck.cxx.toolchain.elf.ElfHeader;
@@ -26,17 +24,16 @@ import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import org.immutables.value.Value;
 
 /** A step which zeros out the program headers of an ELF file. */
 @Value.Immutable
 @BuckStylePackageVisibleTuple
-abstract class AbstractElfScrubFileHeaderStep implements Step {
+abstract class AbstractElfScrubFileHeaderStep implements Step, ElfRewrite {
 
   abstract ProjectFilesystem getFilesystem();
 
@@ -44,25 +41,23 @@ abstract class AbstractElfScrubFileHeaderStep implements Step {
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-        FileChannel.open(
-            getFilesystem().resolve(getPath()),
-            StandardOpenOption.READ,
-            StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-      ElfHeader header = elf.header;
+    ElfRewrite.rewriteInPlace(getFilesystem().resolve(getPath()), ImmutableList.of(this));
+    return StepExecutionResults.SUCCESS;
+  }
 
-      // Clear the `e_entry` entry.
-      header = header.withEntry(0);
+  @Override
+  public void rewrite(ByteBuffer buffer) throws IOException {
+    Elf elf = new Elf(buffer);
+    ElfHeader header = elf.header;
 
-      // Position the buffer to the beginning of the file header.
-      buffer.position(0);
+    // Clear the `e_entry` entry.
+    header = header.withEntry(0);
 
-      // Write the new header back out.
-      header.write(buffer);
-    }
-    return StepExecutionResults.SUCCESS;
+    // Position the buffer to the beginning of the file header.
+    buffer.position(0);
+
+    // Write the new header back out.
+    header.write(buffer);
   }
 
   @Override
@@ -16,8 +16,6 @@
 
 package com.facebook.buck.cxx;
 
-import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
-
 import com.facebook.buck.core.util.immutables.BuckStylePackageVisibleTuple;
 import com.facebook.buck.cxx.toolchain.elf.Elf;
 import com.facebook.buck.cxx.toolchain.elf.ElfHeader;
@@ -36,10 +34,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.immutables.value.Value;
@@ -47,7 +42,7 @@ import org.immutables.value.Value;
 /** A step which scrubs an ELF symbol table of information relevant to dynamic linking. */
 @Value.Immutable
 @BuckStylePackageVisibleTuple
-abstract class AbstractElfSymbolTableScrubberStep implements Step {
+abstract class AbstractElfSymbolTableScrubberStep implements Step, ElfRewrite {
 
   @VisibleForTesting static final int STABLE_SECTION = 1;
 
@@ -146,70 +141,66 @@ abstract class AbstractElfSymbolTableScrubberStep implements Step {
 
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    try (FileChannel channel =
-        FileChannel.open(
-            getFilesystem().resolve(getPath()),
-            StandardOpenOption.READ,
-            StandardOpenOption.WRITE)) {
-      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
-      Elf elf = new Elf(buffer);
-
-      // Locate the symbol table section.
-      Optional<ElfSectionLookupResult> sectionResult = elf.getSectionByName(getSection());
-      if (!sectionResult.isPresent()) {
-        if (isAllowMissing()) {
-          return StepExecutionResults.SUCCESS;
-        } else {
-          throw new IOException(
-              String.format(
-                  "Error parsing ELF file %s: no such section \"%s\"", getPath(), getSection()));
-        }
+    ElfRewrite.rewriteInPlace(getFilesystem().resolve(getPath()), ImmutableList.of(this));
+    return StepExecutionResults.SUCCESS;
+  }
+
+  @Override
+  public void rewrite(ByteBuffer buffer) throws IOException {
+    Elf elf = new Elf(buffer);
+
+    // Locate the symbol table section.
+    Optional<ElfSectionLookupResult> sectionResult = elf.getSectionByName(getSection());
+    if (!sectionResult.isPresent()) {
+      if (isAllowMissing()) {
+        return;
+      } else {
+        throw new IOException(
+            String.format(
+                "Error parsing ELF file %s: no such section \"%s\"", getPath(), getSection()));
       }
+    }
 
-      int sectionIndex = sectionResult.get().getIndex();
-      ElfSection section = sectionResult.get().getSection();
-
-      // Read in and fixup the symbol table then write it back out.
-      ElfSymbolTable table = ElfSymbolTable.parse(elf.header.ei_class, section.body);
-      ElfSymbolTable fixedUpTable = fixUpSymbolTable(table);
-      section.body.rewind();
-      fixedUpTable.write(elf.header.ei_class, section.body);
-
-      // If we've dropped some symbols, we have some additional work to do.
-      if (table.entries.size() != fixedUpTable.entries.size()) {
-        Preconditions.checkState(isScrubUndefinedSymbols());
-
-        // Fixup the section header with the new size and write it out.
-        buffer.position((int) (elf.header.e_shoff + sectionIndex * elf.header.e_shentsize));
-        section.header.withSize(section.body.position()).write(elf.header.ei_class, buffer);
-
-        // If a versym section is given, also update it to remove dropped symbols.
-        if (getVersymSection().isPresent()) {
-          Optional<ElfSectionLookupResult> versymSectionResult =
-              elf.getSectionByName(getVersymSection().get());
-          if (versymSectionResult.isPresent()) {
-            int versymSectionIndex = versymSectionResult.get().getIndex();
-            ElfSection versymSection = versymSectionResult.get().getSection();
-
-            // Remove dropped symbols from the version symbol table and re-write it.
-            ImmutableList<Integer> versions = parseVersions(elf.header.ei_class, versymSection);
-            ImmutableMap<Integer, Integer> fixedVersions = fixUpVersions(table, versions);
-            versymSection.body.rewind();
-            writeVersions(elf.header.ei_class, versymSection.body, fixedVersions.values());
-
-            // Fixup the version section header with the new size and write it out.
-            buffer.position(
-                (int) (elf.header.e_shoff + versymSectionIndex * elf.header.e_shentsize));
-            versymSection
-                .header
-                .withSize(versymSection.body.position())
-                .write(elf.header.ei_class, buffer);
-          }
+    int sectionIndex = sectionResult.get().getIndex();
+    ElfSection section = sectionResult.get().getSection();
+
+    // Read in and fixup the symbol table then write it back out.
+    ElfSymbolTable table = ElfSymbolTable.parse(elf.header.ei_class, section.body);
+    ElfSymbolTable fixedUpTable = fixUpSymbolTable(table);
+    section.body.rewind();
+    fixedUpTable.write(elf.header.ei_class, section.body);
+
+    // If we've dropped some symbols, we have some additional work to do.
+    if (table.entries.size() != fixedUpTable.entries.size()) {
+      Preconditions.checkState(isScrubUndefinedSymbols());
+
+      // Fixup the section header with the new size and write it out.
+      buffer.position((int) (elf.header.e_shoff + sectionIndex * elf.header.e_shentsize));
+      section.header.withSize(section.body.position()).write(elf.header.ei_class, buffer);
+
+      // If a versym section is given, also update it to remove dropped symbols.
+      if (getVersymSection().isPresent()) {
+        Optional<ElfSectionLookupResult> versymSectionResult =
+            elf.getSectionByName(getVersymSection().get());
+        if (versymSectionResult.isPresent()) {
+          int versymSectionIndex = versymSectionResult.get().getIndex();
+          ElfSection versymSection = versymSectionResult.get().getSection();
+
+          // Remove dropped symbols from the version symbol table and re-write it.
+          ImmutableList<Integer> versions = parseVersions(elf.header.ei_class, versymSection);
+          ImmutableMap<Integer, Integer> fixedVersions = fixUpVersions(table, versions);
+          versymSection.body.rewind();
+          writeVersions(elf.header.ei_class, versymSection.body, fixedVersions.values());
+
+          // Fixup the version section header with the new size and write it out.
+          buffer.position((int) (elf.header.e_shoff + versymSectionIndex * elf.header.e_shentsize));
+          versymSection
+              .header
+              .withSize(versymSection.body.position())
+              .write(elf.header.ei_class, buffer);
         }
       }
     }
-
-    return StepExecutionResults.SUCCESS;
   }
 
   @Override
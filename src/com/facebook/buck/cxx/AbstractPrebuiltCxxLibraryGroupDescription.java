@@ -213,6 +213,12 @@ abstract class AbstractPrebuiltCxxLibraryGroupDescription
         return transitiveCxxPreprocessorInputCache.getUnchecked(cxxPlatform, graphBuilder);
       }
 
+      @Override
+      public TransitiveCxxPreprocessorInputs getTransitiveCxxPreprocessorInputs(
+          CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder) {
+        return transitiveCxxPreprocessorInputCache.getInputs(cxxPlatform, graphBuilder);
+      }
+
       @Override
       public Iterable<? extends NativeLinkable> getNativeLinkableDeps(
           BuildRuleResolver ruleResolver) {
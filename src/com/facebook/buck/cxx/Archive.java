@@ -74,6 +74,10 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
 
   private final boolean cacheable;
 
+  // Added to RuleKey so that archives updated in place don't share cache entries with archives
+  // built from scratch.
+  @AddToRuleKey private final boolean incremental;
+
   private Archive(
       BuildTarget buildTarget,
       ProjectFilesystem projectFilesystem,
@@ -85,7 +89,8 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
       ArchiveContents contents,
       Path output,
       ImmutableList<SourcePath> inputs,
-      boolean cacheable) {
+      boolean cacheable,
+      boolean incremental) {
     super(buildTarget, projectFilesystem);
     Preconditions.checkState(
         contents == ArchiveContents.NORMAL || archiver.supportsThinArchives(),
@@ -107,6 +112,7 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
     this.output = output;
     this.inputs = inputs;
     this.cacheable = cacheable;
+    this.incremental = incremental;
   }
 
   public static Archive from(
@@ -119,6 +125,34 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
       Path output,
       ImmutableList<SourcePath> inputs,
       boolean cacheable) {
+    return from(
+        target,
+        projectFilesystem,
+        resolver,
+        ruleFinder,
+        platform,
+        contents,
+        output,
+        inputs,
+        cacheable,
+        /* incremental */ false);
+  }
+
+  /**
+   * @param incremental whether an archive built by a previous build should be updated by replacing
+   *     only the members whose inputs changed, if the archiver can do so.
+   */
+  public static Archive from(
+      BuildTarget target,
+      ProjectFilesystem projectFilesystem,
+      BuildRuleResolver resolver,
+      SourcePathRuleFinder ruleFinder,
+      CxxPlatform platform,
+      ArchiveContents contents,
+      Path output,
+      ImmutableList<SourcePath> inputs,
+      boolean cacheable,
+      boolean incremental) {
     return from(
         target,
         projectFilesystem,
@@ -130,7 +164,8 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
         contents,
         output,
         inputs,
-        cacheable);
+        cacheable,
+        incremental);
   }
 
   /**
@@ -150,6 +185,34 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
       Path output,
       ImmutableList<SourcePath> inputs,
       boolean cacheable) {
+    return from(
+        target,
+        projectFilesystem,
+        ruleFinder,
+        archiver,
+        arFlags,
+        ranlib,
+        ranlibFlags,
+        contents,
+        output,
+        inputs,
+        cacheable,
+        /* incremental */ false);
+  }
+
+  private static Archive from(
+      BuildTarget target,
+      ProjectFilesystem projectFilesystem,
+      SourcePathRuleFinder ruleFinder,
+      Archiver archiver,
+      ImmutableList<String> arFlags,
+      Optional<Tool> ranlib,
+      ImmutableList<String> ranlibFlags,
+      ArchiveContents contents,
+      Path output,
+      ImmutableList<SourcePath> inputs,
+      boolean cacheable,
+      boolean incremental) {
 
     ImmutableSortedSet.Builder<BuildRule> deps = ImmutableSortedSet.naturalOrder();
 
@@ -169,7 +232,8 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
         contents,
         output,
         inputs,
-        cacheable);
+        cacheable,
+        incremental);
   }
 
   @Override
@@ -200,10 +264,34 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
     builder.add(
         MkdirStep.of(
             BuildCellRelativePath.fromCellRelativePath(
-                context.getBuildCellRootPath(), getProjectFilesystem(), output.getParent())),
-        RmStep.of(
-            BuildCellRelativePath.fromCellRelativePath(
-                context.getBuildCellRootPath(), getProjectFilesystem(), output)));
+                context.getBuildCellRootPath(), getProjectFilesystem(), output.getParent())));
+
+    // The previous archive is kept to be updated in place, so the archive step decides whether to
+    // remove it.
+    Optional<IncrementalArchive> incrementalArchive = Optional.empty();
+    if (incremental && !archiver.isArgfileRequired()) {
+      incrementalArchive =
+          archiver
+              .getReplaceOptions(contents == ArchiveContents.THIN)
+              .map(
+                  options ->
+                      new IncrementalArchive(
+                          getProjectFilesystem(),
+                          output,
+                          getScratchPath().resolve("incremental-state"),
+                          options));
+    }
+    if (incrementalArchive.isPresent()) {
+      builder.add(
+          MkdirStep.of(
+              BuildCellRelativePath.fromCellRelativePath(
+                  context.getBuildCellRootPath(), getProjectFilesystem(), getScratchPath())));
+    } else {
+      builder.add(
+          RmStep.of(
+              BuildCellRelativePath.fromCellRelativePath(
+                  context.getBuildCellRootPath(), getProjectFilesystem(), output)));
+    }
 
     if (archiver.isArgfileRequired()) {
       builder.addAll(
@@ -222,7 +310,8 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
             output,
             inputs.stream().map(resolver::getRelativePath).collect(ImmutableList.toImmutableList()),
             archiver,
-            getScratchPath()));
+            getScratchPath(),
+            incrementalArchive));
 
     if (archiver.isRanLibStepRequired()) {
       builder.add(
@@ -238,6 +327,8 @@ public class Archive extends AbstractBuildRule implements SupportsInputBasedRule
       builder.add(new FileScrubberStep(getProjectFilesystem(), output, archiver.getScrubbers()));
     }
 
+    incrementalArchive.ifPresent(archive -> builder.add(archive.createRecordStep()));
+
     return builder.build();
   }
 
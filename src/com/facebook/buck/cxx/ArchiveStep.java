@@ -38,6 +38,7 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -54,6 +55,7 @@ class ArchiveStep implements Step {
   private final ImmutableList<Path> inputs;
   private final Archiver archiver;
   private final Path scratchDir;
+  private final Optional<IncrementalArchive> incrementalArchive;
 
   public ArchiveStep(
       ProjectFilesystem filesystem,
@@ -65,6 +67,32 @@ class ArchiveStep implements Step {
       ImmutableList<Path> inputs,
       Archiver archiver,
       Path scratchDir) {
+    this(
+        filesystem,
+        environment,
+        archiverCommand,
+        archiverFlags,
+        archiverExtraFlags,
+        output,
+        inputs,
+        archiver,
+        scratchDir,
+        Optional.empty());
+  }
+
+  public ArchiveStep(
+      ProjectFilesystem filesystem,
+      ImmutableMap<String, String> environment,
+      ImmutableList<String> archiverCommand,
+      ImmutableList<String> archiverFlags,
+      ImmutableList<String> archiverExtraFlags,
+      Path output,
+      ImmutableList<Path> inputs,
+      Archiver archiver,
+      Path scratchDir,
+      Optional<IncrementalArchive> incrementalArchive) {
+    // Replacing members needs an archiver which can be run more than once on the same archive.
+    Preconditions.checkArgument(!incrementalArchive.isPresent() || !archiver.isArgfileRequired());
     Preconditions.checkArgument(!output.isAbsolute());
     // Our current support for thin archives requires that all the inputs are relative paths from
     // the same cell as the output.
@@ -80,6 +108,7 @@ class ArchiveStep implements Step {
     this.inputs = inputs;
     this.archiver = archiver;
     this.scratchDir = scratchDir;
+    this.incrementalArchive = incrementalArchive;
   }
 
   private ImmutableList<String> getAllInputs() throws IOException {
@@ -136,6 +165,15 @@ class ArchiveStep implements Step {
   public StepExecutionResult execute(ExecutionContext context)
       throws IOException, InterruptedException {
     ImmutableList<String> allInputs = getAllInputs();
+    if (incrementalArchive.isPresent()) {
+      Optional<ImmutableList<String>> changedInputs =
+          incrementalArchive.get().getChangedInputs(allInputs);
+      if (changedInputs.isPresent()) {
+        return runArchiver(
+            context, incrementalArchive.get().getReplaceOptions(), changedInputs.get());
+      }
+      filesystem.deleteFileAtPathIfExists(output);
+    }
     if (allInputs.isEmpty()) {
       filesystem.writeContentsToPath("!<arch>\n", output);
       return StepExecutionResults.SUCCESS;
@@ -150,23 +188,30 @@ class ArchiveStep implements Step {
             ImmutableList.<String>builder().addAll(archiverCommand).add("@" + argfile).build();
         return StepExecutionResult.of(runArchiver(context, command));
       } else {
-        ImmutableList<String> archiveCommandPrefix =
-            ImmutableList.<String>builder()
-                .addAll(archiverCommand)
-                .addAll(archiverFlags)
-                .addAll(archiverExtraFlags)
-                .addAll(outputArgs)
-                .build();
-        CommandSplitter commandSplitter = new CommandSplitter(archiveCommandPrefix);
-        for (ImmutableList<String> command : commandSplitter.getCommandsForArguments(allInputs)) {
-          ProcessExecutor.Result result = runArchiver(context, command);
-          if (result.getExitCode() != 0) {
-            return StepExecutionResult.of(result);
-          }
-        }
-        return StepExecutionResults.SUCCESS;
+        return runArchiver(context, archiverExtraFlags, allInputs);
+      }
+    }
+  }
+
+  /** Runs the archiver on the output as many times as needed to pass it all the given inputs. */
+  private StepExecutionResult runArchiver(
+      ExecutionContext context, ImmutableList<String> extraFlags, ImmutableList<String> inputs)
+      throws IOException, InterruptedException {
+    ImmutableList<String> archiveCommandPrefix =
+        ImmutableList.<String>builder()
+            .addAll(archiverCommand)
+            .addAll(archiverFlags)
+            .addAll(extraFlags)
+            .addAll(archiver.outputArgs(output.toString()))
+            .build();
+    CommandSplitter commandSplitter = new CommandSplitter(archiveCommandPrefix);
+    for (ImmutableList<String> command : commandSplitter.getCommandsForArguments(inputs)) {
+      ProcessExecutor.Result result = runArchiver(context, command);
+      if (result.getExitCode() != 0) {
+        return StepExecutionResult.of(result);
       }
     }
+    return StepExecutionResults.SUCCESS;
   }
 
   @Override
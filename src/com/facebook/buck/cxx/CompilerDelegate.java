@@ -21,6 +21,7 @@ import com.facebook.buck.core.rulekey.AddsToRuleKey;
 import com.facebook.buck.core.rules.BuildRule;
 import com.facebook.buck.core.rules.SourcePathRuleFinder;
 import com.facebook.buck.core.rules.common.BuildableSupport;
+import com.facebook.buck.core.rules.modern.annotations.CustomFieldBehavior;
 import com.facebook.buck.core.sourcepath.PathSourcePath;
 import com.facebook.buck.core.sourcepath.SourcePath;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
@@ -29,6 +30,9 @@ import com.facebook.buck.cxx.toolchain.DebugPathSanitizer;
 import com.facebook.buck.cxx.toolchain.DependencyTrackingMode;
 import com.facebook.buck.rules.args.Arg;
 import com.facebook.buck.rules.args.StringArg;
+import com.facebook.buck.rules.modern.CustomFieldSerialization;
+import com.facebook.buck.rules.modern.ValueCreator;
+import com.facebook.buck.rules.modern.ValueVisitor;
 import com.facebook.buck.util.RichStream;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -45,15 +49,29 @@ class CompilerDelegate implements AddsToRuleKey {
   @AddToRuleKey private final DebugPathSanitizer sanitizer;
   @AddToRuleKey private final Optional<Boolean> useArgFile;
 
+  // The worker only changes how the compiler is run, and is only used when compiling locally.
+  @CustomFieldBehavior(SerializeAsEmptyOptional.class)
+  private final Optional<CxxCompileWorker> compileWorker;
+
   public CompilerDelegate(
       DebugPathSanitizer sanitizer,
       Compiler compiler,
       CxxToolFlags flags,
       Optional<Boolean> useArgFile) {
+    this(sanitizer, compiler, flags, useArgFile, Optional.empty());
+  }
+
+  public CompilerDelegate(
+      DebugPathSanitizer sanitizer,
+      Compiler compiler,
+      CxxToolFlags flags,
+      Optional<Boolean> useArgFile,
+      Optional<CxxCompileWorker> compileWorker) {
     this.sanitizer = sanitizer;
     this.compiler = compiler;
     this.compilerFlags = flags;
     this.useArgFile = useArgFile;
+    this.compileWorker = compileWorker;
   }
 
   public ImmutableList<String> getCommandPrefix(SourcePathResolver resolver) {
@@ -110,6 +128,10 @@ class CompilerDelegate implements AddsToRuleKey {
     return compiler;
   }
 
+  public Optional<CxxCompileWorker> getCompileWorker() {
+    return compileWorker;
+  }
+
   public Iterable<BuildRule> getDeps(SourcePathRuleFinder ruleFinder) {
     ImmutableList.Builder<BuildRule> deps = ImmutableList.builder();
     deps.addAll(BuildableSupport.getDepsCollection(getCompiler(), ruleFinder));
@@ -125,4 +147,15 @@ class CompilerDelegate implements AddsToRuleKey {
         !(path instanceof PathSourcePath)
             || !((PathSourcePath) path).getRelativePath().isAbsolute();
   }
+
+  private static class SerializeAsEmptyOptional<T>
+      implements CustomFieldSerialization<Optional<T>> {
+    @Override
+    public <E extends Exception> void serialize(Optional<T> value, ValueVisitor<E> serializer) {}
+
+    @Override
+    public <E extends Exception> Optional<T> deserialize(ValueCreator<E> deserializer) {
+      return Optional.empty();
+    }
+  }
 }
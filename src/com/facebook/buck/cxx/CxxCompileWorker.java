@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.cxx.toolchain.CxxBuckConfig;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.util.ProcessExecutor;
+import com.facebook.buck.util.ProcessExecutorParams;
+import com.facebook.buck.util.json.ObjectMappers;
+import com.facebook.buck.worker.WorkerJobResult;
+import com.facebook.buck.worker.WorkerProcessIdentity;
+import com.facebook.buck.worker.WorkerProcessParams;
+import com.facebook.buck.worker.WorkerProcessPool;
+import com.facebook.buck.worker.WorkerProcessPool.BorrowedWorkerProcess;
+import com.facebook.buck.worker.WorkerProcessPoolFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * A long-lived process, speaking the worker protocol, which runs compilations as jobs so that each
+ * compilation doesn't have to start a compiler process of its own.
+ *
+ * <p>The arguments of each job are a JSON object describing one compilation:
+ *
+ * <pre>
+ *   {
+ *     "cwd": "/path/to/cell",
+ *     "env": {"PATH": "/usr/bin", "TMPDIR": "buck-out/tmp", ...},
+ *     "argv": ["clang++", "-c", "foo.cpp", "-o", "foo.o"]
+ *   }
+ * </pre>
+ *
+ * <p>The worker runs {@code argv} from {@code cwd}, the root of the cell of the compilation, with
+ * exactly the environment {@code env}, and writes what the compiler would have written to its
+ * stdout and stderr to the files of the job. Workers may be shared between cells, and may have
+ * been started by an earlier build with a different environment, so a job doesn't rely on the
+ * directory or the environment the worker was started with. {@code
+ * scripts/cxx_compile_worker.py} is a reference worker, which starts the compiler of each job
+ * directly rather than through a shell.
+ */
+class CxxCompileWorker {
+
+  private final ImmutableList<String> startupCommand;
+  private final int maxWorkers;
+  private final boolean persistent;
+
+  CxxCompileWorker(ImmutableList<String> startupCommand, int maxWorkers, boolean persistent) {
+    this.startupCommand = startupCommand;
+    this.maxWorkers = maxWorkers;
+    this.persistent = persistent;
+  }
+
+  /** @return the compile worker configured in {@code cxxBuckConfig}, if any. */
+  static Optional<CxxCompileWorker> fromConfig(CxxBuckConfig cxxBuckConfig) {
+    return cxxBuckConfig
+        .getCompileWorker()
+        .map(
+            command ->
+                new CxxCompileWorker(
+                    command,
+                    cxxBuckConfig.getCompileWorkerMaxWorkers(),
+                    cxxBuckConfig.isCompileWorkerPersistent()));
+  }
+
+  @VisibleForTesting
+  WorkerProcessParams getWorkerProcessParams(ProjectFilesystem filesystem) {
+    String command = String.join(" ", startupCommand);
+    return WorkerProcessParams.of(
+        filesystem.getBuckPaths().getScratchDir().resolve("cxx_compile_worker"),
+        startupCommand,
+        ImmutableMap.of(),
+        maxWorkers,
+        persistent
+            ? Optional.of(
+                WorkerProcessIdentity.of(
+                    command, Hashing.sha1().hashString(command, StandardCharsets.UTF_8)))
+            : Optional.empty());
+  }
+
+  @VisibleForTesting
+  static String getJobArgs(
+      ExecutionContext context, ProjectFilesystem filesystem, ProcessExecutorParams params)
+      throws IOException {
+    return ObjectMappers.WRITER.writeValueAsString(
+        ImmutableMap.of(
+            "cwd",
+            params.getDirectory().orElse(filesystem.getRootPath()).toString(),
+            "env",
+            params.getEnvironment().orElse(context.getEnvironment()),
+            "argv",
+            params.getCommand()));
+  }
+
+  /** Runs the compilation described by {@code params} as a job of a worker process. */
+  ProcessExecutor.Result compile(
+      ExecutionContext context, ProjectFilesystem filesystem, ProcessExecutorParams params)
+      throws IOException, InterruptedException {
+    WorkerProcessPool pool =
+        new WorkerProcessPoolFactory(filesystem)
+            .getWorkerProcessPool(context, getWorkerProcessParams(filesystem));
+    WorkerJobResult result;
+    try (BorrowedWorkerProcess process = pool.borrowWorkerProcess()) {
+      result = process.submitAndWaitForJob(getJobArgs(context, filesystem, params));
+    }
+    return new ProcessExecutor.Result(
+        result.getExitCode(), false, result.getStdout(), result.getStderr());
+  }
+}
@@ -322,23 +322,16 @@ public class CxxLibraryDescription
                     .build());
         BuildRule rawRule = graphBuilder.requireRule(rawTarget);
         CxxLibrary rule = (CxxLibrary) rawRule;
-        ImmutableMap<BuildTarget, CxxPreprocessorInput> inputs =
-            rule.getTransitiveCxxPreprocessorInput(cxxPlatform, graphBuilder);
-
-        ImmutableList<CxxPreprocessorDep> privateDepsForPlatform =
-            RichStream.from(privateDeps.get(graphBuilder, cxxPlatform))
-                .filter(CxxPreprocessorDep.class)
-                .toImmutableList();
-        if (privateDepsForPlatform.isEmpty()) {
-          // Nothing to add.
-          return inputs.values().stream();
-        } else {
-          Map<BuildTarget, CxxPreprocessorInput> result = new LinkedHashMap<>(inputs);
-          for (CxxPreprocessorDep dep : privateDepsForPlatform) {
-            result.putAll(dep.getTransitiveCxxPreprocessorInput(cxxPlatform, graphBuilder));
+        Map<BuildTarget, CxxPreprocessorInput> result = new LinkedHashMap<>();
+        rule.getTransitiveCxxPreprocessorInputs(cxxPlatform, graphBuilder).forEach(result::put);
+        for (BuildRule dep : privateDeps.get(graphBuilder, cxxPlatform)) {
+          if (dep instanceof CxxPreprocessorDep) {
+            ((CxxPreprocessorDep) dep)
+                .getTransitiveCxxPreprocessorInputs(cxxPlatform, graphBuilder)
+                .forEach(result::put);
           }
-          return result.values().stream();
         }
+        return result.values().stream();
       };
     }
 
@@ -357,9 +350,9 @@ public class CxxLibraryDescription
                 .orElseThrow(IllegalStateException::new));
         for (BuildRule rule : deps) {
           if (rule instanceof CxxPreprocessorDep) {
-            input.putAll(
-                ((CxxPreprocessorDep) rule)
-                    .getTransitiveCxxPreprocessorInput(cxxPlatform, ruleResolver));
+            ((CxxPreprocessorDep) rule)
+                .getTransitiveCxxPreprocessorInputs(cxxPlatform, ruleResolver)
+                .forEach(input::put);
           }
         }
         return input.values().stream();
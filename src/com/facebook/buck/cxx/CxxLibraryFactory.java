@@ -867,7 +867,8 @@ public class CxxLibraryFactory {
         cxxBuckConfig.getArchiveContents(),
         staticLibraryPath,
         ImmutableList.copyOf(objects),
-        /* cacheable */ true);
+        /* cacheable */ true,
+        cxxBuckConfig.shouldArchiveIncrementally());
   }
 
   /** @return a {@link CxxLink} rule which builds a shared library version of this C/C++ library. */
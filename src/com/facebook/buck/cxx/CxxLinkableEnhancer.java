@@ -18,13 +18,19 @@ package com.facebook.buck.cxx;
 
 import com.facebook.buck.core.cell.CellPathResolver;
 import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.model.Flavor;
+import com.facebook.buck.core.model.InternalFlavor;
+import com.facebook.buck.core.model.impl.BuildTargetPaths;
 import com.facebook.buck.core.rulekey.AddToRuleKey;
 import com.facebook.buck.core.rules.ActionGraphBuilder;
 import com.facebook.buck.core.rules.BuildRuleResolver;
 import com.facebook.buck.core.rules.SourcePathRuleFinder;
+import com.facebook.buck.core.sourcepath.BuildTargetSourcePath;
+import com.facebook.buck.core.sourcepath.ExplicitBuildTargetSourcePath;
 import com.facebook.buck.core.sourcepath.SourcePath;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.core.sourcepath.resolver.impl.DefaultSourcePathResolver;
+import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.core.util.log.Logger;
 import com.facebook.buck.cxx.toolchain.CxxBuckConfig;
 import com.facebook.buck.cxx.toolchain.CxxPlatform;
@@ -32,6 +38,7 @@ import com.facebook.buck.cxx.toolchain.LinkerMapMode;
 import com.facebook.buck.cxx.toolchain.linker.HasImportLibrary;
 import com.facebook.buck.cxx.toolchain.linker.HasLinkerMap;
 import com.facebook.buck.cxx.toolchain.linker.HasThinLTO;
+import com.facebook.buck.cxx.toolchain.linker.HasThinLTOIndex;
 import com.facebook.buck.cxx.toolchain.linker.Linker;
 import com.facebook.buck.cxx.toolchain.linker.Linker.ExtraOutputsDeriver;
 import com.facebook.buck.cxx.toolchain.linker.Linker.LinkableDepType;
@@ -42,6 +49,7 @@ import com.facebook.buck.io.file.MorePaths;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.rules.args.AddsToRuleKeyFunction;
 import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.rules.args.FileListableLinkerInputArg;
 import com.facebook.buck.rules.args.SanitizedArg;
 import com.facebook.buck.rules.args.SourcePathArg;
 import com.facebook.buck.rules.args.StringArg;
@@ -56,6 +64,8 @@ import com.google.common.collect.Ordering;
 import com.google.common.collect.Streams;
 import java.nio.file.Path;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Consumer;
@@ -68,6 +78,9 @@ public class CxxLinkableEnhancer {
   private static final EnumSet<Linker.LinkType> SONAME_REQUIRED_LINK_TYPES =
       EnumSet.of(Linker.LinkType.SHARED, Linker.LinkType.MACH_O_BUNDLE);
 
+  private static final Flavor THIN_LTO_INDEX_FLAVOR = InternalFlavor.of("thinlto-index");
+  private static final String THIN_LTO_BACKEND_FLAVOR_PREFIX = "thinlto-backend-";
+
   // Utility class doesn't instantiate.
   private CxxLinkableEnhancer() {}
 
@@ -105,16 +118,7 @@ public class CxxLinkableEnhancer {
       argsBuilder.addAll(((HasImportLibrary) linker).importLibrary(output));
     }
 
-    // Pass any platform specific or extra linker flags.
-    argsBuilder.addAll(
-        SanitizedArg.from(
-            cxxPlatform.getCompilerDebugPathSanitizer().sanitize(Optional.empty()),
-            cxxPlatform.getLdflags()));
-
-    argsBuilder.addAll(args);
-
-    // Add all arguments needed to link in the C/C++ platform runtime.
-    argsBuilder.addAll(StringArg.from(cxxPlatform.getRuntimeLdflags().get(runtimeDepType)));
+    argsBuilder.addAll(withPlatformArgs(cxxPlatform, args, runtimeDepType));
 
     ImmutableList<Arg> ldArgs = argsBuilder.build();
     ImmutableMap<String, Path> allExtraOutputs = extraOutputs;
@@ -150,6 +154,20 @@ public class CxxLinkableEnhancer {
         linkOptions.getThinLto());
   }
 
+  private static ImmutableList<Arg> withPlatformArgs(
+      CxxPlatform cxxPlatform, ImmutableList<Arg> args, LinkableDepType runtimeDepType) {
+    return ImmutableList.<Arg>builder()
+        // Pass any platform specific or extra linker flags.
+        .addAll(
+            SanitizedArg.from(
+                cxxPlatform.getCompilerDebugPathSanitizer().sanitize(Optional.empty()),
+                cxxPlatform.getLdflags()))
+        .addAll(args)
+        // Add all arguments needed to link in the C/C++ platform runtime.
+        .addAll(StringArg.from(cxxPlatform.getRuntimeLdflags().get(runtimeDepType)))
+        .build();
+  }
+
   /**
    * Construct a {@link CxxLink} rule that builds a native linkable from top-level input objects and
    * a dependency tree of {@link NativeLinkable} dependencies.
@@ -263,6 +281,26 @@ public class CxxLinkableEnhancer {
 
     ImmutableList<Arg> allArgs = argsBuilder.build();
 
+    Linker linker = cxxPlatform.getLd().resolve(graphBuilder);
+    if (linkType == Linker.LinkType.EXECUTABLE
+        && linkOptions.getThinLto()
+        && cxxBuckConfig.isDistributedThinLtoEnabled()
+        && linker instanceof HasThinLTOIndex) {
+      allArgs =
+          createDistributedThinLTORules(
+              cxxBuckConfig,
+              cxxPlatform,
+              projectFilesystem,
+              graphBuilder,
+              resolver,
+              ruleFinder,
+              target,
+              linker,
+              immediateLinkableInput,
+              allArgs,
+              runtimeDepType);
+    }
+
     return createCxxLinkableBuildRule(
         cellPathResolver,
         cxxBuckConfig,
@@ -279,6 +317,102 @@ public class CxxLinkableEnhancer {
         postprocessor);
   }
 
+  /**
+   * Splits a ThinLTO link into rules which can run in parallel and be cached on their own: one
+   * which writes the index of the link, and one for each object of the linkable which optimizes it
+   * with its index and compiles it to a native object.
+   *
+   * <p>Only the objects of the linkable itself, which thin_lto compiles to bitcode, are optimized
+   * this way. The objects of dependencies are linked as they are.
+   *
+   * @return the args of the final link, which links the native objects instead of the bitcode.
+   */
+  private static ImmutableList<Arg> createDistributedThinLTORules(
+      CxxBuckConfig cxxBuckConfig,
+      CxxPlatform cxxPlatform,
+      ProjectFilesystem projectFilesystem,
+      ActionGraphBuilder graphBuilder,
+      SourcePathResolver resolver,
+      SourcePathRuleFinder ruleFinder,
+      BuildTarget target,
+      Linker linker,
+      NativeLinkableInput immediateLinkableInput,
+      ImmutableList<Arg> args,
+      LinkableDepType runtimeDepType) {
+    // Indexes are named after the paths the linker was given, which are only known here for
+    // objects built in the same cell.
+    ImmutableList<FileListableLinkerInputArg> modules =
+        immediateLinkableInput
+            .getArgs()
+            .stream()
+            .filter(FileListableLinkerInputArg.class::isInstance)
+            .map(FileListableLinkerInputArg.class::cast)
+            .filter(
+                arg ->
+                    arg.getPath() instanceof BuildTargetSourcePath
+                        && ((BuildTargetSourcePath) arg.getPath())
+                            .getTarget()
+                            .getCellPath()
+                            .equals(target.getCellPath()))
+            .collect(ImmutableList.toImmutableList());
+    if (modules.isEmpty()) {
+      return args;
+    }
+
+    CxxThinLTOIndex index =
+        (CxxThinLTOIndex)
+            graphBuilder.computeIfAbsent(
+                target.withAppendedFlavors(THIN_LTO_INDEX_FLAVOR),
+                indexTarget ->
+                    new CxxThinLTOIndex(
+                        indexTarget,
+                        projectFilesystem,
+                        ruleFinder,
+                        linker,
+                        BuildTargetPaths.getGenPath(projectFilesystem, indexTarget, "%s"),
+                        withPlatformArgs(cxxPlatform, args, runtimeDepType)));
+
+    ImmutableSortedSet<SourcePath> importableModules =
+        modules
+            .stream()
+            .map(FileListableLinkerInputArg::getPath)
+            .collect(ImmutableSortedSet.toImmutableSortedSet(Ordering.natural()));
+    Tool compiler = cxxPlatform.getCxx().resolve(graphBuilder);
+
+    Map<Arg, Arg> nativeObjects = new HashMap<>();
+    for (FileListableLinkerInputArg module : modules) {
+      Path modulePath = resolver.getRelativePath(module.getPath());
+      CxxThinLTOBackend backend =
+          (CxxThinLTOBackend)
+              graphBuilder.computeIfAbsent(
+                  target.withAppendedFlavors(
+                      InternalFlavor.of(
+                          THIN_LTO_BACKEND_FLAVOR_PREFIX
+                              + Flavor.replaceInvalidCharacters(modulePath.toString()))),
+                  backendTarget ->
+                      new CxxThinLTOBackend(
+                          backendTarget,
+                          projectFilesystem,
+                          ruleFinder,
+                          compiler,
+                          cxxBuckConfig.getThinLtoBackendFlags(),
+                          module.getPath(),
+                          ExplicitBuildTargetSourcePath.of(
+                              index.getBuildTarget(), index.getIndexPath(modulePath)),
+                          importableModules,
+                          BuildTargetPaths.getGenPath(
+                              projectFilesystem, backendTarget, "%s/" + modulePath.getFileName())));
+      nativeObjects.put(
+          module,
+          FileListableLinkerInputArg.withSourcePathArg(
+              SourcePathArg.of(backend.getSourcePathToOutput())));
+    }
+
+    return args.stream()
+        .map(arg -> nativeObjects.getOrDefault(arg, arg))
+        .collect(ImmutableList.toImmutableList());
+  }
+
   private static void addSharedLibrariesLinkerArgs(
       CxxPlatform cxxPlatform,
       SourcePathResolver resolver,
@@ -338,7 +338,8 @@ public class CxxPreprocessAndCompile extends ModernBuildRule<CxxPreprocessAndCom
                   .setTarget(targetName)
                   .setSourcePath(relativeInputPath)
                   .setOutputPath(resolvedOutput)
-                  .build()));
+                  .build()),
+          compilerDelegate.getCompileWorker());
     }
 
     static Path getDepFilePath(Path outputPath) {
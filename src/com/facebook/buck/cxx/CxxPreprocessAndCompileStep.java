@@ -64,6 +64,7 @@ class CxxPreprocessAndCompileStep implements Step {
   private final DebugPathSanitizer sanitizer;
   private final Compiler compiler;
   private final Optional<CxxLogInfo> cxxLogInfo;
+  private final Optional<CxxCompileWorker> compileWorker;
 
   /** Directory to use to store intermediate/temp files used for compilation. */
   private final Path scratchDir;
@@ -92,6 +93,38 @@ class CxxPreprocessAndCompileStep implements Step {
       boolean useArgfile,
       Compiler compiler,
       Optional<CxxLogInfo> cxxLogInfo) {
+    this(
+        filesystem,
+        operation,
+        output,
+        depFile,
+        input,
+        inputType,
+        command,
+        headerPathNormalizer,
+        sanitizer,
+        scratchDir,
+        useArgfile,
+        compiler,
+        cxxLogInfo,
+        Optional.empty());
+  }
+
+  public CxxPreprocessAndCompileStep(
+      ProjectFilesystem filesystem,
+      Operation operation,
+      Path output,
+      Optional<Path> depFile,
+      Path input,
+      CxxSource.Type inputType,
+      ToolCommand command,
+      HeaderPathNormalizer headerPathNormalizer,
+      DebugPathSanitizer sanitizer,
+      Path scratchDir,
+      boolean useArgfile,
+      Compiler compiler,
+      Optional<CxxLogInfo> cxxLogInfo,
+      Optional<CxxCompileWorker> compileWorker) {
     this.filesystem = filesystem;
     this.operation = operation;
     this.output = output;
@@ -105,6 +138,7 @@ class CxxPreprocessAndCompileStep implements Step {
     this.useArgfile = useArgfile;
     this.compiler = compiler;
     this.cxxLogInfo = cxxLogInfo;
+    this.compileWorker = compileWorker;
   }
 
   @Override
@@ -202,7 +236,9 @@ class CxxPreprocessAndCompileStep implements Step {
     LOG.debug("Running command (pwd=%s): %s", params.getDirectory(), getDescription(context));
 
     ProcessExecutor.Result result =
-        new DefaultProcessExecutor(Console.createNullConsole()).launchAndExecute(params);
+        compileWorker.isPresent()
+            ? compileWorker.get().compile(context, filesystem, params)
+            : new DefaultProcessExecutor(Console.createNullConsole()).launchAndExecute(params);
 
     String err = getSanitizedStderr(result, context);
     result =
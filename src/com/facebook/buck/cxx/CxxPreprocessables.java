@@ -118,8 +118,9 @@ public class CxxPreprocessables {
       Predicate<Object> traverse) {
 
     // We don't really care about the order we get back here, since headers shouldn't
-    // conflict.  However, we want something that's deterministic, so sort by build
-    // target.
+    // conflict.  However, we want something that's deterministic, so keep the order in which the
+    // dependency graph is walked.  The transitive inputs of each dep are walked in place rather
+    // than copied into a map of their own first.
     Map<BuildTarget, CxxPreprocessorInput> deps = new LinkedHashMap<>();
 
     // Build up the map of all C/C++ preprocessable dependencies.
@@ -128,7 +129,7 @@ public class CxxPreprocessables {
       public Iterable<BuildRule> visit(BuildRule rule) {
         if (rule instanceof CxxPreprocessorDep) {
           CxxPreprocessorDep dep = (CxxPreprocessorDep) rule;
-          deps.putAll(dep.getTransitiveCxxPreprocessorInput(cxxPlatform, graphBuilder));
+          dep.getTransitiveCxxPreprocessorInputs(cxxPlatform, graphBuilder).forEach(deps::put);
           return ImmutableSet.of();
         }
         return traverse.test(rule) ? rule.getBuildDeps() : ImmutableSet.of();
@@ -165,6 +166,8 @@ public class CxxPreprocessables {
         return HeaderSymlinkTreeWithModuleMap.create(target, filesystem, root, links, ruleFinder);
       case HEADER_MAP_ONLY:
         return new DirectHeaderMap(target, filesystem, root, links, ruleFinder);
+      case HEADER_MAP_WITH_VFS_OVERLAY:
+        return new HeaderMapWithVFSOverlay(target, filesystem, root, links, ruleFinder);
       default:
       case SYMLINK_TREE_ONLY:
         return new HeaderSymlinkTree(target, filesystem, root, links, ruleFinder);
@@ -48,4 +48,14 @@ public interface CxxPreprocessorDep {
    */
   ImmutableMap<BuildTarget, CxxPreprocessorInput> getTransitiveCxxPreprocessorInput(
       CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder);
+
+  /**
+   * Returns the same inputs as {@link #getTransitiveCxxPreprocessorInput}, sharing the transitive
+   * inputs of deps instead of copying them when possible.
+   */
+  default TransitiveCxxPreprocessorInputs getTransitiveCxxPreprocessorInputs(
+      CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder) {
+    return TransitiveCxxPreprocessorInputs.copyOf(
+        getTransitiveCxxPreprocessorInput(cxxPlatform, graphBuilder));
+  }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.core.build.context.BuildContext;
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.rulekey.AddToRuleKey;
+import com.facebook.buck.core.rules.SourcePathRuleFinder;
+import com.facebook.buck.core.rules.attr.SupportsInputBasedRuleKey;
+import com.facebook.buck.core.sourcepath.SourcePath;
+import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
+import com.facebook.buck.core.toolchain.tool.Tool;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.rules.modern.BuildCellRelativePathFactory;
+import com.facebook.buck.rules.modern.Buildable;
+import com.facebook.buck.rules.modern.ModernBuildRule;
+import com.facebook.buck.rules.modern.OutputPathResolver;
+import com.facebook.buck.rules.modern.PublicOutputPath;
+import com.facebook.buck.shell.DefaultShellStep;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.fs.MkdirStep;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import java.nio.file.Path;
+
+/**
+ * A step of a distributed ThinLTO link: optimizes one bitcode module using its index from a {@link
+ * CxxThinLTOIndex}, and compiles it to a native object for the final link.
+ */
+public class CxxThinLTOBackend extends ModernBuildRule<CxxThinLTOBackend.Impl>
+    implements SupportsInputBasedRuleKey {
+
+  public CxxThinLTOBackend(
+      BuildTarget buildTarget,
+      ProjectFilesystem projectFilesystem,
+      SourcePathRuleFinder ruleFinder,
+      Tool compiler,
+      ImmutableList<String> flags,
+      SourcePath module,
+      SourcePath index,
+      ImmutableSortedSet<SourcePath> importableModules,
+      Path output) {
+    super(
+        buildTarget,
+        projectFilesystem,
+        ruleFinder,
+        new Impl(compiler, flags, module, index, importableModules, output));
+  }
+
+  /** Buildable implementation of CxxThinLTOBackend. */
+  static class Impl implements Buildable {
+    @AddToRuleKey private final Tool compiler;
+    @AddToRuleKey private final ImmutableList<String> flags;
+    @AddToRuleKey private final SourcePath module;
+    @AddToRuleKey private final SourcePath index;
+    // The index names the modules to import functions from, which can be any module of the link.
+    @AddToRuleKey private final ImmutableSortedSet<SourcePath> importableModules;
+    @AddToRuleKey private final PublicOutputPath output;
+
+    Impl(
+        Tool compiler,
+        ImmutableList<String> flags,
+        SourcePath module,
+        SourcePath index,
+        ImmutableSortedSet<SourcePath> importableModules,
+        Path output) {
+      this.compiler = compiler;
+      this.flags = flags;
+      this.module = module;
+      this.index = index;
+      this.importableModules = importableModules;
+      this.output = new PublicOutputPath(output);
+    }
+
+    @Override
+    public ImmutableList<Step> getBuildSteps(
+        BuildContext context,
+        ProjectFilesystem filesystem,
+        OutputPathResolver outputPathResolver,
+        BuildCellRelativePathFactory buildCellPathFactory) {
+      SourcePathResolver resolver = context.getSourcePathResolver();
+      Path outputPath = outputPathResolver.resolvePath(output);
+      return ImmutableList.of(
+          MkdirStep.of(buildCellPathFactory.from(outputPath.getParent())),
+          new DefaultShellStep(
+              filesystem.getRootPath(),
+              ImmutableList.<String>builder()
+                  .addAll(compiler.getCommandPrefix(resolver))
+                  .addAll(flags)
+                  .add("-c", "-x", "ir")
+                  // The module has to be named as it was in the link, so that it is found in the
+                  // index.
+                  .add(resolver.getRelativePath(module).toString())
+                  .add("-fthinlto-index=" + resolver.getAbsolutePath(index))
+                  .add("-o", filesystem.resolve(outputPath).toString())
+                  .build(),
+              compiler.getEnvironment(resolver)));
+    }
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return getSourcePath(getBuildable().output);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.core.build.context.BuildContext;
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.rulekey.AddToRuleKey;
+import com.facebook.buck.core.rules.SourcePathRuleFinder;
+import com.facebook.buck.core.rules.attr.SupportsInputBasedRuleKey;
+import com.facebook.buck.core.sourcepath.SourcePath;
+import com.facebook.buck.cxx.toolchain.linker.HasThinLTOIndex;
+import com.facebook.buck.cxx.toolchain.linker.Linker;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.rules.modern.BuildCellRelativePathFactory;
+import com.facebook.buck.rules.modern.Buildable;
+import com.facebook.buck.rules.modern.ModernBuildRule;
+import com.facebook.buck.rules.modern.OutputPathResolver;
+import com.facebook.buck.rules.modern.PublicOutputPath;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.fs.MkdirStep;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+
+/**
+ * The first step of a distributed ThinLTO link: runs the link over bitcode objects, but only to
+ * write the index each module needs to be optimized on its own by a {@link CxxThinLTOBackend}.
+ */
+public class CxxThinLTOIndex extends ModernBuildRule<CxxThinLTOIndex.Impl>
+    implements SupportsInputBasedRuleKey {
+
+  // Stored here so we can access it without an OutputPathResolver.
+  private final Path output;
+
+  public CxxThinLTOIndex(
+      BuildTarget buildTarget,
+      ProjectFilesystem projectFilesystem,
+      SourcePathRuleFinder ruleFinder,
+      Linker linker,
+      Path output,
+      ImmutableList<Arg> args) {
+    super(buildTarget, projectFilesystem, ruleFinder, new Impl(linker, output, args));
+    Preconditions.checkArgument(linker instanceof HasThinLTOIndex);
+    this.output = output;
+  }
+
+  /** Buildable implementation of CxxThinLTOIndex. */
+  static class Impl implements Buildable {
+    @AddToRuleKey private final Linker linker;
+    @AddToRuleKey private final ImmutableList<Arg> args;
+    @AddToRuleKey private final PublicOutputPath output;
+
+    Impl(Linker linker, Path output, ImmutableList<Arg> args) {
+      this.linker = linker;
+      this.args = args;
+      this.output = new PublicOutputPath(output);
+    }
+
+    @Override
+    public ImmutableList<Step> getBuildSteps(
+        BuildContext context,
+        ProjectFilesystem filesystem,
+        OutputPathResolver outputPathResolver,
+        BuildCellRelativePathFactory buildCellPathFactory) {
+      Path scratchDir = filesystem.resolve(outputPathResolver.getTempPath());
+      Path argFilePath = scratchDir.resolve("linker.argsfile");
+      Path fileListPath = scratchDir.resolve("filelist.txt");
+      Path outputPath = outputPathResolver.resolvePath(output);
+
+      ImmutableList<Arg> indexArgs =
+          ImmutableList.<Arg>builder()
+              .addAll(args)
+              .addAll(((HasThinLTOIndex) linker).thinLTOIndex(filesystem.resolve(outputPath)))
+              .build();
+
+      return ImmutableList.<Step>builder()
+          .add(MkdirStep.of(buildCellPathFactory.from(outputPath)))
+          .addAll(
+              CxxPrepareForLinkStep.create(
+                  argFilePath,
+                  fileListPath,
+                  linker.fileList(fileListPath),
+                  // Nothing is linked, but the linker still needs somewhere to link to.
+                  scratchDir.resolve("index-only"),
+                  indexArgs,
+                  linker,
+                  filesystem.getRootPath(),
+                  context.getSourcePathResolver()))
+          .add(
+              new CxxLinkStep(
+                  filesystem.getRootPath(),
+                  linker.getEnvironment(context.getSourcePathResolver()),
+                  linker.getCommandPrefix(context.getSourcePathResolver()),
+                  argFilePath,
+                  scratchDir))
+          .build();
+    }
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return getSourcePath(getBuildable().output);
+  }
+
+  /** @return the path of the index of a bitcode input, as it was passed to the linker. */
+  public Path getIndexPath(Path input) {
+    return ((HasThinLTOIndex) getBuildable().linker).thinLTOIndexPath(output, input);
+  }
+}
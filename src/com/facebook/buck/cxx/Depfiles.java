@@ -29,13 +29,14 @@ import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import java.io.BufferedReader;
+import com.google.common.io.CharStreams;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -59,9 +60,6 @@ class Depfiles {
     ADD_PREREQ
   }
 
-  private static final String WHITESPACE_CHARS = " \n\r\t";
-  private static final String ESCAPED_TARGET_CHARS = ": #";
-  private static final String ESCAPED_PREREQ_CHARS = " #";
   private static final String UNTRACKED_HEADER_ERROR_TIPS =
       "Untracked headers detected. Please reference these headers "
           + System.lineSeparator()
@@ -79,31 +77,37 @@ class Depfiles {
    * dep2, ...]) inside.
    */
   public static Depfile parseDepfile(Readable readable) throws IOException {
+    return parseDepfile(
+        new ByteArrayInputStream(CharStreams.toString(readable).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Parses the UTF-8 input as a .d Makefile as emitted by {@code gcc -MD} and returns the (target,
+   * [dep, dep2, ...]) inside.
+   *
+   * <p>The characters with a meaning in depfiles are all ASCII, so the input is scanned as bytes
+   * and only the target and the prereqs themselves are decoded.
+   */
+  public static Depfile parseDepfile(InputStream input) throws IOException {
     String target = null;
     ImmutableList.Builder<String> prereqsBuilder = ImmutableList.builder();
     State state = State.LOOKING_FOR_TARGET;
-    StringBuilder identifierBuilder = new StringBuilder();
+    IdentifierBuilder identifierBuilder = new IdentifierBuilder();
 
-    CharBuffer buffer = CharBuffer.allocate(4096);
+    byte[] buffer = new byte[16384];
     int numBackslashes = 0;
 
-    while (readable.read(buffer) != -1) {
-      buffer.flip();
-
-      while (buffer.hasRemaining()) {
-        char c = buffer.get();
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        byte c = buffer[i];
         Action action = Action.NONE;
         boolean isBackslash = c == '\\';
         boolean isCarriageReturn = c == '\r';
         boolean isNewline = c == '\n';
-        boolean isWhitespace = WHITESPACE_CHARS.indexOf(c) != -1;
-        boolean inIdentifier = identifierBuilder.length() > 0;
-        boolean isEscaped;
-        if (state == State.LOOKING_FOR_TARGET) {
-          isEscaped = ESCAPED_TARGET_CHARS.indexOf(c) != -1;
-        } else {
-          isEscaped = ESCAPED_PREREQ_CHARS.indexOf(c) != -1;
-        }
+        boolean isWhitespace = c == ' ' || isNewline || isCarriageReturn || c == '\t';
+        boolean inIdentifier = !identifierBuilder.isEmpty();
+        boolean isEscaped = c == ' ' || c == '#' || (c == ':' && state == State.LOOKING_FOR_TARGET);
 
         if (isBackslash) {
           // We need to count the number of backslashes in case the
@@ -146,8 +150,8 @@ class Depfiles {
             numBackslashesToAppend = numBackslashes;
           }
 
-          for (int i = 0; i < numBackslashesToAppend; i++) {
-            identifierBuilder.append('\\');
+          for (int j = 0; j < numBackslashesToAppend; j++) {
+            identifierBuilder.append((byte) '\\');
           }
           numBackslashes = 0;
         }
@@ -163,17 +167,13 @@ class Depfiles {
               throw new HumanReadableException(
                   "Depfile parser cannot handle .d file with multiple targets");
             }
-            target = identifierBuilder.toString();
-            identifierBuilder.setLength(0);
+            target = identifierBuilder.take();
             break;
           case ADD_PREREQ:
-            prereqsBuilder.add(identifierBuilder.toString());
-            identifierBuilder.setLength(0);
+            prereqsBuilder.add(identifierBuilder.take());
             break;
         }
       }
-
-      buffer.clear();
     }
 
     ImmutableList<String> prereqs = prereqsBuilder.build();
@@ -184,6 +184,30 @@ class Depfiles {
     }
   }
 
+  /** The bytes of the target or prereq being parsed. */
+  private static class IdentifierBuilder {
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+
+    boolean isEmpty() {
+      return length == 0;
+    }
+
+    void append(byte b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      bytes[length++] = b;
+    }
+
+    /** @return the identifier parsed so far, and starts a new one. */
+    String take() {
+      String identifier = new String(bytes, 0, length, StandardCharsets.UTF_8);
+      length = 0;
+      return identifier;
+    }
+  }
+
   private static ImmutableList<String> getRawUsedHeadersFromDepfile(
       ProjectFilesystem filesystem,
       Path sourceDepFile,
@@ -192,9 +216,8 @@ class Depfiles {
       throws IOException {
     switch (dependencyTrackingMode) {
       case MAKEFILE:
-        try (InputStream input = filesystem.newFileInputStream(sourceDepFile);
-            BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
-          ImmutableList<String> prereqs = Depfiles.parseDepfile(reader).getPrereqs();
+        try (InputStream input = filesystem.newFileInputStream(sourceDepFile)) {
+          ImmutableList<String> prereqs = Depfiles.parseDepfile(input).getPrereqs();
           // Additional files passed in via command-line flags (e.g. `-fsanitize-blacklist=<file>`)
           // appear first in the dep file, followed by the input source file.  So, just skip over
           // everything until just after the input source which should position us at the headers.
@@ -306,13 +329,13 @@ class Depfiles {
     for (String rawHeader : headers) {
       Path header = filesystem.resolve(rawHeader).normalize();
       Optional<Path> absolutePath = headerPathNormalizer.getAbsolutePathForUnnormalizedPath(header);
-      Optional<Path> repoRelativePath = filesystem.getPathRelativeToProjectRoot(header);
       if (absolutePath.isPresent()) {
         Preconditions.checkState(absolutePath.get().isAbsolute());
         resultBuilder.add(absolutePath.get());
       } else if ((headerVerification.getMode() != HeaderVerification.Mode.IGNORE)
           && (!(headerVerification.isWhitelisted(header.toString())
-              || repoRelativePath
+              || filesystem
+                  .getPathRelativeToProjectRoot(header)
                   .map(path -> headerVerification.isWhitelisted(path.toString()))
                   .orElse(false)))) {
         // Check again with the real path with all symbolic links resolved.
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A rewrite of an ELF file which doesn't change the size of the file, so that it can be applied to
+ * the file mapped in memory along with other rewrites.
+ */
+interface ElfRewrite {
+
+  /** Rewrites the ELF file in {@code buffer}, which is positioned at the start of the file. */
+  void rewrite(ByteBuffer buffer) throws IOException;
+
+  /** Applies rewrites to an ELF file in order, mapping the file in memory once for all of them. */
+  static void rewriteInPlace(Path path, Iterable<? extends ElfRewrite> rewrites)
+      throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(READ_WRITE, 0, channel.size());
+      for (ElfRewrite rewrite : rewrites) {
+        // Each rewrite parses the headers again, since earlier ones may have changed them.
+        buffer.rewind();
+        rewrite.rewrite(buffer);
+      }
+    }
+  }
+}
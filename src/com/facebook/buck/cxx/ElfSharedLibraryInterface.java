@@ -258,14 +258,8 @@ abstract class ElfSharedLibraryInterface extends AbstractBuildRule
             BuildCellRelativePath.fromCellRelativePath(
                 context.getBuildCellRootPath(), getProjectFilesystem(), getScratchDir())));
     Pair<ProjectFilesystem, Path> input = getInput(context, steps);
-    steps.add(
-        new ElfExtractSectionsStep(
-            objcopy.getCommandPrefix(context.getSourcePathResolver()),
-            getSections(),
-            input.getFirst(),
-            input.getSecond(),
-            getProjectFilesystem(),
-            outputScratch),
+    ImmutableList.Builder<ElfRewrite> rewrites = ImmutableList.builder();
+    rewrites.add(
         ElfSymbolTableScrubberStep.of(
             getProjectFilesystem(),
             outputScratch,
@@ -294,14 +288,23 @@ abstract class ElfSharedLibraryInterface extends AbstractBuildRule
     // If we're removing undefined symbols, rewrite the dynamic string table so that strings for
     // undefined symbol names are removed.
     if (removeUndefinedSymbols) {
-      steps.add(ElfRewriteDynStrSectionStep.of(getProjectFilesystem(), outputScratch));
+      rewrites.add(ElfRewriteDynStrSectionStep.of(getProjectFilesystem(), outputScratch));
     }
+    // objcopy doesn't like the section-address shuffling chicanery we're doing in
+    // the ElfCompactSectionsStep, since the new addresses may not jive with the current
+    // segment locations.  So kill the segments (program headers) in the scratch file
+    // prior to compacting sections, and _again_ in the interface .so file.
+    rewrites.add(ElfClearProgramHeadersStep.of(getProjectFilesystem(), outputScratch));
     steps.add(
-        // objcopy doesn't like the section-address shuffling chicanery we're doing in
-        // the ElfCompactSectionsStep, since the new addresses may not jive with the current
-        // segment locations.  So kill the segments (program headers) in the scratch file
-        // prior to compacting sections, and _again_ in the interface .so file.
-        ElfClearProgramHeadersStep.of(getProjectFilesystem(), outputScratch),
+        new ElfExtractSectionsStep(
+            objcopy.getCommandPrefix(context.getSourcePathResolver()),
+            getSections(),
+            input.getFirst(),
+            input.getSecond(),
+            getProjectFilesystem(),
+            outputScratch),
+        // Apply all the rewrites of the extracted sections while the file is mapped once.
+        ElfRewriteInPlaceStep.of(getProjectFilesystem(), outputScratch, rewrites.build()),
         ElfCompactSectionsStep.of(
             getBuildTarget(),
             objcopy.getCommandPrefix(context.getSourcePathResolver()),
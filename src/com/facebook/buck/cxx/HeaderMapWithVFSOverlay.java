@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.core.build.buildable.context.BuildableContext;
+import com.facebook.buck.core.build.context.BuildContext;
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.model.impl.BuildTargetPaths;
+import com.facebook.buck.core.rulekey.AddToRuleKey;
+import com.facebook.buck.core.rules.SourcePathRuleFinder;
+import com.facebook.buck.core.sourcepath.ExplicitBuildTargetSourcePath;
+import com.facebook.buck.core.sourcepath.PathSourcePath;
+import com.facebook.buck.core.sourcepath.SourcePath;
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.cxx.toolchain.HeaderSymlinkTree;
+import com.facebook.buck.io.BuildCellRelativePath;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.fs.MakeCleanDirectoryStep;
+import com.facebook.buck.step.fs.MkdirStep;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Headers laid out as in a {@link HeaderSymlinkTree}, without creating any link. A clang VFS
+ * overlay makes the headers appear at the paths their links would have in the tree, and a header
+ * map references those paths.
+ *
+ * <p>Compilations see the same paths as with a symlink tree, so includes relative to a header and
+ * depfiles behave the same, but building the tree only writes two files whatever its size.
+ */
+class HeaderMapWithVFSOverlay extends HeaderSymlinkTree {
+
+  private static final Logger LOG = Logger.get(HeaderMapWithVFSOverlay.class);
+
+  @AddToRuleKey(stringify = true)
+  private final Path headerMapPath;
+
+  @AddToRuleKey(stringify = true)
+  private final Path vfsOverlayPath;
+
+  public HeaderMapWithVFSOverlay(
+      BuildTarget target,
+      ProjectFilesystem filesystem,
+      Path root,
+      ImmutableMap<Path, SourcePath> links,
+      SourcePathRuleFinder ruleFinder) {
+    super(target, filesystem, root, links, ruleFinder);
+    this.headerMapPath = BuildTargetPaths.getGenPath(filesystem, target, "%s.hmap");
+    this.vfsOverlayPath = BuildTargetPaths.getGenPath(filesystem, target, "%s-vfsoverlay.yaml");
+  }
+
+  @Override
+  public SourcePath getSourcePathToOutput() {
+    return ExplicitBuildTargetSourcePath.of(getBuildTarget(), headerMapPath);
+  }
+
+  @Override
+  public ImmutableList<Step> getBuildSteps(
+      BuildContext context, BuildableContext buildableContext) {
+    LOG.debug(
+        "Generating build steps to write header map to %s and vfs overlay to %s",
+        headerMapPath, vfsOverlayPath);
+    Path buckOut =
+        getProjectFilesystem().resolve(getProjectFilesystem().getBuckPaths().getBuckOut());
+    Path root = getProjectFilesystem().resolve(getRoot());
+
+    ImmutableMap.Builder<Path, Path> headerMapEntries = ImmutableMap.builder();
+    ImmutableSortedMap.Builder<Path, Path> vfsOverlayEntries = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<Path, SourcePath> entry : getLinks().entrySet()) {
+      Path virtualPath = root.resolve(entry.getKey());
+      // As with symlink trees, the header map references the virtual paths relative to buck-out.
+      headerMapEntries.put(entry.getKey(), buckOut.relativize(virtualPath));
+      vfsOverlayEntries.put(
+          virtualPath, context.getSourcePathResolver().getAbsolutePath(entry.getValue()));
+    }
+
+    return ImmutableList.<Step>builder()
+        .add(getVerifyStep())
+        // Remove any tree a previous build made with another mode, so that it can't be used
+        // instead of the overlay.
+        .addAll(
+            MakeCleanDirectoryStep.of(
+                BuildCellRelativePath.fromCellRelativePath(
+                    context.getBuildCellRootPath(), getProjectFilesystem(), getRoot())))
+        .add(
+            MkdirStep.of(
+                BuildCellRelativePath.fromCellRelativePath(
+                    context.getBuildCellRootPath(),
+                    getProjectFilesystem(),
+                    headerMapPath.getParent())))
+        .add(new HeaderMapStep(getProjectFilesystem(), headerMapPath, headerMapEntries.build()))
+        .add(
+            new VFSOverlayStep(getProjectFilesystem(), vfsOverlayPath, vfsOverlayEntries.build()))
+        .build();
+  }
+
+  @Override
+  public PathSourcePath getIncludeSourcePath() {
+    return PathSourcePath.of(
+        getProjectFilesystem(), getProjectFilesystem().getBuckPaths().getBuckOut());
+  }
+
+  @Override
+  public Optional<SourcePath> getHeaderMapSourcePath() {
+    return Optional.of(ExplicitBuildTargetSourcePath.of(getBuildTarget(), headerMapPath));
+  }
+
+  @Override
+  public Optional<SourcePath> getVFSOverlaySourcePath() {
+    return Optional.of(ExplicitBuildTargetSourcePath.of(getBuildTarget(), vfsOverlayPath));
+  }
+}
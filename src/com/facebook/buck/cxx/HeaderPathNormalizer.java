@@ -21,8 +21,12 @@ import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.io.file.MorePaths;
 import com.facebook.buck.util.types.Pair;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.LinkedHashMap;
@@ -32,6 +36,15 @@ import java.util.stream.Collectors;
 
 class HeaderPathNormalizer {
 
+  private static final int MAX_ABSOLUTE_PATHS = 4096;
+
+  /**
+   * Shares the absolute paths of headers between all normalizers, so that the dependencies of
+   * compilations including the same header refer to a single {@link Path}. Paths no longer used by
+   * any compilation are dropped.
+   */
+  private static final Interner<Path> ABSOLUTE_PATH_INTERNER = Interners.newWeakInterner();
+
   private final SourcePathResolver pathResolver;
 
   /**
@@ -49,6 +62,14 @@ class HeaderPathNormalizer {
   /** Minimal mappings to translate paths used during compilation to their real locations. */
   private final ImmutableMap<Path, Path> prefixMap;
 
+  /**
+   * The most recent results of {@link #getAbsolutePathForUnnormalizedPath(Path)}. The compilations
+   * sharing this normalizer mostly include the same headers. Normalizers may outlive a build along
+   * with the action graph, so this is bounded.
+   */
+  private final Cache<Path, Optional<Path>> absolutePaths =
+      CacheBuilder.newBuilder().maximumSize(MAX_ABSOLUTE_PATHS).build();
+
   protected HeaderPathNormalizer(
       SourcePathResolver pathResolver,
       ImmutableMap<Path, SourcePath> headers,
@@ -78,6 +99,17 @@ class HeaderPathNormalizer {
 
   public Optional<Path> getAbsolutePathForUnnormalizedPath(Path unnormalizedPath) {
     Preconditions.checkArgument(unnormalizedPath.isAbsolute());
+    Optional<Path> absolutePath = absolutePaths.getIfPresent(unnormalizedPath);
+    if (absolutePath == null) {
+      absolutePath =
+          computeAbsolutePathForUnnormalizedPath(unnormalizedPath)
+              .map(ABSOLUTE_PATH_INTERNER::intern);
+      absolutePaths.put(unnormalizedPath, absolutePath);
+    }
+    return absolutePath;
+  }
+
+  private Optional<Path> computeAbsolutePathForUnnormalizedPath(Path unnormalizedPath) {
     Optional<Map.Entry<Path, SourcePath>> result = pathLookup(unnormalizedPath, normalized);
     if (!result.isPresent()) {
       return Optional.empty();
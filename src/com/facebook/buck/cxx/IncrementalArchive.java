@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.step.AbstractExecutionStep;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.StepExecutionResults;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Remembers the hashes of the inputs of an archive built by a previous build, so that the archive
+ * can be updated by only replacing the members whose inputs changed.
+ *
+ * <p>The previous archive is only updated if it is still the one the state was recorded for, and
+ * if the inputs are the same files in the same order, so that the updated archive is the same as
+ * one built from scratch.
+ */
+class IncrementalArchive {
+
+  private static final Splitter LINE_SPLITTER = Splitter.on(' ').limit(2);
+
+  private final ProjectFilesystem filesystem;
+  private final Path archive;
+  private final Path stateFile;
+  private final Path pendingStateFile;
+  private final ImmutableList<String> replaceOptions;
+
+  IncrementalArchive(
+      ProjectFilesystem filesystem,
+      Path archive,
+      Path stateFile,
+      ImmutableList<String> replaceOptions) {
+    this.filesystem = filesystem;
+    this.archive = archive;
+    this.stateFile = stateFile;
+    this.pendingStateFile = stateFile.resolveSibling(stateFile.getFileName() + ".pending");
+    this.replaceOptions = replaceOptions;
+  }
+
+  /** @return the archiver options which replace members of the archive. */
+  ImmutableList<String> getReplaceOptions() {
+    return replaceOptions;
+  }
+
+  /**
+   * Forgets the previous build of the archive, and remembers the inputs of this build until {@link
+   * #createRecordStep()} records them along with the archive built from them.
+   *
+   * @return the inputs whose members have to be replaced in the archive of the previous build, or
+   *     empty if the archive has to be built from scratch.
+   */
+  Optional<ImmutableList<String>> getChangedInputs(ImmutableList<String> inputs)
+      throws IOException {
+    ImmutableList.Builder<String> stateLines = ImmutableList.builder();
+    for (String input : inputs) {
+      stateLines.add(filesystem.computeSha1(filesystem.getPath(input)) + " " + input);
+    }
+    ImmutableList<String> currentState = stateLines.build();
+
+    Optional<ImmutableList<String>> previousState = readPreviousState();
+    filesystem.deleteFileAtPathIfExists(stateFile);
+    filesystem.writeLinesToPath(currentState, pendingStateFile);
+
+    if (!previousState.isPresent()
+        || previousState.get().size() != currentState.size()
+        || !hasUniqueFileNames(inputs)) {
+      return Optional.empty();
+    }
+
+    ImmutableList.Builder<String> changedInputs = ImmutableList.builder();
+    for (int i = 0; i < currentState.size(); i++) {
+      List<String> previous = LINE_SPLITTER.splitToList(previousState.get().get(i));
+      List<String> current = LINE_SPLITTER.splitToList(currentState.get(i));
+      if (previous.size() != 2 || !previous.get(1).equals(current.get(1))) {
+        return Optional.empty();
+      }
+      if (!previous.get(0).equals(current.get(0))) {
+        changedInputs.add(current.get(1));
+      }
+    }
+    return Optional.of(changedInputs.build());
+  }
+
+  /**
+   * @return the input lines of the recorded state, if it was recorded for the archive that is on
+   *     disk now.
+   */
+  private Optional<ImmutableList<String>> readPreviousState() throws IOException {
+    if (!filesystem.isFile(stateFile) || !filesystem.isFile(archive)) {
+      return Optional.empty();
+    }
+    List<String> lines = filesystem.readLines(stateFile);
+    if (lines.isEmpty() || !lines.get(0).equals(filesystem.computeSha1(archive).toString())) {
+      return Optional.empty();
+    }
+    return Optional.of(ImmutableList.copyOf(lines.subList(1, lines.size())));
+  }
+
+  // Archivers find the members to replace by their file names.
+  private boolean hasUniqueFileNames(ImmutableList<String> inputs) {
+    Set<Path> fileNames = new HashSet<>();
+    for (String input : inputs) {
+      Path fileName = filesystem.getPath(input).getFileName();
+      if (!fileNames.add(fileName)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return a step which records the inputs remembered by {@link #getChangedInputs} along with the
+   *     hash of the archive, once it is complete.
+   */
+  Step createRecordStep() {
+    return new AbstractExecutionStep("record_archive_state") {
+      @Override
+      public StepExecutionResult execute(ExecutionContext context) throws IOException {
+        ImmutableList<String> lines =
+            ImmutableList.<String>builder()
+                .add(filesystem.computeSha1(archive).toString())
+                .addAll(filesystem.readLines(pendingStateFile))
+                .build();
+        filesystem.writeLinesToPath(lines, stateFile);
+        filesystem.deleteFileAtPathIfExists(pendingStateFile);
+        return StepExecutionResults.SUCCESS;
+      }
+    };
+  }
+}
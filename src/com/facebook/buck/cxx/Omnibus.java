@@ -55,6 +55,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -88,27 +89,19 @@ public class Omnibus {
     return target.getNativeLinkTargetMode(cxxPlatform).getType() == Linker.LinkType.EXECUTABLE;
   }
 
-  private static Iterable<NativeLinkable> getDeps(
-      NativeLinkable nativeLinkable, CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder) {
-    return Iterables.concat(
-        nativeLinkable.getNativeLinkableDepsForPlatform(cxxPlatform, graphBuilder),
-        nativeLinkable.getNativeLinkableExportedDepsForPlatform(cxxPlatform, graphBuilder));
-  }
-
   // Returned the dependencies for the given node, which can either be a `NativeLinkable` or a
   // `NativeLinkTarget`.
   private static Iterable<? extends NativeLinkable> getDeps(
       BuildTarget target,
       Map<BuildTarget, ? extends NativeLinkTarget> nativeLinkTargets,
       Map<BuildTarget, ? extends NativeLinkable> nativeLinkables,
-      CxxPlatform cxxPlatform,
-      ActionGraphBuilder graphBuilder) {
+      LinkableGraph linkableGraph) {
     if (nativeLinkables.containsKey(target)) {
       NativeLinkable nativeLinkable = Objects.requireNonNull(nativeLinkables.get(target));
-      return getDeps(nativeLinkable, cxxPlatform, graphBuilder);
+      return linkableGraph.getDeps(nativeLinkable);
     } else {
       NativeLinkTarget nativeLinkTarget = Objects.requireNonNull(nativeLinkTargets.get(target));
-      return nativeLinkTarget.getNativeLinkTargetDeps(cxxPlatform, graphBuilder);
+      return linkableGraph.getDeps(nativeLinkTarget);
     }
   }
 
@@ -119,6 +112,14 @@ public class Omnibus {
       Iterable<? extends NativeLinkTarget> includedRoots,
       Iterable<? extends NativeLinkable> excludedRoots,
       ActionGraphBuilder actionGraphBuilder) {
+    return buildSpec(
+        includedRoots, excludedRoots, new LinkableGraph(cxxPlatform, actionGraphBuilder));
+  }
+
+  private static OmnibusSpec buildSpec(
+      Iterable<? extends NativeLinkTarget> includedRoots,
+      Iterable<? extends NativeLinkable> excludedRoots,
+      LinkableGraph linkableGraph) {
 
     // A map of targets to native linkable objects.  We maintain this, so that we index our
     // bookkeeping around `BuildTarget` and avoid having to guarantee that all other types are
@@ -133,16 +134,8 @@ public class Omnibus {
     Map<BuildTarget, NativeLinkable> rootDeps = new LinkedHashMap<>();
     for (NativeLinkTarget root : includedRoots) {
       roots.put(root.getBuildTarget(), root);
-      for (NativeLinkable dep :
-          NativeLinkables.getNativeLinkables(
-              cxxPlatform,
-              actionGraphBuilder,
-              root.getNativeLinkTargetDeps(cxxPlatform, actionGraphBuilder),
-              Linker.LinkableDepType.SHARED)) {
-        Linker.LinkableDepType linkStyle =
-            NativeLinkables.getLinkStyle(
-                dep.getPreferredLinkage(cxxPlatform, actionGraphBuilder),
-                Linker.LinkableDepType.SHARED);
+      for (NativeLinkable dep : linkableGraph.getSharedLinkables(root)) {
+        Linker.LinkableDepType linkStyle = linkableGraph.getSharedLinkStyle(dep);
         Preconditions.checkState(linkStyle != Linker.LinkableDepType.STATIC);
 
         // We only consider deps which aren't *only* statically linked.
@@ -169,11 +162,10 @@ public class Omnibus {
       public Iterable<BuildTarget> visit(BuildTarget target) {
         NativeLinkable nativeLinkable = Objects.requireNonNull(nativeLinkables.get(target));
         ImmutableMap<BuildTarget, NativeLinkable> deps =
-            Maps.uniqueIndex(
-                getDeps(nativeLinkable, cxxPlatform, actionGraphBuilder),
-                NativeLinkable::getBuildTarget);
+            Maps.uniqueIndex(linkableGraph.getDeps(nativeLinkable), NativeLinkable::getBuildTarget);
         nativeLinkables.putAll(deps);
-        if (!nativeLinkable.supportsOmnibusLinking(cxxPlatform, actionGraphBuilder)) {
+        if (!nativeLinkable.supportsOmnibusLinking(
+            linkableGraph.cxxPlatform, linkableGraph.graphBuilder)) {
           excluded.add(target);
         }
         return deps.keySet();
@@ -186,9 +178,7 @@ public class Omnibus {
       public Iterable<BuildTarget> visit(BuildTarget target) {
         NativeLinkable nativeLinkable = Objects.requireNonNull(nativeLinkables.get(target));
         ImmutableMap<BuildTarget, NativeLinkable> deps =
-            Maps.uniqueIndex(
-                getDeps(nativeLinkable, cxxPlatform, actionGraphBuilder),
-                NativeLinkable::getBuildTarget);
+            Maps.uniqueIndex(linkableGraph.getDeps(nativeLinkable), NativeLinkable::getBuildTarget);
         nativeLinkables.putAll(deps);
         excluded.add(target);
         return deps.keySet();
@@ -206,7 +196,7 @@ public class Omnibus {
         Set<BuildTarget> keep = new LinkedHashSet<>();
         for (BuildTarget dep :
             Iterables.transform(
-                getDeps(target, roots, nativeLinkables, cxxPlatform, actionGraphBuilder),
+                getDeps(target, roots, nativeLinkables, linkableGraph),
                 NativeLinkable::getBuildTarget)) {
           if (excluded.contains(dep)) {
             deps.add(dep);
@@ -285,6 +275,7 @@ public class Omnibus {
       CxxPlatform cxxPlatform,
       ImmutableList<? extends Arg> extraLdflags,
       OmnibusSpec spec,
+      LinkableGraph linkableGraph,
       SourcePath omnibus,
       NativeLinkTarget root,
       BuildTarget rootTargetBase,
@@ -311,27 +302,18 @@ public class Omnibus {
     argsBuilder.addAll(input.getArgs());
 
     // Grab a topologically sorted mapping of all the root's deps.
-    ImmutableList<NativeLinkable> deps =
-        NativeLinkables.getNativeLinkables(
-            cxxPlatform,
-            graphBuilder,
-            root.getNativeLinkTargetDeps(cxxPlatform, graphBuilder),
-            Linker.LinkableDepType.SHARED);
+    ImmutableList<NativeLinkable> deps = linkableGraph.getSharedLinkables(root);
 
     // Now process the dependencies in topological order, to assemble the link line.
     boolean alreadyAddedOmnibusToArgs = false;
     for (NativeLinkable nativeLinkable : deps) {
       BuildTarget linkableTarget = nativeLinkable.getBuildTarget();
-      Linker.LinkableDepType linkStyle =
-          NativeLinkables.getLinkStyle(
-              nativeLinkable.getPreferredLinkage(cxxPlatform, graphBuilder),
-              Linker.LinkableDepType.SHARED);
+      Linker.LinkableDepType linkStyle = linkableGraph.getSharedLinkStyle(nativeLinkable);
 
       // If this dep needs to be linked statically, then we always link it directly.
       if (linkStyle != Linker.LinkableDepType.SHARED) {
         Preconditions.checkState(linkStyle == Linker.LinkableDepType.STATIC_PIC);
-        argsBuilder.addAll(
-            nativeLinkable.getNativeLinkableInput(cxxPlatform, linkStyle, graphBuilder).getArgs());
+        argsBuilder.addAll(linkableGraph.getNativeLinkableInput(nativeLinkable).getArgs());
         continue;
       }
 
@@ -357,8 +339,7 @@ public class Omnibus {
       // Otherwise, this is either an explicitly statically linked or excluded node, so link it
       // normally.
       Preconditions.checkState(spec.getExcluded().containsKey(linkableTarget));
-      argsBuilder.addAll(
-          nativeLinkable.getNativeLinkableInput(cxxPlatform, linkStyle, graphBuilder).getArgs());
+      argsBuilder.addAll(linkableGraph.getNativeLinkableInput(nativeLinkable).getArgs());
     }
 
     // Create the root library rule using the arguments assembled above.
@@ -439,6 +420,7 @@ public class Omnibus {
       CxxPlatform cxxPlatform,
       ImmutableList<? extends Arg> extraLdflags,
       OmnibusSpec spec,
+      LinkableGraph linkableGraph,
       SourcePath omnibus,
       NativeLinkTarget root) {
     return createRoot(
@@ -451,6 +433,7 @@ public class Omnibus {
         cxxPlatform,
         extraLdflags,
         spec,
+        linkableGraph,
         omnibus,
         root,
         root.getBuildTarget(),
@@ -467,6 +450,7 @@ public class Omnibus {
       CxxPlatform cxxPlatform,
       ImmutableList<? extends Arg> extraLdflags,
       OmnibusSpec spec,
+      LinkableGraph linkableGraph,
       SourcePath omnibus,
       NativeLinkTarget root) {
     return createRoot(
@@ -479,6 +463,7 @@ public class Omnibus {
         cxxPlatform,
         extraLdflags,
         spec,
+        linkableGraph,
         omnibus,
         root,
         getDummyRootTarget(root.getBuildTarget()),
@@ -527,7 +512,8 @@ public class Omnibus {
       CxxBuckConfig cxxBuckConfig,
       CxxPlatform cxxPlatform,
       ImmutableList<? extends Arg> extraLdflags,
-      OmnibusSpec spec) {
+      OmnibusSpec spec,
+      LinkableGraph linkableGraph) {
 
     ImmutableList.Builder<Arg> argsBuilder = ImmutableList.builder();
 
@@ -588,13 +574,9 @@ public class Omnibus {
 
     // We process all excluded omnibus deps last, and just add their components as if this were a
     // normal shared link.
-    ImmutableList<NativeLinkable> deps =
-        NativeLinkables.getNativeLinkables(
-            cxxPlatform, graphBuilder, spec.getDeps().values(), Linker.LinkableDepType.SHARED);
+    ImmutableList<NativeLinkable> deps = linkableGraph.getSharedLinkables(spec.getDeps().values());
     for (NativeLinkable nativeLinkable : deps) {
-      NativeLinkableInput input =
-          NativeLinkables.getNativeLinkableInput(
-              cxxPlatform, Linker.LinkableDepType.SHARED, nativeLinkable, graphBuilder);
+      NativeLinkableInput input = linkableGraph.getNativeLinkableInput(nativeLinkable);
       argsBuilder.addAll(input.getArgs());
     }
 
@@ -647,8 +629,10 @@ public class Omnibus {
 
     OmnibusLibraries.Builder libs = OmnibusLibraries.builder();
 
-    OmnibusSpec spec =
-        buildSpec(cxxPlatform, nativeLinkTargetRoots, nativeLinkableRoots, graphBuilder);
+    // The roots mostly share their deps, so the parts of the graph that the links below look at
+    // for every root are only computed once.
+    LinkableGraph linkableGraph = new LinkableGraph(cxxPlatform, graphBuilder);
+    OmnibusSpec spec = buildSpec(nativeLinkTargetRoots, nativeLinkableRoots, linkableGraph);
 
     // Create an empty dummy omnibus library, to give the roots something to link against before
     // we have the actual omnibus library available.  Note that this requires that the linker
@@ -681,6 +665,7 @@ public class Omnibus {
             cxxPlatform,
             ImmutableList.of(),
             spec,
+            linkableGraph,
             dummyOmnibus,
             target);
       } else {
@@ -695,6 +680,7 @@ public class Omnibus {
                 cxxPlatform,
                 ImmutableList.of(),
                 spec,
+                linkableGraph,
                 dummyOmnibus,
                 target);
         libs.putRoots(target.getBuildTarget(), root);
@@ -715,7 +701,8 @@ public class Omnibus {
               cxxBuckConfig,
               cxxPlatform,
               extraOmnibusLdflags,
-              spec);
+              spec,
+              linkableGraph);
       libs.addLibraries(omnibus);
       realOmnibus = Optional.of(omnibus.getPath());
     }
@@ -735,6 +722,7 @@ public class Omnibus {
                 cxxPlatform,
                 ImmutableList.of(),
                 spec,
+                linkableGraph,
                 realOmnibus.orElse(dummyOmnibus),
                 target);
         libs.putRoots(target.getBuildTarget(), root);
@@ -757,6 +745,102 @@ public class Omnibus {
     return libs.build();
   }
 
+  /**
+   * The native linkable graph of an omnibus link for a platform, memoizing the deps, link styles
+   * and link inputs of each node, which the links of the roots and the omnibus library all look at.
+   */
+  private static class LinkableGraph {
+    private final CxxPlatform cxxPlatform;
+    private final ActionGraphBuilder graphBuilder;
+
+    private final Map<BuildTarget, ImmutableList<NativeLinkable>> deps = new HashMap<>();
+    private final Map<BuildTarget, ImmutableList<NativeLinkable>> linkTargetDeps = new HashMap<>();
+    private final Map<BuildTarget, ImmutableList<NativeLinkable>> sharedLinkDeps = new HashMap<>();
+    private final Map<BuildTarget, ImmutableList<NativeLinkable>> sharedLinkables =
+        new HashMap<>();
+    private final Map<BuildTarget, Linker.LinkableDepType> sharedLinkStyles = new HashMap<>();
+    private final Map<BuildTarget, NativeLinkableInput> nativeLinkableInputs = new HashMap<>();
+
+    LinkableGraph(CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder) {
+      this.cxxPlatform = cxxPlatform;
+      this.graphBuilder = graphBuilder;
+    }
+
+    ImmutableList<NativeLinkable> getDeps(NativeLinkable nativeLinkable) {
+      return deps.computeIfAbsent(
+          nativeLinkable.getBuildTarget(),
+          target ->
+              ImmutableList.copyOf(
+                  Iterables.concat(
+                      nativeLinkable.getNativeLinkableDepsForPlatform(cxxPlatform, graphBuilder),
+                      nativeLinkable.getNativeLinkableExportedDepsForPlatform(
+                          cxxPlatform, graphBuilder))));
+    }
+
+    ImmutableList<NativeLinkable> getDeps(NativeLinkTarget nativeLinkTarget) {
+      return linkTargetDeps.computeIfAbsent(
+          nativeLinkTarget.getBuildTarget(),
+          target ->
+              ImmutableList.copyOf(
+                  nativeLinkTarget.getNativeLinkTargetDeps(cxxPlatform, graphBuilder)));
+    }
+
+    Linker.LinkableDepType getSharedLinkStyle(NativeLinkable nativeLinkable) {
+      return sharedLinkStyles.computeIfAbsent(
+          nativeLinkable.getBuildTarget(),
+          target ->
+              NativeLinkables.getLinkStyle(
+                  nativeLinkable.getPreferredLinkage(cxxPlatform, graphBuilder),
+                  Linker.LinkableDepType.SHARED));
+    }
+
+    // The deps to consider along with the given node in a shared link. As in
+    // `NativeLinkables.getNativeLinkables()`, the deps of a node are only traversed if it is
+    // linked statically, while its exported deps always are.
+    private ImmutableList<NativeLinkable> getSharedLinkDeps(NativeLinkable nativeLinkable) {
+      return sharedLinkDeps.computeIfAbsent(
+          nativeLinkable.getBuildTarget(),
+          target -> {
+            ImmutableList.Builder<NativeLinkable> builder = ImmutableList.builder();
+            builder.addAll(
+                nativeLinkable.getNativeLinkableExportedDepsForPlatform(cxxPlatform, graphBuilder));
+            if (getSharedLinkStyle(nativeLinkable) != Linker.LinkableDepType.SHARED) {
+              builder.addAll(
+                  nativeLinkable.getNativeLinkableDepsForPlatform(cxxPlatform, graphBuilder));
+            }
+            return builder.build();
+          });
+    }
+
+    /** @return the topologically sorted nodes to consider in a shared link of the given nodes. */
+    ImmutableList<NativeLinkable> getSharedLinkables(Iterable<? extends NativeLinkable> roots) {
+      return NativeLinkables.getTopoSortedNativeLinkables(
+          roots, nativeLinkable -> getSharedLinkDeps(nativeLinkable).stream());
+    }
+
+    /** @return the topologically sorted nodes to consider in a shared link of the given root. */
+    ImmutableList<NativeLinkable> getSharedLinkables(NativeLinkTarget root) {
+      ImmutableList<NativeLinkable> linkables = sharedLinkables.get(root.getBuildTarget());
+      if (linkables == null) {
+        linkables = getSharedLinkables(getDeps(root));
+        sharedLinkables.put(root.getBuildTarget(), linkables);
+      }
+      return linkables;
+    }
+
+    /** @return the input of the given node to a shared link. */
+    NativeLinkableInput getNativeLinkableInput(NativeLinkable nativeLinkable) {
+      NativeLinkableInput input = nativeLinkableInputs.get(nativeLinkable.getBuildTarget());
+      if (input == null) {
+        input =
+            nativeLinkable.getNativeLinkableInput(
+                cxxPlatform, getSharedLinkStyle(nativeLinkable), graphBuilder);
+        nativeLinkableInputs.put(nativeLinkable.getBuildTarget(), input);
+      }
+      return input;
+    }
+  }
+
   @Value.Immutable
   abstract static class OmnibusSpec {
 
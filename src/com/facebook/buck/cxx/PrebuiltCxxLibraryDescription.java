@@ -647,6 +647,12 @@ public class PrebuiltCxxLibraryDescription
         return transitiveCxxPreprocessorInputCache.getUnchecked(cxxPlatform, graphBuilder);
       }
 
+      @Override
+      public TransitiveCxxPreprocessorInputs getTransitiveCxxPreprocessorInputs(
+          CxxPlatform cxxPlatform, ActionGraphBuilder graphBuilder) {
+        return transitiveCxxPreprocessorInputCache.getInputs(cxxPlatform, graphBuilder);
+      }
+
       @Override
       public Iterable<NativeLinkable> getNativeLinkableDeps(BuildRuleResolver ruleResolver) {
         return getDeclaredDeps()
@@ -23,18 +23,22 @@ import com.facebook.buck.util.RichStream;
 import com.facebook.buck.util.concurrent.Parallelizer;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.util.concurrent.UncheckedExecutionException;
-import java.util.HashMap;
+import java.util.AbstractMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 
-/** Transitive C++ preprocessor input cache */
+/**
+ * Transitive C++ preprocessor input cache. The transitive inputs of each platform are kept as a DAG
+ * shared with the caches of the deps, and only copied into maps for the callers that need them.
+ */
 public class TransitiveCxxPreprocessorInputCache {
-  private final Cache<CxxPlatform, ImmutableSortedMap<BuildTarget, CxxPreprocessorInput>> cache =
+  private final Cache<CxxPlatform, TransitiveCxxPreprocessorInputs> cache =
       CacheBuilder.newBuilder().build();
   private final CxxPreprocessorDep preprocessorDep;
   private final Parallelizer parallelizer;
@@ -52,11 +56,17 @@ public class TransitiveCxxPreprocessorInputCache {
   /** Get a value from the cache */
   public ImmutableMap<BuildTarget, CxxPreprocessorInput> getUnchecked(
       CxxPlatform key, ActionGraphBuilder graphBuilder) {
+    return getInputs(key, graphBuilder).toMap();
+  }
+
+  /** Get a value from the cache, without copying the inputs of the deps. */
+  public TransitiveCxxPreprocessorInputs getInputs(
+      CxxPlatform key, ActionGraphBuilder graphBuilder) {
     try {
       return cache.get(
           key,
           () ->
-              computeTransitiveCxxToPreprocessorInputMap(
+              computeTransitiveCxxPreprocessorInputs(
                   key, preprocessorDep, true, graphBuilder, parallelizer));
     } catch (ExecutionException e) {
       throw new UncheckedExecutionException(e.getCause());
@@ -69,23 +79,24 @@ public class TransitiveCxxPreprocessorInputCache {
           CxxPreprocessorDep preprocessorDep,
           boolean includeDep,
           ActionGraphBuilder graphBuilder) {
-    return computeTransitiveCxxToPreprocessorInputMap(
-        key, preprocessorDep, includeDep, graphBuilder, Parallelizer.SERIAL);
+    return computeTransitiveCxxPreprocessorInputs(
+            key, preprocessorDep, includeDep, graphBuilder, Parallelizer.SERIAL)
+        .toMap();
   }
 
-  private static ImmutableSortedMap<BuildTarget, CxxPreprocessorInput>
-      computeTransitiveCxxToPreprocessorInputMap(
-          @Nonnull CxxPlatform key,
-          CxxPreprocessorDep preprocessorDep,
-          boolean includeDep,
-          ActionGraphBuilder graphBuilder,
-          Parallelizer parallelizer) {
-    Map<BuildTarget, CxxPreprocessorInput> builder = new HashMap<>();
-    if (includeDep) {
-      builder.put(
-          preprocessorDep.getBuildTarget(),
-          preprocessorDep.getCxxPreprocessorInput(key, graphBuilder));
-    }
+  private static TransitiveCxxPreprocessorInputs computeTransitiveCxxPreprocessorInputs(
+      @Nonnull CxxPlatform key,
+      CxxPreprocessorDep preprocessorDep,
+      boolean includeDep,
+      ActionGraphBuilder graphBuilder,
+      Parallelizer parallelizer) {
+    Optional<Map.Entry<BuildTarget, CxxPreprocessorInput>> input =
+        includeDep
+            ? Optional.of(
+                new AbstractMap.SimpleImmutableEntry<>(
+                    preprocessorDep.getBuildTarget(),
+                    preprocessorDep.getCxxPreprocessorInput(key, graphBuilder)))
+            : Optional.empty();
 
     Stream<CxxPreprocessorDep> transitiveDepInputs =
         parallelizer.maybeParallelize(
@@ -97,20 +108,11 @@ public class TransitiveCxxPreprocessorInputCache {
     // The creation of new BuildRules will be through forked tasks, and because we wait on the
     // Futures of the tasks directly, FJP will have current thread steal the work for those tasks
     // and no deadlock will occur {@link BuildRuleResolverTest.deadLockOnDependencyTest() }.
-    transitiveDepInputs
-        .map(dep -> dep.getTransitiveCxxPreprocessorInput(key, graphBuilder))
-        .forEachOrdered(builder::putAll);
+    ImmutableList<TransitiveCxxPreprocessorInputs> children =
+        transitiveDepInputs
+            .map(dep -> dep.getTransitiveCxxPreprocessorInputs(key, graphBuilder))
+            .collect(ImmutableList.toImmutableList());
 
-    // Using an ImmutableSortedMap here:
-    //
-    // 1. Memory efficiency. ImmutableSortedMap is implemented with 2 lists (an ImmutableSortedSet
-    // of keys, and a ImmutableList of values). This is much more efficient than an ImmutableMap,
-    // which creates an Entry instance for each entry.
-    //
-    // 2. Historically we seem to care that the result has some definite order.
-    //
-    // 3. We mostly iterate over these maps rather than do lookups, so ImmutableSortedMap
-    // binary-search based lookup is not an issue.
-    return ImmutableSortedMap.copyOf(builder);
+    return TransitiveCxxPreprocessorInputs.of(input, children);
   }
 }
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.core.model.BuildTarget;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Sets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The transitive preprocessor inputs of a rule, as a DAG that references the transitive inputs of
+ * its deps instead of copying them.
+ *
+ * <p>Copying the inputs of all transitive deps into a map for every rule takes memory quadratic in
+ * the depth of the dependency graph, so maps are only built for the rules that ask for them.
+ */
+public class TransitiveCxxPreprocessorInputs {
+
+  private static final TransitiveCxxPreprocessorInputs EMPTY =
+      new TransitiveCxxPreprocessorInputs(Optional.empty(), ImmutableList.of(), ImmutableMap.of());
+
+  private final Optional<Map.Entry<BuildTarget, CxxPreprocessorInput>> input;
+  private final ImmutableList<TransitiveCxxPreprocessorInputs> children;
+  /** Inputs of rules that don't share their transitive inputs. */
+  private final ImmutableMap<BuildTarget, CxxPreprocessorInput> inputs;
+
+  private TransitiveCxxPreprocessorInputs(
+      Optional<Map.Entry<BuildTarget, CxxPreprocessorInput>> input,
+      ImmutableList<TransitiveCxxPreprocessorInputs> children,
+      ImmutableMap<BuildTarget, CxxPreprocessorInput> inputs) {
+    this.input = input;
+    this.children = children;
+    this.inputs = inputs;
+  }
+
+  /** Returns the inputs of a rule, followed by the transitive inputs of its deps. */
+  public static TransitiveCxxPreprocessorInputs of(
+      Optional<Map.Entry<BuildTarget, CxxPreprocessorInput>> input,
+      ImmutableList<TransitiveCxxPreprocessorInputs> children) {
+    if (!input.isPresent() && children.size() == 1) {
+      return children.get(0);
+    }
+    return new TransitiveCxxPreprocessorInputs(input, children, ImmutableMap.of());
+  }
+
+  /** Wraps transitive inputs that were computed as a map. */
+  public static TransitiveCxxPreprocessorInputs copyOf(
+      ImmutableMap<BuildTarget, CxxPreprocessorInput> inputs) {
+    if (inputs.isEmpty()) {
+      return EMPTY;
+    }
+    return new TransitiveCxxPreprocessorInputs(Optional.empty(), ImmutableList.of(), inputs);
+  }
+
+  /**
+   * Calls {@code consumer} with the input of each rule, in the order in which later inputs replace
+   * earlier ones for the same rule. Parts of the DAG reachable from several paths are only visited
+   * once.
+   */
+  public void forEach(BiConsumer<BuildTarget, CxxPreprocessorInput> consumer) {
+    forEach(consumer, Sets.newIdentityHashSet());
+  }
+
+  private void forEach(
+      BiConsumer<BuildTarget, CxxPreprocessorInput> consumer,
+      Set<TransitiveCxxPreprocessorInputs> visited) {
+    if (!visited.add(this)) {
+      return;
+    }
+    input.ifPresent(entry -> consumer.accept(entry.getKey(), entry.getValue()));
+    for (TransitiveCxxPreprocessorInputs child : children) {
+      child.forEach(consumer, visited);
+    }
+    inputs.forEach(consumer);
+  }
+
+  /** Returns the inputs of each rule, sorted by rule. */
+  public ImmutableSortedMap<BuildTarget, CxxPreprocessorInput> toMap() {
+    Map<BuildTarget, CxxPreprocessorInput> map = new HashMap<>();
+    forEach(map::put);
+    // Using an ImmutableSortedMap here:
+    //
+    // 1. Memory efficiency. ImmutableSortedMap is implemented with 2 lists (an ImmutableSortedSet
+    // of keys, and a ImmutableList of values). This is much more efficient than an ImmutableMap,
+    // which creates an Entry instance for each entry.
+    //
+    // 2. Historically we seem to care that the result has some definite order.
+    //
+    // 3. We mostly iterate over these maps rather than do lookups, so ImmutableSortedMap
+    // binary-search based lookup is not an issue.
+    return ImmutableSortedMap.copyOf(map);
+  }
+}
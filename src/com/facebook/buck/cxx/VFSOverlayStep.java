@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import com.facebook.buck.apple.clang.VFSOverlay;
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.StepExecutionResults;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSortedMap;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Writes a clang VFS overlay mapping virtual paths to the files they stand for. The overlay is
+ * case-sensitive, so headers are only found with the case they'd have in a symlink tree on a
+ * case-sensitive filesystem, and files keep their virtual paths, so that depfiles list them and
+ * includes relative to them resolve as they would through symbolic links.
+ */
+class VFSOverlayStep implements Step {
+
+  private static final Logger LOG = Logger.get(VFSOverlayStep.class);
+
+  private final ProjectFilesystem filesystem;
+  private final Path output;
+  private final ImmutableSortedMap<Path, Path> entries;
+
+  public VFSOverlayStep(
+      ProjectFilesystem filesystem, Path output, ImmutableSortedMap<Path, Path> entries) {
+    this.filesystem = filesystem;
+    this.output = output;
+    this.entries = entries;
+  }
+
+  @Override
+  public String getDescription(ExecutionContext context) {
+    return "vfs overlay @ " + output;
+  }
+
+  @Override
+  public String getShortName() {
+    return "vfs_overlay";
+  }
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+    LOG.debug("Writing vfs overlay with %d entries to %s", entries.size(), output);
+    filesystem.writeContentsToPath(new VFSOverlay(entries, true, false).render(), output);
+    return StepExecutionResults.SUCCESS;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof VFSOverlayStep)) {
+      return false;
+    }
+    VFSOverlayStep that = (VFSOverlayStep) obj;
+    return Objects.equal(this.output, that.output) && Objects.equal(this.entries, that.entries);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(output, entries);
+  }
+}
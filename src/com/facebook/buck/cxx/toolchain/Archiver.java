@@ -19,6 +19,7 @@ package com.facebook.buck.cxx.toolchain;
 import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.io.file.FileScrubber;
 import com.google.common.collect.ImmutableList;
+import java.util.Optional;
 
 /** Interface for a c/c++ archiver. */
 public interface Archiver extends Tool {
@@ -29,6 +30,12 @@ public interface Archiver extends Tool {
 
   ImmutableList<String> getArchiveOptions(boolean isThinArchive);
 
+  /**
+   * @return the options to replace members of an existing archive in place, leaving its other
+   *     members as they are, if the archiver can do so.
+   */
+  Optional<ImmutableList<String>> getReplaceOptions(boolean isThinArchive);
+
   ImmutableList<String> outputArgs(String outputPath);
 
   boolean isRanLibStepRequired();
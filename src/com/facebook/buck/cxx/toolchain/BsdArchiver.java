@@ -21,6 +21,7 @@ import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.cxx.toolchain.objectfile.ObjectFileScrubbers;
 import com.facebook.buck.io.file.FileScrubber;
 import com.google.common.collect.ImmutableList;
+import java.util.Optional;
 
 /** Archiver implementation for a BSD-based toolchain. */
 public class BsdArchiver extends DelegatingTool implements Archiver {
@@ -45,6 +46,12 @@ public class BsdArchiver extends DelegatingTool implements Archiver {
     return ImmutableList.of(options);
   }
 
+  @Override
+  public Optional<ImmutableList<String>> getReplaceOptions(boolean isThinArchive) {
+    String options = isThinArchive ? "rcT" : "rc";
+    return Optional.of(ImmutableList.of(options));
+  }
+
   @Override
   public ImmutableList<String> outputArgs(String outputPath) {
     return ImmutableList.of(outputPath);
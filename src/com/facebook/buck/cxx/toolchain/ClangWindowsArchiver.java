@@ -20,6 +20,7 @@ import com.facebook.buck.core.toolchain.tool.DelegatingTool;
 import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.io.file.FileScrubber;
 import com.google.common.collect.ImmutableList;
+import java.util.Optional;
 
 /**
  * Archiver implementation for the Clang for Windows toolchain.
@@ -52,6 +53,11 @@ public class ClangWindowsArchiver extends DelegatingTool implements Archiver {
     return ImmutableList.of();
   }
 
+  @Override
+  public Optional<ImmutableList<String>> getReplaceOptions(boolean isThinArchive) {
+    return Optional.empty();
+  }
+
   @Override
   public ImmutableList<String> outputArgs(String outputPath) {
     return ImmutableList.of("/OUT:" + outputPath);
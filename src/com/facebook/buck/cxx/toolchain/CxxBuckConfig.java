@@ -17,6 +17,7 @@
 package com.facebook.buck.cxx.toolchain;
 
 import com.facebook.buck.core.config.BuckConfig;
+import com.facebook.buck.core.exceptions.HumanReadableException;
 import com.facebook.buck.core.model.BuildTarget;
 import com.facebook.buck.core.model.Flavor;
 import com.facebook.buck.core.model.InternalFlavor;
@@ -70,6 +71,13 @@ public class CxxBuckConfig {
   private static final String LINK_WEIGHT = "link_weight";
   private static final String CACHE_LINKS = "cache_links";
   private static final String CACHE_BINARIES = "cache_binaries";
+  private static final String DISTRIBUTED_THIN_LTO = "distributed_thin_lto";
+  private static final String THIN_LTO_BACKEND_FLAGS = "thin_lto_backend_flags";
+  private static final String SHARE_IDENTICAL_PIC_COMPILES = "share_identical_pic_compiles";
+  private static final String INCREMENTAL_ARCHIVES = "incremental_archives";
+  private static final String COMPILE_WORKER = "compile_worker";
+  private static final String COMPILE_WORKER_MAX_WORKERS = "compile_worker_max_workers";
+  private static final String COMPILE_WORKER_PERSISTENT = "compile_worker_persistent";
   private static final String PCH_ENABLED = "pch_enabled";
   private static final String ARCHIVE_CONTENTS = "archive_contents";
   private static final String DEBUG_PATH_SANITIZER_LIMIT = "debug_path_sanitizer_limit";
@@ -436,10 +444,64 @@ public class CxxBuckConfig {
     return delegate.getBooleanValue(cxxSection, CACHE_BINARIES, false);
   }
 
+  /**
+   * @return whether ThinLTO links of binaries should index, optimize each module, and link in
+   *     separate rules, if the linker supports it.
+   */
+  public boolean isDistributedThinLtoEnabled() {
+    return delegate.getBooleanValue(cxxSection, DISTRIBUTED_THIN_LTO, false);
+  }
+
+  /** @return the flags to pass to the compiler when optimizing a module of a ThinLTO link. */
+  public ImmutableList<String> getThinLtoBackendFlags() {
+    return getFlags(THIN_LTO_BACKEND_FLAGS).orElse(ImmutableList.of("-O2"));
+  }
+
+  /**
+   * @return whether PIC compiles should reuse the non-PIC compiles of the same sources when the
+   *     platform flags already make the non-PIC compiles position-independent.
+   */
+  public boolean shouldShareIdenticalPicCompiles() {
+    return delegate.getBooleanValue(cxxSection, SHARE_IDENTICAL_PIC_COMPILES, false);
+  }
+
   public boolean isPCHEnabled() {
     return delegate.getBooleanValue(cxxSection, PCH_ENABLED, true);
   }
 
+  /**
+   * @return whether archives should be updated by replacing only the members whose inputs changed
+   *     since the previous build, if the archiver can do so.
+   */
+  public boolean shouldArchiveIncrementally() {
+    return delegate.getBooleanValue(cxxSection, INCREMENTAL_ARCHIVES, false);
+  }
+
+  /**
+   * @return the command starting a worker process which runs compilations as jobs of the worker
+   *     protocol, instead of starting a compiler process for each compilation.
+   */
+  public Optional<ImmutableList<String>> getCompileWorker() {
+    Optional<ImmutableList<String>> command = getFlags(COMPILE_WORKER);
+    if (command.isPresent() && delegate.getPlatform() == Platform.WINDOWS) {
+      throw new HumanReadableException(
+          "%s.%s is not supported on Windows.", cxxSection, COMPILE_WORKER);
+    }
+    return command;
+  }
+
+  /** @return the maximum number of compile worker processes to run at once. */
+  public int getCompileWorkerMaxWorkers() {
+    return delegate
+        .getInteger(cxxSection, COMPILE_WORKER_MAX_WORKERS)
+        .orElseGet(delegate::getNumThreads);
+  }
+
+  /** @return whether compile worker processes should be kept running between builds. */
+  public boolean isCompileWorkerPersistent() {
+    return delegate.getBooleanValue(cxxSection, COMPILE_WORKER_PERSISTENT, false);
+  }
+
   public ArchiveContents getArchiveContents() {
     return delegate
         .getEnum(cxxSection, ARCHIVE_CONTENTS, ArchiveContents.class)
@@ -37,6 +37,11 @@ public enum HeaderMode implements FlavorConvertible {
    * symbolic links to the headers.
    */
   SYMLINK_TREE_WITH_MODULEMAP,
+  /**
+   * Creates a header map that references the headers as if they were in a tree of symbolic links,
+   * and a clang VFS overlay that presents them at those paths, without creating the tree.
+   */
+  HEADER_MAP_WITH_VFS_OVERLAY,
   ;
 
   private final Flavor flavor;
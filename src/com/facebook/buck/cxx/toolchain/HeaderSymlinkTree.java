@@ -54,4 +54,12 @@ public class HeaderSymlinkTree extends SymlinkTree {
   public Optional<SourcePath> getHeaderMapSourcePath() {
     return Optional.empty();
   }
+
+  /**
+   * Get path of the clang VFS overlay that presents the files of the tree, when the tree is not
+   * actually created on disk. It needs to be passed to the preprocessor with {@code -ivfsoverlay}.
+   */
+  public Optional<SourcePath> getVFSOverlaySourcePath() {
+    return Optional.empty();
+  }
 }
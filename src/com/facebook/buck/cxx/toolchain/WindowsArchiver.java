@@ -20,6 +20,7 @@ import com.facebook.buck.core.toolchain.tool.DelegatingTool;
 import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.io.file.FileScrubber;
 import com.google.common.collect.ImmutableList;
+import java.util.Optional;
 
 /** Archiver implementation for the Windows toolchain. */
 public class WindowsArchiver extends DelegatingTool implements Archiver {
@@ -42,6 +43,11 @@ public class WindowsArchiver extends DelegatingTool implements Archiver {
     return ImmutableList.of();
   }
 
+  @Override
+  public Optional<ImmutableList<String>> getReplaceOptions(boolean isThinArchive) {
+    return Optional.empty();
+  }
+
   @Override
   public ImmutableList<String> outputArgs(String outputPath) {
     return ImmutableList.of("/OUT:" + outputPath);
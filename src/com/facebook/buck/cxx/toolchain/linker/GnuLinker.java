@@ -55,7 +55,7 @@ import java.util.Optional;
 import java.util.Set;
 
 /** A specialization of {@link Linker} containing information specific to the GNU implementation. */
-public class GnuLinker extends DelegatingTool implements Linker {
+public class GnuLinker extends DelegatingTool implements Linker, HasThinLTOIndex {
   public GnuLinker(Tool tool) {
     super(tool);
   }
@@ -71,6 +71,21 @@ public class GnuLinker extends DelegatingTool implements Linker {
         StringArg.of("-Wl,--whole-archive"), input, StringArg.of("-Wl,--no-whole-archive"));
   }
 
+  @Override
+  public Iterable<Arg> thinLTOIndex(Path indexDirectory) {
+    // Indexes are written to the path of their input, with the empty prefix of relative inputs
+    // replaced by the index directory.
+    return StringArg.from(
+        "-flto=thin",
+        "-Wl,-plugin-opt,thinlto-index-only",
+        "-Wl,-plugin-opt,thinlto-prefix-replace=;" + indexDirectory + "/");
+  }
+
+  @Override
+  public Path thinLTOIndexPath(Path indexDirectory, Path input) {
+    return indexDirectory.resolve(input + ".thinlto.bc");
+  }
+
   @Override
   public Iterable<String> soname(String arg) {
     return Linkers.iXlinker("-soname", arg);
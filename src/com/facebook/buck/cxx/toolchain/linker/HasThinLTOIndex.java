@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx.toolchain.linker;
+
+import com.facebook.buck.rules.args.Arg;
+import java.nio.file.Path;
+
+/**
+ * A linker which can write the ThinLTO index of each bitcode input of a link instead of linking, so
+ * that the backends of a ThinLTO link can run as separate compilations.
+ */
+public interface HasThinLTOIndex {
+
+  /**
+   * @return the platform-specific way to write the index of each bitcode input to {@code
+   *     indexDirectory} instead of linking.
+   * @param indexDirectory the absolute path of the directory to write the indexes to
+   */
+  Iterable<Arg> thinLTOIndex(Path indexDirectory);
+
+  /**
+   * @return the path of the index written for a bitcode input.
+   * @param indexDirectory the directory the indexes are written to
+   * @param input the path of the bitcode input, as it was passed to the linker
+   */
+  Path thinLTOIndexPath(Path indexDirectory, Path input);
+}
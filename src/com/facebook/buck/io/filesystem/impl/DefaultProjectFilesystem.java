@@ -30,6 +30,7 @@ import com.facebook.buck.io.windowsfs.WindowsFS;
 import com.facebook.buck.util.MoreSuppliers;
 import com.facebook.buck.util.environment.Platform;
 import com.facebook.buck.util.sha1.Sha1HashCode;
+import com.facebook.buck.util.zip.ZipFileIndex;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
@@ -88,6 +89,7 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.zip.ZipException;
 import javax.annotation.Nullable;
 
 /** An injectable service for interacting with the filesystem relative to the project root. */
@@ -955,10 +957,34 @@ public class DefaultProjectFilesystem implements ProjectFilesystem {
   }
 
   @Override
+  @Nullable
   public Manifest getJarManifest(Path path) throws IOException {
     Path absolutePath = getPathForRelativePath(path);
-    try (JarFile jarFile = new JarFile(absolutePath.toFile())) {
-      return jarFile.getManifest();
+    ZipFileIndex index;
+    try {
+      index = ZipFileIndex.get(absolutePath);
+    } catch (ZipException e) {
+      // Jars that can't be indexed, such as zip64 ones, are opened the slow way.
+      try (JarFile jarFile = new JarFile(absolutePath.toFile())) {
+        return jarFile.getManifest();
+      }
+    }
+
+    // Like JarFile, fall back to a manifest whose name differs in case.
+    Optional<ZipFileIndex.Entry> manifestEntry = index.getEntry(JarFile.MANIFEST_NAME);
+    if (!manifestEntry.isPresent()) {
+      manifestEntry =
+          index
+              .getEntries()
+              .stream()
+              .filter(entry -> JarFile.MANIFEST_NAME.equalsIgnoreCase(entry.getName()))
+              .findFirst();
+    }
+    if (!manifestEntry.isPresent()) {
+      return null;
+    }
+    try (InputStream manifestStream = index.getInputStream(manifestEntry.get())) {
+      return new Manifest(manifestStream);
     }
   }
 
@@ -73,6 +73,15 @@ abstract class AbstractCompilerOutputPaths {
         .resolve("used-classes.json");
   }
 
+  /**
+   * Directory holding the classes and bookkeeping that incremental compilation keeps between
+   * builds.
+   */
+  public static Path getIncrementalCompilationDir(
+      BuildTarget target, ProjectFilesystem filesystem) {
+    return BuildTargetPaths.getScratchPath(filesystem, target, "lib__%s__incremental");
+  }
+
   public static Path getClassesDir(BuildTarget target, ProjectFilesystem filesystem) {
     return CompilerOutputPaths.of(target, filesystem).getClassesDir();
   }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.facebook.buck.core.util.immutables.BuckStyleImmutable;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import org.immutables.value.Value;
+
+/**
+ * What {@link IncrementalJavacStep} remembers about the last compilation of a library. Classes are
+ * identified by their internal name, sources by their path relative to the project root.
+ */
+@Value.Immutable
+@BuckStyleImmutable
+@JsonDeserialize(as = IncrementalCompilationState.class)
+abstract class AbstractIncrementalCompilationState {
+
+  /** Hash of the compiler options and classpath the classes were compiled with. */
+  public abstract String getFingerprint();
+
+  public abstract ImmutableSortedMap<String, String> getSourceHashes();
+
+  public abstract ImmutableSortedMap<String, String> getSourceByClass();
+
+  public abstract ImmutableSortedMap<String, String> getAbiHashByClass();
+
+  public abstract ImmutableSortedMap<String, String> getConstantsHashByClass();
+
+  /** Other classes of the same library that each class refers to. */
+  public abstract ImmutableSortedMap<String, ImmutableSortedSet<String>> getReferencesByClass();
+
+  /** Superclass and interfaces of each class, among the classes of the same library. */
+  public abstract ImmutableSortedMap<String, ImmutableSortedSet<String>> getSupertypesByClass();
+
+  /**
+   * Union of the class usage of every compilation since the last full one, in the format written
+   * by {@link DefaultClassUsageFileWriter}.
+   */
+  public abstract ImmutableSortedMap<String, ImmutableSortedSet<String>> getClassUsage();
+}
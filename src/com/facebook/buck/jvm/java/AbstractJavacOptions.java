@@ -138,6 +138,17 @@ abstract class AbstractJavacOptions implements AddsToRuleKey {
     return false;
   }
 
+  /**
+   * Whether java libraries keep their classes between builds and only recompile the sources that
+   * changed, plus the ones affected by ABI changes of those. Until incremental outputs are known
+   * to be identical to the ones of full compilations, they are cached under their own rule keys.
+   */
+  @Value.Default
+  @AddToRuleKey
+  protected boolean isIncrementalCompilationEnabled() {
+    return false;
+  }
+
   public void validateOptions(Function<String, Boolean> classpathChecker) throws IOException {
     if (getBootclasspath().isPresent()) {
       String bootclasspath = getBootclasspath().get();
@@ -31,6 +31,12 @@ abstract class AbstractJavacSpec {
 
   protected abstract Optional<String> getCompilerClassName();
 
+  /** Whether compilations with the JDK javac share their file managers and the jars they open. */
+  @Value.Default
+  protected boolean getShareFileManagers() {
+    return false;
+  }
+
   @Value.Lazy
   public JavacProvider getJavacProvider() {
     return ExternalJavacProvider.getProviderForSpec((JavacSpec) this);
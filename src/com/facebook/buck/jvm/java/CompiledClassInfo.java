@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * What incremental compilation needs to know about a class file: which source file it came from,
+ * which classes it refers to and hashes of its ABI.
+ */
+final class CompiledClassInfo {
+  /** The constants hash of classes without any constants. */
+  public static final String NO_CONSTANTS_HASH = Hashing.sha1().newHasher().hash().toString();
+
+  private final String className;
+  private final Optional<String> sourceFileName;
+  private final ImmutableSortedSet<String> referencedClassNames;
+  private final ImmutableSortedSet<String> supertypeNames;
+  private final String abiHash;
+  private final String constantsHash;
+
+  private CompiledClassInfo(
+      String className,
+      Optional<String> sourceFileName,
+      ImmutableSortedSet<String> referencedClassNames,
+      ImmutableSortedSet<String> supertypeNames,
+      String abiHash,
+      String constantsHash) {
+    this.className = className;
+    this.sourceFileName = sourceFileName;
+    this.referencedClassNames = referencedClassNames;
+    this.supertypeNames = supertypeNames;
+    this.abiHash = abiHash;
+    this.constantsHash = constantsHash;
+  }
+
+  public static CompiledClassInfo read(byte[] classFile) {
+    Set<String> referencedClassNames = new HashSet<>();
+    ClassNode node = new ClassNode(Opcodes.ASM6);
+    // Every type the class mentions, in signatures as well as in code, goes through the remapper.
+    new ClassReader(classFile)
+        .accept(
+            new ClassRemapper(
+                node,
+                new Remapper() {
+                  @Override
+                  public String map(String internalName) {
+                    referencedClassNames.add(internalName);
+                    return internalName;
+                  }
+                }),
+            0);
+    referencedClassNames.remove(node.name);
+
+    Hasher abiHasher = Hashing.sha1().newHasher();
+    Hasher constantsHasher = Hashing.sha1().newHasher();
+    putStrings(
+        abiHasher,
+        Integer.toString(node.access),
+        node.name,
+        node.signature,
+        node.superName,
+        String.join(",", ImmutableSortedSet.copyOf(node.interfaces)));
+    putAnnotations(abiHasher, node.visibleAnnotations);
+    putAnnotations(abiHasher, node.invisibleAnnotations);
+    node.innerClasses.sort(Comparator.comparing((InnerClassNode innerClass) -> innerClass.name));
+    for (InnerClassNode innerClass : node.innerClasses) {
+      putStrings(abiHasher, innerClass.name, Integer.toString(innerClass.access));
+    }
+    node.fields.sort(Comparator.comparing((FieldNode field) -> field.name));
+    for (FieldNode field : node.fields) {
+      if ((field.access & Opcodes.ACC_PRIVATE) != 0) {
+        continue;
+      }
+      String value = field.value == null ? null : field.value.toString();
+      putStrings(
+          abiHasher,
+          Integer.toString(field.access),
+          field.name,
+          field.desc,
+          field.signature,
+          value);
+      putAnnotations(abiHasher, field.visibleAnnotations);
+      putAnnotations(abiHasher, field.invisibleAnnotations);
+      if (value != null) {
+        // Constants are inlined by javac, so users of a constant do not refer to its class.
+        putStrings(constantsHasher, field.name, value);
+      }
+    }
+    node.methods.sort(Comparator.comparing((MethodNode method) -> method.name + method.desc));
+    for (MethodNode method : node.methods) {
+      if ((method.access & Opcodes.ACC_PRIVATE) != 0) {
+        continue;
+      }
+      putStrings(
+          abiHasher,
+          Integer.toString(method.access),
+          method.name,
+          method.desc,
+          method.signature,
+          String.join(",", method.exceptions));
+      putAnnotations(abiHasher, method.visibleAnnotations);
+      putAnnotations(abiHasher, method.invisibleAnnotations);
+      putParameterAnnotations(abiHasher, method.visibleParameterAnnotations);
+      putParameterAnnotations(abiHasher, method.invisibleParameterAnnotations);
+      // The default values of the elements of annotation types.
+      putAnnotationValue(abiHasher, method.annotationDefault);
+    }
+
+    ImmutableSortedSet.Builder<String> supertypeNames = ImmutableSortedSet.naturalOrder();
+    if (node.superName != null) {
+      supertypeNames.add(node.superName);
+    }
+    supertypeNames.addAll(node.interfaces);
+
+    return new CompiledClassInfo(
+        node.name,
+        Optional.ofNullable(node.sourceFile),
+        ImmutableSortedSet.copyOf(referencedClassNames),
+        supertypeNames.build(),
+        abiHasher.hash().toString(),
+        constantsHasher.hash().toString());
+  }
+
+  private static void putStrings(Hasher hasher, @Nullable String... values) {
+    for (String value : values) {
+      if (value != null) {
+        hasher.putUnencodedChars(value);
+      }
+      hasher.putByte((byte) 0);
+    }
+  }
+
+  private static void putAnnotations(Hasher hasher, @Nullable List<AnnotationNode> annotations) {
+    if (annotations == null) {
+      putStrings(hasher, "0");
+      return;
+    }
+    putStrings(hasher, Integer.toString(annotations.size()));
+    for (AnnotationNode annotation : annotations) {
+      putAnnotation(hasher, annotation);
+    }
+  }
+
+  private static void putParameterAnnotations(
+      Hasher hasher, @Nullable List<AnnotationNode>[] parameterAnnotations) {
+    if (parameterAnnotations == null) {
+      return;
+    }
+    for (List<AnnotationNode> annotations : parameterAnnotations) {
+      putAnnotations(hasher, annotations);
+    }
+  }
+
+  private static void putAnnotation(Hasher hasher, AnnotationNode annotation) {
+    if (annotation.values == null) {
+      putStrings(hasher, annotation.desc, "0");
+      return;
+    }
+    putStrings(hasher, annotation.desc, Integer.toString(annotation.values.size()));
+    // Alternating element names and values, in the order they appear in the class file.
+    for (Object value : annotation.values) {
+      putAnnotationValue(hasher, value);
+    }
+  }
+
+  /**
+   * Hashes an annotation element value, as {@link AnnotationNode} represents them: a boxed
+   * primitive, a String, a Type, a {descriptor, name} array for enum constants, a nested annotation
+   * or a List of any of these for arrays.
+   */
+  private static void putAnnotationValue(Hasher hasher, @Nullable Object value) {
+    if (value == null) {
+      putStrings(hasher, (String) null);
+    } else if (value instanceof AnnotationNode) {
+      putStrings(hasher, "@");
+      putAnnotation(hasher, (AnnotationNode) value);
+    } else if (value instanceof List) {
+      List<?> values = (List<?>) value;
+      putStrings(hasher, "[", Integer.toString(values.size()));
+      for (Object element : values) {
+        putAnnotationValue(hasher, element);
+      }
+    } else if (value instanceof String[]) {
+      putStrings(hasher, "enum");
+      putStrings(hasher, (String[]) value);
+    } else {
+      // The class tells apart values such as 1 and "1".
+      putStrings(hasher, value.getClass().getName(), value.toString());
+    }
+  }
+
+  /** The internal name of the class, e.g. {@code com/example/Foo$Bar}. */
+  public String getClassName() {
+    return className;
+  }
+
+  /** The name of the source file recorded by the compiler, without its directory. */
+  public Optional<String> getSourceFileName() {
+    return sourceFileName;
+  }
+
+  /** Internal names of all the other classes this class refers to. */
+  public ImmutableSortedSet<String> getReferencedClassNames() {
+    return referencedClassNames;
+  }
+
+  /** Internal names of the superclass and the interfaces the class directly implements. */
+  public ImmutableSortedSet<String> getSupertypeNames() {
+    return supertypeNames;
+  }
+
+  /**
+   * Changes whenever a change to the members the class declares could affect the compilation of its
+   * users. Users can also reach members the class inherits, which this does not cover.
+   */
+  public String getAbiHash() {
+    return abiHash;
+  }
+
+  /**
+   * Changes whenever the value of one of the constants of the class changes. Such changes can
+   * affect classes that do not refer to this class at all.
+   */
+  public String getConstantsHash() {
+    return constantsHash;
+  }
+}
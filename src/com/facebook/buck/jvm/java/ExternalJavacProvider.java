@@ -74,7 +74,7 @@ public class ExternalJavacProvider implements JavacProvider {
         Preconditions.checkState(spec.getJavacJarPath().isPresent());
         return new JarBackedJavacProvider(spec.getJavacJarPath().get(), compilerClassName);
       case JDK:
-        return new ConstantJavacProvider(new JdkProvidedInMemoryJavac());
+        return new ConstantJavacProvider(new JdkProvidedInMemoryJavac(spec.getShareFileManagers()));
     }
     throw new AssertionError("Unknown javac source: " + javacSource);
   }
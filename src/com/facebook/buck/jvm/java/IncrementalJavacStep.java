@@ -0,0 +1,609 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.io.file.MorePaths;
+import com.facebook.buck.io.filesystem.CopySourceMode;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.jvm.core.JavaAbis;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.StepExecutionResult;
+import com.facebook.buck.step.StepExecutionResults;
+import com.facebook.buck.util.json.ObjectMappers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compiles a java library, reusing the classes of its previous build where it can.
+ *
+ * <p>Classes are compiled into a directory that is kept across builds, together with a record of
+ * the hash of every source file, the classes each one produced, which classes of the library those
+ * refer to and hashes of their ABIs. On the next build only the sources that changed are
+ * recompiled. If that changes the ABI of some classes, the sources referring to them or to their
+ * subtypes are recompiled as well, until no more ABIs change. A change to a constant, to the
+ * compiler options or to the classpath falls back to compiling everything, as does anything the
+ * record cannot account for. The classes are then copied to the regular classes directory, so the
+ * steps that follow do not need to know about any of this.
+ */
+class IncrementalJavacStep implements Step {
+  private static final Logger LOG = Logger.get(IncrementalJavacStep.class);
+
+  private static final String STATE_FILE = "state.json";
+  /** Changes whenever the meaning of the state file changes, so that older records are ignored. */
+  private static final String STATE_VERSION = "2";
+  private static final String CLASS_FILE_EXTENSION = ".class";
+
+  /** Rounds of ABI propagation after which compiling everything is likely to be cheaper. */
+  private static final int MAX_INCREMENTAL_ROUNDS = 5;
+
+  private final Javac javac;
+  private final JavacOptions javacOptions;
+  private final BuildTarget invokingRule;
+  private final SourcePathResolver resolver;
+  private final ProjectFilesystem filesystem;
+  private final CompilerParameters compilerParameters;
+  private final Path classesDir;
+  private final Path stateFile;
+
+  public IncrementalJavacStep(
+      Javac javac,
+      JavacOptions javacOptions,
+      BuildTarget invokingRule,
+      SourcePathResolver resolver,
+      ProjectFilesystem filesystem,
+      CompilerParameters compilerParameters) {
+    this.javac = javac;
+    this.javacOptions = javacOptions;
+    this.invokingRule = invokingRule;
+    this.resolver = resolver;
+    this.filesystem = filesystem;
+    this.compilerParameters = compilerParameters;
+    Path incrementalDir =
+        CompilerOutputPaths.getIncrementalCompilationDir(invokingRule, filesystem);
+    this.classesDir = incrementalDir.resolve("classes");
+    this.stateFile = incrementalDir.resolve(STATE_FILE);
+  }
+
+  /**
+   * Incremental compilation relies on being able to tell which sources produced which classes, so
+   * it is only used for plain libraries that do not run annotation processors.
+   */
+  public static boolean isSupported(JavacOptions javacOptions, BuildTarget invokingRule) {
+    return javacOptions.isIncrementalCompilationEnabled()
+        && javacOptions.getAnnotationProcessingParams().isEmpty()
+        && JavaAbis.isLibraryTarget(invokingRule);
+  }
+
+  @Override
+  public StepExecutionResult execute(ExecutionContext context)
+      throws IOException, InterruptedException {
+    Optional<String> fingerprint = computeFingerprint();
+    ImmutableSortedMap<String, String> sourceHashes = hashSources();
+    Optional<IncrementalCompilationState> previousState = readState();
+    // Whatever happens next, the record is stale until a compilation succeeds.
+    filesystem.deleteFileAtPathIfExists(stateFile);
+
+    Records records;
+    StepExecutionResult result;
+    if (fingerprint.isPresent()
+        && previousState.isPresent()
+        && previousState.get().getFingerprint().equals(fingerprint.get())
+        && filesystem.isDirectory(classesDir)) {
+      records = new Records(previousState.get());
+      result = compileIncrementally(context, records, previousState.get(), sourceHashes);
+    } else {
+      LOG.debug("%s: no usable record of a previous compilation", invokingRule);
+      records = new Records();
+      result = compileFully(context, records);
+    }
+    if (!result.isSuccess()) {
+      return result;
+    }
+
+    if (fingerprint.isPresent() && records.isComplete()) {
+      ObjectMappers.WRITER.writeValue(
+          filesystem.resolve(stateFile).toFile(),
+          records.toState(fingerprint.get(), sourceHashes));
+    }
+    if (compilerParameters.shouldTrackClassUsage()) {
+      ObjectMappers.WRITER.writeValue(
+          filesystem.resolve(CompilerOutputPaths.getDepFilePath(invokingRule, filesystem)).toFile(),
+          records.classUsage);
+    }
+    filesystem.copy(
+        classesDir,
+        compilerParameters.getOutputPaths().getClassesDir(),
+        CopySourceMode.DIRECTORY_CONTENTS_ONLY);
+    return StepExecutionResults.SUCCESS;
+  }
+
+  private StepExecutionResult compileFully(ExecutionContext context, Records records)
+      throws IOException, InterruptedException {
+    filesystem.deleteRecursivelyIfExists(classesDir);
+    filesystem.mkdirs(classesDir);
+    ImmutableSortedSet<Path> sources = compilerParameters.getSourceFilePaths();
+    StepExecutionResult result = compile(context, sources, records);
+    if (result.isSuccess()) {
+      Optional<Map<String, CompiledClassInfo>> compiledClasses =
+          readNewClasses(records, toKeys(sources));
+      if (compiledClasses.isPresent()) {
+        records.addClasses(compiledClasses.get());
+      } else {
+        records.markIncomplete();
+      }
+    }
+    return result;
+  }
+
+  private StepExecutionResult compileIncrementally(
+      ExecutionContext context,
+      Records records,
+      IncrementalCompilationState previousState,
+      ImmutableSortedMap<String, String> sourceHashes)
+      throws IOException, InterruptedException {
+    Set<String> changedSources = new TreeSet<>();
+    for (Map.Entry<String, String> source : sourceHashes.entrySet()) {
+      if (!source.getValue().equals(previousState.getSourceHashes().get(source.getKey()))) {
+        changedSources.add(source.getKey());
+      }
+    }
+    Set<String> removedSources = new TreeSet<>(previousState.getSourceHashes().keySet());
+    removedSources.removeAll(sourceHashes.keySet());
+    LOG.debug(
+        "%s: %d changed and %d removed sources",
+        invokingRule, changedSources.size(), removedSources.size());
+
+    Set<String> changedClasses = records.getClassesOf(removedSources);
+    for (String removedClass : changedClasses) {
+      if (records.hasConstants(removedClass)) {
+        return compileFullyAfterConstantChange(context, records, removedClass);
+      }
+    }
+    records.removeSources(removedSources);
+
+    Set<String> batch = new TreeSet<>(changedSources);
+    batch.addAll(records.getSourcesReferringTo(records.withSubtypes(changedClasses)));
+    for (int round = 0; !batch.isEmpty(); round++) {
+      if (round == MAX_INCREMENTAL_ROUNDS) {
+        LOG.debug("%s: ABI changes keep propagating, compiling everything", invokingRule);
+        return compileFully(context, records.clear());
+      }
+      Map<String, String> previousAbiHashes = new HashMap<>();
+      Map<String, String> previousConstantsHashes = new HashMap<>();
+      for (String className : records.getClassesOf(batch)) {
+        previousAbiHashes.put(className, records.abiHashByClass.get(className));
+        previousConstantsHashes.put(className, records.constantsHashByClass.get(className));
+      }
+      records.removeSources(batch);
+
+      StepExecutionResult result = compile(context, toPaths(batch), records);
+      if (!result.isSuccess()) {
+        return result;
+      }
+      Optional<Map<String, CompiledClassInfo>> compiledClasses = readNewClasses(records, batch);
+      if (!compiledClasses.isPresent()) {
+        return compileFully(context, records.clear());
+      }
+
+      changedClasses.clear();
+      for (Map.Entry<String, String> previous : previousAbiHashes.entrySet()) {
+        String className = previous.getKey();
+        CompiledClassInfo compiled = compiledClasses.get().get(className);
+        String previousConstantsHash = previousConstantsHashes.get(className);
+        if (compiled == null
+            ? !CompiledClassInfo.NO_CONSTANTS_HASH.equals(previousConstantsHash)
+            : !compiled.getConstantsHash().equals(previousConstantsHash)) {
+          return compileFullyAfterConstantChange(context, records, className);
+        } else if (compiled == null) {
+          changedClasses.add(className);
+        } else if (!compiled.getAbiHash().equals(previous.getValue())) {
+          changedClasses.add(className);
+        }
+      }
+      records.addClasses(compiledClasses.get());
+      batch = records.getSourcesReferringTo(records.withSubtypes(changedClasses));
+    }
+    return StepExecutionResults.SUCCESS;
+  }
+
+  private StepExecutionResult compileFullyAfterConstantChange(
+      ExecutionContext context, Records records, String className)
+      throws IOException, InterruptedException {
+    LOG.debug("%s: constants of %s changed, compiling everything", invokingRule, className);
+    return compileFully(context, records.clear());
+  }
+
+  /** Compiles {@code sources} into {@link #classesDir}, against the classes already in there. */
+  private StepExecutionResult compile(
+      ExecutionContext context, ImmutableSortedSet<Path> sources, Records records)
+      throws IOException, InterruptedException {
+    CompilerParameters parameters =
+        CompilerParameters.builder()
+            .from(compilerParameters)
+            .setSourceFilePaths(sources)
+            .setClasspathEntries(
+                ImmutableSortedSet.<Path>naturalOrder()
+                    .addAll(compilerParameters.getClasspathEntries())
+                    .add(filesystem.resolve(classesDir))
+                    .build())
+            .setOutputPaths(
+                CompilerOutputPaths.builder()
+                    .from(compilerParameters.getOutputPaths())
+                    .setClassesDir(classesDir)
+                    .build())
+            .build();
+    StepExecutionResult result =
+        new JavacStep(
+                javac,
+                javacOptions,
+                invokingRule,
+                resolver,
+                filesystem,
+                new ClasspathChecker(),
+                parameters,
+                null,
+                null)
+            .execute(context);
+    if (result.isSuccess() && compilerParameters.shouldTrackClassUsage()) {
+      records.addClassUsage(
+          ObjectMappers.readValue(
+              filesystem.resolve(CompilerOutputPaths.getDepFilePath(invokingRule, filesystem)),
+              new TypeReference<Map<String, List<String>>>() {}));
+    }
+    return result;
+  }
+
+  /**
+   * Reads the class files in {@link #classesDir} that are not in {@code records} yet, which must
+   * all have been produced by {@code sources}.
+   *
+   * @return the classes read, or nothing if one of them cannot be traced back to its source.
+   */
+  private Optional<Map<String, CompiledClassInfo>> readNewClasses(
+      Records records, Set<String> sources) throws IOException {
+    Map<String, CompiledClassInfo> classes = new HashMap<>();
+    Path absoluteClassesDir = filesystem.resolve(classesDir);
+    Files.walkFileTree(
+        absoluteClassesDir,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            String relativePath =
+                MorePaths.pathWithUnixSeparators(absoluteClassesDir.relativize(file));
+            if (relativePath.endsWith(CLASS_FILE_EXTENSION)
+                && !records.sourceByClass.containsKey(
+                    relativePath.substring(
+                        0, relativePath.length() - CLASS_FILE_EXTENSION.length()))) {
+              CompiledClassInfo info = CompiledClassInfo.read(Files.readAllBytes(file));
+              classes.put(info.getClassName(), info);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+
+    Map<String, String> sourceByClass = new HashMap<>();
+    for (CompiledClassInfo info : classes.values()) {
+      Optional<String> source = findSource(info, sources);
+      if (!source.isPresent()) {
+        LOG.debug("%s: cannot tell which source %s came from", invokingRule, info.getClassName());
+        return Optional.empty();
+      }
+      sourceByClass.put(info.getClassName(), source.get());
+    }
+    records.sourceByClass.putAll(sourceByClass);
+    return Optional.of(classes);
+  }
+
+  /**
+   * Finds the source a class was compiled from, using the package of the class and the source
+   * file name the compiler recorded in it.
+   */
+  @VisibleForTesting
+  static Optional<String> findSource(CompiledClassInfo info, Set<String> sources) {
+    if (!info.getSourceFileName().isPresent()) {
+      return Optional.empty();
+    }
+    String fileName = info.getSourceFileName().get();
+    int packageEnd = info.getClassName().lastIndexOf('/');
+    String expectedPath =
+        packageEnd < 0 ? fileName : info.getClassName().substring(0, packageEnd + 1) + fileName;
+    List<String> candidates = new ArrayList<>();
+    for (String source : sources) {
+      if (source.equals(expectedPath) || source.endsWith("/" + expectedPath)) {
+        candidates.add(source);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // Sources do not have to live in a directory matching their package.
+      for (String source : sources) {
+        if (source.equals(fileName) || source.endsWith("/" + fileName)) {
+          candidates.add(source);
+        }
+      }
+    }
+    return candidates.size() == 1 ? Optional.of(candidates.get(0)) : Optional.empty();
+  }
+
+  /**
+   * Users of a class can refer to the members it inherits without referring to the classes that
+   * declare them, so an ABI change of a class also affects the users of its subtypes.
+   *
+   * @return {@code classes} along with all their subtypes in {@code supertypesByClass}.
+   */
+  @VisibleForTesting
+  static Set<String> withSubtypes(
+      Set<String> classes, Map<String, ? extends Set<String>> supertypesByClass) {
+    Set<String> result = new HashSet<>(classes);
+    boolean added = !classes.isEmpty();
+    while (added) {
+      added = false;
+      for (Map.Entry<String, ? extends Set<String>> entry : supertypesByClass.entrySet()) {
+        if (!result.contains(entry.getKey()) && !Collections.disjoint(entry.getValue(), result)) {
+          result.add(entry.getKey());
+          added = true;
+        }
+      }
+    }
+    return result;
+  }
+
+  private Optional<String> computeFingerprint() throws IOException {
+    Hasher hasher = Hashing.sha1().newHasher();
+    hasher.putUnencodedChars(STATE_VERSION).putByte((byte) 0);
+    hasher.putUnencodedChars(javac.getClass().getName()).putByte((byte) 0);
+    hasher.putUnencodedChars(javacOptions.toString()).putByte((byte) 0);
+    for (Path entry : compilerParameters.getClasspathEntries()) {
+      if (!filesystem.isFile(entry)) {
+        // Directories would need to be hashed entry by entry, just don't bother.
+        return Optional.empty();
+      }
+      hasher.putUnencodedChars(entry.toString()).putByte((byte) 0);
+      hasher.putUnencodedChars(filesystem.computeSha1(entry).getHash()).putByte((byte) 0);
+    }
+    return Optional.of(hasher.hash().toString());
+  }
+
+  private ImmutableSortedMap<String, String> hashSources() throws IOException {
+    ImmutableSortedMap.Builder<String, String> hashes = ImmutableSortedMap.naturalOrder();
+    for (Path source : compilerParameters.getSourceFilePaths()) {
+      hashes.put(
+          MorePaths.pathWithUnixSeparators(source), filesystem.computeSha1(source).getHash());
+    }
+    return hashes.build();
+  }
+
+  private Optional<IncrementalCompilationState> readState() {
+    if (!filesystem.isFile(stateFile)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          ObjectMappers.readValue(
+              filesystem.resolve(stateFile), IncrementalCompilationState.class));
+    } catch (IOException e) {
+      LOG.warn(e, "%s: unable to read %s", invokingRule, stateFile);
+      return Optional.empty();
+    }
+  }
+
+  private static Set<String> toKeys(SortedSet<Path> sources) {
+    Set<String> keys = new HashSet<>();
+    for (Path source : sources) {
+      keys.add(MorePaths.pathWithUnixSeparators(source));
+    }
+    return keys;
+  }
+
+  private static ImmutableSortedSet<Path> toPaths(Set<String> sources) {
+    ImmutableSortedSet.Builder<Path> paths = ImmutableSortedSet.naturalOrder();
+    for (String source : sources) {
+      paths.add(Paths.get(source));
+    }
+    return paths.build();
+  }
+
+  /** The mutable counterpart of {@link IncrementalCompilationState}. */
+  private class Records {
+    private final Map<String, String> sourceByClass = new HashMap<>();
+    private final Map<String, String> abiHashByClass = new HashMap<>();
+    private final Map<String, String> constantsHashByClass = new HashMap<>();
+    private final Map<String, Set<String>> referencesByClass = new HashMap<>();
+    private final Map<String, Set<String>> supertypesByClass = new HashMap<>();
+    private final Map<String, SortedSet<String>> classUsage = new TreeMap<>();
+    private boolean complete = true;
+
+    Records() {}
+
+    Records(IncrementalCompilationState state) {
+      sourceByClass.putAll(state.getSourceByClass());
+      abiHashByClass.putAll(state.getAbiHashByClass());
+      constantsHashByClass.putAll(state.getConstantsHashByClass());
+      referencesByClass.putAll(state.getReferencesByClass());
+      supertypesByClass.putAll(state.getSupertypesByClass());
+      for (Map.Entry<String, ImmutableSortedSet<String>> usage :
+          state.getClassUsage().entrySet()) {
+        classUsage.put(usage.getKey(), new TreeSet<>(usage.getValue()));
+      }
+    }
+
+    Records clear() {
+      sourceByClass.clear();
+      abiHashByClass.clear();
+      constantsHashByClass.clear();
+      referencesByClass.clear();
+      supertypesByClass.clear();
+      classUsage.clear();
+      return this;
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    void markIncomplete() {
+      complete = false;
+    }
+
+    boolean hasConstants(String className) {
+      return !CompiledClassInfo.NO_CONSTANTS_HASH.equals(constantsHashByClass.get(className));
+    }
+
+    Set<String> getClassesOf(Set<String> sources) {
+      Set<String> classes = new HashSet<>();
+      for (Map.Entry<String, String> entry : sourceByClass.entrySet()) {
+        if (sources.contains(entry.getValue())) {
+          classes.add(entry.getKey());
+        }
+      }
+      return classes;
+    }
+
+    Set<String> withSubtypes(Set<String> classes) {
+      return IncrementalJavacStep.withSubtypes(classes, supertypesByClass);
+    }
+
+    Set<String> getSourcesReferringTo(Set<String> classes) {
+      Set<String> sources = new TreeSet<>();
+      if (classes.isEmpty()) {
+        return sources;
+      }
+      for (Map.Entry<String, Set<String>> entry : referencesByClass.entrySet()) {
+        for (String referencedClass : entry.getValue()) {
+          if (classes.contains(referencedClass)) {
+            sources.add(sourceByClass.get(entry.getKey()));
+            break;
+          }
+        }
+      }
+      return sources;
+    }
+
+    /** Forgets the classes of {@code sources} and deletes their class files. */
+    void removeSources(Set<String> sources) throws IOException {
+      for (String className : getClassesOf(sources)) {
+        filesystem.deleteFileAtPathIfExists(classesDir.resolve(className + CLASS_FILE_EXTENSION));
+        sourceByClass.remove(className);
+        abiHashByClass.remove(className);
+        constantsHashByClass.remove(className);
+        referencesByClass.remove(className);
+        supertypesByClass.remove(className);
+      }
+    }
+
+    void addClasses(Map<String, CompiledClassInfo> classes) {
+      for (CompiledClassInfo info : classes.values()) {
+        abiHashByClass.put(info.getClassName(), info.getAbiHash());
+        constantsHashByClass.put(info.getClassName(), info.getConstantsHash());
+      }
+      // Only references to classes of this library matter.
+      for (CompiledClassInfo info : classes.values()) {
+        Set<String> references = new TreeSet<>();
+        for (String referencedClass : info.getReferencedClassNames()) {
+          if (sourceByClass.containsKey(referencedClass)) {
+            references.add(referencedClass);
+          }
+        }
+        referencesByClass.put(info.getClassName(), references);
+        Set<String> supertypes = new TreeSet<>();
+        for (String supertype : info.getSupertypeNames()) {
+          if (sourceByClass.containsKey(supertype)) {
+            supertypes.add(supertype);
+          }
+        }
+        supertypesByClass.put(info.getClassName(), supertypes);
+      }
+    }
+
+    void addClassUsage(Map<String, List<String>> usage) {
+      String ownClasses = MorePaths.pathWithUnixSeparators(classesDir);
+      for (Map.Entry<String, List<String>> entry : usage.entrySet()) {
+        if (entry.getKey().equals(ownClasses)) {
+          continue;
+        }
+        classUsage.computeIfAbsent(entry.getKey(), jar -> new TreeSet<>()).addAll(entry.getValue());
+      }
+    }
+
+    IncrementalCompilationState toState(
+        String fingerprint, ImmutableSortedMap<String, String> sourceHashes) {
+      ImmutableSortedMap.Builder<String, ImmutableSortedSet<String>> referencesByClassBuilder =
+          ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, Set<String>> entry : referencesByClass.entrySet()) {
+        referencesByClassBuilder.put(entry.getKey(), ImmutableSortedSet.copyOf(entry.getValue()));
+      }
+      ImmutableSortedMap.Builder<String, ImmutableSortedSet<String>> supertypesByClassBuilder =
+          ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, Set<String>> entry : supertypesByClass.entrySet()) {
+        supertypesByClassBuilder.put(entry.getKey(), ImmutableSortedSet.copyOf(entry.getValue()));
+      }
+      ImmutableSortedMap.Builder<String, ImmutableSortedSet<String>> classUsageBuilder =
+          ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, SortedSet<String>> entry : classUsage.entrySet()) {
+        classUsageBuilder.put(entry.getKey(), ImmutableSortedSet.copyOf(entry.getValue()));
+      }
+      return IncrementalCompilationState.builder()
+          .setFingerprint(fingerprint)
+          .setSourceHashes(sourceHashes)
+          .setSourceByClass(ImmutableSortedMap.copyOf(sourceByClass))
+          .setAbiHashByClass(ImmutableSortedMap.copyOf(abiHashByClass))
+          .setConstantsHashByClass(ImmutableSortedMap.copyOf(constantsHashByClass))
+          .setReferencesByClass(referencesByClassBuilder.build())
+          .setSupertypesByClass(supertypesByClassBuilder.build())
+          .setClassUsage(classUsageBuilder.build())
+          .build();
+    }
+  }
+
+  @Override
+  public String getShortName() {
+    return "javac_incremental";
+  }
+
+  @Override
+  public String getDescription(ExecutionContext context) {
+    return String.format(
+        "incremental javac of %d sources into %s",
+        compilerParameters.getSourceFilePaths().size(), classesDir);
+  }
+}
@@ -70,6 +70,8 @@ public class JavaBuckConfig implements ConfigView<BuckConfig> {
                     .setJavacPath(getJavacPath())
                     .setJavacJarPath(getJavacJarPath())
                     .setCompilerClassName(delegate.getValue("tools", "compiler_class_name"))
+                    .setShareFileManagers(
+                        delegate.getBooleanValue(SECTION, "share_file_managers", false))
                     .build());
   }
 
@@ -115,6 +117,9 @@ public class JavaBuckConfig implements ConfigView<BuckConfig> {
       builder.setTrackJavacPhaseEvents(trackJavacPhaseEvents.get());
     }
 
+    builder.setIncrementalCompilationEnabled(
+        delegate.getBooleanValue(SECTION, "incremental_compilation", false));
+
     Optional<AbstractJavacOptions.SpoolMode> spoolMode =
         delegate.getEnum(SECTION, "jar_spool_mode", AbstractJavacOptions.SpoolMode.class);
     if (spoolMode.isPresent()) {
@@ -99,6 +99,18 @@ public class JavacToJarStepFactory extends CompileToJarStepFactory implements Ad
 
     addAnnotationGenFolderStep(invokingRule, projectFilesystem, steps, buildableContext, context);
 
+    if (IncrementalJavacStep.isSupported(buildTimeOptions, invokingRule)) {
+      steps.add(
+          new IncrementalJavacStep(
+              javac,
+              buildTimeOptions,
+              invokingRule,
+              context.getSourcePathResolver(),
+              projectFilesystem,
+              parameters));
+      return;
+    }
+
     steps.add(
         new JavacStep(
             javac,
@@ -19,9 +19,27 @@ package com.facebook.buck.jvm.java;
 import com.facebook.buck.core.exceptions.HumanReadableException;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.jvm.java.javax.SynchronizedToolProvider;
+import java.util.Optional;
 import javax.tools.JavaCompiler;
 
 public class JdkProvidedInMemoryJavac extends Jsr199Javac {
+  /**
+   * Shared by all the compilations of this process, so that when running as a daemon the jars that
+   * are on most classpaths stay open from one build to the next.
+   */
+  private static final StandardJavaFileManagerPool FILE_MANAGER_POOL =
+      new StandardJavaFileManagerPool(Runtime.getRuntime().availableProcessors());
+
+  private final boolean shareFileManagers;
+
+  public JdkProvidedInMemoryJavac(boolean shareFileManagers) {
+    this.shareFileManagers = shareFileManagers;
+  }
+
+  public JdkProvidedInMemoryJavac() {
+    this(false);
+  }
+
   @Override
   protected JavaCompiler createCompiler(
       JavacExecutionContext context, SourcePathResolver pathResolver) {
@@ -34,4 +52,9 @@ public class JdkProvidedInMemoryJavac extends Jsr199Javac {
 
     return compiler;
   }
+
+  @Override
+  protected Optional<StandardJavaFileManagerPool> getFileManagerPool() {
+    return shareFileManagers ? Optional.of(FILE_MANAGER_POOL) : Optional.empty();
+  }
 }
@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
 import java.nio.file.Path;
+import java.util.Optional;
 import javax.annotation.Nullable;
 import javax.tools.JavaCompiler;
 
@@ -61,6 +62,14 @@ public abstract class Jsr199Javac implements Javac {
   protected abstract JavaCompiler createCompiler(
       JavacExecutionContext context, SourcePathResolver resolver);
 
+  /**
+   * Returns the pool to borrow file managers from, if the file managers of the compiler can be
+   * shared between compilations.
+   */
+  protected Optional<StandardJavaFileManagerPool> getFileManagerPool() {
+    return Optional.empty();
+  }
+
   @Override
   public Invocation newBuildInvocation(
       JavacExecutionContext context,
@@ -80,6 +89,7 @@ public abstract class Jsr199Javac implements Javac {
       @Nullable SourceOnlyAbiRuleInfoFactory ruleInfoFactory) {
     return new Jsr199JavacInvocation(
         () -> createCompiler(context, resolver),
+        getFileManagerPool(),
         context,
         invokingRule,
         options,
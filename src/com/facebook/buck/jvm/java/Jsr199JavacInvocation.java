@@ -57,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -80,6 +81,7 @@ class Jsr199JavacInvocation implements Javac.Invocation {
           Executors.newCachedThreadPool(new NamedThreadFactory("javac")));
 
   private final Supplier<JavaCompiler> compilerConstructor;
+  private final Optional<StandardJavaFileManagerPool> fileManagerPool;
   private final JavacExecutionContext context;
   private final BuildTarget invokingRule;
   private final BuildTarget libraryTarget;
@@ -99,6 +101,7 @@ class Jsr199JavacInvocation implements Javac.Invocation {
 
   public Jsr199JavacInvocation(
       Supplier<JavaCompiler> compilerConstructor,
+      Optional<StandardJavaFileManagerPool> fileManagerPool,
       JavacExecutionContext context,
       BuildTarget invokingRule,
       ImmutableList<String> options,
@@ -113,6 +116,7 @@ class Jsr199JavacInvocation implements Javac.Invocation {
       AbiGenerationMode abiCompatibilityMode,
       @Nullable SourceOnlyAbiRuleInfoFactory ruleInfoFactory) {
     this.compilerConstructor = compilerConstructor;
+    this.fileManagerPool = fileManagerPool;
     this.context = context;
     this.invokingRule = invokingRule;
     this.libraryTarget =
@@ -498,9 +502,16 @@ class Jsr199JavacInvocation implements Javac.Invocation {
         try {
           JavaCompiler compiler = compilerConstructor.get();
 
-          StandardJavaFileManager standardFileManager =
-              compiler.getStandardFileManager(null, null, null);
-          addCloseable(standardFileManager);
+          StandardJavaFileManager standardFileManager;
+          if (fileManagerPool.isPresent()) {
+            StandardJavaFileManagerPool.Lease lease =
+                fileManagerPool.get().acquire(compiler, options);
+            addCloseable(lease);
+            standardFileManager = lease.getFileManager();
+          } else {
+            standardFileManager = compiler.getStandardFileManager(null, null, null);
+            addCloseable(standardFileManager);
+          }
 
           StandardJavaFileManager fileManager;
           if (libraryJarParameters != null) {
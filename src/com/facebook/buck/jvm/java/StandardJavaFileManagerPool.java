@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.util.zip.ZipFileIndex;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes.Name;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * Keeps the file managers of finished compilations around, so that the next compilations do not
+ * have to open and index the same jars (the bootclasspath, Guava, the Android SDK...) again.
+ *
+ * <p>javac's file manager caches every archive it opens for as long as it lives, keyed by path.
+ * Before a file manager is handed out, the archives of the new compilation that it has already
+ * opened, including those they name in the {@code Class-Path} of their manifest, are checked
+ * against a hash of their central directory back then, and the file manager is dropped if any of
+ * them changed. Sizes and modification times are not enough, as jars fetched from the cache are
+ * rewritten in place with the fixed modification time of cached artifacts. Locations are set
+ * explicitly from the options of each compilation, since javac only reads them from the options
+ * the first time it needs them. Other options that affect the file manager, such as {@code
+ * -encoding}, are sticky, so file managers are only shared between compilations that agree on
+ * them.
+ */
+final class StandardJavaFileManagerPool {
+  private static final Logger LOG = Logger.get(StandardJavaFileManagerPool.class);
+
+  /** Options whose value is a list of paths, and the location they set. */
+  private static final ImmutableMap<String, StandardLocation> PATH_OPTIONS =
+      ImmutableMap.<String, StandardLocation>builder()
+          .put("-classpath", StandardLocation.CLASS_PATH)
+          .put("-cp", StandardLocation.CLASS_PATH)
+          .put("-sourcepath", StandardLocation.SOURCE_PATH)
+          .put("-bootclasspath", StandardLocation.PLATFORM_CLASS_PATH)
+          .put("-processorpath", StandardLocation.ANNOTATION_PROCESSOR_PATH)
+          .put("-d", StandardLocation.CLASS_OUTPUT)
+          .put("-s", StandardLocation.SOURCE_OUTPUT)
+          .build();
+
+  /** File managers that have opened more archives than this are not worth the descriptors. */
+  private static final int MAX_ARCHIVES_PER_FILE_MANAGER = 2000;
+
+  private final int maxIdleFileManagers;
+  private final Map<ImmutableList<String>, Deque<PooledFileManager>> idleFileManagers =
+      new HashMap<>();
+  private int idleCount = 0;
+  @Nullable private JavaFileManager optionChecker;
+
+  StandardJavaFileManagerPool(int maxIdleFileManagers) {
+    this.maxIdleFileManagers = maxIdleFileManagers;
+  }
+
+  /**
+   * Returns a file manager set up for a compilation with the given options. The file manager must
+   * not be closed, the returned lease must be closed instead once the compilation is over.
+   */
+  public Lease acquire(JavaCompiler compiler, ImmutableList<String> options) throws IOException {
+    Map<StandardLocation, List<File>> locations = new HashMap<>();
+    ImmutableList<String> stickyOptions =
+        parseOptions(getOptionChecker(compiler), options, locations);
+    Map<Path, HashCode> archives = hashArchives(locations);
+
+    PooledFileManager pooled;
+    while (true) {
+      synchronized (this) {
+        pooled = poll(stickyOptions);
+      }
+      if (pooled == null || pooled.isUpToDate(archives)) {
+        break;
+      }
+      LOG.debug("Dropping a file manager that has opened jars that changed since.");
+      pooled.fileManager.close();
+    }
+    if (pooled == null) {
+      pooled = new PooledFileManager(compiler.getStandardFileManager(null, null, null));
+    }
+
+    for (StandardLocation location : ImmutableSet.copyOf(PATH_OPTIONS.values())) {
+      pooled.fileManager.setLocation(location, locations.get(location));
+    }
+    pooled.archives.putAll(archives);
+    return new Lease(pooled, stickyOptions);
+  }
+
+  /** A file manager that is never used, only asked which options it supports. */
+  private synchronized JavaFileManager getOptionChecker(JavaCompiler compiler) {
+    if (optionChecker == null) {
+      optionChecker = compiler.getStandardFileManager(null, null, null);
+    }
+    return optionChecker;
+  }
+
+  @Nullable
+  private PooledFileManager poll(ImmutableList<String> stickyOptions) {
+    Deque<PooledFileManager> fileManagers = idleFileManagers.get(stickyOptions);
+    if (fileManagers == null || fileManagers.isEmpty()) {
+      return null;
+    }
+    idleCount--;
+    return fileManagers.pop();
+  }
+
+  private void release(PooledFileManager pooled, ImmutableList<String> stickyOptions)
+      throws IOException {
+    pooled.fileManager.flush();
+    synchronized (this) {
+      if (idleCount < maxIdleFileManagers
+          && pooled.archives.size() <= MAX_ARCHIVES_PER_FILE_MANAGER) {
+        idleFileManagers.computeIfAbsent(stickyOptions, key -> new ArrayDeque<>()).push(pooled);
+        idleCount++;
+        return;
+      }
+    }
+    pooled.fileManager.close();
+  }
+
+  /**
+   * Collects the locations set by {@code options} into {@code locations}.
+   *
+   * @return the other options that affect the file manager, with their values.
+   */
+  @VisibleForTesting
+  static ImmutableList<String> parseOptions(
+      JavaFileManager fileManager,
+      ImmutableList<String> options,
+      Map<StandardLocation, List<File>> locations) {
+    ImmutableList.Builder<String> stickyOptions = ImmutableList.builder();
+    Iterator<String> iterator = options.iterator();
+    while (iterator.hasNext()) {
+      String option = iterator.next();
+      StandardLocation location = PATH_OPTIONS.get(option);
+      if (location != null && iterator.hasNext()) {
+        List<File> files = new ArrayList<>();
+        for (String path :
+            Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(iterator.next())) {
+          files.add(new File(path));
+        }
+        locations.put(location, files);
+        continue;
+      }
+      int argumentsCount = fileManager.isSupportedOption(option);
+      if (argumentsCount >= 0) {
+        stickyOptions.add(option);
+        for (int i = 0; i < argumentsCount && iterator.hasNext(); i++) {
+          stickyOptions.add(iterator.next());
+        }
+      }
+    }
+    return stickyOptions.build();
+  }
+
+  private static Map<Path, HashCode> hashArchives(Map<StandardLocation, List<File>> locations)
+      throws IOException {
+    Map<Path, HashCode> archives = new HashMap<>();
+    Deque<Path> paths = new ArrayDeque<>();
+    for (Map.Entry<StandardLocation, List<File>> location : locations.entrySet()) {
+      if (location.getKey().isOutputLocation()) {
+        continue;
+      }
+      for (File file : location.getValue()) {
+        paths.add(file.toPath());
+      }
+    }
+    while (!paths.isEmpty()) {
+      Path path = paths.pop();
+      if (archives.containsKey(path) || !Files.isRegularFile(path)) {
+        continue;
+      }
+      archives.put(path, hashContents(path));
+      paths.addAll(getManifestClassPath(path));
+    }
+    return archives;
+  }
+
+  /**
+   * Hashes the central directory of an archive, which holds the CRC of every entry, or the whole
+   * file if its central directory can't be read.
+   */
+  private static HashCode hashContents(Path path) throws IOException {
+    try {
+      return ZipFileIndex.hashCentralDirectory(path);
+    } catch (ZipException e) {
+      return com.google.common.io.Files.asByteSource(path.toFile()).hash(Hashing.sha1());
+    }
+  }
+
+  /** Returns the archives that javac also opens when {@code jar} is on a path. */
+  private static List<Path> getManifestClassPath(Path jar) {
+    List<Path> classPath = new ArrayList<>();
+    try (JarFile jarFile = new JarFile(jar.toFile())) {
+      Manifest manifest = jarFile.getManifest();
+      String value =
+          manifest == null ? null : manifest.getMainAttributes().getValue(Name.CLASS_PATH);
+      if (value != null) {
+        for (String element :
+            Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().split(value)) {
+          classPath.add(jar.resolveSibling(element));
+        }
+      }
+    } catch (IOException | InvalidPathException e) {
+      // javac ignores the manifests it can't read as well.
+    }
+    return classPath;
+  }
+
+  /** A file manager lent out by the pool. Closing it gives the file manager back. */
+  public final class Lease implements AutoCloseable {
+    private final PooledFileManager pooled;
+    private final ImmutableList<String> stickyOptions;
+    private final StandardJavaFileManager fileManager;
+
+    private Lease(PooledFileManager pooled, ImmutableList<String> stickyOptions) {
+      this.pooled = pooled;
+      this.stickyOptions = stickyOptions;
+      this.fileManager =
+          new ForwardingStandardJavaFileManager(pooled.fileManager) {
+            @Override
+            public void close() throws IOException {
+              // Wrapping file managers close their delegate; the pool decides when to do that.
+              flush();
+            }
+          };
+    }
+
+    public StandardJavaFileManager getFileManager() {
+      return fileManager;
+    }
+
+    @VisibleForTesting
+    StandardJavaFileManager getPooledFileManager() {
+      return pooled.fileManager;
+    }
+
+    @Override
+    public void close() throws IOException {
+      release(pooled, stickyOptions);
+    }
+  }
+
+  private static final class PooledFileManager {
+    private final StandardJavaFileManager fileManager;
+    /** Archives the file manager may have opened, and the hash of their contents back then. */
+    private final Map<Path, HashCode> archives = new HashMap<>();
+
+    private PooledFileManager(StandardJavaFileManager fileManager) {
+      this.fileManager = fileManager;
+    }
+
+    private boolean isUpToDate(Map<Path, HashCode> currentArchives) {
+      for (Map.Entry<Path, HashCode> archive : currentArchives.entrySet()) {
+        HashCode previous = archives.get(archive.getKey());
+        if (previous != null && !previous.equals(archive.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int getIdleCount() {
+    return idleCount;
+  }
+}
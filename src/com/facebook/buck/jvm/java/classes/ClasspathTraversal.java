@@ -19,6 +19,7 @@ package com.facebook.buck.jvm.java.classes;
 import com.facebook.buck.io.file.MorePaths;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.util.ZipFileTraversal;
+import com.facebook.buck.util.zip.ZipFileIndex;
 import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +31,7 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
 /**
@@ -83,6 +85,23 @@ public abstract class ClasspathTraversal {
 
     @Override
     public void traverse(ClasspathTraversal traversal) throws IOException {
+      ZipFileIndex index;
+      try {
+        index = ZipFileIndex.get(file);
+      } catch (ZipException e) {
+        // Zips that can't be indexed, such as zip64 ones, are opened the slow way.
+        traverseZipFile(traversal);
+        return;
+      }
+      // The entries are read through one channel, rather than opening the zip for each of them.
+      try (ZipFileIndex.Reader reader = index.openReader()) {
+        for (ZipFileIndex.Entry entry : index.getEntries()) {
+          traversal.visit(new FileLikeInZipIndex(file, reader, entry));
+        }
+      }
+    }
+
+    private void traverseZipFile(ClasspathTraversal traversal) throws IOException {
       ZipFileTraversal impl =
           new ZipFileTraversal(file) {
             @Override
@@ -93,6 +112,39 @@ public abstract class ClasspathTraversal {
       impl.traverse();
     }
 
+    private static class FileLikeInZipIndex extends AbstractFileLike {
+      private final Path container;
+      private final ZipFileIndex.Reader reader;
+      private final ZipFileIndex.Entry entry;
+
+      public FileLikeInZipIndex(
+          Path container, ZipFileIndex.Reader reader, ZipFileIndex.Entry entry) {
+        this.container = container;
+        this.reader = reader;
+        this.entry = entry;
+      }
+
+      @Override
+      public Path getContainer() {
+        return container;
+      }
+
+      @Override
+      public String getRelativePath() {
+        return entry.getName();
+      }
+
+      @Override
+      public long getSize() {
+        return entry.getSize();
+      }
+
+      @Override
+      public InputStream getInput() throws IOException {
+        return reader.getInputStream(entry);
+      }
+    }
+
     private static class FileLikeInZip extends AbstractFileLike {
       private final Path container;
       private final ZipFile zipFile;
@@ -18,7 +18,11 @@ package com.facebook.buck.step;
 
 public enum ExecutorPool {
   CPU,
+  /** Pool for work that is bound by local disk I/O rather than CPU, such as copying files. */
+  DISK_IO,
   NETWORK,
   PROJECT,
   REMOTE,
+  /** Pool that steps writing zips compress their entries on, in the background. */
+  ZIP_COMPRESSION,
 }
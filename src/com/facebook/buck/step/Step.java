@@ -27,4 +27,13 @@ public interface Step {
   String getShortName();
 
   String getDescription(ExecutionContext context);
+
+  /**
+   * @return the pool whose threads this step is best executed on. Steps that mostly wait on the
+   *     local disk should return {@link ExecutorPool#DISK_IO} so that the build engine can run
+   *     them without occupying a slot of the CPU pool.
+   */
+  default ExecutorPool getExecutorPool() {
+    return ExecutorPool.CPU;
+  }
 }
@@ -19,6 +19,7 @@ package com.facebook.buck.step.fs;
 import com.facebook.buck.core.util.immutables.BuckStyleStep;
 import com.facebook.buck.io.BuildCellRelativePath;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -47,6 +48,11 @@ abstract class AbstractMkdirStep implements Step {
     return "mkdir";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public String getDescription(ExecutionContext context) {
     return String.format(
@@ -20,6 +20,7 @@ import com.facebook.buck.core.util.immutables.BuckStyleStep;
 import com.facebook.buck.io.BuildCellRelativePath;
 import com.facebook.buck.io.file.MostFiles;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -47,6 +48,11 @@ abstract class AbstractRmStep implements Step {
     return "rm";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
     Path absolutePath =
@@ -19,6 +19,7 @@ package com.facebook.buck.step.fs;
 import com.facebook.buck.core.util.immutables.BuckStyleImmutable;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -58,6 +59,11 @@ abstract class AbstractSymlinkFileStep implements Step {
     return "symlink_file";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public String getDescription(ExecutionContext context) {
     return Joiner.on(" ")
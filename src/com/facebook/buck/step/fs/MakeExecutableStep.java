@@ -19,6 +19,7 @@ package com.facebook.buck.step.fs;
 import com.facebook.buck.io.file.MostFiles;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -49,4 +50,9 @@ public class MakeExecutableStep implements Step {
   public String getShortName() {
     return "chmod";
   }
+
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
 }
@@ -18,6 +18,7 @@ package com.facebook.buck.step.fs;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -51,6 +52,11 @@ public class MoveStep implements Step {
     return "mv";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public String getDescription(ExecutionContext context) {
     return String.format("mv %s %s", source, destination);
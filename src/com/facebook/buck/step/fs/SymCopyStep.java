@@ -18,6 +18,7 @@ package com.facebook.buck.step.fs;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -65,6 +66,11 @@ public class SymCopyStep implements Step {
     return "lns";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public String getDescription(ExecutionContext context) {
     return "Symlink-Copy step";
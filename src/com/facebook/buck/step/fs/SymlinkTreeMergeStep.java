@@ -19,6 +19,7 @@ package com.facebook.buck.step.fs;
 import com.facebook.buck.core.exceptions.HumanReadableException;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -30,6 +31,10 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 /** A step to merge the contents of provided directories into a symlink tree */
@@ -72,15 +77,27 @@ public class SymlinkTreeMergeStep implements Step {
   }
 
   @Override
-  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
 
+  @Override
+  public StepExecutionResult execute(ExecutionContext context) throws IOException {
+    // Directories are created while walking the sources, the links themselves are then created
+    // concurrently across directories.
+    List<Map.Entry<Path, Path>> linksToCreate = new ArrayList<>();
     for (Entry<Path, Path> sourceToRelative : links.entries()) {
-      merge(sourceToRelative.getKey(), sourceToRelative.getValue());
+      merge(sourceToRelative.getKey(), sourceToRelative.getValue(), linksToCreate);
     }
+    SymlinkTreeStep.forEachDirectoryInParallel(
+        SymlinkTreeStep.groupByDirectory(linksToCreate),
+        link -> createSymLink(link.getKey(), link.getValue()));
     return StepExecutionResults.SUCCESS;
   }
 
-  private void merge(Path relativeDestination, Path dirPath) throws IOException {
+  private void merge(
+      Path relativeDestination, Path dirPath, List<Map.Entry<Path, Path>> linksToCreate)
+      throws IOException {
     Path destination = root.resolve(relativeDestination);
     if (destination != dirPath) {
       filesystem.mkdirs(destination);
@@ -98,27 +115,30 @@ public class SymlinkTreeMergeStep implements Step {
           }
 
           @Override
-          public FileVisitResult visitFile(Path childPath, BasicFileAttributes attrs)
-              throws IOException {
+          public FileVisitResult visitFile(Path childPath, BasicFileAttributes attrs) {
             Path relativePath = dirPath.relativize(childPath);
             Path destPath = destination.resolve(relativePath);
-            try {
-              filesystem.createSymLink(filesystem.resolve(destPath), childPath, false);
-            } catch (FileAlreadyExistsException e) {
-              if (filesystem.isSymLink(destPath)) {
-                throw new HumanReadableException(
-                    "Tried to link %s to %s, but %s already links to %s",
-                    destPath, childPath, destPath, filesystem.readSymLink(destPath));
-              } else {
-                throw new HumanReadableException(
-                    "Tried to link %s to %s, but %s already exists", destPath, childPath, destPath);
-              }
-            }
+            linksToCreate.add(new AbstractMap.SimpleImmutableEntry<>(destPath, childPath));
             return FileVisitResult.CONTINUE;
           }
         });
   }
 
+  private void createSymLink(Path destPath, Path childPath) throws IOException {
+    try {
+      filesystem.createSymLink(destPath, childPath, false);
+    } catch (FileAlreadyExistsException e) {
+      if (filesystem.isSymLink(destPath)) {
+        throw new HumanReadableException(
+            "Tried to link %s to %s, but %s already links to %s",
+            destPath, childPath, destPath, filesystem.readSymLink(destPath));
+      } else {
+        throw new HumanReadableException(
+            "Tried to link %s to %s, but %s already exists", destPath, childPath, destPath);
+      }
+    }
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof SymlinkTreeMergeStep)) {
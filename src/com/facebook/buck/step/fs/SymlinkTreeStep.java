@@ -18,15 +18,36 @@ package com.facebook.buck.step.fs;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
-import com.facebook.buck.util.RichStream;
+import com.facebook.buck.util.function.ThrowingConsumer;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Populates a directory with symlinks. If the directory already holds a link tree, it is updated
+ * in place: entries that are no longer wanted are removed and links already pointing at the right
+ * target are left untouched.
+ */
 public class SymlinkTreeStep implements Step {
 
   private final String name;
@@ -52,24 +73,124 @@ public class SymlinkTreeStep implements Step {
     return name;
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
-    for (Path dir :
-        RichStream.from(links.keySet())
-            .map(root::resolve)
-            .map(Path::getParent)
-            .distinct()
-            .toOnceIterable()) {
-      filesystem.mkdirs(dir);
-    }
+    Path absoluteRoot = filesystem.resolve(root);
+    Map<Path, Path> targetsByLink = new HashMap<>();
     for (ImmutableMap.Entry<Path, Path> ent : links.entrySet()) {
-      Path target = filesystem.resolve(ent.getValue());
-      Path link = filesystem.resolve(root.resolve(ent.getKey()));
-      filesystem.createSymLink(link, target, true /* force */);
+      targetsByLink.put(
+          absoluteRoot.resolve(ent.getKey()).normalize(), filesystem.resolve(ent.getValue()));
     }
+
+    // Update an existing tree in place rather than rebuilding it from scratch: drop whatever is
+    // not part of the new tree, then only touch links whose target has changed.
+    if (filesystem.isDirectory(absoluteRoot, LinkOption.NOFOLLOW_LINKS)) {
+      removeStaleEntries(absoluteRoot, targetsByLink.keySet());
+    }
+
+    Map<Path, List<Map.Entry<Path, Path>>> linksByDirectory =
+        groupByDirectory(targetsByLink.entrySet());
+    for (Path dir : new TreeSet<>(linksByDirectory.keySet())) {
+      filesystem.mkdirs(dir);
+    }
+    forEachDirectoryInParallel(
+        linksByDirectory,
+        link -> {
+          if (!isSymLinkTo(link.getKey(), link.getValue())) {
+            filesystem.createSymLink(link.getKey(), link.getValue(), true /* force */);
+          }
+        });
     return StepExecutionResults.SUCCESS;
   }
 
+  private boolean isSymLinkTo(Path link, Path target) throws IOException {
+    return filesystem.isSymLink(link) && filesystem.readSymLink(link).equals(target);
+  }
+
+  /**
+   * Deletes every file, link and directory under {@code absoluteRoot} which is neither one of
+   * {@code wantedLinks} nor a directory containing one of them.
+   */
+  private void removeStaleEntries(Path absoluteRoot, Set<Path> wantedLinks) throws IOException {
+    Set<Path> wantedDirectories = new HashSet<>();
+    for (Path link : wantedLinks) {
+      Path dir = link.getParent();
+      while (dir != null && !dir.equals(absoluteRoot) && wantedDirectories.add(dir)) {
+        dir = dir.getParent();
+      }
+    }
+    filesystem.walkFileTree(
+        absoluteRoot,
+        EnumSet.noneOf(FileVisitOption.class),
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            if (dir.equals(absoluteRoot) || wantedDirectories.contains(dir)) {
+              return FileVisitResult.CONTINUE;
+            }
+            filesystem.deleteRecursivelyIfExists(dir);
+            return FileVisitResult.SKIP_SUBTREE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (!wantedLinks.contains(file)) {
+              filesystem.deleteFileAtPath(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        },
+        false /* skipIgnored */);
+  }
+
+  /** Groups link to target entries by the directory the link lives in. */
+  static Map<Path, List<Map.Entry<Path, Path>>> groupByDirectory(
+      Collection<Map.Entry<Path, Path>> links) {
+    Map<Path, List<Map.Entry<Path, Path>>> linksByDirectory = new HashMap<>();
+    for (Map.Entry<Path, Path> link : links) {
+      linksByDirectory
+          .computeIfAbsent(link.getKey().getParent(), dir -> new ArrayList<>())
+          .add(link);
+    }
+    return linksByDirectory;
+  }
+
+  /**
+   * Applies {@code action} to every link, handing whole directories to the fork-join pool so that
+   * links in different directories are created concurrently while each directory is only ever
+   * modified by one thread. The calling thread takes part in the work, so this is safe to call
+   * from any executor.
+   */
+  static void forEachDirectoryInParallel(
+      Map<Path, List<Map.Entry<Path, Path>>> linksByDirectory,
+      ThrowingConsumer<Map.Entry<Path, Path>, IOException> action)
+      throws IOException {
+    try {
+      linksByDirectory
+          .values()
+          .parallelStream()
+          .forEach(
+              directoryLinks -> {
+                try {
+                  for (Map.Entry<Path, Path> link : directoryLinks) {
+                    action.accept(link);
+                  }
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof SymlinkTreeStep)) {
@@ -18,6 +18,7 @@ package com.facebook.buck.step.fs;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -40,6 +41,11 @@ public class TouchStep implements Step {
     return "touch";
   }
 
+  @Override
+  public ExecutorPool getExecutorPool() {
+    return ExecutorPool.DISK_IO;
+  }
+
   @Override
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
     filesystem.touch(fileToTouch);
@@ -52,6 +52,7 @@ public class DefaultFileHashCache implements ProjectFileHashCache {
 
   private final ProjectFilesystem projectFilesystem;
   private final Predicate<Path> ignoredPredicate;
+  private final Optional<PersistentJarHashCache> persistentJarHashCache;
 
   @VisibleForTesting FileHashCacheEngine fileHashCacheEngine;
 
@@ -59,8 +60,24 @@ public class DefaultFileHashCache implements ProjectFileHashCache {
       ProjectFilesystem projectFilesystem,
       Predicate<Path> ignoredPredicate,
       FileHashCacheMode fileHashCacheMode) {
+    this(projectFilesystem, ignoredPredicate, fileHashCacheMode, false);
+  }
+
+  /**
+   * @param persistJarHashes whether to store the hashes of jars outside of buck-out, so that the
+   *     next instances for the same filesystem only hash the jars that changed.
+   */
+  protected DefaultFileHashCache(
+      ProjectFilesystem projectFilesystem,
+      Predicate<Path> ignoredPredicate,
+      FileHashCacheMode fileHashCacheMode,
+      boolean persistJarHashes) {
     this.projectFilesystem = projectFilesystem;
     this.ignoredPredicate = ignoredPredicate;
+    this.persistentJarHashCache =
+        persistJarHashes
+            ? Optional.of(new PersistentJarHashCache(projectFilesystem))
+            : Optional.empty();
     FileHashCacheEngine.ValueLoader<HashCodeAndFileType> hashLoader =
         path -> {
           try {
@@ -205,6 +222,14 @@ public class DefaultFileHashCache implements ProjectFileHashCache {
   }
 
   private HashCode getFileHashCode(Path path) throws IOException {
+    if (persistentJarHashCache.isPresent()
+        && path.toString().endsWith(".jar")
+        && !isInBuckOut(projectFilesystem, path)
+        && !isInEmbeddedCellBuckOut(projectFilesystem, path)) {
+      return persistentJarHashCache
+          .get()
+          .get(path, () -> projectFilesystem.computeSha1(path).asHashCode());
+    }
     return projectFilesystem.computeSha1(path).asHashCode();
   }
 
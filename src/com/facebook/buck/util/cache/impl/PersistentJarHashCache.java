@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.cache.impl;
+
+import com.facebook.buck.core.util.log.Logger;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.util.function.ThrowingSupplier;
+import com.facebook.buck.util.zip.ZipFileIndex;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the hashes of jars in a file in buck-out, so that they survive daemon restarts.
+ *
+ * <p>Hashing big third-party jars is one of the largest costs of the first build of a daemon. A jar
+ * is hashed again only if its size, its modification time, or the names, sizes and CRCs of its
+ * entries changed since it was last hashed. The entries are read from the central directory of the
+ * jar, which is much cheaper than reading the whole jar.
+ */
+class PersistentJarHashCache {
+  private static final Logger LOG = Logger.get(PersistentJarHashCache.class);
+
+  private static final Splitter LINE_SPLITTER = Splitter.on(' ').limit(3);
+
+  private final ProjectFilesystem filesystem;
+  private final Path storePath;
+
+  @Nullable private volatile Map<Path, StoredHash> hashes;
+
+  PersistentJarHashCache(ProjectFilesystem filesystem) {
+    this(filesystem, filesystem.getBuckPaths().getBuckOut().resolve(".jar_hashes"));
+  }
+
+  @VisibleForTesting
+  PersistentJarHashCache(ProjectFilesystem filesystem, Path storePath) {
+    this.filesystem = filesystem;
+    this.storePath = storePath;
+  }
+
+  /**
+   * Returns the hash of a jar, computing it with {@code hashLoader} only if the jar changed since
+   * its hash was stored.
+   */
+  HashCode get(Path relativePath, ThrowingSupplier<HashCode, IOException> hashLoader)
+      throws IOException {
+    Optional<String> fingerprint = fingerprint(relativePath);
+    if (!fingerprint.isPresent()) {
+      return hashLoader.get();
+    }
+
+    Map<Path, StoredHash> hashes = getHashes();
+    StoredHash stored = hashes.get(relativePath);
+    if (stored != null && stored.fingerprint.equals(fingerprint.get())) {
+      return stored.hashCode;
+    }
+
+    HashCode hashCode = hashLoader.get();
+    // The jar may have changed while it was hashed, in which case the next build hashes it again.
+    StoredHash computed = new StoredHash(fingerprint.get(), hashCode);
+    hashes.put(relativePath, computed);
+    append(relativePath, computed);
+    return hashCode;
+  }
+
+  /** Returns what identifies the contents of a jar, if it can be read as a zip. */
+  private Optional<String> fingerprint(Path relativePath) {
+    try {
+      BasicFileAttributes attributes =
+          filesystem.readAttributes(relativePath, BasicFileAttributes.class);
+      ZipFileIndex index = ZipFileIndex.get(filesystem.resolve(relativePath));
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      for (ZipFileIndex.Entry entry : index.getEntries()) {
+        hasher.putString(entry.getName(), Charsets.UTF_8);
+        hasher.putLong(entry.getSize());
+        hasher.putLong(entry.getCrc());
+      }
+      return Optional.of(
+          String.format(
+              "%d:%d:%s",
+              attributes.size(), attributes.lastModifiedTime().toMillis(), hasher.hash()));
+    } catch (IOException | UnsupportedOperationException e) {
+      return Optional.empty();
+    }
+  }
+
+  private Map<Path, StoredHash> getHashes() {
+    Map<Path, StoredHash> hashes = this.hashes;
+    if (hashes == null) {
+      synchronized (this) {
+        hashes = this.hashes;
+        if (hashes == null) {
+          hashes = load();
+          this.hashes = hashes;
+        }
+      }
+    }
+    return hashes;
+  }
+
+  private Map<Path, StoredHash> load() {
+    Map<Path, StoredHash> hashes = new ConcurrentHashMap<>();
+    if (!filesystem.isFile(storePath)) {
+      return hashes;
+    }
+    List<String> lines;
+    try {
+      lines = filesystem.readLines(storePath);
+    } catch (IOException e) {
+      LOG.warn(e, "Could not read the stored jar hashes.");
+      return hashes;
+    }
+    for (String line : lines) {
+      List<String> parts = LINE_SPLITTER.splitToList(line);
+      if (parts.size() != 3) {
+        continue;
+      }
+      try {
+        // Later lines are more recent, and replace earlier ones.
+        hashes.put(
+            storePath.getFileSystem().getPath(parts.get(2)),
+            new StoredHash(parts.get(1), HashCode.fromString(parts.get(0))));
+      } catch (IllegalArgumentException e) {
+        LOG.debug("Ignoring malformed stored jar hash: %s", line);
+      }
+    }
+
+    if (lines.size() > 2 * hashes.size()) {
+      compact(hashes);
+    }
+    return hashes;
+  }
+
+  /** Rewrites the store with only the latest hash of each jar. */
+  private void compact(Map<Path, StoredHash> hashes) {
+    try {
+      filesystem.writeLinesToPath(
+          () ->
+              hashes
+                  .entrySet()
+                  .stream()
+                  .map(entry -> toLine(entry.getKey(), entry.getValue()))
+                  .iterator(),
+          storePath);
+    } catch (IOException e) {
+      LOG.warn(e, "Could not compact the stored jar hashes.");
+    }
+  }
+
+  private synchronized void append(Path relativePath, StoredHash storedHash) {
+    try {
+      filesystem.createParentDirs(storePath);
+      try (OutputStream out = filesystem.newFileOutputStream(storePath, /* append */ true)) {
+        out.write((toLine(relativePath, storedHash) + "\n").getBytes(Charsets.UTF_8));
+      }
+    } catch (IOException e) {
+      LOG.warn(e, "Could not store the hash of %s.", relativePath);
+    }
+  }
+
+  private static String toLine(Path relativePath, StoredHash storedHash) {
+    return storedHash.hashCode + " " + storedHash.fingerprint + " " + relativePath;
+  }
+
+  private static class StoredHash {
+    private final String fingerprint;
+    private final HashCode hashCode;
+
+    private StoredHash(String fingerprint, HashCode hashCode) {
+      this.fingerprint = Objects.requireNonNull(fingerprint);
+      this.hashCode = hashCode;
+    }
+  }
+}
@@ -15,14 +15,31 @@
  */
 package com.facebook.buck.util.concurrent;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Suppliers;
+import com.sun.management.OperatingSystemMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class ResourceAmountsEstimator {
 
   /** CPU resource amount is considered as number of cores. Each core can perform a single job. */
   public static final int DEFAULT_CPU_CAP = Runtime.getRuntime().availableProcessors();
 
   /** Memory resource unit size has been chosen arbitrarily. We can tune the value if we need. */
+  public static final long MEMORY_UNIT_BYTES = 100 * 1024 * 1024;
+
   public static final int DEFAULT_MEMORY_CAP =
-      (int) (Runtime.getRuntime().maxMemory() / (100 * 1024 * 1024));
+      (int) (Runtime.getRuntime().maxMemory() / MEMORY_UNIT_BYTES);
 
   /**
    * Disk IO resource unit size has been chosen arbitrarily. Since most of the jobs are light, we
@@ -43,6 +60,18 @@ public class ResourceAmountsEstimator {
   /** Total number of threads Buck can use to schedule various work. */
   public static final int DEFAULT_MANAGED_THREAD_COUNT = DEFAULT_CPU_CAP * 2;
 
+  private static final Pattern MEM_AVAILABLE_PATTERN =
+      Pattern.compile("MemAvailable:\\s+(\\d+) kB");
+
+  /** How long a sample of {@link #getFreePhysicalMemoryPercent()} stays recent. */
+  private static final long FREE_MEMORY_SAMPLE_MILLIS = 500;
+
+  private static final Supplier<Integer> RECENT_FREE_PHYSICAL_MEMORY_PERCENT =
+      Suppliers.memoizeWithExpiration(
+          ResourceAmountsEstimator::getFreePhysicalMemoryPercent,
+          FREE_MEMORY_SAMPLE_MILLIS,
+          TimeUnit.MILLISECONDS);
+
   private ResourceAmountsEstimator() {}
 
   public static ResourceAmounts getEstimatedAmounts() {
@@ -50,6 +79,64 @@ public class ResourceAmountsEstimator {
         DEFAULT_CPU_CAP, DEFAULT_MEMORY_CAP, DEFAULT_DISK_IO_CAP, DEFAULT_NETWORK_IO_CAP);
   }
 
+  /**
+   * @return the amount of physical memory of the machine in memory resource units. Unlike {@link
+   *     #DEFAULT_MEMORY_CAP}, this also accounts for memory used by processes spawned by Buck.
+   */
+  public static int getPhysicalMemoryCap() {
+    return (int) (getOperatingSystemBean().getTotalPhysicalMemorySize() / MEMORY_UNIT_BYTES);
+  }
+
+  /**
+   * @return the percentage of physical memory of the machine that is currently available. On Linux
+   *     this includes page cache the kernel can reclaim, which is not counted as free memory.
+   */
+  public static int getFreePhysicalMemoryPercent() {
+    OperatingSystemMXBean osBean = getOperatingSystemBean();
+    long total = osBean.getTotalPhysicalMemorySize();
+    if (total <= 0) {
+      return 100;
+    }
+    long available = readAvailablePhysicalMemory().orElseGet(osBean::getFreePhysicalMemorySize);
+    return (int) Math.max(0, Math.min(100, available * 100 / total));
+  }
+
+  /**
+   * @return {@link #getFreePhysicalMemoryPercent()} as sampled at most half a second ago, for
+   *     callers which ask for every rule that is scheduled.
+   */
+  public static int getRecentFreePhysicalMemoryPercent() {
+    return RECENT_FREE_PHYSICAL_MEMORY_PERCENT.get();
+  }
+
+  private static OptionalLong readAvailablePhysicalMemory() {
+    Path meminfo = Paths.get("/proc/meminfo");
+    if (!Files.isReadable(meminfo)) {
+      return OptionalLong.empty();
+    }
+    try {
+      return parseMemAvailable(Files.readAllLines(meminfo));
+    } catch (IOException e) {
+      return OptionalLong.empty();
+    }
+  }
+
+  /** @return the {@code MemAvailable} entry of the contents of /proc/meminfo, in bytes. */
+  @VisibleForTesting
+  static OptionalLong parseMemAvailable(List<String> meminfoLines) {
+    for (String line : meminfoLines) {
+      Matcher matcher = MEM_AVAILABLE_PATTERN.matcher(line);
+      if (matcher.matches()) {
+        return OptionalLong.of(Long.parseLong(matcher.group(1)) * 1024);
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  private static OperatingSystemMXBean getOperatingSystemBean() {
+    return (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+  }
+
   public static final int DEFAULT_CPU_AMOUNT = 1;
   public static final int DEFAULT_MEMORY_AMOUNT = 1;
   public static final int DEFAULT_DISK_IO_AMOUNT = 0;
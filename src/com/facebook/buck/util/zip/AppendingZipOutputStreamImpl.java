@@ -17,13 +17,22 @@
 package com.facebook.buck.util.zip;
 
 import com.facebook.buck.util.timing.Clock;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import javax.annotation.Nullable;
@@ -32,6 +41,13 @@ import javax.annotation.Nullable;
  * A drop-in replacement for (@link java.util.zip.ZipOutStream} that supports the ability to set a
  * compression level and allows multiple entries with the same name.
  *
+ * <p>When given an executor, the entries are compressed on it, each into its own buffer, while the
+ * next entries are written. The buffers are written out in the order the entries were added, and
+ * every entry is compressed exactly as it would be on the calling thread, so the zip is the same
+ * byte for byte. The entries held in memory count against a budget shared by all the zips being
+ * written, entries too big to be held in memory, or that do not fit in the budget, are compressed
+ * as they are written, once the entries before them are out.
+ *
  * <p><a href="https://users.cs.jmu.edu/buchhofp/forensics/formats/pkzip.html">
  * https://users.cs.jmu.edu/buchhofp/forensics/formats/pkzip.html </a> <a
  * href="http://www.pkware.com/documents/casestudies/APPNOTE.TXT">
@@ -39,39 +55,94 @@ import javax.annotation.Nullable;
  */
 class AppendingZipOutputStreamImpl implements CustomZipOutputStream.Impl {
 
+  /** Entries bigger than this are compressed on the calling thread, as they are written. */
+  private static final int MAX_BUFFERED_ENTRY_SIZE = 16 * 1024 * 1024;
+
+  /** Bytes of entries all the zips can hold while they are compressed or waiting to be written. */
+  static final MemoryBudget PENDING_BYTES_BUDGET = new MemoryBudget(64 * 1024 * 1024);
+
+  private static final int MAX_PENDING_ENTRIES = 1024;
+
   private final OutputStream delegate;
   private final boolean throwExceptionsOnDuplicate;
   private final Clock clock;
+  @Nullable private final ExecutorService compressionExecutor;
+  private final MemoryBudget budget;
   private long currentOffset = 0;
   private List<EntryAccounting> entries = new LinkedList<>();
   @Nullable private EntryAccounting currentEntry = null;
+  /** The bytes of the current entry, while it is not written out yet. */
+  @Nullable private ByteArrayOutputStream currentEntryData = null;
+
+  private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
+  private long pendingBytes = 0;
 
   private Set<String> seenNames = new HashSet<>();
 
   public AppendingZipOutputStreamImpl(
       Clock clock, OutputStream stream, boolean throwExceptionsOnDuplicate) {
+    this(clock, stream, throwExceptionsOnDuplicate, null);
+  }
+
+  public AppendingZipOutputStreamImpl(
+      Clock clock,
+      OutputStream stream,
+      boolean throwExceptionsOnDuplicate,
+      @Nullable ExecutorService compressionExecutor) {
+    this(clock, stream, throwExceptionsOnDuplicate, compressionExecutor, PENDING_BYTES_BUDGET);
+  }
+
+  @VisibleForTesting
+  AppendingZipOutputStreamImpl(
+      Clock clock,
+      OutputStream stream,
+      boolean throwExceptionsOnDuplicate,
+      @Nullable ExecutorService compressionExecutor,
+      MemoryBudget budget) {
     this.delegate = stream;
     this.clock = clock;
     this.throwExceptionsOnDuplicate = throwExceptionsOnDuplicate;
+    this.compressionExecutor = compressionExecutor;
+    this.budget = budget;
   }
 
   @Override
   public void actuallyWrite(byte[] b, int off, int len) throws IOException {
     Objects.requireNonNull(currentEntry);
+    if (currentEntryData != null) {
+      if (currentEntryData.size() + len <= MAX_BUFFERED_ENTRY_SIZE && reserve(len)) {
+        currentEntryData.write(b, off, len);
+        return;
+      }
+      startWritingCurrentEntry();
+    }
     currentEntry.write(delegate, b, off, len);
   }
 
   @Override
   public void actuallyPutNextEntry(ZipEntry entry) throws IOException {
+    putNextEntry(entry, /* raw */ false);
+  }
+
+  @Override
+  public void actuallyPutNextRawEntry(ZipEntry entry) throws IOException {
+    putNextEntry(entry, /* raw */ true);
+  }
+
+  private void putNextEntry(ZipEntry entry, boolean raw) throws IOException {
     if (throwExceptionsOnDuplicate && !seenNames.add(entry.getName())) {
       // Same exception as ZipOutputStream.
       throw new ZipException("duplicate entry: " + entry.getName());
     }
 
-    currentEntry = new EntryAccounting(clock, entry, currentOffset);
+    currentEntry = new EntryAccounting(clock, entry, currentOffset, raw);
     entries.add(currentEntry);
 
-    currentOffset += currentEntry.writeLocalFileHeader(delegate);
+    if (compressionExecutor != null) {
+      currentEntryData = new ByteArrayOutputStream();
+    } else {
+      currentOffset += currentEntry.writeLocalFileHeader(delegate);
+    }
   }
 
   @Override
@@ -80,15 +151,160 @@ class AppendingZipOutputStreamImpl implements CustomZipOutputStream.Impl {
       return; // no-op
     }
 
-    currentOffset += currentEntry.finish(delegate);
+    if (currentEntryData != null) {
+      Objects.requireNonNull(compressionExecutor);
+      EntryAccounting entry = currentEntry;
+      byte[] data = currentEntryData.toByteArray();
+      currentEntryData = null;
+      Future<byte[]> compressed;
+      try {
+        // Stored and raw entries are cheap, and checking their size and CRC right away keeps
+        // errors where callers expect them.
+        compressed =
+            entry.getCompressionMethod() == ZipEntry.STORED || entry.isRaw()
+                ? Futures.immediateFuture(prepareEntry(entry, data))
+                : compressionExecutor.submit(() -> prepareEntry(entry, data));
+      } catch (IOException | RuntimeException e) {
+        budget.release(data.length);
+        throw e;
+      }
+      pendingEntries.add(new PendingEntry(entry, compressed, data.length));
+      pendingBytes += data.length;
+      writeCompressedEntries(/* waitForAll */ false);
+    } else {
+      currentOffset += currentEntry.finish(delegate);
+    }
 
     currentEntry = null;
   }
 
   @Override
   public void actuallyClose() throws IOException {
-    new CentralDirectory().writeCentralDirectory(delegate, currentOffset, entries);
+    try {
+      writeCompressedEntries(/* waitForAll */ true);
+
+      new CentralDirectory().writeCentralDirectory(delegate, currentOffset, entries);
+
+      delegate.close();
+    } finally {
+      // Give back what failed entries still hold, so that other zips can use it.
+      budget.release(pendingBytes + (currentEntryData == null ? 0 : currentEntryData.size()));
+      pendingEntries.clear();
+      pendingBytes = 0;
+      currentEntryData = null;
+    }
+  }
+
+  /**
+   * Returns the bytes of an entry in the zip. The local file header does not depend on where the
+   * entry ends up, so the whole entry can be prepared before its offset is known.
+   */
+  private static byte[] prepareEntry(EntryAccounting entry, byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 128);
+    entry.writeLocalFileHeader(out);
+    entry.write(out, data, 0, data.length);
+    entry.finish(out);
+    return out.toByteArray();
+  }
 
-    delegate.close();
+  /**
+   * Takes bytes from the budget shared by all zips for the current entry, writing out the pending
+   * entries of this zip first if it is used up. Never waits for other zips, which may be waiting
+   * for us.
+   */
+  private boolean reserve(int bytes) throws IOException {
+    if (budget.tryAcquire(bytes)) {
+      return true;
+    }
+    writeCompressedEntries(/* waitForAll */ true);
+    return budget.tryAcquire(bytes);
+  }
+
+  /** Stops buffering the current entry, and compresses it as it is written instead. */
+  private void startWritingCurrentEntry() throws IOException {
+    Objects.requireNonNull(currentEntry);
+    Objects.requireNonNull(currentEntryData);
+    writeCompressedEntries(/* waitForAll */ true);
+
+    currentEntry.setOffset(currentOffset);
+    currentOffset += currentEntry.writeLocalFileHeader(delegate);
+    byte[] data = currentEntryData.toByteArray();
+    currentEntryData = null;
+    budget.release(data.length);
+    currentEntry.write(delegate, data, 0, data.length);
+  }
+
+  /**
+   * Writes out the entries that are done compressing, in order, waiting for more of them if too
+   * many are pending, or for all of them.
+   */
+  private void writeCompressedEntries(boolean waitForAll) throws IOException {
+    while (!pendingEntries.isEmpty()) {
+      PendingEntry pending = pendingEntries.peek();
+      if (!waitForAll
+          && !pending.compressed.isDone()
+          && pendingEntries.size() <= MAX_PENDING_ENTRIES) {
+        return;
+      }
+      pendingEntries.remove();
+      pendingBytes -= pending.size;
+      budget.release(pending.size);
+
+      byte[] bytes;
+      try {
+        bytes = Uninterruptibles.getUninterruptibly(pending.compressed);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException(cause);
+      }
+      pending.entry.setOffset(currentOffset);
+      delegate.write(bytes);
+      currentOffset += bytes.length;
+    }
+  }
+
+  /** Bytes that can be held in memory, shared by several zips. */
+  static final class MemoryBudget {
+    private final long maxBytes;
+    private long usedBytes = 0;
+
+    MemoryBudget(long maxBytes) {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized boolean tryAcquire(long bytes) {
+      if (usedBytes + bytes > maxBytes) {
+        return false;
+      }
+      usedBytes += bytes;
+      return true;
+    }
+
+    synchronized void release(long bytes) {
+      usedBytes -= bytes;
+    }
+
+    @VisibleForTesting
+    synchronized long getUsedBytes() {
+      return usedBytes;
+    }
+  }
+
+  private static class PendingEntry {
+    private final EntryAccounting entry;
+    private final Future<byte[]> compressed;
+    private final long size;
+
+    private PendingEntry(EntryAccounting entry, Future<byte[]> compressed, long size) {
+      this.entry = entry;
+      this.compressed = compressed;
+      this.size = size;
+    }
   }
 }
@@ -17,9 +17,13 @@
 package com.facebook.buck.util.zip;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 
 /**
  * Each zip file has a "central directory" at the end of the archive, which provides the indexes
@@ -30,6 +34,99 @@ import java.util.zip.ZipEntry;
  */
 class CentralDirectory {
 
+  /** Size of the end of central directory record, without its comment. */
+  static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  /** Size of a file header in the central directory, without its name, extra data and comment. */
+  private static final int FILE_HEADER_SIZE = 46;
+
+  private static final long ZIP64_MARKER = 0xffffffffL;
+
+  /**
+   * Finds the end of central directory record at the end of a zip.
+   *
+   * @param tail The last bytes of the zip, which must include the record and its comment.
+   * @return the position of the record in {@code tail}.
+   */
+  static int findEndOfCentralDirectory(ByteBuffer tail) throws ZipException {
+    tail.order(ByteOrder.LITTLE_ENDIAN);
+    for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        position >= 0;
+        position--) {
+      if (tail.getInt(position) != ZipEntry.ENDSIG) {
+        continue;
+      }
+      int commentLength = Short.toUnsignedInt(tail.getShort(position + 20));
+      if (position + END_OF_CENTRAL_DIRECTORY_SIZE + commentLength <= tail.limit()) {
+        return position;
+      }
+    }
+    throw new ZipException("End of central directory not found.");
+  }
+
+  /** Returns the size of the central directory described by the record at {@code position}. */
+  static long getCentralDirectorySize(ByteBuffer tail, int position) {
+    return Integer.toUnsignedLong(tail.getInt(position + 12));
+  }
+
+  /** Returns the offset of the central directory described by the record at {@code position}. */
+  static long getCentralDirectoryOffset(ByteBuffer tail, int position) throws ZipException {
+    long offset = Integer.toUnsignedLong(tail.getInt(position + 16));
+    if (offset == ZIP64_MARKER) {
+      throw new ZipException("Zip64 archives are not supported.");
+    }
+    return offset;
+  }
+
+  /**
+   * Reads the file headers of a central directory. The entry count of the end of central directory
+   * record is not used, since it overflows in zips with many entries.
+   *
+   * @param centralDirectory The bytes of the central directory, without the end record.
+   */
+  static ImmutableList<ZipFileIndex.Entry> readFileHeaders(ByteBuffer centralDirectory)
+      throws ZipException {
+    centralDirectory.order(ByteOrder.LITTLE_ENDIAN);
+    ImmutableList.Builder<ZipFileIndex.Entry> entries = ImmutableList.builder();
+    int position = centralDirectory.position();
+    while (position + FILE_HEADER_SIZE <= centralDirectory.limit()) {
+      if (centralDirectory.getInt(position) != ZipEntry.CENSIG) {
+        throw new ZipException("Invalid central directory file header at " + position);
+      }
+      int nameLength = Short.toUnsignedInt(centralDirectory.getShort(position + 28));
+      int extraLength = Short.toUnsignedInt(centralDirectory.getShort(position + 30));
+      int commentLength = Short.toUnsignedInt(centralDirectory.getShort(position + 32));
+      if (position + FILE_HEADER_SIZE + nameLength + extraLength + commentLength
+          > centralDirectory.limit()) {
+        throw new ZipException("Truncated central directory file header at " + position);
+      }
+
+      ByteBuffer variableFields = centralDirectory.duplicate();
+      variableFields.position(position + FILE_HEADER_SIZE);
+      byte[] nameBytes = new byte[nameLength];
+      variableFields.get(nameBytes);
+      byte[] extra = new byte[extraLength];
+      variableFields.get(extra);
+      byte[] commentBytes = new byte[commentLength];
+      variableFields.get(commentBytes);
+
+      entries.add(
+          new ZipFileIndex.Entry(
+              new String(nameBytes, Charsets.UTF_8),
+              Short.toUnsignedInt(centralDirectory.getShort(position + 8)),
+              Short.toUnsignedInt(centralDirectory.getShort(position + 10)),
+              Integer.toUnsignedLong(centralDirectory.getInt(position + 12)),
+              Integer.toUnsignedLong(centralDirectory.getInt(position + 16)),
+              Integer.toUnsignedLong(centralDirectory.getInt(position + 20)),
+              Integer.toUnsignedLong(centralDirectory.getInt(position + 24)),
+              Integer.toUnsignedLong(centralDirectory.getInt(position + 42)),
+              extra,
+              new String(commentBytes, Charsets.UTF_8)));
+
+      position += FILE_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return entries.build();
+  }
+
   /**
    * Write the entire central directory, including the file headers and the end of central directory
    * signature.
@@ -85,6 +85,17 @@ public class CustomJarOutputStream extends CustomZipOutputStream {
       currentEntry = entry;
     }
 
+    @Override
+    public void actuallyPutNextRawEntry(ZipEntry entry) throws IOException {
+      if (shouldHashEntries && !entry.isDirectory()) {
+        throw new IllegalStateException(
+            "Attempted to copy a compressed entry with hashing enabled: " + entry.getName());
+      }
+      inner.actuallyPutNextRawEntry(entry);
+
+      currentEntry = entry;
+    }
+
     @Override
     public void actuallyWrite(byte[] b, int off, int len) throws IOException {
       inner.actuallyWrite(b, off, len);
@@ -40,6 +40,12 @@ public class CustomZipOutputStream extends OutputStream {
      */
     void actuallyPutNextEntry(ZipEntry entry) throws IOException;
 
+    /**
+     * Like {@link #actuallyPutNextEntry(ZipEntry)}, but the bytes written for this entry are
+     * already compressed with the entry's method, and its size, compressed size and CRC are set.
+     */
+    void actuallyPutNextRawEntry(ZipEntry entry) throws IOException;
+
     /**
      * Called by {@link CustomZipOutputStream#close()} and used by impls to close the delegate
      * stream. This method will be called at most once in the lifecycle of the
@@ -77,6 +83,21 @@ public class CustomZipOutputStream extends OutputStream {
     entryOpen = true;
   }
 
+  /**
+   * Begins an entry whose bytes are copied as they are from another zip. The bytes written until
+   * the entry is closed must be compressed with the method of the entry, and the entry must have
+   * its size, compressed size and CRC set to those of the original entry.
+   */
+  public final void putNextRawEntry(ZipEntry entry) throws IOException {
+    Preconditions.checkState(state != State.CLOSED, "Stream has been closed.");
+
+    state = State.OPEN;
+    closeEntry();
+    validateEntry(entry);
+    impl.actuallyPutNextRawEntry(entry);
+    entryOpen = true;
+  }
+
   private void validateEntry(ZipEntry entry) {
     if (entry.getMethod() == ZipEntry.STORED) {
       Preconditions.checkState(
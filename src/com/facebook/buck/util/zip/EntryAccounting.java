@@ -24,11 +24,11 @@ import com.google.common.hash.Hashing;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Locale;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import javax.annotation.Nullable;
 
 /**
  * A wrapper containing the {@link ZipEntry} and additional book keeping information required to
@@ -53,6 +53,8 @@ class EntryAccounting {
 
   private final ZipEntry entry;
   private final Method method;
+  /** Whether the bytes written are already compressed, and the entry knows its sizes and CRC. */
+  private final boolean raw;
   private Hasher crc = Hashing.crc32().newHasher();
   private long offset;
   private long length = 0;
@@ -69,12 +71,25 @@ class EntryAccounting {
    */
   private int flags = UTF8_NAMES_FLAG;
 
-  private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  /** Created on first use, since entries may wait a while before they are compressed. */
+  @Nullable private Deflater deflater;
   private final byte[] buffer = new byte[ARBITRARY_SIZE];
 
   public EntryAccounting(Clock clock, ZipEntry entry, long currentOffset) {
+    this(clock, entry, currentOffset, false);
+  }
+
+  public EntryAccounting(Clock clock, ZipEntry entry, long currentOffset, boolean raw) {
     this.entry = entry;
     this.method = Method.detect(entry.getMethod());
+    this.raw = raw;
+    if (raw) {
+      Preconditions.checkArgument(
+          entry.getCrc() != -1 && entry.getSize() != -1 && entry.getCompressedSize() != -1,
+          "The size, compressed size and CRC of %s must be known to copy it raw.",
+          entry.getName());
+    }
     this.offset = currentOffset;
 
     if (entry.getTime() == -1) {
@@ -82,7 +97,7 @@ class EntryAccounting {
     }
 
     if (entry instanceof CustomZipEntry) {
-      deflater.setLevel(((CustomZipEntry) entry).getCompressionLevel());
+      compressionLevel = ((CustomZipEntry) entry).getCompressionLevel();
       externalAttributes = ((CustomZipEntry) entry).getExternalAttributes();
     }
   }
@@ -137,6 +152,10 @@ class EntryAccounting {
     return entry.getCrc();
   }
 
+  public boolean isRaw() {
+    return raw;
+  }
+
   public int getCompressionMethod() {
     return method.compressionMethod;
   }
@@ -231,10 +250,17 @@ class EntryAccounting {
     }
   }
 
-  private int deflate(OutputStream out) throws IOException {
+  private Deflater getDeflater() {
+    if (deflater == null) {
+      deflater = new Deflater(compressionLevel, true);
+    }
+    return deflater;
+  }
+
+  private int deflate(Deflater deflater, OutputStream out) throws IOException {
     int written = deflater.deflate(buffer, 0, buffer.length);
     if (written > 0) {
-      out.write(Arrays.copyOf(buffer, written));
+      out.write(buffer, 0, written);
     }
     return written;
   }
@@ -243,16 +269,23 @@ class EntryAccounting {
     if (len == 0) {
       return;
     }
+    if (raw) {
+      out.write(b, off, len);
+      length += len;
+      return;
+    }
+
     updateCrc(b, off, len);
 
     if (method == Method.STORE) {
       out.write(b, off, len);
       length += len;
     } else if (method == Method.DEFLATE) {
+      Deflater deflater = getDeflater();
       Preconditions.checkState(!deflater.finished());
       deflater.setInput(b, off, len);
       while (!deflater.needsInput()) {
-        deflate(out);
+        deflate(deflater, out);
       }
     }
   }
@@ -262,7 +295,11 @@ class EntryAccounting {
    * local file header, but counting the data descriptor if present). Must be called exactly once.
    */
   public long finish(OutputStream out) throws IOException {
-    if (method == Method.STORE) {
+    if (raw) {
+      Preconditions.checkState(
+          entry.getCompressedSize() == length,
+          "Number of bytes written differs from what is specified in the entry.");
+    } else if (method == Method.STORE) {
       Preconditions.checkState(
           entry.getSize() == length && entry.getCompressedSize() == length,
           "Number of bytes written differs from what is specified in the entry.");
@@ -270,9 +307,10 @@ class EntryAccounting {
           entry.getCrc() == calculateCrc(),
           "CRC of bytes written differs from what is specified in the entry.");
     } else if (method == Method.DEFLATE) {
+      Deflater deflater = getDeflater();
       deflater.finish();
       while (!deflater.finished()) {
-        deflate(out);
+        deflate(deflater, out);
       }
       entry.setSize(deflater.getBytesRead());
       entry.setCompressedSize(deflater.getBytesWritten());
@@ -280,7 +318,9 @@ class EntryAccounting {
     }
 
     // regardless of the method used, end the deflater to free native resources.
-    deflater.end();
+    if (deflater != null) {
+      deflater.end();
+    }
 
     // write the data descriptor if required
     byte[] dataDescriptor = getDataDescriptor();
@@ -18,6 +18,7 @@ package com.facebook.buck.util.zip;
 
 import com.facebook.buck.core.exceptions.HumanReadableException;
 import com.facebook.buck.util.RichStream;
+import com.facebook.buck.util.function.ThrowingSupplier;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
@@ -36,12 +37,15 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import javax.annotation.Nullable;
 
 public class JarBuilder {
@@ -68,6 +72,7 @@ public class JarBuilder {
   private boolean shouldDisallowAllDuplicates;
   private boolean shouldHashEntries;
   private Predicate<? super CustomZipEntry> removeEntryPredicate = entry -> false;
+  @Nullable private ExecutorService compressionExecutor;
   private List<JarEntryContainer> sourceContainers = new ArrayList<>();
   private Set<String> alreadyAddedEntries = new HashSet<>();
   private Map<String, Set<String>> services = new HashMap<>();
@@ -132,11 +137,19 @@ public class JarBuilder {
     return this;
   }
 
+  /** Compresses the entries of the jar in the background on {@code compressionExecutor}. */
+  public JarBuilder setCompressionExecutor(@Nullable ExecutorService compressionExecutor) {
+    this.compressionExecutor = compressionExecutor;
+    return this;
+  }
+
   public int createJarFile(Path outputFile) throws IOException {
     Preconditions.checkArgument(outputFile.isAbsolute());
     try (CustomJarOutputStream jar =
         ZipOutputStreams.newJarOutputStream(
-            outputFile, ZipOutputStreams.HandleDuplicates.APPEND_TO_ZIP)) {
+            outputFile,
+            ZipOutputStreams.HandleDuplicates.APPEND_TO_ZIP,
+            Optional.ofNullable(compressionExecutor))) {
       jar.setEntryHashingEnabled(shouldHashEntries);
       this.outputFile = outputFile;
 
@@ -270,6 +283,23 @@ public class JarBuilder {
       return;
     }
 
+    // Entries of other zips are copied as they are stored, unless they need to be hashed or to be
+    // compressed differently.
+    Optional<CustomZipEntry> rawEntry = entrySupplier.getRawEntry();
+    Optional<ThrowingSupplier<InputStream, IOException>> rawInputStreamSupplier =
+        entrySupplier.getRawInputStreamSupplier();
+    if (!shouldHashEntries
+        && rawEntry.isPresent()
+        && rawInputStreamSupplier.isPresent()
+        && entry.getCompressionLevel() == Deflater.DEFAULT_COMPRESSION) {
+      jar.putNextRawEntry(rawEntry.get());
+      try (InputStream rawInputStream = rawInputStreamSupplier.get().get()) {
+        ByteStreams.copy(rawInputStream, jar);
+      }
+      jar.closeEntry();
+      return;
+    }
+
     jar.putNextEntry(entry);
     try (InputStream entryInputStream = entrySupplier.getInputStreamSupplier().get()) {
       if (entryInputStream != null) {
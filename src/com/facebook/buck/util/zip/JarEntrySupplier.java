@@ -19,6 +19,8 @@ package com.facebook.buck.util.zip;
 import com.facebook.buck.util.function.ThrowingSupplier;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * Encapsulates a file or directory to be added as a single entry to a jar by {@link JarBuilder}.
@@ -27,14 +29,32 @@ public class JarEntrySupplier {
   private final CustomZipEntry entry;
   private final String owner;
   private final ThrowingSupplier<InputStream, IOException> inputStreamSupplier;
+  @Nullable private final CustomZipEntry rawEntry;
+  @Nullable private final ThrowingSupplier<InputStream, IOException> rawInputStreamSupplier;
 
   public JarEntrySupplier(
       CustomZipEntry entry,
       String owner,
       ThrowingSupplier<InputStream, IOException> inputStreamSupplier) {
+    this(entry, owner, inputStreamSupplier, null, null);
+  }
+
+  /**
+   * @param rawEntry the entry with its compressed size, CRC and size set, for copying the entry as
+   *     it is stored in its zip.
+   * @param rawInputStreamSupplier supplies the bytes of the entry as they are stored in its zip.
+   */
+  public JarEntrySupplier(
+      CustomZipEntry entry,
+      String owner,
+      ThrowingSupplier<InputStream, IOException> inputStreamSupplier,
+      @Nullable CustomZipEntry rawEntry,
+      @Nullable ThrowingSupplier<InputStream, IOException> rawInputStreamSupplier) {
     this.entry = entry;
     this.owner = owner;
     this.inputStreamSupplier = inputStreamSupplier;
+    this.rawEntry = rawEntry;
+    this.rawInputStreamSupplier = rawInputStreamSupplier;
   }
 
   public CustomZipEntry getEntry() {
@@ -48,4 +68,14 @@ public class JarEntrySupplier {
   public ThrowingSupplier<InputStream, IOException> getInputStreamSupplier() {
     return inputStreamSupplier;
   }
+
+  /** Returns the entry to use when copying its bytes as they are stored in its zip, if possible. */
+  public Optional<CustomZipEntry> getRawEntry() {
+    return Optional.ofNullable(rawEntry);
+  }
+
+  /** Supplies the bytes of the entry as they are stored in its zip, if they can be copied. */
+  public Optional<ThrowingSupplier<InputStream, IOException>> getRawInputStreamSupplier() {
+    return Optional.ofNullable(rawInputStreamSupplier);
+  }
 }
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.zip;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+
+/**
+ * The entries of a zip file, as listed in its central directory, along with where their bytes are.
+ *
+ * <p>Only the central directory is read to build the index, and the bytes of an entry are read
+ * from the zip when they are asked for, so indexes hold neither file descriptors nor mappings of
+ * the zip. Indexes obtained with {@link #get(Path)} are shared by the whole daemon, until the zip
+ * changes or it is one of the least recently used ones. Whether a zip changed is decided by a hash
+ * of its central directory, which holds the CRC and sizes of every entry, as zips fetched from a
+ * cache may be rewritten in place with the same size and modification time. The local header of
+ * an entry is also checked before its bytes are read, in case the zip changes while it is read.
+ *
+ * <p>This also gives access to the compressed bytes of each entry, so that they can be copied to
+ * another zip as they are, instead of being inflated and deflated again.
+ */
+public class ZipFileIndex {
+  /** Size of a local file header, without its name and extra data. */
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  /** The end of central directory record, and a comment of the maximum length. */
+  private static final int MAX_END_OF_CENTRAL_DIRECTORY_SIZE =
+      CentralDirectory.END_OF_CENTRAL_DIRECTORY_SIZE + 0xffff;
+
+  private static final int MAX_CACHED_INDEXES = 1000;
+  private static final int MAX_BUFFER_SIZE = 8192;
+
+  private static final Cache<Path, ZipFileIndex> INDEXES =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_INDEXES).build();
+
+  private final Path path;
+  private final ImmutableList<Entry> entries;
+  private final HashCode centralDirectoryHash;
+
+  private ZipFileIndex(Path path, ImmutableList<Entry> entries, HashCode centralDirectoryHash) {
+    this.path = path;
+    this.entries = entries;
+    this.centralDirectoryHash = centralDirectoryHash;
+  }
+
+  /**
+   * Returns the index of a zip file, parsing its central directory only if it changed since it was
+   * last read.
+   *
+   * @throws ZipException if the zip is not one that can be indexed, such as zip64 archives.
+   */
+  public static ZipFileIndex get(Path path) throws IOException {
+    Path absolutePath = path.toAbsolutePath();
+    ByteBuffer centralDirectory = readCentralDirectory(absolutePath);
+    HashCode hash = hash(centralDirectory);
+    ZipFileIndex cached = INDEXES.getIfPresent(absolutePath);
+    if (cached != null && cached.centralDirectoryHash.equals(hash)) {
+      return cached;
+    }
+    // Zips needed by several threads at once may be indexed more than once, which is harmless.
+    ZipFileIndex index =
+        new ZipFileIndex(absolutePath, CentralDirectory.readFileHeaders(centralDirectory), hash);
+    INDEXES.put(absolutePath, index);
+    return index;
+  }
+
+  /** Reads the central directory of a zip file, without sharing the index. */
+  public static ZipFileIndex open(Path path) throws IOException {
+    ByteBuffer centralDirectory = readCentralDirectory(path);
+    HashCode hash = hash(centralDirectory);
+    return new ZipFileIndex(path, CentralDirectory.readFileHeaders(centralDirectory), hash);
+  }
+
+  /**
+   * Returns a hash of the central directory of a zip file. It changes whenever an entry is added,
+   * removed, renamed or has its contents changed, as the central directory holds the CRC and sizes
+   * of every entry, and it is much cheaper to compute than a hash of the whole zip.
+   *
+   * @throws ZipException if the zip is not one that can be indexed, such as zip64 archives.
+   */
+  public static HashCode hashCentralDirectory(Path path) throws IOException {
+    return hash(readCentralDirectory(path));
+  }
+
+  private static ByteBuffer readCentralDirectory(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int tailSize = (int) Math.min(size, MAX_END_OF_CENTRAL_DIRECTORY_SIZE);
+      ByteBuffer tail = read(channel, path, size - tailSize, tailSize);
+      int endPosition = CentralDirectory.findEndOfCentralDirectory(tail);
+      long centralDirectorySize = CentralDirectory.getCentralDirectorySize(tail, endPosition);
+      long centralDirectoryOffset = CentralDirectory.getCentralDirectoryOffset(tail, endPosition);
+      if (centralDirectoryOffset + centralDirectorySize > size
+          || centralDirectorySize > Integer.MAX_VALUE) {
+        throw new ZipException("Invalid central directory in " + path);
+      }
+      return read(channel, path, centralDirectoryOffset, (int) centralDirectorySize);
+    }
+  }
+
+  private static HashCode hash(ByteBuffer centralDirectory) {
+    return Hashing.sha1().hashBytes(centralDirectory.duplicate());
+  }
+
+  /** Reads {@code size} bytes of the zip at {@code position}. */
+  private static ByteBuffer read(FileChannel channel, Path path, long position, int size)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new ZipException(String.format("Unexpected end of %s", path));
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /** Returns the entries in the order they appear in the central directory. */
+  public ImmutableList<Entry> getEntries() {
+    return entries;
+  }
+
+  /** Returns the first entry with the given name. */
+  public Optional<Entry> getEntry(String name) {
+    return entries.stream().filter(entry -> entry.getName().equals(name)).findFirst();
+  }
+
+  /**
+   * Opens the zip to read any number of its entries through a single file channel, such as when
+   * all of them are read in turn.
+   */
+  public Reader openReader() throws IOException {
+    return new Reader(FileChannel.open(path, StandardOpenOption.READ));
+  }
+
+  /**
+   * Returns the bytes of an entry as they are stored in the zip, which are compressed unless the
+   * entry is {@link ZipEntry#STORED}. The zip stays open until the stream is closed.
+   */
+  public InputStream getRawInputStream(Entry entry) throws IOException {
+    Reader reader = openReader();
+    try {
+      return reader.getRawInputStream(entry, reader);
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+  }
+
+  /** Returns the uncompressed bytes of an entry. The zip stays open until the stream is closed. */
+  public InputStream getInputStream(Entry entry) throws IOException {
+    return inflate(entry, getRawInputStream(entry));
+  }
+
+  private static InputStream inflate(Entry entry, InputStream raw) {
+    if (entry.getMethod() == ZipEntry.STORED) {
+      return raw;
+    }
+    Inflater inflater = new Inflater(/* nowrap */ true);
+    // Inflaters without zlib headers may need a byte past the end of the data.
+    return new InflaterInputStream(
+        new SequenceInputStream(raw, new ByteArrayInputStream(new byte[1])), inflater) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+
+  /**
+   * Reads the entries of the zip through one file channel, which stays open until the reader is
+   * closed. Streams of several entries may be open at once.
+   */
+  public class Reader implements Closeable {
+    private final FileChannel channel;
+
+    private Reader(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /**
+     * Returns the bytes of an entry as they are stored in the zip, which are compressed unless the
+     * entry is {@link ZipEntry#STORED}.
+     */
+    public InputStream getRawInputStream(Entry entry) throws IOException {
+      return getRawInputStream(entry, () -> {});
+    }
+
+    /** Returns the uncompressed bytes of an entry. */
+    public InputStream getInputStream(Entry entry) throws IOException {
+      return inflate(entry, getRawInputStream(entry));
+    }
+
+    private InputStream getRawInputStream(Entry entry, Closeable onClose) throws IOException {
+      if (!entry.canCopyRaw()) {
+        throw new ZipException(String.format("Unsupported entry %s in %s", entry.getName(), path));
+      }
+      long dataOffset = getDataOffset(entry);
+      int bufferSize = (int) Math.max(1, Math.min(entry.getCompressedSize(), MAX_BUFFER_SIZE));
+      return new BufferedInputStream(
+          new ChannelRangeInputStream(
+              channel, path, dataOffset, dataOffset + entry.getCompressedSize(), onClose),
+          bufferSize);
+    }
+
+    /** Checks the local file header of an entry, and returns where its bytes start. */
+    private long getDataOffset(Entry entry) throws IOException {
+      long localHeaderOffset = entry.getLocalHeaderOffset();
+      long zipSize = channel.size();
+      byte[] expectedName = entry.getName().getBytes(Charsets.UTF_8);
+      int headerSize = LOCAL_FILE_HEADER_SIZE + expectedName.length;
+      if (localHeaderOffset + headerSize > zipSize) {
+        throw new ZipException(
+            String.format("Invalid local file header for %s in %s", entry.getName(), path));
+      }
+      // The header and the name are read at once, as the name is expected to match the entry's.
+      ByteBuffer header = read(channel, path, localHeaderOffset, headerSize);
+      int nameLength = Short.toUnsignedInt(header.getShort(26));
+      int extraLength = Short.toUnsignedInt(header.getShort(28));
+      header.position(LOCAL_FILE_HEADER_SIZE);
+      if (header.getInt(0) != ZipEntry.LOCSIG
+          || nameLength != expectedName.length
+          || !header.slice().equals(ByteBuffer.wrap(expectedName))) {
+        throw new ZipException(
+            String.format("Invalid local file header for %s in %s", entry.getName(), path));
+      }
+      long dataOffset = localHeaderOffset + headerSize + extraLength;
+      if (dataOffset + entry.getCompressedSize() > zipSize) {
+        throw new ZipException(String.format("Truncated entry %s in %s", entry.getName(), path));
+      }
+      return dataOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  /** Reads a range of a file with positional reads, so that several can share one channel. */
+  private static class ChannelRangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private final Path path;
+    private final long end;
+    private final Closeable onClose;
+    private long position;
+
+    private ChannelRangeInputStream(
+        FileChannel channel, Path path, long start, long end, Closeable onClose) {
+      this.channel = channel;
+      this.path = path;
+      this.position = start;
+      this.end = end;
+      this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(b[0]);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      int toRead = (int) Math.min(len, end - position);
+      int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+      if (read < 0) {
+        throw new ZipException(String.format("Unexpected end of %s", path));
+      }
+      position += read;
+      return read;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0, Math.min(n, end - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(end - position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      onClose.close();
+    }
+  }
+
+  /** An entry of the central directory. */
+  public static class Entry {
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final long ZIP64_MARKER = 0xffffffffL;
+
+    private final String name;
+    private final int flags;
+    private final int method;
+    private final long dosTime;
+    private final long crc;
+    private final long compressedSize;
+    private final long size;
+    private final long localHeaderOffset;
+    private final byte[] extra;
+    private final String comment;
+
+    Entry(
+        String name,
+        int flags,
+        int method,
+        long dosTime,
+        long crc,
+        long compressedSize,
+        long size,
+        long localHeaderOffset,
+        byte[] extra,
+        String comment) {
+      this.name = name;
+      this.flags = flags;
+      this.method = method;
+      this.dosTime = dosTime;
+      this.crc = crc;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+      this.extra = extra;
+      this.comment = comment;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getMethod() {
+      return method;
+    }
+
+    /**
+     * Returns the modification time of the entry in milliseconds, read in the default time zone as
+     * {@link ZipEntry#getTime()} does.
+     */
+    public long getTime() {
+      Calendar calendar = Calendar.getInstance(Locale.US);
+      calendar.clear();
+      calendar.set(
+          (int) (1980 + ((dosTime >> 25) & 0x7f)),
+          (int) (((dosTime >> 21) & 0x0f) - 1),
+          (int) ((dosTime >> 16) & 0x1f),
+          (int) ((dosTime >> 11) & 0x1f),
+          (int) ((dosTime >> 5) & 0x3f),
+          (int) ((dosTime << 1) & 0x3e));
+      return calendar.getTimeInMillis();
+    }
+
+    public long getCrc() {
+      return crc;
+    }
+
+    public long getCompressedSize() {
+      return compressedSize;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLocalHeaderOffset() {
+      return localHeaderOffset;
+    }
+
+    /** Returns the extra data of the entry in the central directory, or nothing if it has none. */
+    @Nullable
+    public byte[] getExtra() {
+      return extra.length == 0 ? null : extra.clone();
+    }
+
+    /** Returns the comment of the entry, or nothing if it has none. */
+    @Nullable
+    public String getComment() {
+      return comment.isEmpty() ? null : comment;
+    }
+
+    /**
+     * Whether the bytes of the entry can be copied to another zip as they are. Encrypted entries
+     * and entries whose sizes only fit in zip64 extra data can't.
+     */
+    public boolean canCopyRaw() {
+      return (flags & ENCRYPTED_FLAG) == 0
+          && (method == ZipEntry.DEFLATED || method == ZipEntry.STORED)
+          && compressedSize != ZIP64_MARKER
+          && size != ZIP64_MARKER
+          && localHeaderOffset != ZIP64_MARKER;
+    }
+  }
+}
@@ -19,10 +19,16 @@ package com.facebook.buck.util.zip;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import javax.annotation.Nullable;
 
 /** Provides all entries of a given zip or jar file, so they can be added to another jar. */
@@ -30,6 +36,9 @@ class ZipFileJarEntryContainer implements JarEntryContainer {
   private final String owner;
   private final Path jarFilePath;
   @Nullable private JarFile jar;
+  @Nullable private ZipFileIndex.Reader reader;
+  /** The entries that can be copied as they are stored, by name. */
+  @Nullable private Map<String, ZipFileIndex.Entry> rawEntries;
 
   public ZipFileJarEntryContainer(Path jarFilePath) {
     this.jarFilePath = jarFilePath;
@@ -44,17 +53,69 @@ class ZipFileJarEntryContainer implements JarEntryContainer {
 
   @Override
   public Stream<JarEntrySupplier> stream() throws IOException {
-    return getJarFile()
-        .stream()
-        .map(
-            entry ->
-                new JarEntrySupplier(
-                    makeCustomEntry(entry), owner, () -> getJarFile().getInputStream(entry)));
+    Map<String, ZipFileIndex.Entry> rawEntries = getRawEntries();
+    return getJarFile().stream().map(entry -> makeSupplier(entry, rawEntries.get(entry.getName())));
+  }
+
+  private JarEntrySupplier makeSupplier(ZipEntry entry, @Nullable ZipFileIndex.Entry rawEntry) {
+    // The index is read separately from the jar file, and the entries are only copied raw if both
+    // describe them the same way, in case the jar was rewritten in between.
+    if (rawEntry == null
+        || rawEntry.getMethod() != entry.getMethod()
+        || rawEntry.getCrc() != entry.getCrc()
+        || rawEntry.getSize() != entry.getSize()
+        || rawEntry.getCompressedSize() != entry.getCompressedSize()) {
+      return new JarEntrySupplier(
+          makeCustomEntry(entry), owner, () -> getJarFile().getInputStream(entry));
+    }
+
+    CustomZipEntry customRawEntry = new CustomZipEntry(entry);
+    customRawEntry.setCrc(rawEntry.getCrc());
+    customRawEntry.setSize(rawEntry.getSize());
+    customRawEntry.setCompressedSize(rawEntry.getCompressedSize());
+    return new JarEntrySupplier(
+        makeCustomEntry(entry),
+        owner,
+        () -> getJarFile().getInputStream(entry),
+        customRawEntry,
+        () -> Objects.requireNonNull(reader).getRawInputStream(rawEntry));
   }
 
   @Override
   public void close() throws IOException {
-    getJarFile().close();
+    try {
+      getJarFile().close();
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  private Map<String, ZipFileIndex.Entry> getRawEntries() throws IOException {
+    if (rawEntries == null) {
+      rawEntries = new HashMap<>();
+      ZipFileIndex index;
+      try {
+        // Not the shared index, the entries are copied as its offsets say they are in the jar.
+        index = ZipFileIndex.open(jarFilePath);
+      } catch (ZipException e) {
+        // Zips we can't index, such as zip64 ones, are recompressed.
+        return rawEntries;
+      }
+      Set<String> duplicateNames = new HashSet<>();
+      for (ZipFileIndex.Entry entry : index.getEntries()) {
+        if (entry.canCopyRaw() && rawEntries.put(entry.getName(), entry) != null) {
+          duplicateNames.add(entry.getName());
+        }
+      }
+      // The jar file gives the first of duplicate entries, don't guess which one it is.
+      rawEntries.keySet().removeAll(duplicateNames);
+      if (!rawEntries.isEmpty()) {
+        reader = index.openReader();
+      }
+    }
+    return rawEntries;
   }
 
   private JarFile getJarFile() throws IOException {
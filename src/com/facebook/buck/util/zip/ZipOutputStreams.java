@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 public class ZipOutputStreams {
 
@@ -76,6 +78,38 @@ public class ZipOutputStreams {
     return newJarOutputStream(new BufferedOutputStream(Files.newOutputStream(jarFile)), mode);
   }
 
+  /**
+   * Create a new {@link CustomZipOutputStream} that handles duplicate entries in the way dictated
+   * by {@code mode}, and compresses its entries in the background on {@code compressionExecutor},
+   * if any, unless duplicates overwrite existing entries.
+   *
+   * @param zipFile The file to write to.
+   * @param mode How to handle duplicate entries.
+   * @param compressionExecutor The executor to compress entries on.
+   */
+  public static CustomZipOutputStream newOutputStream(
+      Path zipFile, HandleDuplicates mode, Optional<ExecutorService> compressionExecutor)
+      throws IOException {
+    return newOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(zipFile)), mode, compressionExecutor);
+  }
+
+  public static CustomZipOutputStream newOutputStream(
+      OutputStream out, HandleDuplicates mode, Optional<ExecutorService> compressionExecutor) {
+    return new CustomZipOutputStream(newImpl(out, mode, new DefaultClock(), compressionExecutor));
+  }
+
+  public static CustomJarOutputStream newJarOutputStream(
+      Path jarFile, HandleDuplicates mode, Optional<ExecutorService> compressionExecutor)
+      throws IOException {
+    return new CustomJarOutputStream(
+        newImpl(
+            new BufferedOutputStream(Files.newOutputStream(jarFile)),
+            mode,
+            new DefaultClock(),
+            compressionExecutor));
+  }
+
   /**
    * Create a new {@link CustomZipOutputStream} that handles duplicate entries in the way dictated
    * by {@code mode}.
@@ -103,12 +137,24 @@ public class ZipOutputStreams {
 
   protected static CustomZipOutputStream.Impl newImpl(
       OutputStream out, HandleDuplicates mode, Clock clock) {
+    return newImpl(out, mode, clock, Optional.empty());
+  }
+
+  private static CustomZipOutputStream.Impl newImpl(
+      OutputStream out,
+      HandleDuplicates mode,
+      Clock clock,
+      Optional<ExecutorService> compressionExecutor) {
     CustomZipOutputStream.Impl impl;
     switch (mode) {
       case APPEND_TO_ZIP:
       case THROW_EXCEPTION:
         impl =
-            new AppendingZipOutputStreamImpl(clock, out, mode == HandleDuplicates.THROW_EXCEPTION);
+            new AppendingZipOutputStreamImpl(
+                clock,
+                out,
+                mode == HandleDuplicates.THROW_EXCEPTION,
+                compressionExecutor.orElse(null));
         break;
       case OVERWRITE_EXISTING:
         impl = new OverwritingZipOutputStreamImpl(clock, out);
@@ -18,12 +18,14 @@ package com.facebook.buck.zip;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
 import com.facebook.buck.util.zip.CustomZipEntry;
 import com.facebook.buck.util.zip.CustomZipOutputStream;
 import com.facebook.buck.util.zip.ZipCompressionLevel;
+import com.facebook.buck.util.zip.ZipFileIndex;
 import com.facebook.buck.util.zip.ZipOutputStreams;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.Hashing;
@@ -35,7 +37,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 /**
@@ -91,37 +95,110 @@ public class RepackZipEntriesStep implements Step {
   public StepExecutionResult execute(ExecutionContext context) throws IOException {
     Path inputFile = filesystem.getPathForRelativePath(inputPath);
     Path outputFile = filesystem.getPathForRelativePath(outputPath);
+    Optional<ZipFileIndex> index = openIndex(inputFile);
+    try (CustomZipOutputStream out =
+        ZipOutputStreams.newOutputStream(
+            outputFile,
+            ZipOutputStreams.HandleDuplicates.THROW_EXCEPTION,
+            Optional.ofNullable(context.getExecutors().get(ExecutorPool.ZIP_COMPRESSION)))) {
+      if (index.isPresent()) {
+        repackFromIndex(index.get(), out);
+      } else {
+        repackFromStream(inputFile, out);
+      }
+      return StepExecutionResults.SUCCESS;
+    }
+  }
+
+  /**
+   * Returns the index of the zip, unless it has entries that the index can't read, such as zip64,
+   * encrypted or oddly compressed ones.
+   */
+  private static Optional<ZipFileIndex> openIndex(Path inputFile) throws IOException {
+    ZipFileIndex index;
+    try {
+      index = ZipFileIndex.open(inputFile);
+    } catch (ZipException e) {
+      return Optional.empty();
+    }
+    if (!index.getEntries().stream().allMatch(ZipFileIndex.Entry::canCopyRaw)) {
+      return Optional.empty();
+    }
+    return Optional.of(index);
+  }
+
+  private void repackFromIndex(ZipFileIndex index, CustomZipOutputStream out) throws IOException {
+    try (ZipFileIndex.Reader in = index.openReader()) {
+      for (ZipFileIndex.Entry entry : index.getEntries()) {
+        repackEntry(in, entry, out);
+      }
+    }
+  }
+
+  private void repackEntry(
+      ZipFileIndex.Reader in, ZipFileIndex.Entry entry, CustomZipOutputStream out)
+      throws IOException {
+    CustomZipEntry customEntry = new CustomZipEntry(entry.getName());
+    customEntry.setTime(entry.getTime());
+    customEntry.setExtra(entry.getExtra());
+    customEntry.setComment(entry.getComment());
+
+    // Entries that keep their compression are copied without being inflated and deflated.
+    boolean repack = entries.contains(entry.getName());
+    if (!repack
+        || (compressionLevel == ZipCompressionLevel.NONE && entry.getMethod() == ZipEntry.STORED)) {
+      customEntry.setMethod(entry.getMethod());
+      customEntry.setCrc(entry.getCrc());
+      customEntry.setSize(entry.getSize());
+      customEntry.setCompressedSize(entry.getCompressedSize());
+      out.putNextRawEntry(customEntry);
+      try (InputStream raw = in.getRawInputStream(entry)) {
+        ByteStreams.copy(raw, out);
+      }
+      out.closeEntry();
+      return;
+    }
+
+    customEntry.setCompressionLevel(compressionLevel.getValue());
+    try (InputStream entryInputStream = in.getInputStream(entry)) {
+      writeEntry(customEntry, entryInputStream, out);
+    }
+  }
+
+  private void repackFromStream(Path inputFile, CustomZipOutputStream out) throws IOException {
     try (ZipInputStream in =
-            new ZipInputStream(new BufferedInputStream(Files.newInputStream(inputFile)));
-        CustomZipOutputStream out = ZipOutputStreams.newOutputStream(outputFile)) {
+        new ZipInputStream(new BufferedInputStream(Files.newInputStream(inputFile)))) {
       for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
         CustomZipEntry customEntry = new CustomZipEntry(entry);
         if (entries.contains(customEntry.getName())) {
           customEntry.setCompressionLevel(compressionLevel.getValue());
         }
-
-        InputStream toUse;
-        // If we're using STORED files, we must pre-calculate the CRC.
-        if (customEntry.getMethod() == ZipEntry.STORED) {
-          try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            ByteStreams.copy(in, bos);
-            byte[] bytes = bos.toByteArray();
-            customEntry.setCrc(Hashing.crc32().hashBytes(bytes).padToLong());
-            customEntry.setSize(bytes.length);
-            customEntry.setCompressedSize(bytes.length);
-            toUse = new ByteArrayInputStream(bytes);
-          }
-        } else {
-          toUse = in;
-        }
-
-        out.putNextEntry(customEntry);
-        ByteStreams.copy(toUse, out);
-        out.closeEntry();
+        writeEntry(customEntry, in, out);
       }
+    }
+  }
 
-      return StepExecutionResults.SUCCESS;
+  private static void writeEntry(
+      CustomZipEntry customEntry, InputStream entryInputStream, CustomZipOutputStream out)
+      throws IOException {
+    InputStream toUse;
+    // If we're using STORED files, we must pre-calculate the CRC.
+    if (customEntry.getMethod() == ZipEntry.STORED) {
+      try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+        ByteStreams.copy(entryInputStream, bos);
+        byte[] bytes = bos.toByteArray();
+        customEntry.setCrc(Hashing.crc32().hashBytes(bytes).padToLong());
+        customEntry.setSize(bytes.length);
+        customEntry.setCompressedSize(bytes.length);
+        toUse = new ByteArrayInputStream(bytes);
+      }
+    } else {
+      toUse = entryInputStream;
     }
+
+    out.putNextEntry(customEntry);
+    ByteStreams.copy(toUse, out);
+    out.closeEntry();
   }
 
   @Override
@@ -21,6 +21,7 @@ import static com.facebook.buck.util.zip.ZipOutputStreams.HandleDuplicates.THROW
 import com.facebook.buck.event.ConsoleEvent;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -94,7 +95,11 @@ public class ZipStep implements Step {
 
     try (BufferedOutputStream baseOut =
             new BufferedOutputStream(filesystem.newFileOutputStream(pathToZipFile));
-        CustomZipOutputStream out = ZipOutputStreams.newOutputStream(baseOut, THROW_EXCEPTION)) {
+        CustomZipOutputStream out =
+            ZipOutputStreams.newOutputStream(
+                baseOut,
+                THROW_EXCEPTION,
+                Optional.ofNullable(context.getExecutors().get(ExecutorPool.ZIP_COMPRESSION)))) {
       /* TODO: Make this logic to avoid using exceptions.
        * If walking the file directory throws, then an empty jar file is still created.
        */
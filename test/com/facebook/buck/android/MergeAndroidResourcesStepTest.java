@@ -986,6 +986,88 @@ public class MergeAndroidResourcesStepTest {
     }
   }
 
+  @Test
+  public void testSymbolsFilesAreParsedOnlyWhenTheirContentsChange() throws Exception {
+    FakeProjectFilesystem filesystem = new FakeProjectFilesystem();
+    Path first = Paths.get("first/R.txt");
+    Path second = Paths.get("second/R.txt");
+    // Names no other test uses, since parsed files are cached for the whole process.
+    filesystem.writeLinesToPath(ImmutableList.of("int id parsed_once 0x7f010001"), first);
+    filesystem.writeLinesToPath(ImmutableList.of("int id parsed_once 0x7f010001"), second);
+
+    long parsed = MergeAndroidResourcesStep.SYMBOLS_FILES_PARSED.get();
+    assertEquals(
+        ImmutableList.of(new RDotTxtEntry(INT, ID, "parsed_once", "0x7f010001")),
+        MergeAndroidResourcesStep.readSymbolsFile(filesystem, first));
+    assertEquals(parsed + 1, MergeAndroidResourcesStep.SYMBOLS_FILES_PARSED.get());
+    assertEquals(
+        ImmutableList.of(new RDotTxtEntry(INT, ID, "parsed_once", "0x7f010001")),
+        MergeAndroidResourcesStep.readSymbolsFile(filesystem, second));
+    assertEquals(parsed + 1, MergeAndroidResourcesStep.SYMBOLS_FILES_PARSED.get());
+
+    filesystem.writeLinesToPath(ImmutableList.of("int id parsed_once 0x7f010002"), first);
+    assertEquals(
+        ImmutableList.of(new RDotTxtEntry(INT, ID, "parsed_once", "0x7f010002")),
+        MergeAndroidResourcesStep.readSymbolsFile(filesystem, first));
+    assertEquals(parsed + 2, MergeAndroidResourcesStep.SYMBOLS_FILES_PARSED.get());
+  }
+
+  @Test
+  public void testRDotJavaIsGeneratedOnlyWhenItsResourcesChange() throws Exception {
+    BuildTarget resTarget = BuildTargetFactory.newInstance("//:generated_once");
+    FakeProjectFilesystem filesystem = new FakeProjectFilesystem();
+    Path symbolsFile =
+        BuildTargetPaths.getGenPath(filesystem, resTarget, "__%s_text_symbols__/R.txt");
+    Path rDotJava = Paths.get("output/com/generated/once/R.java");
+
+    ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
+    SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(graphBuilder);
+    SourcePathResolver resolver = DefaultSourcePathResolver.from(ruleFinder);
+    AndroidResource res =
+        AndroidResourceRuleBuilder.newBuilder()
+            .setRuleFinder(ruleFinder)
+            .setBuildTarget(resTarget)
+            .setRes(FakeSourcePath.of("res"))
+            .setRDotJavaPackage("com.generated.once")
+            .build();
+    graphBuilder.addToIndex(res);
+    MergeAndroidResourcesStep mergeStep =
+        MergeAndroidResourcesStep.createStepForDummyRDotJava(
+            filesystem,
+            resolver,
+            ImmutableList.of(res),
+            Paths.get("output"),
+            /* forceFinalResourceIds */ false,
+            /* unionPackage */ Optional.empty(),
+            /* rName */ Optional.empty(),
+            /* useOldStyleableFormat */ false,
+            /* skipNonUnionRDotJava */ false);
+    ExecutionContext executionContext = TestExecutionContext.newInstance();
+
+    long generated = MergeAndroidResourcesStep.R_DOT_JAVA_FILES_GENERATED.get();
+    filesystem.writeLinesToPath(ImmutableList.of("int id generated_once 0x7f020000"), symbolsFile);
+    assertEquals(0, mergeStep.execute(executionContext).getExitCode());
+    String contents = filesystem.readFileIfItExists(rDotJava).get();
+    assertThat(contents, CoreMatchers.containsString("public static int generated_once="));
+    assertEquals(generated + 1, MergeAndroidResourcesStep.R_DOT_JAVA_FILES_GENERATED.get());
+
+    // Nothing changed: the same R.java is written again without generating it.
+    filesystem.deleteFileAtPath(rDotJava);
+    assertEquals(0, mergeStep.execute(executionContext).getExitCode());
+    assertEquals(Optional.of(contents), filesystem.readFileIfItExists(rDotJava));
+    assertEquals(generated + 1, MergeAndroidResourcesStep.R_DOT_JAVA_FILES_GENERATED.get());
+
+    // A resource was added: R.java is generated again.
+    filesystem.writeLinesToPath(
+        ImmutableList.of("int id generated_once 0x7f020000", "int id generated_twice 0x7f020001"),
+        symbolsFile);
+    assertEquals(0, mergeStep.execute(executionContext).getExitCode());
+    assertThat(
+        filesystem.readFileIfItExists(rDotJava).get(),
+        CoreMatchers.containsString("public static int generated_twice="));
+    assertEquals(generated + 2, MergeAndroidResourcesStep.R_DOT_JAVA_FILES_GENERATED.get());
+  }
+
   // sortSymbols has a goofy API.  This will help.
   private static class RDotTxtEntryBuilder {
     private final FakeProjectFilesystem filesystem;
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.facebook.buck.android.PerClassDexCache.ClassHeader;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class PerClassDexCacheTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  private ProjectFilesystem filesystem;
+  private Path libraryJar;
+
+  @Before
+  public void setUp() throws Exception {
+    filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    libraryJar = Paths.get(System.getProperty("java.home"), "lib", "rt.jar");
+  }
+
+  @Test
+  public void supertypesArePartOfTheKeyOnlyWhenDesugaring() {
+    ImmutableMap<String, ClassHeader> headers =
+        ImmutableMap.of(
+            "Base", ClassHeader.read(createClass("Base", "java/lang/Object", 0)),
+            "Sub", ClassHeader.read(createClass("Sub", "Base", 0)));
+    ImmutableMap<String, ClassHeader> changedBaseHeaders =
+        ImmutableMap.of(
+            "Base", ClassHeader.read(createClass("Base", "java/lang/Object", 1)),
+            "Sub", ClassHeader.read(createClass("Sub", "Base", 0)));
+
+    assertNotEquals(
+        PerClassDexCache.computeKey("options", "Sub", headers, true),
+        PerClassDexCache.computeKey("options", "Sub", changedBaseHeaders, true));
+    assertEquals(
+        PerClassDexCache.computeKey("options", "Sub", headers, false),
+        PerClassDexCache.computeKey("options", "Sub", changedBaseHeaders, false));
+    assertNotEquals(
+        PerClassDexCache.computeKey("options", "Sub", headers, false),
+        PerClassDexCache.computeKey("other options", "Sub", headers, false));
+  }
+
+  @Test
+  public void onlyChangedClassesAreDexedAgain() throws Exception {
+    Path classes = tmp.newFolder("classes");
+    Files.write(classes.resolve("Base.class"), createClass("Base", "java/lang/Object", 0));
+    Files.write(classes.resolve("Sub.class"), createClass("Sub", "Base", 0));
+    Path cacheDir = Paths.get("dex-cache");
+    PerClassDexCache cache = new PerClassDexCache(filesystem, cacheDir);
+
+    Optional<ImmutableList<byte[]>> dexFiles = getDexFiles(cache, classes);
+    assertTrue(dexFiles.isPresent());
+    assertEquals(2, dexFiles.get().size());
+    assertEquals(2, countEntries(cacheDir));
+
+    assertEquals(2, getDexFiles(cache, classes).get().size());
+    assertEquals(2, countEntries(cacheDir));
+
+    Files.write(classes.resolve("Sub.class"), createClass("Sub", "Base", 1));
+    assertEquals(2, getDexFiles(cache, classes).get().size());
+    assertEquals(3, countEntries(cacheDir));
+  }
+
+  @Test
+  public void staleEntriesAreRemovedAtMostOncePerDay() throws Exception {
+    Path cacheDir = Paths.get("dex-cache");
+    Path entry = filesystem.resolve(cacheDir).resolve("ab").resolve("abcdef.dex");
+    Files.createDirectories(entry.getParent());
+    Files.write(entry, new byte[0]);
+    FileTime longAgo = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(8));
+    Files.setLastModifiedTime(entry, longAgo);
+    PerClassDexCache cache = new PerClassDexCache(filesystem, cacheDir);
+
+    cache.removeStaleEntries();
+    assertFalse(Files.exists(entry));
+
+    Files.write(entry, new byte[0]);
+    Files.setLastModifiedTime(entry, longAgo);
+    cache.removeStaleEntries();
+    assertTrue(Files.exists(entry));
+  }
+
+  @Test
+  public void dexInputsAreNotSupported() throws Exception {
+    Path classes = tmp.newFolder("classes");
+    Files.write(classes.resolve("Base.class"), createClass("Base", "java/lang/Object", 0));
+    Files.write(classes.resolve("classes.dex"), new byte[0]);
+
+    assertFalse(
+        getDexFiles(new PerClassDexCache(filesystem, Paths.get("cache")), classes).isPresent());
+  }
+
+  private Optional<ImmutableList<byte[]>> getDexFiles(PerClassDexCache cache, Path classes)
+      throws Exception {
+    return cache.getDexFiles(
+        ImmutableList.of(classes),
+        ImmutableList.of(),
+        libraryJar,
+        CompilationMode.DEBUG,
+        false,
+        new DiagnosticsHandler() {});
+  }
+
+  private long countEntries(Path cacheDir) throws Exception {
+    try (Stream<Path> files = Files.walk(filesystem.resolve(cacheDir))) {
+      return files.filter(path -> path.toString().endsWith(".dex")).count();
+    }
+  }
+
+  /** Creates a class with a different constant for each {@code version}. */
+  private static byte[] createClass(String name, String superName, int version) {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, name, null, superName, null);
+    writer
+        .visitField(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+            "VERSION",
+            "I",
+            null,
+            version)
+        .visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+}
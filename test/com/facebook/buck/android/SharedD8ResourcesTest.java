@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.android;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.android.tools.r8.ClassFileResourceProvider;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SharedD8ResourcesTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  @Test
+  public void providersAreSharedUntilTheJarChanges() throws Exception {
+    SharedD8Resources resources = new SharedD8Resources(1, 10);
+    Path jar = tmp.getRoot().resolve("lib.jar");
+    writeJar(jar, "com/example/A.class");
+
+    try (SharedD8Resources.Compilation compilation = resources.newCompilation()) {
+      ClassFileResourceProvider provider = compilation.getClassFileProvider(jar);
+      assertEquals(ImmutableSet.of("Lcom/example/A;"), provider.getClassDescriptors());
+      assertSame(provider, compilation.getClassFileProvider(jar));
+
+      writeJar(jar, "com/example/A.class", "com/example/B.class");
+      Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+      ClassFileResourceProvider changedProvider = compilation.getClassFileProvider(jar);
+      assertNotSame(provider, changedProvider);
+      assertEquals(
+          ImmutableSet.of("Lcom/example/A;", "Lcom/example/B;"),
+          changedProvider.getClassDescriptors());
+    }
+  }
+
+  @Test
+  public void providersAreNotSharedOnceTheJarIsRewrittenInPlace() throws Exception {
+    SharedD8Resources resources = new SharedD8Resources(1, 10);
+    Path jar = tmp.getRoot().resolve("lib.jar");
+    writeJar(jar, "com/example/A.class");
+    long size = Files.size(jar);
+    FileTime lastModifiedTime = Files.getLastModifiedTime(jar);
+
+    try (SharedD8Resources.Compilation compilation = resources.newCompilation()) {
+      ClassFileResourceProvider provider = compilation.getClassFileProvider(jar);
+
+      // Cached artifacts are written with a fixed modification time.
+      writeJar(jar, "com/example/B.class");
+      Files.setLastModifiedTime(jar, lastModifiedTime);
+      assertEquals(size, Files.size(jar));
+
+      ClassFileResourceProvider changedProvider = compilation.getClassFileProvider(jar);
+      assertNotSame(provider, changedProvider);
+      assertEquals(ImmutableSet.of("Lcom/example/B;"), changedProvider.getClassDescriptors());
+    }
+  }
+
+  @Test
+  public void leastRecentlyUsedProvidersAreEvicted() throws Exception {
+    SharedD8Resources resources = new SharedD8Resources(1, 1);
+    Path first = tmp.getRoot().resolve("first.jar");
+    Path second = tmp.getRoot().resolve("second.jar");
+    writeJar(first, "First.class");
+    writeJar(second, "Second.class");
+
+    try (SharedD8Resources.Compilation compilation = resources.newCompilation()) {
+      ClassFileResourceProvider provider = compilation.getClassFileProvider(first);
+      compilation.getClassFileProvider(second);
+      assertNotSame(provider, compilation.getClassFileProvider(first));
+    }
+  }
+
+  @Test
+  public void evictedProvidersAreClosedOnceNoCompilationUsesThem() throws Exception {
+    SharedD8Resources resources = new SharedD8Resources(1, 1);
+    Path first = tmp.getRoot().resolve("first.jar");
+    Path second = tmp.getRoot().resolve("second.jar");
+    writeJar(first, "First.class");
+    writeJar(second, "Second.class");
+
+    ClassFileResourceProvider provider;
+    try (SharedD8Resources.Compilation compilation = resources.newCompilation()) {
+      provider = compilation.getClassFileProvider(first);
+      try (SharedD8Resources.Compilation other = resources.newCompilation()) {
+        other.getClassFileProvider(second);
+      }
+      assertNotNull(provider.getProgramResource("LFirst;"));
+    }
+
+    try {
+      provider.getProgramResource("LFirst;");
+      fail("The provider of an evicted jar should be closed.");
+    } catch (RuntimeException e) {
+      // Expected, the jar is closed.
+    }
+  }
+
+  private static void writeJar(Path jar, String... entries) throws IOException {
+    try (OutputStream output = Files.newOutputStream(jar);
+        ZipOutputStream zip = new ZipOutputStream(output)) {
+      for (String entry : entries) {
+        zip.putNextEntry(new ZipEntry(entry));
+        zip.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+        zip.closeEntry();
+      }
+    }
+  }
+}
@@ -88,7 +88,8 @@ public class SmartDexingStepTest {
             OptionalInt.empty(),
             Optional.empty(),
             DxStep.DX,
-            null);
+            null,
+            Optional.empty());
     assertFalse("'dummy' is not a matching input hash", rule.checkIsCached());
 
     // Write the real hash into the output hash file and ensure that checkIsCached now
@@ -33,7 +33,10 @@ import com.facebook.buck.core.sourcepath.FakeSourcePath;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.core.sourcepath.resolver.impl.DefaultSourcePathResolver;
 import com.facebook.buck.event.DefaultBuckEventBus;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
 import com.facebook.buck.io.filesystem.impl.FakeProjectFilesystem;
+import com.facebook.buck.testutil.TemporaryPaths;
 import com.facebook.buck.util.timing.FakeClock;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -69,6 +72,7 @@ public class MiniAaptTest {
       DefaultSourcePathResolver.from(new SourcePathRuleFinder(new TestActionGraphBuilder()));
 
   @Rule public ExpectedException thrown = ExpectedException.none();
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
 
   @Test
   public void testFindingResourceIdsInXml()
@@ -645,6 +649,50 @@ public class MiniAaptTest {
         ((RDotTxtResourceCollector) aapt.getResourceCollector()).getResources());
   }
 
+  @Test
+  public void testProcessXmlFilesForIdsInResDirectory() throws Exception {
+    ProjectFilesystem filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    filesystem.mkdirs(Paths.get("res/layout"));
+    filesystem.mkdirs(Paths.get("res/layout-v21"));
+    filesystem.mkdirs(Paths.get("res/values"));
+    filesystem.writeContentsToPath(
+        "<LinearLayout><Button android:id=\"@+id/shared\" /><View android:id=\"@+id/a\" />"
+            + "</LinearLayout>",
+        Paths.get("res/layout/a.xml"));
+    filesystem.writeContentsToPath(
+        "<FrameLayout><Button android:id=\"@+id/shared\" android:text=\"@string/text\" />"
+            + "</FrameLayout>",
+        Paths.get("res/layout-v21/b.xml"));
+    filesystem.writeContentsToPath(
+        "<resources><string name=\"text\">@+id/not_an_id</string></resources>",
+        Paths.get("res/values/strings.xml"));
+
+    MiniAapt aapt =
+        new MiniAapt(
+            resolver,
+            filesystem,
+            FakeSourcePath.of(filesystem, "res"),
+            Paths.get("R.txt"),
+            ImmutableSet.of());
+    ImmutableSet.Builder<RDotTxtEntry> references = ImmutableSet.builder();
+    aapt.processXmlFilesForIds(filesystem, references);
+
+    assertEquals(
+        ImmutableSet.<RDotTxtEntry>of(
+            new FakeRDotTxtEntry(IdType.INT, RType.ID, "shared"),
+            new FakeRDotTxtEntry(IdType.INT, RType.ID, "a")),
+        ((RDotTxtResourceCollector) aapt.getResourceCollector()).getResources());
+    assertEquals(
+        ImmutableSet.<RDotTxtEntry>of(new FakeRDotTxtEntry(IdType.INT, RType.STRING, "text")),
+        references.build());
+
+    filesystem.writeContentsToPath("<FrameLayout>", Paths.get("res/layout/c.xml"));
+    thrown.expect(ResourceParseException.class);
+    thrown.expectMessage("Error parsing xml file");
+    thrown.expectMessage("c.xml");
+    aapt.processXmlFilesForIds(filesystem, ImmutableSet.builder());
+  }
+
   @Test
   public void testDotSeparatedResourceNames()
       throws IOException, XPathExpressionException, ResourceParseException {
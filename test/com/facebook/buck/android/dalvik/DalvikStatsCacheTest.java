@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.android.dalvik;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.buck.jvm.java.classes.AbstractFileLike;
+import com.facebook.buck.jvm.java.classes.FileLike;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class DalvikStatsCacheTest {
+
+  @Test
+  public void prefetchedStatsAreLookedUpByEntry() throws Exception {
+    DalvikStatsCache cache = new DalvikStatsCache();
+    FileLike first = new FakeFileLike("first.jar", "com/example/A.class", createClass("A"));
+    FileLike second = new FakeFileLike("second.jar", "com/example/A.class", createClass("A"));
+
+    cache.prefetch(first);
+    cache.prefetch(second);
+    cache.prefetch(new FakeFileLike("first.jar", "META-INF/MANIFEST.MF", new byte[0]));
+    cache.finishPrefetch();
+
+    assertEquals(2, cache.getCachedStats().size());
+    DalvikStatsTool.Stats stats = cache.getStats(first);
+    assertTrue(stats.estimatedLinearAllocSize > 0);
+    assertSame(stats, cache.getStats(second));
+  }
+
+  @Test
+  public void statsAreSharedAcrossSplitsByContents() {
+    FileLike entry = new FakeFileLike("lib.jar", "com/example/B.class", createClass("B"));
+    FileLike sameClassElsewhere =
+        new FakeFileLike("other.jar", "com/example/B.class", createClass("B"));
+
+    assertSame(
+        new DalvikStatsCache().getStats(entry),
+        new DalvikStatsCache().getStats(sameClassElsewhere));
+    assertSame(
+        DalvikStatsTool.Stats.ZERO,
+        new DalvikStatsCache()
+            .getStats(new FakeFileLike("lib.jar", "pom.properties", new byte[] {1})));
+  }
+
+  private static byte[] createClass(String name) {
+    ClassWriter writer = new ClassWriter(0);
+    writer.visit(
+        Opcodes.V1_7, Opcodes.ACC_PUBLIC, "com/example/" + name, null, "java/lang/Object", null);
+    writer.visitField(Opcodes.ACC_PUBLIC, "field", "I", null, null).visitEnd();
+    writer.visitEnd();
+    return writer.toByteArray();
+  }
+
+  private static class FakeFileLike extends AbstractFileLike {
+    private final Path container;
+    private final String relativePath;
+    private final byte[] contents;
+
+    FakeFileLike(String container, String relativePath, byte[] contents) {
+      this.container = Paths.get(container);
+      this.relativePath = relativePath;
+      this.contents = contents;
+    }
+
+    @Override
+    public Path getContainer() {
+      return container;
+    }
+
+    @Override
+    public String getRelativePath() {
+      return relativePath;
+    }
+
+    @Override
+    public long getSize() {
+      return contents.length;
+    }
+
+    @Override
+    public InputStream getInput() {
+      return new ByteArrayInputStream(contents);
+    }
+  }
+}
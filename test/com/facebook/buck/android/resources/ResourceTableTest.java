@@ -221,6 +221,27 @@ public class ResourceTableTest {
     }
   }
 
+  @Test
+  public void testSliceResourceTableInDirectBuffer() throws Exception {
+    try (ZipFile apkZip = new ZipFile(apkPath.toFile())) {
+      byte[] data =
+          ByteStreams.toByteArray(apkZip.getInputStream(apkZip.getEntry("resources.arsc")));
+      // Mapped files are direct buffers, which have no backing array.
+      ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+      direct.put(data);
+      ResourceTable heapTable = ResourceTable.get(ResChunk.wrap(data));
+      ResourceTable directTable = ResourceTable.get(ResChunk.slice(direct, 0));
+      Map<Integer, Integer> counts = new HashMap<>();
+      for (ResTableTypeSpec spec : heapTable.getPackage().getTypeSpecs()) {
+        counts.put(spec.getResourceType(), Math.min(spec.getEntryCount(), 1));
+      }
+
+      assertArrayEquals(
+          ResourceTable.slice(heapTable, counts).serialize(),
+          ResourceTable.slice(directTable, counts).serialize());
+    }
+  }
+
   @Test
   public void testSliceResourceTableStringsAreOptimized() throws Exception {
     try (ZipFile apkZip = new ZipFile(apkPath.toFile())) {
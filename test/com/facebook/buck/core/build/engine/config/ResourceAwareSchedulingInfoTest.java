@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.core.build.engine.config;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.util.concurrent.ResourceAmounts;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+public class ResourceAwareSchedulingInfoTest {
+
+  private static final ResourceAmounts AMOUNTS = ResourceAmounts.of(2, 3, 4, 5);
+
+  private static ResourceAwareSchedulingInfo withBackoffPercent(int percent) {
+    return ResourceAwareSchedulingInfo.of(true, AMOUNTS, ImmutableMap.of(), percent);
+  }
+
+  @Test
+  public void memoryIsDoubledWhileLessMemoryThanTheThresholdIsFree() {
+    assertEquals(
+        ResourceAmounts.of(2, 6, 4, 5),
+        withBackoffPercent(10).applyMemoryPressureBackoff(AMOUNTS, 9));
+    assertEquals(
+        ResourceAmounts.of(2, 6, 4, 5),
+        withBackoffPercent(10).applyMemoryPressureBackoff(AMOUNTS, 0));
+  }
+
+  @Test
+  public void amountsAreUnchangedWhileAtLeastTheThresholdIsFree() {
+    assertEquals(AMOUNTS, withBackoffPercent(10).applyMemoryPressureBackoff(AMOUNTS, 10));
+    assertEquals(AMOUNTS, withBackoffPercent(10).applyMemoryPressureBackoff(AMOUNTS, 100));
+  }
+
+  @Test
+  public void zeroThresholdNeverBacksOff() {
+    assertEquals(AMOUNTS, withBackoffPercent(0).applyMemoryPressureBackoff(AMOUNTS, 0));
+  }
+
+  @Test
+  public void doubledMemoryIsClampedInsteadOfOverflowing() {
+    ResourceAmounts amounts = ResourceAmounts.of(1, Integer.MAX_VALUE - 1, 0, 0);
+    assertEquals(
+        ResourceAmounts.of(1, Integer.MAX_VALUE, 0, 0),
+        withBackoffPercent(10).applyMemoryPressureBackoff(amounts, 5));
+  }
+}
@@ -135,6 +135,7 @@ import com.facebook.buck.shell.Genrule;
 import com.facebook.buck.shell.GenruleBuilder;
 import com.facebook.buck.step.AbstractExecutionStep;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.ExecutorPool;
 import com.facebook.buck.step.Step;
 import com.facebook.buck.step.StepExecutionResult;
 import com.facebook.buck.step.StepExecutionResults;
@@ -152,6 +153,7 @@ import com.facebook.buck.util.cache.FileHashCache;
 import com.facebook.buck.util.cache.FileHashCacheMode;
 import com.facebook.buck.util.cache.impl.StackedFileHashCache;
 import com.facebook.buck.util.concurrent.ConcurrencyLimit;
+import com.facebook.buck.util.concurrent.FakeListeningExecutorService;
 import com.facebook.buck.util.concurrent.ListeningMultiSemaphore;
 import com.facebook.buck.util.concurrent.MoreFutures;
 import com.facebook.buck.util.concurrent.ResourceAllocationFairness;
@@ -179,6 +181,7 @@ import com.google.common.util.concurrent.AbstractListeningExecutorService;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
@@ -1234,6 +1237,42 @@ public class CachingBuildEngineTest {
       }
     }
 
+    @Test
+    public void testRuleWithOnlyDiskIoStepsRunsStepsOnDiskIoPool() throws Exception {
+      AtomicReference<String> stepThreadName = new AtomicReference<>();
+      BuildTarget target = BuildTargetFactory.newInstance("//:rule");
+      BuildRule rule =
+          new RuleWithSteps(
+              target,
+              filesystem,
+              TestBuildRuleParams.create(),
+              ImmutableList.of(new ThreadRecordingDiskIoStep(stepThreadName)),
+              /* output */ null);
+
+      // Runs each task on a new thread, and only returns once it is done, so that the task runs
+      // while the thread that submitted it would still hold the scope of the rule if it hadn't
+      // closed it first.
+      ListeningExecutorService diskIoService =
+          new FakeListeningExecutorService() {
+            @Override
+            public void execute(Runnable command) {
+              Thread thread = new Thread(command, "disk-io-test");
+              thread.start();
+              Uninterruptibles.joinUninterruptibly(thread);
+            }
+          };
+      ExecutionContext executionContext =
+          TestExecutionContext.newBuilder()
+              .setExecutors(ImmutableMap.of(ExecutorPool.DISK_IO, diskIoService))
+              .build();
+      try (CachingBuildEngine cachingBuildEngine = cachingBuildEngineFactory().build()) {
+        BuildResult result =
+            cachingBuildEngine.build(buildContext, executionContext, rule).getResult().get();
+        assertThat(result.getSuccess(), equalTo(BuildRuleSuccessType.BUILT_LOCALLY));
+        assertThat(stepThreadName.get(), equalTo("disk-io-test"));
+      }
+    }
+
     @Test
     public void testExceptionMessagesAreInformative() throws Exception {
       AtomicReference<RuntimeException> throwable = new AtomicReference<>();
@@ -4694,6 +4733,27 @@ public class CachingBuildEngineTest {
     }
   }
 
+  private static class ThreadRecordingDiskIoStep extends AbstractExecutionStep {
+
+    private final AtomicReference<String> threadName;
+
+    public ThreadRecordingDiskIoStep(AtomicReference<String> threadName) {
+      super("thread recording disk io step");
+      this.threadName = threadName;
+    }
+
+    @Override
+    public StepExecutionResult execute(ExecutionContext context) {
+      threadName.set(Thread.currentThread().getName());
+      return StepExecutionResults.SUCCESS;
+    }
+
+    @Override
+    public ExecutorPool getExecutorPool() {
+      return ExecutorPool.DISK_IO;
+    }
+  }
+
   private static class FailingStep extends AbstractExecutionStep {
 
     public FailingStep() {
@@ -37,11 +37,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.hash.HashCode;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -284,6 +286,69 @@ public class ManifestTest {
         Matchers.equalTo(Optional.of(key2)));
   }
 
+  @Test
+  public void lookupHashesEachInputOnce() throws IOException {
+    SourcePath common = FakeSourcePath.of("common.h");
+    SourcePath other = FakeSourcePath.of("other.h");
+    String commonName = RESOLVER.getRelativePath(common).toString();
+    String otherName = RESOLVER.getRelativePath(other).toString();
+    ImmutableMap.Builder<RuleKey, ImmutableMap<String, HashCode>> entries = ImmutableMap.builder();
+    for (int i = 0; i < 10; i++) {
+      entries.put(
+          new RuleKey(String.format("%02d", i)),
+          ImmutableMap.of(commonName, HashCode.fromInt(1), otherName, HashCode.fromInt(100 + i)));
+    }
+    Manifest manifest = ManifestUtil.fromMap(new RuleKey("cc"), entries.build());
+
+    Map<Path, Integer> hashCounts = new HashMap<>();
+    FileHashCache fileHashCache =
+        new FakeFileHashCache(
+            ImmutableMap.of(
+                RESOLVER.getAbsolutePath(common),
+                HashCode.fromInt(1),
+                RESOLVER.getAbsolutePath(other),
+                HashCode.fromInt(109))) {
+          @Override
+          public HashCode get(Path path) throws IOException {
+            hashCounts.merge(path, 1, Integer::sum);
+            return super.get(path);
+          }
+        };
+    assertThat(
+        manifest.lookup(fileHashCache, RESOLVER, ImmutableSet.of(common, other)),
+        Matchers.equalTo(Optional.of(new RuleKey("09"))));
+    assertThat(
+        hashCounts,
+        Matchers.equalTo(
+            ImmutableMap.of(
+                RESOLVER.getAbsolutePath(common), 1, RESOLVER.getAbsolutePath(other), 1)));
+  }
+
+  @Test
+  public void deserializeVersionZero() throws IOException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(byteArrayOutputStream);
+    output.writeInt(0);
+    output.writeUTF("cc");
+    output.writeInt(1);
+    output.writeUTF("foo/bar.h");
+    output.writeInt(1);
+    output.writeInt(0);
+    output.writeUTF(HashCode.fromInt(20).toString());
+    output.writeInt(1);
+    output.writeInt(1);
+    output.writeInt(0);
+    output.writeUTF("aa");
+
+    Manifest deserialized =
+        new Manifest(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+    assertThat(
+        ManifestUtil.toMap(deserialized),
+        Matchers.equalTo(
+            ImmutableMap.of(
+                new RuleKey("aa"), ImmutableMap.of("foo/bar.h", HashCode.fromInt(20)))));
+  }
+
   @Test
   public void size() {
     assertThat(new Manifest(new RuleKey("cc")).size(), Matchers.equalTo(0));
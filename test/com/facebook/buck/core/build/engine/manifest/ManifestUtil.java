@@ -33,10 +33,7 @@ public class ManifestUtil {
     for (Pair<RuleKey, int[]> entry : manifest.entries) {
       Builder<String, HashCode> entryBuilder = ImmutableMap.builder();
       for (int hashIndex : entry.getSecond()) {
-        Pair<Integer, HashCode> hashEntry = manifest.hashes.get(hashIndex);
-        String input = manifest.inputs.get(hashEntry.getFirst());
-        HashCode inputHash = hashEntry.getSecond();
-        entryBuilder.put(input, inputHash);
+        entryBuilder.put(manifest.getHashInput(hashIndex), manifest.hashes.get(hashIndex));
       }
       builder.put(entry.getFirst(), entryBuilder.build());
     }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.core.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.facebook.buck.util.ProcessResourceConsumption;
+import com.facebook.buck.util.concurrent.ResourceAmounts;
+import com.facebook.buck.util.concurrent.ResourceAmountsEstimator;
+import com.google.common.collect.ImmutableMap;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ResourceUsageHistoryTest {
+
+  @Rule public TemporaryPaths temporaryFolder = new TemporaryPaths();
+
+  private static final ResourceAmounts MAXIMUM_AMOUNTS = ResourceAmounts.of(8, 100, 50, 30);
+
+  private static ProcessResourceConsumption consumption(
+      long memResident, long cpuReal, long cpuTotal) {
+    return ProcessResourceConsumption.builder()
+        .setMemResident(memResident)
+        .setMemSize(memResident)
+        .setCpuReal(cpuReal)
+        .setCpuUser(cpuTotal)
+        .setCpuSys(0)
+        .setCpuTotal(cpuTotal)
+        .setIoBytesRead(0)
+        .setIoBytesWritten(0)
+        .setIoTotal(0)
+        .build();
+  }
+
+  @Test
+  public void learnedAmountsUsePeakUsageWithinBuild() {
+    Path storage = temporaryFolder.getRoot().resolve("history.json");
+    ResourceUsageHistory history = ResourceUsageHistory.load(storage);
+    history.recordUsage("cxx_link", consumption(ResourceAmountsEstimator.MEMORY_UNIT_BYTES, 10, 5));
+    history.recordUsage(
+        "cxx_link", consumption(5 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES + 1, 10, 30));
+
+    assertEquals(
+        ImmutableMap.of("cxx_link", ResourceAmounts.of(3, 6, 0, 0)),
+        history.getLearnedAmountsPerRuleType(MAXIMUM_AMOUNTS));
+  }
+
+  @Test
+  public void learnedAmountsAreCappedToMaximumAmounts() {
+    ResourceUsageHistory history =
+        ResourceUsageHistory.load(temporaryFolder.getRoot().resolve("history.json"));
+    history.recordUsage(
+        "dex", consumption(1000 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES, 10, 1000));
+    history.recordUsage("genrule", consumption(0, 0, 0));
+
+    assertEquals(
+        ImmutableMap.of(
+            "dex", ResourceAmounts.of(8, 100, 0, 0), "genrule", ResourceAmounts.of(1, 1, 0, 0)),
+        history.getLearnedAmountsPerRuleType(MAXIMUM_AMOUNTS));
+  }
+
+  @Test
+  public void usageObservedInNewBuildReplacesStoredUsage() {
+    Path storage = temporaryFolder.getRoot().resolve("history.json");
+    try (ResourceUsageHistory history = ResourceUsageHistory.load(storage)) {
+      history.recordUsage(
+          "cxx_link", consumption(10 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES, 10, 10));
+      history.recordUsage(
+          "dex", consumption(4 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES, 10, 20));
+    }
+
+    try (ResourceUsageHistory history = ResourceUsageHistory.load(storage)) {
+      history.recordUsage(
+          "cxx_link", consumption(2 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES, 10, 10));
+      assertEquals(
+          ImmutableMap.of(
+              "cxx_link", ResourceAmounts.of(1, 2, 0, 0), "dex", ResourceAmounts.of(2, 4, 0, 0)),
+          history.getLearnedAmountsPerRuleType(MAXIMUM_AMOUNTS));
+    }
+  }
+
+  @Test
+  public void historiesWrittenBeforeTheRenameAreStillLearned() throws Exception {
+    Path storage = temporaryFolder.getRoot().resolve("history.json");
+    Files.write(
+        storage,
+        ("{\"dex\":{\"peakMemResident\":"
+                + 4 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES
+                + ",\"peakCpuPermille\":2000}}")
+            .getBytes(StandardCharsets.UTF_8));
+
+    try (ResourceUsageHistory history = ResourceUsageHistory.load(storage)) {
+      assertEquals(
+          ImmutableMap.of("dex", ResourceAmounts.of(2, 4, 0, 0)),
+          history.getLearnedAmountsPerRuleType(MAXIMUM_AMOUNTS));
+    }
+    assertFalse(
+        new String(Files.readAllBytes(storage), StandardCharsets.UTF_8)
+            .contains("peakCpuPermille"));
+  }
+}
@@ -22,7 +22,9 @@ import static org.junit.Assert.assertThat;
 import com.facebook.buck.core.config.BuckConfig;
 import com.facebook.buck.core.config.BuckConfigTestUtils;
 import com.facebook.buck.testutil.TemporaryPaths;
+import com.facebook.buck.util.ProcessResourceConsumption;
 import com.facebook.buck.util.concurrent.ResourceAmounts;
+import com.facebook.buck.util.concurrent.ResourceAmountsEstimator;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
@@ -52,6 +54,46 @@ public class ResourcesConfigTest {
         result);
   }
 
+  @Test
+  public void testConfiguredResourceAmountsTakePrecedenceOverLearnedOnes() throws IOException {
+    Reader reader =
+        new StringReader(
+            Joiner.on('\n')
+                .join(
+                    "[build]",
+                    "threads = 4",
+                    "[resources]",
+                    "resource_usage_history_enabled = true",
+                    "max_memory_resource = 50",
+                    "[resources_per_rule]",
+                    "some_rule = 1, 20, 3, 4"));
+    BuckConfig config = BuckConfigTestUtils.createWithDefaultFilesystem(temporaryFolder, reader);
+    ResourcesConfig resourcesConfig = config.getView(ResourcesConfig.class);
+    try (ResourceUsageHistory history =
+        ResourceUsageHistory.load(resourcesConfig.getResourceUsageHistoryFile())) {
+      ProcessResourceConsumption consumption =
+          ProcessResourceConsumption.builder()
+              .setMemResident(3 * ResourceAmountsEstimator.MEMORY_UNIT_BYTES)
+              .setMemSize(0)
+              .setCpuReal(100)
+              .setCpuUser(200)
+              .setCpuSys(0)
+              .setCpuTotal(200)
+              .setIoBytesRead(0)
+              .setIoBytesWritten(0)
+              .setIoTotal(0)
+              .build();
+      history.recordUsage("some_rule", consumption);
+      history.recordUsage("learned_rule", consumption);
+    }
+
+    assertEquals(
+        ImmutableMap.of(
+            "some_rule", ResourceAmounts.of(1, 20, 3, 4),
+            "learned_rule", ResourceAmounts.of(2, 3, 0, 0)),
+        resourcesConfig.getResourceAmountsPerRuleType());
+  }
+
   @Test
   public void testInvalidResourceAmountsConfiguration() throws IOException {
     Reader reader =
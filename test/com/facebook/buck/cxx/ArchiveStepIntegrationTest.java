@@ -16,6 +16,7 @@
 
 package com.facebook.buck.cxx;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assume.assumeTrue;
@@ -26,6 +27,7 @@ import com.facebook.buck.core.rules.SourcePathRuleFinder;
 import com.facebook.buck.core.rules.resolver.impl.TestActionGraphBuilder;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.core.sourcepath.resolver.impl.DefaultSourcePathResolver;
+import com.facebook.buck.core.toolchain.tool.Tool;
 import com.facebook.buck.cxx.toolchain.Archiver;
 import com.facebook.buck.cxx.toolchain.CxxBuckConfig;
 import com.facebook.buck.cxx.toolchain.CxxPlatform;
@@ -35,10 +37,13 @@ import com.facebook.buck.cxx.toolchain.objectfile.ObjectFileScrubbers;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.io.filesystem.TestProjectFilesystems;
 import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.Step;
 import com.facebook.buck.step.TestExecutionContext;
 import com.facebook.buck.step.fs.FileScrubberStep;
 import com.facebook.buck.testutil.TemporaryPaths;
 import com.facebook.buck.testutil.TestConsole;
+import com.facebook.buck.util.ProcessExecutor;
+import com.facebook.buck.util.ProcessExecutorParams;
 import com.facebook.buck.util.environment.Platform;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -271,6 +276,243 @@ public class ArchiveStepIntegrationTest {
     }
   }
 
+  @Test
+  public void incrementalArchivesOnlyReplaceChangedMembers()
+      throws IOException, InterruptedException {
+    assumeTrue(Platform.detect() == Platform.MACOS || Platform.detect() == Platform.LINUX);
+    ProjectFilesystem filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    CxxPlatform platform =
+        CxxPlatformUtils.build(new CxxBuckConfig(FakeBuckConfig.builder().build()));
+
+    // Build up the paths to various files the archive step will use.
+    BuildRuleResolver ruleResolver = new TestActionGraphBuilder();
+    SourcePathResolver sourcePathResolver =
+        DefaultSourcePathResolver.from(new SourcePathRuleFinder(ruleResolver));
+    Archiver archiver = platform.getAr().resolve(ruleResolver);
+    Path output = filesystem.getPath("output.a");
+    Path first = filesystem.getPath("first.dat");
+    Path second = filesystem.getPath("second.dat");
+    filesystem.writeContentsToPath("first", first);
+    filesystem.writeContentsToPath("second", second);
+    filesystem.mkdirs(filesystem.getPath("scratchDir"));
+    IncrementalArchive incrementalArchive =
+        new IncrementalArchive(
+            filesystem,
+            output,
+            filesystem.getPath("scratchDir/incremental-state"),
+            archiver.getReplaceOptions(false).get());
+
+    // Build an archive step.
+    ArchiveStep archiveStep =
+        new ArchiveStep(
+            filesystem,
+            archiver.getEnvironment(sourcePathResolver),
+            archiver.getCommandPrefix(sourcePathResolver),
+            ImmutableList.of(),
+            getArchiveOptions(false),
+            output,
+            ImmutableList.of(first, second),
+            archiver,
+            filesystem.getPath("scratchDir"),
+            Optional.of(incrementalArchive));
+
+    // Build the archive, and then update it after changing one of its inputs.
+    ExecutionContext executionContext = TestExecutionContext.newInstanceWithRealProcessExecutor();
+    TestConsole console = (TestConsole) executionContext.getConsole();
+    for (String secondContents : ImmutableList.of("second", "changed")) {
+      filesystem.writeContentsToPath(secondContents, second);
+      int exitCode = archiveStep.execute(executionContext).getExitCode();
+      assertEquals("archive step failed: " + console.getTextWrittenToStdErr(), 0, exitCode);
+      exitCode = incrementalArchive.createRecordStep().execute(executionContext).getExitCode();
+      assertEquals(0, exitCode);
+    }
+
+    // Verify that the changed member was replaced in place.
+    try (ArArchiveInputStream stream =
+        new ArArchiveInputStream(new FileInputStream(filesystem.resolve(output).toFile()))) {
+      ArArchiveEntry entry = stream.getNextArEntry();
+      assertEquals(first.toString(), entry.getName());
+      entry = stream.getNextArEntry();
+      assertEquals(second.toString(), entry.getName());
+      assertEquals("changed".length(), entry.getLength());
+      assertThat(stream.getNextArEntry(), Matchers.nullValue());
+    }
+
+    // Verify that the archive is rebuilt from scratch if it isn't the one that was recorded.
+    filesystem.writeContentsToPath("!<arch>\n", output);
+    int exitCode = archiveStep.execute(executionContext).getExitCode();
+    assertEquals("archive step failed: " + console.getTextWrittenToStdErr(), 0, exitCode);
+    try (ArArchiveInputStream stream =
+        new ArArchiveInputStream(new FileInputStream(filesystem.resolve(output).toFile()))) {
+      assertEquals(first.toString(), stream.getNextArEntry().getName());
+      assertEquals(second.toString(), stream.getNextArEntry().getName());
+    }
+  }
+
+  @Test
+  public void incrementalArchivesMatchArchivesBuiltFromScratch()
+      throws IOException, InterruptedException {
+    assumeTrue(Platform.detect() == Platform.MACOS || Platform.detect() == Platform.LINUX);
+    ProjectFilesystem filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    CxxPlatform platform =
+        CxxPlatformUtils.build(new CxxBuckConfig(FakeBuckConfig.builder().build()));
+    BuildRuleResolver ruleResolver = new TestActionGraphBuilder();
+    SourcePathResolver sourcePathResolver =
+        DefaultSourcePathResolver.from(new SourcePathRuleFinder(ruleResolver));
+    ExecutionContext executionContext = TestExecutionContext.newInstanceWithRealProcessExecutor();
+    ImmutableList<String> ccPrefix =
+        platform.getCc().resolve(ruleResolver).getCommandPrefix(sourcePathResolver);
+    Path first =
+        compile(filesystem, executionContext, ccPrefix, "first", "int first() { return 1; }");
+    Path second =
+        compile(filesystem, executionContext, ccPrefix, "second", "int second() { return 2; }");
+    Path third =
+        compile(filesystem, executionContext, ccPrefix, "third", "int third() { return 3; }");
+
+    Path incremental = filesystem.getPath("incremental.a");
+    Path fromScratch = filesystem.getPath("from-scratch.a");
+    filesystem.mkdirs(filesystem.getPath("scratchDir"));
+    Archiver archiver = platform.getAr().resolve(ruleResolver);
+    IncrementalArchive incrementalArchive =
+        new IncrementalArchive(
+            filesystem,
+            incremental,
+            filesystem.getPath("scratchDir/incremental-state"),
+            archiver.getReplaceOptions(false).get());
+    archive(
+        filesystem,
+        platform,
+        ruleResolver,
+        executionContext,
+        incremental,
+        ImmutableList.of(first, second, third),
+        Optional.of(incrementalArchive));
+
+    // Changing a member, including the symbols it defines, updates the archive in place.
+    compile(filesystem, executionContext, ccPrefix, "second", "int changed() { return 2; }");
+    for (Path output : ImmutableList.of(incremental, fromScratch)) {
+      archive(
+          filesystem,
+          platform,
+          ruleResolver,
+          executionContext,
+          output,
+          ImmutableList.of(first, second, third),
+          output.equals(incremental) ? Optional.of(incrementalArchive) : Optional.empty());
+    }
+    assertEquals(
+        ImmutableList.of("first.o", "second.o", "third.o"),
+        getMemberNames(filesystem.resolve(incremental)));
+    assertArrayEquals(
+        Files.readAllBytes(filesystem.resolve(fromScratch)),
+        Files.readAllBytes(filesystem.resolve(incremental)));
+
+    // Removing a member leaves no trace of it in the archive.
+    filesystem.deleteFileAtPath(fromScratch);
+    for (Path output : ImmutableList.of(incremental, fromScratch)) {
+      archive(
+          filesystem,
+          platform,
+          ruleResolver,
+          executionContext,
+          output,
+          ImmutableList.of(first, third),
+          output.equals(incremental) ? Optional.of(incrementalArchive) : Optional.empty());
+    }
+    assertEquals(
+        ImmutableList.of("first.o", "third.o"), getMemberNames(filesystem.resolve(incremental)));
+    assertArrayEquals(
+        Files.readAllBytes(filesystem.resolve(fromScratch)),
+        Files.readAllBytes(filesystem.resolve(incremental)));
+  }
+
+  private static Path compile(
+      ProjectFilesystem filesystem,
+      ExecutionContext executionContext,
+      ImmutableList<String> ccPrefix,
+      String name,
+      String source)
+      throws IOException, InterruptedException {
+    Path sourcePath = filesystem.getPath(name + ".c");
+    Path objectPath = filesystem.getPath(name + ".o");
+    filesystem.writeContentsToPath(source, sourcePath);
+    ProcessExecutor.Result result =
+        executionContext
+            .getProcessExecutor()
+            .launchAndExecute(
+                ProcessExecutorParams.builder()
+                    .setCommand(
+                        ImmutableList.<String>builder()
+                            .addAll(ccPrefix)
+                            .add("-c", sourcePath.toString(), "-o", objectPath.toString())
+                            .build())
+                    .setDirectory(filesystem.getRootPath())
+                    .build());
+    assertEquals("compilation failed: " + result.getStderr(), 0, result.getExitCode());
+    return objectPath;
+  }
+
+  /** Runs the steps the archive rule runs to build {@code output} from {@code inputs}. */
+  private static void archive(
+      ProjectFilesystem filesystem,
+      CxxPlatform platform,
+      BuildRuleResolver ruleResolver,
+      ExecutionContext executionContext,
+      Path output,
+      ImmutableList<Path> inputs,
+      Optional<IncrementalArchive> incrementalArchive)
+      throws IOException, InterruptedException {
+    SourcePathResolver sourcePathResolver =
+        DefaultSourcePathResolver.from(new SourcePathRuleFinder(ruleResolver));
+    Archiver archiver = platform.getAr().resolve(ruleResolver);
+    Tool ranlib = platform.getRanlib().get().resolve(ruleResolver);
+    ImmutableList.Builder<Step> steps = ImmutableList.builder();
+    steps.add(
+        new ArchiveStep(
+            filesystem,
+            archiver.getEnvironment(sourcePathResolver),
+            archiver.getCommandPrefix(sourcePathResolver),
+            ImmutableList.of(),
+            getArchiveOptions(false),
+            output,
+            inputs,
+            archiver,
+            filesystem.getPath("scratchDir"),
+            incrementalArchive));
+    steps.add(
+        new RanlibStep(
+            filesystem,
+            ranlib.getEnvironment(sourcePathResolver),
+            ranlib.getCommandPrefix(sourcePathResolver),
+            ImmutableList.copyOf(platform.getRanlibflags()),
+            output));
+    steps.add(new FileScrubberStep(filesystem, output, archiver.getScrubbers()));
+    incrementalArchive.ifPresent(archive -> steps.add(archive.createRecordStep()));
+
+    TestConsole console = (TestConsole) executionContext.getConsole();
+    for (Step step : steps.build()) {
+      int exitCode = step.execute(executionContext).getExitCode();
+      assertEquals(
+          step.getShortName() + " failed: " + console.getTextWrittenToStdErr(), 0, exitCode);
+    }
+  }
+
+  private static ImmutableList<String> getMemberNames(Path archive) throws IOException {
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    try (ArArchiveInputStream stream =
+        new ArArchiveInputStream(new FileInputStream(archive.toFile()))) {
+      for (ArArchiveEntry entry = stream.getNextArEntry();
+          entry != null;
+          entry = stream.getNextArEntry()) {
+        // Skip the symbol table.
+        if (entry.getName().endsWith(".o")) {
+          names.add(entry.getName());
+        }
+      }
+    }
+    return names.build();
+  }
+
   private static ImmutableList<String> getArchiveOptions(boolean isThinArchive) {
     String options = isThinArchive ? "qcT" : "qc";
     return ImmutableList.of(options);
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.facebook.buck.core.config.FakeBuckConfig;
+import com.facebook.buck.core.exceptions.HumanReadableException;
+import com.facebook.buck.cxx.toolchain.CxxBuckConfig;
+import com.facebook.buck.io.ExecutableFinder;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
+import com.facebook.buck.io.filesystem.impl.FakeProjectFilesystem;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.facebook.buck.testutil.TestConsole;
+import com.facebook.buck.util.DefaultProcessExecutor;
+import com.facebook.buck.util.ProcessExecutor;
+import com.facebook.buck.util.ProcessExecutorParams;
+import com.facebook.buck.util.environment.Platform;
+import com.facebook.buck.worker.FakeWorkerProcess;
+import com.facebook.buck.worker.WorkerJobResult;
+import com.facebook.buck.worker.WorkerProcess;
+import com.facebook.buck.worker.WorkerProcessPool;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CxxCompileWorkerTest {
+
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  private static final ImmutableMap<String, String> BUILD_ENVIRONMENT =
+      ImmutableMap.of("HOME", "/home/user", "PATH", "/usr/bin");
+
+  private static final Path CELL_ROOT = Paths.get("/cells/main");
+  private static final Path OTHER_CELL_ROOT = Paths.get("/cells/other cell");
+
+  private static final String COMPILE_JOB_ARGS =
+      "{\"cwd\":\"/cells/main\","
+          + "\"env\":{\"HOME\":\"/home/user\",\"PATH\":\"/usr/bin\","
+          + "\"TMPDIR\":\"buck-out/tmp dir\"},"
+          + "\"argv\":[\"clang++\",\"-c\",\"foo bar.cpp\",\"-o\",\"foo.o\"]}";
+  private static final String OTHER_CELL_COMPILE_JOB_ARGS =
+      "{\"cwd\":\"/cells/other cell\","
+          + "\"env\":{\"HOME\":\"/home/user\",\"PATH\":\"/usr/bin\","
+          + "\"TMPDIR\":\"buck-out/tmp dir\"},"
+          + "\"argv\":[\"clang++\",\"-c\",\"foo bar.cpp\",\"-o\",\"foo.o\"]}";
+
+  private static final WorkerJobResult COMPILE_RESULT =
+      WorkerJobResult.of(1, Optional.of(""), Optional.of("foo bar.cpp:1: error"));
+  private static final WorkerJobResult OTHER_CELL_COMPILE_RESULT =
+      WorkerJobResult.of(0, Optional.of(""), Optional.of(""));
+
+  @Test
+  public void jobArgsRunTheCompilationInItsCellWithItsWholeEnvironment() throws Exception {
+    ExecutionContext context =
+        TestExecutionContext.newBuilder().setEnvironment(BUILD_ENVIRONMENT).build();
+
+    assertEquals(
+        COMPILE_JOB_ARGS,
+        CxxCompileWorker.getJobArgs(
+            context, new FakeProjectFilesystem(CELL_ROOT), getCompileParams(CELL_ROOT)));
+  }
+
+  @Test
+  public void compilationsRunAsJobsOfTheWorker() throws Exception {
+    ConcurrentHashMap<String, WorkerProcessPool> persistentPools = new ConcurrentHashMap<>();
+    persistentPools.put("compile_server", newPool("compile_server"));
+    ExecutionContext context =
+        TestExecutionContext.newBuilder()
+            .setPlatform(Platform.LINUX)
+            .setEnvironment(BUILD_ENVIRONMENT)
+            .setPersistentWorkerPools(persistentPools)
+            .build();
+
+    ProcessExecutor.Result result =
+        new CxxCompileWorker(ImmutableList.of("compile_server"), 2, true)
+            .compile(context, new FakeProjectFilesystem(CELL_ROOT), getCompileParams(CELL_ROOT));
+
+    assertEquals(1, result.getExitCode());
+    assertEquals(Optional.of("foo bar.cpp:1: error"), result.getStderr());
+  }
+
+  @Test
+  public void nonPersistentWorkersRunCompilationsAsJobs() throws Exception {
+    ConcurrentHashMap<String, WorkerProcessPool> pools = new ConcurrentHashMap<>();
+    pools.put("/bin/bash -e -c compile_server", newPool("/bin/bash -e -c compile_server"));
+    ConcurrentHashMap<String, WorkerProcessPool> persistentPools = new ConcurrentHashMap<>();
+    ExecutionContext context =
+        TestExecutionContext.newBuilder()
+            .setPlatform(Platform.LINUX)
+            .setEnvironment(BUILD_ENVIRONMENT)
+            .setWorkerProcessPools(pools)
+            .setPersistentWorkerPools(persistentPools)
+            .build();
+
+    ProcessExecutor.Result result =
+        new CxxCompileWorker(ImmutableList.of("compile_server"), 2, false)
+            .compile(context, new FakeProjectFilesystem(CELL_ROOT), getCompileParams(CELL_ROOT));
+
+    assertEquals(1, result.getExitCode());
+    assertEquals(Optional.of("foo bar.cpp:1: error"), result.getStderr());
+    assertTrue(persistentPools.isEmpty());
+  }
+
+  @Test
+  public void compilationsOfEachCellRunInTheRootOfThatCell() throws Exception {
+    ConcurrentHashMap<String, WorkerProcessPool> persistentPools = new ConcurrentHashMap<>();
+    persistentPools.put("compile_server", newPool("compile_server"));
+    ExecutionContext context =
+        TestExecutionContext.newBuilder()
+            .setPlatform(Platform.LINUX)
+            .setEnvironment(BUILD_ENVIRONMENT)
+            .setPersistentWorkerPools(persistentPools)
+            .build();
+    CxxCompileWorker worker = new CxxCompileWorker(ImmutableList.of("compile_server"), 2, true);
+
+    ProcessExecutor.Result result =
+        worker.compile(context, new FakeProjectFilesystem(CELL_ROOT), getCompileParams(CELL_ROOT));
+    ProcessExecutor.Result otherCellResult =
+        worker.compile(
+            context, new FakeProjectFilesystem(OTHER_CELL_ROOT), getCompileParams(OTHER_CELL_ROOT));
+
+    assertEquals(1, result.getExitCode());
+    assertEquals(0, otherCellResult.getExitCode());
+  }
+
+  @Test
+  public void referenceWorkerRunsJobsInTheirDirectoryWithTheirEnvironment() throws Exception {
+    assumeTrue(Platform.detect() != Platform.WINDOWS);
+    assumeTrue(
+        new ExecutableFinder()
+            .getOptionalExecutable(Paths.get("python3"), ImmutableMap.copyOf(System.getenv()))
+            .isPresent());
+    Path cellRoot = tmp.newFolder("cell");
+    ProjectFilesystem filesystem = TestProjectFilesystems.createProjectFilesystem(cellRoot);
+    ProcessExecutorParams params =
+        ProcessExecutorParams.builder()
+            .setCommand(
+                ImmutableList.of("/bin/sh", "-c", "pwd; echo \"$FLAGS\"; echo error >&2; exit 3"))
+            .setEnvironment(ImmutableMap.of("FLAGS", "-O2 -g"))
+            .setDirectory(cellRoot)
+            .build();
+
+    try (WorkerProcess workerProcess =
+        new WorkerProcess(
+            new DefaultProcessExecutor(new TestConsole()),
+            ProcessExecutorParams.builder()
+                .setCommand(
+                    ImmutableList.of(
+                        "python3",
+                        Paths.get("scripts", "cxx_compile_worker.py").toAbsolutePath().toString()))
+                .build(),
+            filesystem,
+            tmp.newFolder("worker"))) {
+      workerProcess.ensureLaunchAndHandshake();
+      WorkerJobResult result =
+          workerProcess.submitAndWaitForJob(
+              CxxCompileWorker.getJobArgs(TestExecutionContext.newInstance(), filesystem, params));
+
+      assertEquals(3, result.getExitCode());
+      assertEquals(Optional.of(cellRoot.toRealPath() + "\n-O2 -g\n"), result.getStdout());
+      assertEquals(Optional.of("error\n"), result.getStderr());
+    }
+  }
+
+  @Test(expected = HumanReadableException.class)
+  public void compileWorkersAreNotSupportedOnWindows() {
+    CxxBuckConfig cxxBuckConfig =
+        new CxxBuckConfig(
+            FakeBuckConfig.builder()
+                .setPlatform(Platform.WINDOWS)
+                .setSections("[cxx]", "compile_worker = compile_server")
+                .build());
+
+    CxxCompileWorker.fromConfig(cxxBuckConfig);
+  }
+
+  private static ProcessExecutorParams getCompileParams(Path cellRoot) {
+    return ProcessExecutorParams.builder()
+        .setCommand(ImmutableList.of("clang++", "-c", "foo bar.cpp", "-o", "foo.o"))
+        .setEnvironment(
+            ImmutableMap.of("HOME", "/home/user", "PATH", "/usr/bin", "TMPDIR", "buck-out/tmp dir"))
+        .setDirectory(cellRoot)
+        .build();
+  }
+
+  private static WorkerProcessPool newPool(String key) {
+    return new WorkerProcessPool(
+        2,
+        Hashing.sha1().hashString(key, StandardCharsets.UTF_8),
+        () ->
+            new FakeWorkerProcess(
+                ImmutableMap.of(
+                    COMPILE_JOB_ARGS,
+                    COMPILE_RESULT,
+                    OTHER_CELL_COMPILE_JOB_ARGS,
+                    OTHER_CELL_COMPILE_RESULT)));
+  }
+}
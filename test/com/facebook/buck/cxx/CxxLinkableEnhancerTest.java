@@ -54,6 +54,7 @@ import com.facebook.buck.cxx.toolchain.nativelink.NativeLinkables;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.io.filesystem.impl.FakeProjectFilesystem;
 import com.facebook.buck.rules.args.Arg;
+import com.facebook.buck.rules.args.FileListableLinkerInputArg;
 import com.facebook.buck.rules.args.SourcePathArg;
 import com.facebook.buck.rules.args.StringArg;
 import com.facebook.buck.rules.coercer.FrameworkPath;
@@ -636,4 +637,89 @@ public class CxxLinkableEnhancerTest {
             "-framework", "Bar"),
         Arg.stringifyList(linkerFlags, resolver));
   }
+
+  @Test
+  public void distributedThinLtoOptimizesEachObjectInItsOwnRule() {
+    ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
+    SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(graphBuilder);
+    SourcePathResolver pathResolver = DefaultSourcePathResolver.from(ruleFinder);
+    BuildTarget target = BuildTargetFactory.newInstance("//foo:bar");
+    Genrule genrule1 =
+        GenruleBuilder.newGenruleBuilder(BuildTargetFactory.newInstance("//:genrule"))
+            .setOut("foo/bar.o")
+            .build(graphBuilder);
+    Genrule genrule2 =
+        GenruleBuilder.newGenruleBuilder(BuildTargetFactory.newInstance("//:genrule2"))
+            .setOut("foo/test.o")
+            .build(graphBuilder);
+
+    CxxBuckConfig cxxBuckConfig =
+        new CxxBuckConfig(
+            FakeBuckConfig.builder().setSections("[cxx]", "distributed_thin_lto = true").build());
+    FakeProjectFilesystem projectFilesystem = new FakeProjectFilesystem();
+    CxxLink cxxLink =
+        CxxLinkableEnhancer.createCxxLinkableBuildRule(
+            cxxBuckConfig,
+            CxxPlatformUtils.DEFAULT_PLATFORM,
+            projectFilesystem,
+            graphBuilder,
+            pathResolver,
+            ruleFinder,
+            target,
+            Linker.LinkType.EXECUTABLE,
+            Optional.empty(),
+            DEFAULT_OUTPUT,
+            ImmutableList.of(),
+            Linker.LinkableDepType.STATIC,
+            CxxLinkOptions.of(true),
+            EMPTY_DEPS,
+            Optional.empty(),
+            Optional.empty(),
+            ImmutableSet.of(),
+            ImmutableSet.of(),
+            NativeLinkableInput.builder()
+                .setArgs(
+                    FileListableLinkerInputArg.from(
+                        ImmutableList.of(
+                            SourcePathArg.of(genrule1.getSourcePathToOutput()),
+                            SourcePathArg.of(genrule2.getSourcePathToOutput()))))
+                .build(),
+            Optional.empty(),
+            TestCellPathResolver.get(projectFilesystem));
+
+    // The final link only links the native objects of the backends.
+    ImmutableList<CxxThinLTOBackend> backends =
+        cxxLink
+            .getBuildDeps()
+            .stream()
+            .filter(CxxThinLTOBackend.class::isInstance)
+            .map(CxxThinLTOBackend.class::cast)
+            .collect(ImmutableList.toImmutableList());
+    assertEquals(2, backends.size());
+    assertEquals(ImmutableSortedSet.copyOf(backends), cxxLink.getBuildDeps());
+    assertEquals(
+        backends
+            .stream()
+            .map(backend -> pathResolver.getAbsolutePath(backend.getSourcePathToOutput()))
+            .map(Path::toString)
+            .collect(ImmutableSet.toImmutableSet()),
+        Arg.stringify(cxxLink.getArgs(), pathResolver)
+            .stream()
+            .filter(arg -> arg.endsWith(".o"))
+            .collect(ImmutableSet.toImmutableSet()));
+
+    // Each backend optimizes its object with its index, and may import from any other object.
+    for (CxxThinLTOBackend backend : backends) {
+      ImmutableSortedSet<BuildRule> deps = backend.getBuildDeps();
+      assertThat(deps, hasItem(genrule1));
+      assertThat(deps, hasItem(genrule2));
+      CxxThinLTOIndex index =
+          deps.stream()
+              .filter(CxxThinLTOIndex.class::isInstance)
+              .map(CxxThinLTOIndex.class::cast)
+              .findFirst()
+              .get();
+      assertEquals(ImmutableSortedSet.<BuildRule>of(genrule1, genrule2), index.getBuildDeps());
+    }
+  }
 }
@@ -35,6 +35,7 @@ import com.facebook.buck.core.model.impl.BuildTargetPaths;
 import com.facebook.buck.cxx.toolchain.CxxBuckConfig;
 import com.facebook.buck.cxx.toolchain.CxxPlatform;
 import com.facebook.buck.cxx.toolchain.CxxPlatformUtils;
+import com.facebook.buck.io.ExecutableFinder;
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.io.filesystem.TestProjectFilesystems;
 import com.facebook.buck.io.filesystem.impl.FakeProjectFilesystem;
@@ -50,6 +51,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Optional;
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -694,6 +696,57 @@ public class CxxPreprocessAndCompileIntegrationTest {
         .assertSuccess();
   }
 
+  @Test
+  public void headersPresentedByVFSOverlaysAreTrackedInDepfiles() throws Exception {
+    Optional<Path> clang =
+        new ExecutableFinder()
+            .getOptionalExecutable(Paths.get("clang++"), ImmutableMap.copyOf(System.getenv()));
+    assumeTrue("VFS overlays are only supported by clang.", clang.isPresent());
+    workspace =
+        TestDataHelper.createProjectWorkspaceForScenario(
+            this, "header_map_with_vfs_overlay", tmp.newFolder());
+    workspace.setUp();
+    String[] args = {
+      "-c",
+      "cxx.cxx=" + clang.get(),
+      "-c",
+      "cxx.cxxpp=" + clang.get(),
+      "-c",
+      "cxx.ld=" + clang.get(),
+      "-c",
+      "cxx.header_mode=header_map_with_vfs_overlay",
+      "-c",
+      "cxx.untracked_headers=error",
+      "-c",
+      "build.depfiles=enabled",
+      "//:main"
+    };
+    CxxPlatform cxxPlatform =
+        CxxPlatformUtils.build(new CxxBuckConfig(FakeBuckConfig.builder().build()));
+    BuildTarget compileTarget =
+        getPreprocessTarget(cxxPlatform, BuildTargetFactory.newInstance("//:main"), "main.cpp");
+
+    // api.h includes detail.h relative to the path it is presented at, which is only found if the
+    // overlay keeps virtual names.
+    workspace.runBuckBuild(args).assertSuccess();
+    assertThat(
+        workspace.getBuildLog().getLogEntry(compileTarget).getSuccessType(),
+        equalTo(Optional.of(BuildRuleSuccessType.BUILT_LOCALLY)));
+
+    workspace.writeContentsToPath("#pragma once\nstatic int unused;\n", "detail/unused.h");
+    workspace.runBuckBuild(args).assertSuccess();
+    assertThat(
+        workspace.getBuildLog().getLogEntry(compileTarget).getSuccessType(),
+        equalTo(Optional.of(BuildRuleSuccessType.MATCHING_DEP_FILE_RULE_KEY)));
+
+    workspace.writeContentsToPath(
+        "#pragma once\nstatic inline int detail() { return 1; }\n", "detail/detail.h");
+    workspace.runBuckBuild(args).assertSuccess();
+    assertThat(
+        workspace.getBuildLog().getLogEntry(compileTarget).getSuccessType(),
+        equalTo(Optional.of(BuildRuleSuccessType.BUILT_LOCALLY)));
+  }
+
   @Test
   public void languageFlagCanBeOverridden() throws IOException {
     assumeTrue(
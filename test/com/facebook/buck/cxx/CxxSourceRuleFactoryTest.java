@@ -311,6 +311,53 @@ public class CxxSourceRuleFactoryTest {
           picPreprocessAndCompile.getBuildTarget());
     }
 
+    @Test
+    public void picCompileSharesNonPicCompileWhenPlatformFlagsArePic() {
+      BuildTarget target = BuildTargetFactory.newInstance("//foo:bar");
+      ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
+      SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(graphBuilder);
+      SourcePathResolver pathResolver = DefaultSourcePathResolver.from(ruleFinder);
+
+      CxxSourceRuleFactory.Builder cxxSourceRuleFactoryBuilder =
+          CxxSourceRuleFactory.builder()
+              .setProjectFilesystem(PROJECT_FILESYSTEM)
+              .setBaseBuildTarget(target)
+              .setActionGraphBuilder(graphBuilder)
+              .setPathResolver(pathResolver)
+              .setRuleFinder(ruleFinder)
+              .setCxxBuckConfig(
+                  new CxxBuckConfig(
+                      FakeBuckConfig.builder()
+                          .setSections("[cxx]", "share_identical_pic_compiles = true")
+                          .build()))
+              .setCxxPlatform(CXX_PLATFORM.withCxxflags("-fPIC"));
+      CxxSourceRuleFactory cxxSourceRuleFactoryPDC =
+          cxxSourceRuleFactoryBuilder.setPicType(PicType.PDC).build();
+      CxxSourceRuleFactory cxxSourceRuleFactoryPIC =
+          cxxSourceRuleFactoryBuilder.setPicType(PicType.PIC).build();
+
+      String name = "foo/bar.cpp";
+      CxxSource cxxSource =
+          CxxSource.of(CxxSource.Type.CXX, FakeSourcePath.of(name), ImmutableList.of());
+
+      // The PIC compile is requested first, and still uses the flags of the non-PIC compile.
+      CxxPreprocessAndCompile picPreprocessAndCompile =
+          cxxSourceRuleFactoryPIC.requirePreprocessAndCompileBuildRule(name, cxxSource);
+      assertEquals(
+          cxxSourceRuleFactoryPDC.createCompileBuildTarget(name),
+          picPreprocessAndCompile.getBuildTarget());
+      assertEquals(
+          picPreprocessAndCompile,
+          cxxSourceRuleFactoryPDC.requirePreprocessAndCompileBuildRule(name, cxxSource));
+
+      // Sources of other languages still need their own PIC compile.
+      name = "foo/bar.c";
+      cxxSource = CxxSource.of(CxxSource.Type.C, FakeSourcePath.of(name), ImmutableList.of());
+      assertNotEquals(
+          cxxSourceRuleFactoryPDC.requirePreprocessAndCompileBuildRule(name, cxxSource),
+          cxxSourceRuleFactoryPIC.requirePreprocessAndCompileBuildRule(name, cxxSource));
+    }
+
     @Test
     public void checkPrefixHeaderIsIncluded() {
       ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
@@ -19,8 +19,11 @@ package com.facebook.buck.cxx;
 import static org.junit.Assert.assertThat;
 
 import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
 import org.hamcrest.Matchers;
@@ -128,6 +131,11 @@ public class DepfilesTest {
             "output: input\\\\\\\twith\\\\\\\ttabs\r\n",
             "output",
             ImmutableList.of("input\\\twith\\\ttabs")
+          },
+          {
+            "output: caf\u00e9/\u4e2d\u6587.h \u00fc\\ \u00f1.h\n",
+            "output",
+            ImmutableList.of("caf\u00e9/\u4e2d\u6587.h", "\u00fc \u00f1.h")
           }
         });
   }
@@ -148,4 +156,20 @@ public class DepfilesTest {
         Depfiles.parseDepfile(new StringReader(input)),
         Matchers.equalTo(new Depfiles.Depfile(expectedTarget, expectedPrereqs)));
   }
+
+  @Test
+  public void parseDepfileFromBytes() throws IOException {
+    // Small reads split multi-byte characters and escapes between reads.
+    InputStream stream =
+        new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)) {
+          @Override
+          public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+          }
+        };
+    assertThat(
+        String.format("[%s] should parse correctly", input),
+        Depfiles.parseDepfile(stream),
+        Matchers.equalTo(new Depfiles.Depfile(expectedTarget, expectedPrereqs)));
+  }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.facebook.buck.cxx.toolchain.elf.ElfDynamicSection;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.facebook.buck.testutil.integration.ProjectWorkspace;
+import com.facebook.buck.testutil.integration.TestDataHelper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ElfRewriteInPlaceStepTest {
+
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  @Test
+  public void rewritesLikeTheStepsOneAfterAnother() throws InterruptedException, IOException {
+    ProjectWorkspace workspace =
+        TestDataHelper.createProjectWorkspaceForScenario(this, "elf_shared_lib", tmp);
+    workspace.setUp();
+    ProjectFilesystem filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    Path original = tmp.getRoot().getFileSystem().getPath("libfoo.so");
+    Path copy = tmp.getRoot().getFileSystem().getPath("libfoo-copy.so");
+    filesystem.copyFile(original, copy);
+
+    for (Step step : getRewrites(filesystem, original)) {
+      step.execute(TestExecutionContext.newInstance());
+    }
+    ElfRewriteInPlaceStep.of(
+            filesystem,
+            copy,
+            getRewrites(filesystem, copy)
+                .stream()
+                .map(ElfRewrite.class::cast)
+                .collect(ImmutableList.toImmutableList()))
+        .execute(TestExecutionContext.newInstance());
+
+    assertArrayEquals(
+        Files.readAllBytes(filesystem.resolve(original)),
+        Files.readAllBytes(filesystem.resolve(copy)));
+  }
+
+  private static ImmutableList<Step> getRewrites(ProjectFilesystem filesystem, Path path) {
+    return ImmutableList.of(
+        ElfSymbolTableScrubberStep.of(
+            filesystem,
+            path,
+            /* section */ ".dynsym",
+            /* versymSection */ Optional.of(".gnu.version"),
+            /* allowMissing */ false,
+            /* scrubUndefinedSymbols */ true),
+        ElfDynamicSectionScrubberStep.of(
+            filesystem,
+            path,
+            /* whitelistedTags */ ImmutableSet.of(ElfDynamicSection.DTag.DT_SONAME),
+            /* removeScrubbedTags */ true),
+        ElfScrubFileHeaderStep.of(filesystem, path),
+        ElfRewriteDynStrSectionStep.of(filesystem, path),
+        ElfClearProgramHeadersStep.of(filesystem, path));
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import com.facebook.buck.core.build.buildable.context.FakeBuildableContext;
+import com.facebook.buck.core.build.context.BuildContext;
+import com.facebook.buck.core.build.context.FakeBuildContext;
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.model.BuildTargetFactory;
+import com.facebook.buck.core.model.impl.BuildTargetPaths;
+import com.facebook.buck.core.rulekey.AddToRuleKey;
+import com.facebook.buck.core.rules.ActionGraphBuilder;
+import com.facebook.buck.core.rules.SourcePathRuleFinder;
+import com.facebook.buck.core.rules.TestBuildRuleParams;
+import com.facebook.buck.core.rules.impl.NoopBuildRuleWithDeclaredAndExtraDeps;
+import com.facebook.buck.core.rules.resolver.impl.TestActionGraphBuilder;
+import com.facebook.buck.core.sourcepath.FakeSourcePath;
+import com.facebook.buck.core.sourcepath.PathSourcePath;
+import com.facebook.buck.core.sourcepath.SourcePath;
+import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
+import com.facebook.buck.core.sourcepath.resolver.impl.DefaultSourcePathResolver;
+import com.facebook.buck.cxx.toolchain.CxxPlatformUtils;
+import com.facebook.buck.io.file.MorePaths;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.impl.FakeProjectFilesystem;
+import com.facebook.buck.rules.keys.TestDefaultRuleKeyFactory;
+import com.facebook.buck.rules.keys.TestInputBasedRuleKeyFactory;
+import com.facebook.buck.step.Step;
+import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.testutil.FakeFileHashCache;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HeaderMapWithVFSOverlayTest {
+
+  @Rule public final TemporaryPaths tmpDir = new TemporaryPaths();
+
+  private ProjectFilesystem projectFilesystem;
+  private HeaderMapWithVFSOverlay buildRule;
+  private SourcePathRuleFinder ruleFinder;
+  private SourcePathResolver pathResolver;
+  private Path file1;
+  private Path file2;
+
+  @Before
+  public void setUp() throws Exception {
+    projectFilesystem = new FakeProjectFilesystem(tmpDir.getRoot());
+    BuildTarget buildTarget = BuildTargetFactory.newInstance("//test:test");
+
+    file1 = tmpDir.newFile();
+    Files.write(file1, "hello world".getBytes(Charsets.UTF_8));
+    file2 = tmpDir.newFile();
+    Files.write(file2, "hello world".getBytes(Charsets.UTF_8));
+    ImmutableMap<Path, SourcePath> links =
+        ImmutableMap.of(
+            Paths.get("file"),
+            PathSourcePath.of(projectFilesystem, MorePaths.relativize(tmpDir.getRoot(), file1)),
+            Paths.get("directory", "then", "file"),
+            PathSourcePath.of(projectFilesystem, MorePaths.relativize(tmpDir.getRoot(), file2)));
+    Path root = BuildTargetPaths.getGenPath(projectFilesystem, buildTarget, "%s/symlink-tree-root");
+
+    ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
+    ruleFinder = new SourcePathRuleFinder(graphBuilder);
+    pathResolver = DefaultSourcePathResolver.from(ruleFinder);
+    buildRule =
+        new HeaderMapWithVFSOverlay(buildTarget, projectFilesystem, root, links, ruleFinder);
+    graphBuilder.addToIndex(buildRule);
+  }
+
+  @Test
+  public void headersArePresentedAtTheirPathsInTheTree() {
+    BuildContext buildContext = FakeBuildContext.withSourcePathResolver(pathResolver);
+    ImmutableList<Step> steps = buildRule.getBuildSteps(buildContext, new FakeBuildableContext());
+
+    Path root = projectFilesystem.resolve(buildRule.getRoot());
+    Path buckOut = projectFilesystem.resolve(projectFilesystem.getBuckPaths().getBuckOut());
+    assertThat(
+        steps,
+        Matchers.hasItems(
+            new HeaderMapStep(
+                projectFilesystem,
+                pathResolver.getRelativePath(buildRule.getHeaderMapSourcePath().get()),
+                ImmutableMap.of(
+                    Paths.get("file"),
+                    buckOut.relativize(root.resolve("file")),
+                    Paths.get("directory/then/file"),
+                    buckOut.relativize(root.resolve("directory/then/file")))),
+            new VFSOverlayStep(
+                projectFilesystem,
+                pathResolver.getRelativePath(buildRule.getVFSOverlaySourcePath().get()),
+                ImmutableSortedMap.of(
+                    root.resolve("file"), file1, root.resolve("directory/then/file"), file2))));
+  }
+
+  @Test
+  public void overlayIsCaseSensitive() throws Exception {
+    Path output = Paths.get("overlay.yaml");
+    ImmutableSortedMap<Path, Path> entries =
+        ImmutableSortedMap.of(tmpDir.getRoot().resolve("a.h"), file1);
+    new VFSOverlayStep(projectFilesystem, output, entries)
+        .execute(TestExecutionContext.newInstance());
+
+    assertThat(
+        projectFilesystem.readFileIfItExists(output).get(),
+        Matchers.containsString("\"case-sensitive\" : true"));
+  }
+
+  @Test
+  public void overlayKeepsVirtualNames() throws Exception {
+    Path output = Paths.get("overlay.yaml");
+    ImmutableSortedMap<Path, Path> entries =
+        ImmutableSortedMap.of(tmpDir.getRoot().resolve("a.h"), file1);
+    new VFSOverlayStep(projectFilesystem, output, entries)
+        .execute(TestExecutionContext.newInstance());
+
+    assertThat(
+        projectFilesystem.readFileIfItExists(output).get(),
+        Matchers.containsString("\"use-external-names\" : false"));
+  }
+
+  @Test
+  public void overlayIsNotHashedIntoRuleKeys() throws Exception {
+    CxxSymlinkTreeHeaders headers =
+        CxxSymlinkTreeHeaders.from(buildRule, CxxPreprocessables.IncludeType.LOCAL);
+    // As written in another checkout, which can't be hashed from here.
+    CxxSymlinkTreeHeaders headersFromOtherCheckout =
+        headers.withVFSOverlay(FakeSourcePath.of("/other/checkout/overlay.yaml"));
+    FakeFileHashCache hashCache =
+        FakeFileHashCache.createFromStrings(
+            ImmutableMap.of(
+                file1.toString(),
+                Strings.repeat("a", 40),
+                file2.toString(),
+                Strings.repeat("b", 40)));
+
+    assertEquals(
+        new TestDefaultRuleKeyFactory(hashCache, pathResolver, ruleFinder)
+            .build(new RuleWithHeaders(headers)),
+        new TestDefaultRuleKeyFactory(hashCache, pathResolver, ruleFinder)
+            .build(new RuleWithHeaders(headersFromOtherCheckout)));
+    assertEquals(
+        new TestInputBasedRuleKeyFactory(hashCache, pathResolver, ruleFinder)
+            .build(new RuleWithHeaders(headers)),
+        new TestInputBasedRuleKeyFactory(hashCache, pathResolver, ruleFinder)
+            .build(new RuleWithHeaders(headersFromOtherCheckout)));
+  }
+
+  @Test
+  public void preprocessorIsGivenTheOverlay() {
+    CxxSymlinkTreeHeaders headers =
+        CxxSymlinkTreeHeaders.from(buildRule, CxxPreprocessables.IncludeType.LOCAL);
+    assertEquals(buildRule.getVFSOverlaySourcePath(), headers.getVFSOverlay());
+
+    ImmutableList<String> args =
+        ImmutableList.copyOf(
+            CxxHeaders.getArgs(
+                ImmutableList.of(headers),
+                pathResolver,
+                Optional.empty(),
+                CxxPlatformUtils.DEFAULT_PLATFORM.getCpp().resolve(new TestActionGraphBuilder())));
+    assertEquals(
+        ImmutableList.of(
+            "-ivfsoverlay",
+            pathResolver.getAbsolutePath(buildRule.getVFSOverlaySourcePath().get()).toString()),
+        args.subList(0, 2));
+  }
+
+  private static class RuleWithHeaders extends NoopBuildRuleWithDeclaredAndExtraDeps {
+    @AddToRuleKey private final CxxHeaders headers;
+
+    private RuleWithHeaders(CxxHeaders headers) {
+      super(
+          BuildTargetFactory.newInstance("//:compile"),
+          new FakeProjectFilesystem(),
+          TestBuildRuleParams.create());
+      this.headers = headers;
+    }
+  }
+}
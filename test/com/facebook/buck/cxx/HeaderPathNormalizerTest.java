@@ -16,6 +16,7 @@
 
 package com.facebook.buck.cxx;
 
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import com.facebook.buck.core.rules.SourcePathRuleFinder;
@@ -117,4 +118,19 @@ public class HeaderPathNormalizerTest {
         normalizer.getSourcePathForAbsolutePath(pathResolver.getAbsolutePath(headerPath)),
         Matchers.equalTo(headerPath));
   }
+
+  @Test
+  public void normalizersShareTheAbsolutePathsOfHeaders() {
+    SourcePathResolver pathResolver =
+        DefaultSourcePathResolver.from(new SourcePathRuleFinder(new TestActionGraphBuilder()));
+    Path header = filesystem.getPath("foo/bar.h");
+    SourcePath headerPath = PathSourcePath.of(filesystem, header);
+    HeaderPathNormalizer normalizer =
+        new HeaderPathNormalizer.Builder(pathResolver).addHeader(headerPath).build();
+    HeaderPathNormalizer otherNormalizer =
+        new HeaderPathNormalizer.Builder(pathResolver).addHeader(headerPath).build();
+    assertSame(
+        normalizer.getAbsolutePathForUnnormalizedPath(filesystem.resolve(header)).get(),
+        otherNormalizer.getAbsolutePathForUnnormalizedPath(filesystem.resolve(header)).get());
+  }
 }
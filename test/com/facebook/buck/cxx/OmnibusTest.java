@@ -29,6 +29,7 @@ import com.facebook.buck.core.sourcepath.ExplicitBuildTargetSourcePath;
 import com.facebook.buck.core.sourcepath.SourcePath;
 import com.facebook.buck.core.sourcepath.resolver.SourcePathResolver;
 import com.facebook.buck.core.sourcepath.resolver.impl.DefaultSourcePathResolver;
+import com.facebook.buck.cxx.toolchain.CxxPlatform;
 import com.facebook.buck.cxx.toolchain.CxxPlatformUtils;
 import com.facebook.buck.cxx.toolchain.linker.Linker;
 import com.facebook.buck.cxx.toolchain.nativelink.NativeLinkTarget;
@@ -41,6 +42,7 @@ import com.facebook.buck.rules.args.StringArg;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
@@ -497,6 +499,56 @@ public class OmnibusTest {
         Matchers.hasItem(flag));
   }
 
+  @Test
+  public void linkInputsOfDepsSharedByRootsAreComputedOnce() throws NoSuchBuildTargetException {
+    AtomicInteger inputRequests = new AtomicInteger();
+    NativeLinkable a =
+        new OmnibusExcludedNode("//:a") {
+          @Override
+          public NativeLinkableInput getNativeLinkableInput(
+              CxxPlatform cxxPlatform,
+              Linker.LinkableDepType type,
+              boolean forceLinkWhole,
+              ActionGraphBuilder graphBuilder) {
+            inputRequests.incrementAndGet();
+            return super.getNativeLinkableInput(cxxPlatform, type, forceLinkWhole, graphBuilder);
+          }
+        };
+    NativeLinkTarget root1 = new OmnibusRootNode("//:root1", ImmutableList.of(a));
+    NativeLinkTarget root2 = new OmnibusRootNode("//:root2", ImmutableList.of(a));
+    NativeLinkTarget root3 = new OmnibusRootNode("//:root3", ImmutableList.of(a));
+
+    // Verify the libs.
+    ActionGraphBuilder graphBuilder = new TestActionGraphBuilder();
+    SourcePathRuleFinder ruleFinder = new SourcePathRuleFinder(graphBuilder);
+    SourcePathResolver pathResolver = DefaultSourcePathResolver.from(ruleFinder);
+    BuildTarget target = BuildTargetFactory.newInstance("//:rule");
+    FakeProjectFilesystem filesystem = new FakeProjectFilesystem();
+    ImmutableMap<String, SourcePath> libs =
+        toSonameMap(
+            Omnibus.getSharedLibraries(
+                target,
+                filesystem,
+                TestBuildRuleParams.create(),
+                TestCellPathResolver.get(filesystem),
+                graphBuilder,
+                ruleFinder,
+                CxxPlatformUtils.DEFAULT_CONFIG,
+                CxxPlatformUtils.DEFAULT_PLATFORM,
+                ImmutableList.of(),
+                ImmutableList.of(root1, root2, root3),
+                ImmutableList.of()));
+    for (NativeLinkTarget root : ImmutableList.of(root1, root2, root3)) {
+      assertCxxLinkContainsNativeLinkableInput(
+          getCxxLinkRule(ruleFinder, libs.get(root.getBuildTarget().toString())),
+          pathResolver,
+          NativeLinkableInput.builder()
+              .addArgs(StringArg.of(a.getBuildTarget().toString()))
+              .build());
+    }
+    assertThat(inputRequests.get(), Matchers.equalTo(1));
+  }
+
   private CxxLink getCxxLinkRule(SourcePathRuleFinder ruleFinder, SourcePath path) {
     return ((CxxLink) ruleFinder.getRule((ExplicitBuildTargetSourcePath) path));
   }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.cxx;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.core.model.BuildTarget;
+import com.facebook.buck.core.model.BuildTargetFactory;
+import com.facebook.buck.rules.args.StringArg;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class TransitiveCxxPreprocessorInputsTest {
+
+  @Test
+  public void sharedDepsAreVisitedOnce() {
+    BuildTarget top = BuildTargetFactory.newInstance("//:top");
+    BuildTarget left = BuildTargetFactory.newInstance("//:left");
+    BuildTarget right = BuildTargetFactory.newInstance("//:right");
+    BuildTarget bottom = BuildTargetFactory.newInstance("//:bottom");
+
+    TransitiveCxxPreprocessorInputs bottomInputs = inputs(bottom);
+    TransitiveCxxPreprocessorInputs topInputs =
+        inputs(top, inputs(left, bottomInputs), inputs(right, bottomInputs));
+
+    List<BuildTarget> visited = new ArrayList<>();
+    topInputs.forEach((target, input) -> visited.add(target));
+    assertEquals(ImmutableList.of(top, left, bottom, right), visited);
+    assertEquals(
+        ImmutableList.of(bottom, left, right, top),
+        ImmutableList.copyOf(topInputs.toMap().keySet()));
+  }
+
+  @Test
+  public void copiedMapsAreIncluded() {
+    BuildTarget top = BuildTargetFactory.newInstance("//:top");
+    BuildTarget other = BuildTargetFactory.newInstance("//:other");
+    CxxPreprocessorInput otherInput = input(other);
+
+    TransitiveCxxPreprocessorInputs topInputs =
+        inputs(top, TransitiveCxxPreprocessorInputs.copyOf(ImmutableMap.of(other, otherInput)));
+    assertEquals(otherInput, topInputs.toMap().get(other));
+    assertEquals(2, topInputs.toMap().size());
+  }
+
+  private static TransitiveCxxPreprocessorInputs inputs(
+      BuildTarget target, TransitiveCxxPreprocessorInputs... children) {
+    return TransitiveCxxPreprocessorInputs.of(
+        Optional.of(new AbstractMap.SimpleImmutableEntry<>(target, input(target))),
+        ImmutableList.copyOf(children));
+  }
+
+  private static CxxPreprocessorInput input(BuildTarget target) {
+    return CxxPreprocessorInput.builder()
+        .putPreprocessorFlags(CxxSource.Type.C, StringArg.of("-D" + target.getShortName()))
+        .build();
+  }
+}
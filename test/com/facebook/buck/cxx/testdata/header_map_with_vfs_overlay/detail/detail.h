@@ -0,0 +1,3 @@
+#pragma once
+
+static inline int detail() { return 0; }
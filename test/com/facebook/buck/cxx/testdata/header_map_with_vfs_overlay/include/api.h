@@ -0,0 +1,6 @@
+#pragma once
+
+// Only found next to api.h at the path it is presented at, not where it really is.
+#include "detail.h"
+
+static inline int api() { return detail(); }
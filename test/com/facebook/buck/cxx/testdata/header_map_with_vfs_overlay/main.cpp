@@ -0,0 +1,3 @@
+#include <vendor/lib/api.h>
+
+int main() { return api(); }
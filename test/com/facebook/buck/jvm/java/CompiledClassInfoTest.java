@@ -0,0 +1,256 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThat;
+
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import javax.tools.ToolProvider;
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class CompiledClassInfoTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  @Test
+  public void recordsNameSourceFileAndReferences() throws Exception {
+    CompiledClassInfo info =
+        compile(
+            "com.example.Foo",
+            "com/example/Foo.java",
+            "package com.example;",
+            "public class Foo {",
+            "  public Object run() { return new java.util.ArrayList<String>(); }",
+            "}");
+
+    assertEquals("com/example/Foo", info.getClassName());
+    assertEquals(Optional.of("Foo.java"), info.getSourceFileName());
+    assertThat(info.getReferencedClassNames(), Matchers.hasItem("java/util/ArrayList"));
+    assertFalse(info.getReferencedClassNames().contains("com/example/Foo"));
+    assertEquals(CompiledClassInfo.NO_CONSTANTS_HASH, info.getConstantsHash());
+  }
+
+  @Test
+  public void changingMethodBodiesAndPrivateMembersKeepsAbi() throws Exception {
+    CompiledClassInfo before =
+        compile(
+            "Foo", "Foo.java", "public class Foo {", "  public int get() { return 1; }", "}");
+    CompiledClassInfo after =
+        compile(
+            "Foo",
+            "Foo.java",
+            "public class Foo {",
+            "  private int value = 2;",
+            "  public int get() { return value; }",
+            "  private void helper() {}",
+            "}");
+
+    assertEquals(before.getAbiHash(), after.getAbiHash());
+  }
+
+  @Test
+  public void changingSignaturesChangesAbi() throws Exception {
+    CompiledClassInfo before =
+        compile("Foo", "Foo.java", "public class Foo {", "  public void run() {}", "}");
+    CompiledClassInfo after =
+        compile("Foo", "Foo.java", "public class Foo {", "  public void run(int times) {}", "}");
+
+    assertNotEquals(before.getAbiHash(), after.getAbiHash());
+  }
+
+  @Test
+  public void changingAnnotationValuesChangesAbi() throws Exception {
+    CompiledClassInfo before = compileAnnotatedClass("@Tag(names = {\"a\"}, size = 1)");
+
+    assertEquals(
+        before.getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {\"a\"}, size = 1)").getAbiHash());
+    assertNotEquals(
+        before.getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {\"b\"}, size = 1)").getAbiHash());
+    assertNotEquals(
+        before.getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {\"a\", \"b\"}, size = 1)").getAbiHash());
+    assertNotEquals(
+        before.getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {\"a\"}, size = 2)").getAbiHash());
+    assertNotEquals(
+        before.getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {\"a\"}, size = 1, kind = ElementType.FIELD)")
+            .getAbiHash());
+    assertNotEquals(
+        compileAnnotatedClass("@Tag(names = {}, nested = {@Nested(\"a\")})").getAbiHash(),
+        compileAnnotatedClass("@Tag(names = {}, nested = {@Nested(\"b\")})").getAbiHash());
+  }
+
+  @Test
+  public void changingAnnotationDefaultsChangesAbi() throws Exception {
+    CompiledClassInfo before =
+        compile(
+            "Tag",
+            "Tag.java",
+            "public @interface Tag {",
+            "  int size() default 1;",
+            "  String[] names() default {\"a\"};",
+            "}");
+    CompiledClassInfo after =
+        compile(
+            "Tag",
+            "Tag.java",
+            "public @interface Tag {",
+            "  int size() default 2;",
+            "  String[] names() default {\"a\"};",
+            "}");
+    CompiledClassInfo afterNames =
+        compile(
+            "Tag",
+            "Tag.java",
+            "public @interface Tag {",
+            "  int size() default 1;",
+            "  String[] names() default {\"b\"};",
+            "}");
+
+    assertNotEquals(before.getAbiHash(), after.getAbiHash());
+    assertNotEquals(before.getAbiHash(), afterNames.getAbiHash());
+  }
+
+  @Test
+  public void changingConstantsChangesConstantsHash() throws Exception {
+    CompiledClassInfo before =
+        compile(
+            "Foo", "Foo.java", "public class Foo {", "  public static final int SIZE = 1;", "}");
+    CompiledClassInfo after =
+        compile(
+            "Foo", "Foo.java", "public class Foo {", "  public static final int SIZE = 2;", "}");
+
+    assertNotEquals(CompiledClassInfo.NO_CONSTANTS_HASH, before.getConstantsHash());
+    assertNotEquals(before.getConstantsHash(), after.getConstantsHash());
+  }
+
+  @Test
+  public void findsSourceFromPackageAndSourceFileName() throws Exception {
+    CompiledClassInfo info =
+        compile(
+            "com.example.Foo$Inner",
+            "com/example/Foo.java",
+            "package com.example;",
+            "public class Foo {",
+            "  public static class Inner {}",
+            "}");
+
+    assertEquals(
+        Optional.of("java/src/com/example/Foo.java"),
+        IncrementalJavacStep.findSource(
+            info,
+            ImmutableSet.of("java/src/com/example/Foo.java", "java/src/com/other/Foo.java")));
+    assertEquals(
+        Optional.of("misplaced/Foo.java"),
+        IncrementalJavacStep.findSource(info, ImmutableSet.of("misplaced/Foo.java")));
+    assertFalse(
+        IncrementalJavacStep.findSource(info, ImmutableSet.of("a/Foo.java", "b/Foo.java"))
+            .isPresent());
+  }
+
+  @Test
+  public void recordsSupertypes() throws Exception {
+    CompiledClassInfo info =
+        compile(
+            "Foo",
+            "Foo.java",
+            "public class Foo extends java.util.AbstractList<String> implements Runnable {",
+            "  public String get(int index) { return null; }",
+            "  public int size() { return 0; }",
+            "  public void run() {}",
+            "}");
+
+    assertEquals(
+        ImmutableSortedSet.of("java/lang/Runnable", "java/util/AbstractList"),
+        info.getSupertypeNames());
+  }
+
+  @Test
+  public void abiChangesReachUsersOfTransitiveSubtypes() {
+    ImmutableMap<String, ImmutableSet<String>> supertypesByClass =
+        ImmutableMap.of(
+            "Base", ImmutableSet.of(),
+            "Middle", ImmutableSet.of("Base"),
+            "Leaf", ImmutableSet.of("Middle", "Iface"),
+            "Iface", ImmutableSet.of(),
+            "Unrelated", ImmutableSet.of());
+
+    assertEquals(
+        ImmutableSet.of("Base", "Middle", "Leaf"),
+        IncrementalJavacStep.withSubtypes(ImmutableSet.of("Base"), supertypesByClass));
+    assertEquals(
+        ImmutableSet.of("Iface", "Leaf"),
+        IncrementalJavacStep.withSubtypes(ImmutableSet.of("Iface"), supertypesByClass));
+    assertEquals(
+        ImmutableSet.of(),
+        IncrementalJavacStep.withSubtypes(ImmutableSet.of(), supertypesByClass));
+  }
+
+  private CompiledClassInfo compileAnnotatedClass(String annotation) throws IOException {
+    return compile(
+        "Foo",
+        "Foo.java",
+        "import java.lang.annotation.ElementType;",
+        "import java.lang.annotation.Retention;",
+        "import java.lang.annotation.RetentionPolicy;",
+        "public class Foo {",
+        "  " + annotation,
+        "  public void run() {}",
+        "}",
+        "@Retention(RetentionPolicy.RUNTIME)",
+        "@interface Tag {",
+        "  String[] names();",
+        "  int size() default 0;",
+        "  ElementType kind() default ElementType.METHOD;",
+        "  Nested[] nested() default {};",
+        "}",
+        "@interface Nested {",
+        "  String value();",
+        "}");
+  }
+
+  private CompiledClassInfo compile(String className, String fileName, String... lines)
+      throws IOException {
+    Path sourceDir = tmp.newFolder();
+    Path outputDir = tmp.newFolder();
+    Path source = sourceDir.resolve(fileName);
+    Files.createDirectories(source.getParent());
+    Files.write(source, Arrays.asList(lines), StandardCharsets.UTF_8);
+    assertEquals(
+        0,
+        ToolProvider.getSystemJavaCompiler()
+            .run(null, null, null, "-d", outputDir.toString(), source.toString()));
+    return CompiledClassInfo.read(
+        Files.readAllBytes(outputDir.resolve(className.replace('.', '/') + ".class")));
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.facebook.buck.jvm.java;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import com.facebook.buck.util.zip.CustomZipEntry;
@@ -24,19 +25,25 @@ import com.facebook.buck.util.zip.JarEntryContainer;
 import com.facebook.buck.util.zip.JarEntrySupplier;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
@@ -235,6 +242,31 @@ public class JarBuilderTest {
     }
   }
 
+  @Test
+  public void testCopiesCompressedEntriesOfJarsAsTheyAre() throws IOException {
+    File inputJar = temporaryFolder.newFile();
+    byte[] contents =
+        String.join("", Collections.nCopies(1000, "Foo Bar ")).getBytes(StandardCharsets.UTF_8);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(inputJar))) {
+      out.setLevel(Deflater.BEST_SPEED);
+      out.putNextEntry(new ZipEntry("com/example/Foo.class"));
+      out.write(contents);
+    }
+
+    File tempFile = temporaryFolder.newFile();
+    new JarBuilder()
+        .setEntriesToJar(ImmutableList.of(inputJar.toPath()))
+        .createJarFile(tempFile.toPath());
+
+    try (JarFile input = new JarFile(inputJar);
+        JarFile jarFile = new JarFile(tempFile)) {
+      ZipEntry entry = jarFile.getEntry("com/example/Foo.class");
+      assertEquals(
+          input.getEntry("com/example/Foo.class").getCompressedSize(), entry.getCompressedSize());
+      assertArrayEquals(contents, ByteStreams.toByteArray(jarFile.getInputStream(entry)));
+    }
+  }
+
   private static class TestJarEntryContainer implements JarEntryContainer {
     @Nullable private Manifest manifest;
     private final List<JarEntrySupplier> suppliers = new ArrayList<>();
@@ -17,6 +17,7 @@
 package com.facebook.buck.jvm.java;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
@@ -64,6 +65,14 @@ public class JavacSpecTest {
     assertTrue(javac instanceof JdkProvidedInMemoryJavac);
   }
 
+  @Test
+  public void builtInJavacOnlySharesFileManagersWhenAskedTo() {
+    assertFalse(((JdkProvidedInMemoryJavac) getJavac()).getFileManagerPool().isPresent());
+
+    specBuilder.setShareFileManagers(true);
+    assertTrue(((JdkProvidedInMemoryJavac) getJavac()).getFileManagerPool().isPresent());
+  }
+
   @Test
   public void returnsExternalCompilerIfJavacPathPresent() throws IOException {
     // newExecutableFile cannot be executed on windows.
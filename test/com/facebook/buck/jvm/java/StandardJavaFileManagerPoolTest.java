@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.jvm.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import org.hamcrest.Matchers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class StandardJavaFileManagerPoolTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  private JavaCompiler compiler;
+  private StandardJavaFileManagerPool pool;
+  private Path jar;
+
+  @Before
+  public void setUp() throws Exception {
+    compiler = ToolProvider.getSystemJavaCompiler();
+    pool = new StandardJavaFileManagerPool(2);
+    jar = tmp.newFile("lib.jar");
+    Files.write(jar, "not really a jar".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void fileManagersAreReused() throws Exception {
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      first = lease.getPooledFileManager();
+    }
+    assertEquals(1, pool.getIdleCount());
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      assertSame(first, lease.getPooledFileManager());
+      assertEquals(0, pool.getIdleCount());
+    }
+  }
+
+  @Test
+  public void locationsAreSetFromEachCompilationsOptions() throws Exception {
+    Path output = tmp.newFolder("classes");
+    try (StandardJavaFileManagerPool.Lease lease =
+        pool.acquire(
+            compiler,
+            ImmutableList.of("-classpath", jar.toString(), "-d", output.toString(), "-g"))) {
+      assertEquals(
+          jar.toFile(),
+          Iterables.getOnlyElement(
+              lease.getFileManager().getLocation(StandardLocation.CLASS_PATH)));
+      assertEquals(
+          output.toFile(),
+          Iterables.getOnlyElement(
+              lease.getFileManager().getLocation(StandardLocation.CLASS_OUTPUT)));
+    }
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, ImmutableList.of())) {
+      assertEquals(0, pool.getIdleCount());
+      assertThat(
+          ImmutableList.copyOf(lease.getFileManager().getLocation(StandardLocation.CLASS_PATH)),
+          Matchers.not(Matchers.hasItem(jar.toFile())));
+      assertEquals(null, lease.getFileManager().getLocation(StandardLocation.CLASS_OUTPUT));
+    }
+  }
+
+  @Test
+  public void fileManagersThatOpenedChangedJarsAreDropped() throws Exception {
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      first = lease.getPooledFileManager();
+    }
+    Files.write(jar, "a different jar altogether".getBytes(StandardCharsets.UTF_8));
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      assertNotSame(first, lease.getPooledFileManager());
+    }
+  }
+
+  @Test
+  public void fileManagersThatOpenedJarsRewrittenInPlaceAreDropped() throws Exception {
+    writeJar(jar, null, "A.class");
+    long size = Files.size(jar);
+    FileTime lastModifiedTime = Files.getLastModifiedTime(jar);
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      first = lease.getPooledFileManager();
+    }
+
+    // Cached artifacts are written with a fixed modification time.
+    writeJar(jar, null, "B.class");
+    Files.setLastModifiedTime(jar, lastModifiedTime);
+    assertEquals(size, Files.size(jar));
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      assertNotSame(first, lease.getPooledFileManager());
+    }
+  }
+
+  @Test
+  public void fileManagersThatOpenedChangedManifestClassPathJarsAreDropped() throws Exception {
+    Path dependency = tmp.getRoot().resolve("dependency.jar");
+    writeJar(dependency, null, "A.class");
+    writeJar(jar, dependency.getFileName().toString(), "Main.class");
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      first = lease.getPooledFileManager();
+    }
+
+    writeJar(dependency, null, "A.class", "B.class");
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      assertNotSame(first, lease.getPooledFileManager());
+    }
+  }
+
+  @Test
+  public void fileManagersAreOnlySharedBetweenCompilationsWithTheSameStickyOptions()
+      throws Exception {
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease =
+        pool.acquire(compiler, ImmutableList.of("-encoding", "UTF-8"))) {
+      first = lease.getPooledFileManager();
+    }
+
+    try (StandardJavaFileManagerPool.Lease lease =
+        pool.acquire(compiler, ImmutableList.of("-encoding", "ISO-8859-1"))) {
+      assertNotSame(first, lease.getPooledFileManager());
+    }
+  }
+
+  @Test
+  public void closingTheLentFileManagerDoesNotCloseThePooledOne() throws Exception {
+    StandardJavaFileManager first;
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      first = lease.getPooledFileManager();
+      lease.getFileManager().close();
+    }
+
+    try (StandardJavaFileManagerPool.Lease lease = pool.acquire(compiler, classpathOptions())) {
+      assertSame(first, lease.getPooledFileManager());
+    }
+  }
+
+  @Test
+  public void parseOptionsSplitsLocationsFromStickyOptions() {
+    Map<StandardLocation, List<File>> locations = new HashMap<>();
+    ImmutableList<String> stickyOptions =
+        StandardJavaFileManagerPool.parseOptions(
+            compiler.getStandardFileManager(null, null, null),
+            ImmutableList.of(
+                "-source",
+                "8",
+                "-encoding",
+                "UTF-8",
+                "-cp",
+                "a.jar" + File.pathSeparator + "b.jar",
+                "-Xlint"),
+            locations);
+
+    assertEquals(ImmutableList.of("-encoding", "UTF-8"), stickyOptions);
+    assertEquals(
+        ImmutableList.of(new File("a.jar"), new File("b.jar")),
+        locations.get(StandardLocation.CLASS_PATH));
+  }
+
+  private ImmutableList<String> classpathOptions() {
+    return ImmutableList.of("-classpath", jar.toString());
+  }
+
+  private static void writeJar(Path path, @Nullable String classPath, String... entries)
+      throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    if (classPath != null) {
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+    }
+    try (OutputStream output = Files.newOutputStream(path);
+        JarOutputStream jar = new JarOutputStream(output, manifest)) {
+      for (String entry : entries) {
+        jar.putNextEntry(new JarEntry(entry));
+        jar.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+        jar.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.step.fs;
+
+import com.facebook.buck.io.file.MostFiles;
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
+import com.facebook.buck.step.ExecutionContext;
+import com.facebook.buck.step.TestExecutionContext;
+import com.google.caliper.AfterExperiment;
+import com.google.caliper.BeforeExperiment;
+import com.google.caliper.Benchmark;
+import com.google.caliper.Param;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Measures creating and updating symlink trees of the size produced by large cxx libraries. */
+public class SymlinkTreeStepBenchmark {
+  @Param({"50000"})
+  private int linksCount = 50000;
+
+  @Param({"100"})
+  private int linksPerDirectory = 100;
+
+  private Path tmpDir;
+  private ProjectFilesystem filesystem;
+  private ExecutionContext context;
+  private Path root;
+  private ImmutableMap<Path, Path> links;
+  private ImmutableMap<Path, Path> updatedLinks;
+
+  @Before
+  public void setUpTest() throws Exception {
+    setUpBenchmark();
+  }
+
+  @After
+  public void tearDownTest() throws Exception {
+    tearDownBenchmark();
+  }
+
+  @BeforeExperiment
+  public void setUpBenchmark() throws Exception {
+    tmpDir = Files.createTempDirectory("symlink-tree-benchmark");
+    filesystem = TestProjectFilesystems.createProjectFilesystem(tmpDir);
+    context = TestExecutionContext.newInstance();
+    root = Paths.get("symlink-tree-root");
+
+    Path source = Paths.get("source.h");
+    Path otherSource = Paths.get("other_source.h");
+    filesystem.writeContentsToPath("", source);
+    filesystem.writeContentsToPath("", otherSource);
+
+    ImmutableMap.Builder<Path, Path> linksBuilder = ImmutableMap.builder();
+    ImmutableMap.Builder<Path, Path> updatedLinksBuilder = ImmutableMap.builder();
+    for (int i = 0; i < linksCount; i++) {
+      Path link = Paths.get("dir" + i / linksPerDirectory, "header" + i + ".h");
+      linksBuilder.put(link, source);
+      // An incremental change: one link in a hundred is retargeted.
+      updatedLinksBuilder.put(link, i % 100 == 0 ? otherSource : source);
+    }
+    links = linksBuilder.build();
+    updatedLinks = updatedLinksBuilder.build();
+  }
+
+  @AfterExperiment
+  public void tearDownBenchmark() throws IOException {
+    MostFiles.deleteRecursivelyIfExists(tmpDir);
+  }
+
+  @Test
+  public void createTreePerformance() throws Exception {
+    createTree();
+  }
+
+  @Benchmark
+  public void createTree() throws Exception {
+    filesystem.deleteRecursivelyIfExists(root);
+    new SymlinkTreeStep("benchmark", filesystem, root, links).execute(context);
+  }
+
+  @Test
+  public void updateTreePerformance() throws Exception {
+    new SymlinkTreeStep("benchmark", filesystem, root, links).execute(context);
+    updateTree();
+  }
+
+  @Benchmark
+  public void updateTree() throws Exception {
+    new SymlinkTreeStep("benchmark", filesystem, root, updatedLinks).execute(context);
+    new SymlinkTreeStep("benchmark", filesystem, root, links).execute(context);
+  }
+}
@@ -17,17 +17,22 @@
 package com.facebook.buck.step.fs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
 import com.facebook.buck.io.filesystem.TestProjectFilesystems;
 import com.facebook.buck.step.ExecutionContext;
 import com.facebook.buck.step.TestExecutionContext;
+import com.facebook.buck.util.environment.Platform;
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import org.hamcrest.Matchers;
+import org.junit.Assume;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -75,4 +80,64 @@ public class SymlinkTreeStepTest {
     projectFilesystem.writeContentsToPath("new", source1);
     assertEquals(Optional.of("new"), projectFilesystem.readFirstLine(root.resolve(link1)));
   }
+
+  @Test
+  public void testExistingTreeIsUpdatedInPlace() throws InterruptedException, IOException {
+    Assume.assumeThat(Platform.detect(), Matchers.not(Platform.WINDOWS));
+
+    ProjectFilesystem projectFilesystem =
+        TestProjectFilesystems.createProjectFilesystem(tmpDir.getRoot().toPath());
+    ExecutionContext context = TestExecutionContext.newInstance();
+    Path root = Paths.get("symlink-tree-root");
+
+    Path source1 = Paths.get("source1");
+    projectFilesystem.writeContentsToPath("foo", source1);
+    Path source2 = Paths.get("source2");
+    projectFilesystem.writeContentsToPath("bar", source2);
+
+    Path unchanged = Paths.get("unchanged");
+    Path retargeted = Paths.get("a", "retargeted");
+    Path removed = Paths.get("b", "c", "removed");
+    new SymlinkTreeStep(
+            "link_tree",
+            projectFilesystem,
+            root,
+            ImmutableMap.of(unchanged, source1, retargeted, source1, removed, source2))
+        .execute(context);
+    Path strayFile = root.resolve("a").resolve("stray");
+    projectFilesystem.writeContentsToPath("stray", strayFile);
+    Path unchangedTarget = projectFilesystem.readSymLink(root.resolve(unchanged));
+
+    new SymlinkTreeStep(
+            "link_tree",
+            projectFilesystem,
+            root,
+            ImmutableMap.of(unchanged, source1, retargeted, source2))
+        .execute(context);
+
+    assertEquals(unchangedTarget, projectFilesystem.readSymLink(root.resolve(unchanged)));
+    assertEquals(Optional.of("bar"), projectFilesystem.readFirstLine(root.resolve(retargeted)));
+    assertFalse(projectFilesystem.exists(root.resolve(removed), LinkOption.NOFOLLOW_LINKS));
+    assertFalse(projectFilesystem.exists(root.resolve("b")));
+    assertFalse(projectFilesystem.exists(strayFile));
+  }
+
+  @Test
+  public void testLinkReplacesDirectoryLeftInExistingTree()
+      throws InterruptedException, IOException {
+    ProjectFilesystem projectFilesystem =
+        TestProjectFilesystems.createProjectFilesystem(tmpDir.getRoot().toPath());
+    Path root = Paths.get("symlink-tree-root");
+    Path link = Paths.get("a", "link");
+    Path source = Paths.get("source");
+    projectFilesystem.writeContentsToPath("foo", source);
+    projectFilesystem.mkdirs(root.resolve(link));
+    projectFilesystem.writeContentsToPath("stale", root.resolve(link).resolve("file"));
+
+    new SymlinkTreeStep("link_tree", projectFilesystem, root, ImmutableMap.of(link, source))
+        .execute(TestExecutionContext.newInstance());
+
+    assertTrue(projectFilesystem.isSymLink(root.resolve(link)));
+    assertEquals(Optional.of("foo"), projectFilesystem.readFirstLine(root.resolve(link)));
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.cache.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import com.facebook.buck.io.filesystem.ProjectFilesystem;
+import com.facebook.buck.io.filesystem.TestProjectFilesystems;
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.facebook.buck.util.function.ThrowingSupplier;
+import com.google.common.hash.HashCode;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PersistentJarHashCacheTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  private ProjectFilesystem filesystem;
+  private Path jar;
+  private AtomicInteger loads;
+  private ThrowingSupplier<HashCode, IOException> loader;
+
+  @Before
+  public void setUp() throws IOException {
+    filesystem = TestProjectFilesystems.createProjectFilesystem(tmp.getRoot());
+    jar = Paths.get("lib.jar");
+    loads = new AtomicInteger();
+    loader = () -> filesystem.computeSha1(jar).asHashCode();
+  }
+
+  @Test
+  public void hashesAreReusedByLaterInstances() throws IOException {
+    writeJar("A.class");
+    HashCode expected = filesystem.computeSha1(jar).asHashCode();
+
+    assertEquals(expected, new PersistentJarHashCache(filesystem).get(jar, this::load));
+    assertEquals(1, loads.get());
+
+    assertEquals(expected, new PersistentJarHashCache(filesystem).get(jar, this::load));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void changedJarsAreHashedAgain() throws IOException {
+    writeJar("A.class");
+    new PersistentJarHashCache(filesystem).get(jar, this::load);
+
+    writeJar("A.class", "B.class");
+    filesystem.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+    HashCode expected = filesystem.computeSha1(jar).asHashCode();
+
+    assertEquals(expected, new PersistentJarHashCache(filesystem).get(jar, this::load));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void filesThatAreNotZipsAreNotStored() throws IOException {
+    filesystem.writeContentsToPath("not a jar", jar);
+    HashCode expected = filesystem.computeSha1(jar).asHashCode();
+
+    PersistentJarHashCache cache = new PersistentJarHashCache(filesystem);
+    assertEquals(expected, cache.get(jar, this::load));
+    cache.get(jar, this::load);
+    assertEquals(2, loads.get());
+  }
+
+  private HashCode load() throws IOException {
+    loads.incrementAndGet();
+    return loader.get();
+  }
+
+  private void writeJar(String... entries) throws IOException {
+    try (OutputStream output = filesystem.newFileOutputStream(jar);
+        ZipOutputStream zip = new ZipOutputStream(output)) {
+      for (String entry : entries) {
+        zip.putNextEntry(new ZipEntry(entry));
+        zip.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+        zip.closeEntry();
+      }
+    }
+  }
+}
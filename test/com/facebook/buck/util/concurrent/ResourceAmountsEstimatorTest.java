@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import java.util.OptionalLong;
+import org.junit.Test;
+
+public class ResourceAmountsEstimatorTest {
+
+  @Test
+  public void availableMemoryIsReadFromMemAvailable() {
+    assertEquals(
+        OptionalLong.of(6144L * 1024),
+        ResourceAmountsEstimator.parseMemAvailable(
+            ImmutableList.of(
+                "MemTotal:       16384 kB",
+                "MemFree:         1024 kB",
+                "MemAvailable:    6144 kB",
+                "Buffers:          512 kB")));
+  }
+
+  @Test
+  public void availableMemoryIsAbsentOnOldKernels() {
+    assertEquals(
+        OptionalLong.empty(),
+        ResourceAmountsEstimator.parseMemAvailable(
+            ImmutableList.of("MemTotal:       16384 kB", "MemFree:         1024 kB")));
+  }
+
+  @Test
+  public void freeMemoryPercentIsAPercentage() {
+    int percent = ResourceAmountsEstimator.getFreePhysicalMemoryPercent();
+    assertTrue(percent >= 0 && percent <= 100);
+    int recentPercent = ResourceAmountsEstimator.getRecentFreePhysicalMemoryPercent();
+    assertTrue(recentPercent >= 0 && recentPercent <= 100);
+  }
+}
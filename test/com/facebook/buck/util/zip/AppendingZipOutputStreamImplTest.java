@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.facebook.buck.util.timing.FakeClock;
+import com.facebook.buck.util.zip.AppendingZipOutputStreamImpl.MemoryBudget;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AppendingZipOutputStreamImplTest {
+  private static final int ENTRIES = 40;
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void compressingInParallelProducesTheSameZip() throws IOException {
+    MemoryBudget budget = new MemoryBudget(64 * 1024 * 1024);
+    byte[] sequential = writeZip(null, budget);
+    byte[] parallel = writeZip(executor, budget);
+
+    assertArrayEquals(sequential, parallel);
+    assertEquals(0, budget.getUsedBytes());
+
+    int entries = 0;
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(parallel))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        assertArrayEquals(entry.getName(), getContents(entries), ByteStreams.toByteArray(zip));
+        entries++;
+      }
+    }
+    assertEquals(ENTRIES, entries);
+  }
+
+  @Test
+  public void entriesThatDoNotFitInTheSharedBudgetAreCompressedAsTheyAreWritten()
+      throws IOException {
+    MemoryBudget budget = new MemoryBudget(256 * 1024);
+    byte[] sequential = writeZip(null, budget);
+
+    // Another zip holds most of the budget.
+    assertTrue(budget.tryAcquire(200 * 1024));
+    assertArrayEquals(sequential, writeZip(executor, budget));
+    assertEquals(200 * 1024, budget.getUsedBytes());
+  }
+
+  private static byte[] writeZip(@Nullable ExecutorService executor, MemoryBudget budget)
+      throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (CustomZipOutputStream zip =
+        new CustomZipOutputStream(
+            new AppendingZipOutputStreamImpl(
+                FakeClock.doNotCare(),
+                output,
+                /* throwExceptionsOnDuplicate */ true,
+                executor,
+                budget))) {
+      for (int i = 0; i < ENTRIES; i++) {
+        byte[] contents = getContents(i);
+        CustomZipEntry entry = new CustomZipEntry("entry" + i);
+        if (i % 5 == 0) {
+          entry.setCompressionLevel(Deflater.NO_COMPRESSION);
+          CRC32 crc = new CRC32();
+          crc.update(contents);
+          entry.setCrc(crc.getValue());
+          entry.setSize(contents.length);
+          entry.setCompressedSize(contents.length);
+        } else {
+          entry.setCompressionLevel(i % 3 == 0 ? Deflater.BEST_COMPRESSION : Deflater.BEST_SPEED);
+        }
+        zip.putNextEntry(entry);
+        // Write in small chunks, like most callers do.
+        for (int offset = 0; offset < contents.length; offset += 4096) {
+          zip.write(contents, offset, Math.min(4096, contents.length - offset));
+        }
+        zip.closeEntry();
+      }
+    }
+    return output.toByteArray();
+  }
+
+  /** Returns compressible contents, one of which is too big to be compressed in the background. */
+  private static byte[] getContents(int index) {
+    int size = index == ENTRIES / 2 ? 17 * 1024 * 1024 : index * 10000;
+    byte[] contents = new byte[size];
+    Random random = new Random(index);
+    for (int i = 0; i < size; i++) {
+      contents[i] = (byte) ('a' + random.nextInt(8));
+    }
+    return contents;
+  }
+}
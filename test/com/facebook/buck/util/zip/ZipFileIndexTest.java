@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018-present Facebook, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License. You may obtain
+ * a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.facebook.buck.util.zip;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.facebook.buck.testutil.TemporaryPaths;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ZipFileIndexTest {
+  @Rule public TemporaryPaths tmp = new TemporaryPaths();
+
+  private static final byte[] CONTENTS =
+      String.join("", Collections.nCopies(1000, "All the world's a stage. "))
+          .getBytes(Charsets.UTF_8);
+
+  @Test
+  public void readsEntriesLikeZipFile() throws Exception {
+    Path zip = writeZip();
+
+    ZipFileIndex index = ZipFileIndex.open(zip);
+    try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+      List<? extends ZipEntry> expected = Collections.list(zipFile.entries());
+      ImmutableList<ZipFileIndex.Entry> entries = index.getEntries();
+      assertEquals(
+          expected.stream().map(ZipEntry::getName).collect(Collectors.toList()),
+          entries.stream().map(ZipFileIndex.Entry::getName).collect(Collectors.toList()));
+      for (int i = 0; i < entries.size(); i++) {
+        ZipFileIndex.Entry entry = entries.get(i);
+        assertEquals(expected.get(i).getMethod(), entry.getMethod());
+        assertEquals(expected.get(i).getCrc(), entry.getCrc());
+        assertEquals(expected.get(i).getSize(), entry.getSize());
+        assertEquals(expected.get(i).getCompressedSize(), entry.getCompressedSize());
+        assertEquals(expected.get(i).getTime(), entry.getTime());
+        assertTrue(entry.canCopyRaw());
+        try (InputStream stream = index.getInputStream(entry)) {
+          assertArrayEquals(CONTENTS, ByteStreams.toByteArray(stream));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void rawEntriesAreCopiedAsTheyAreStored() throws Exception {
+    Path zip = writeZip();
+    Path copy = tmp.getRoot().resolve("copy.zip");
+
+    ZipFileIndex index = ZipFileIndex.open(zip);
+    try (CustomZipOutputStream out = ZipOutputStreams.newOutputStream(copy)) {
+      for (ZipFileIndex.Entry entry : index.getEntries()) {
+        CustomZipEntry customEntry = new CustomZipEntry(entry.getName());
+        customEntry.setTime(entry.getTime());
+        customEntry.setMethod(entry.getMethod());
+        customEntry.setCrc(entry.getCrc());
+        customEntry.setSize(entry.getSize());
+        customEntry.setCompressedSize(entry.getCompressedSize());
+        out.putNextRawEntry(customEntry);
+        try (InputStream raw = index.getRawInputStream(entry)) {
+          ByteStreams.copy(raw, out);
+        }
+        out.closeEntry();
+      }
+    }
+
+    ZipFileIndex original = ZipFileIndex.open(zip);
+    ZipFileIndex copied = ZipFileIndex.open(copy);
+    try (ZipFile zipFile = new ZipFile(copy.toFile())) {
+      for (int i = 0; i < original.getEntries().size(); i++) {
+        ZipFileIndex.Entry entry = original.getEntries().get(i);
+        ZipFileIndex.Entry copiedEntry = copied.getEntries().get(i);
+        try (InputStream expected = original.getRawInputStream(entry);
+            InputStream actual = copied.getRawInputStream(copiedEntry)) {
+          assertArrayEquals(ByteStreams.toByteArray(expected), ByteStreams.toByteArray(actual));
+        }
+        try (InputStream stream = zipFile.getInputStream(zipFile.getEntry(entry.getName()))) {
+          assertArrayEquals(CONTENTS, ByteStreams.toByteArray(stream));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void indexesAreSharedUntilTheZipChanges() throws Exception {
+    Path zip = writeZip();
+    ZipFileIndex index = ZipFileIndex.get(zip);
+    assertSame(index, ZipFileIndex.get(zip));
+
+    try (OutputStream output = Files.newOutputStream(zip);
+        ZipOutputStream out = new ZipOutputStream(output)) {
+      out.putNextEntry(new ZipEntry("other.txt"));
+      out.write(CONTENTS);
+    }
+    Files.setLastModifiedTime(zip, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+    ZipFileIndex changedIndex = ZipFileIndex.get(zip);
+    assertNotSame(index, changedIndex);
+    assertEquals("other.txt", Iterables.getOnlyElement(changedIndex.getEntries()).getName());
+  }
+
+  @Test
+  public void indexesAreNotSharedOnceTheZipIsRewrittenInPlace() throws Exception {
+    Path zip = tmp.getRoot().resolve("stored.zip");
+    writeStoredZip(zip, "first");
+    FileTime lastModifiedTime = Files.getLastModifiedTime(zip);
+    HashCode hash = ZipFileIndex.hashCentralDirectory(zip);
+    ZipFileIndex index = ZipFileIndex.get(zip);
+
+    // Rewrite the zip the way a cache fetch does: in place, with a fixed modification time.
+    Path rewritten = tmp.getRoot().resolve("rewritten.zip");
+    writeStoredZip(rewritten, "other");
+    try (OutputStream output = Files.newOutputStream(zip, StandardOpenOption.WRITE)) {
+      output.write(Files.readAllBytes(rewritten));
+    }
+    Files.setLastModifiedTime(zip, lastModifiedTime);
+
+    ZipFileIndex changedIndex = ZipFileIndex.get(zip);
+    assertNotSame(index, changedIndex);
+    assertNotEquals(index.getEntries().get(0).getCrc(), changedIndex.getEntries().get(0).getCrc());
+    assertNotEquals(hash, ZipFileIndex.hashCentralDirectory(zip));
+  }
+
+  @Test
+  public void entriesAreReadThroughOneReader() throws Exception {
+    Path zip = writeZip();
+    ZipFileIndex index = ZipFileIndex.open(zip);
+
+    try (ZipFileIndex.Reader reader = index.openReader()) {
+      InputStream first = reader.getInputStream(index.getEntries().get(0));
+      for (ZipFileIndex.Entry entry : index.getEntries()) {
+        try (InputStream stream = reader.getInputStream(entry)) {
+          assertArrayEquals(CONTENTS, ByteStreams.toByteArray(stream));
+        }
+      }
+      // Closing the stream of an entry leaves the reader open for the other ones.
+      assertArrayEquals(CONTENTS, ByteStreams.toByteArray(first));
+    }
+  }
+
+  @Test
+  public void entriesOfAZipRewrittenSinceItWasIndexedAreNotRead() throws Exception {
+    Path zip = writeZip();
+    ZipFileIndex index = ZipFileIndex.open(zip);
+
+    Files.delete(zip);
+    try (OutputStream output = Files.newOutputStream(zip);
+        ZipOutputStream out = new ZipOutputStream(output)) {
+      out.putNextEntry(new ZipEntry("other.txt"));
+      out.write(CONTENTS);
+    }
+
+    try {
+      index.getInputStream(index.getEntries().get(0)).close();
+      fail("Reading an entry of a rewritten zip should fail.");
+    } catch (ZipException e) {
+      assertThat(e.getMessage(), containsString("fast.txt"));
+    }
+  }
+
+  /** Writes a zip whose size doesn't depend on the contents of its entry, of the same length. */
+  private static void writeStoredZip(Path zip, String contents) throws Exception {
+    byte[] bytes = contents.getBytes(Charsets.UTF_8);
+    ZipEntry entry = new ZipEntry("entry.txt");
+    CRC32 crc = new CRC32();
+    crc.update(bytes);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(bytes.length);
+    entry.setCrc(crc.getValue());
+    entry.setTime(0);
+    try (OutputStream output = Files.newOutputStream(zip);
+        ZipOutputStream out = new ZipOutputStream(output)) {
+      out.putNextEntry(entry);
+      out.write(bytes);
+    }
+  }
+
+  private Path writeZip() throws Exception {
+    Path zip = tmp.getRoot().resolve("input.zip");
+    try (OutputStream output = Files.newOutputStream(zip);
+        ZipOutputStream out = new ZipOutputStream(output)) {
+      out.setLevel(Deflater.BEST_SPEED);
+      out.putNextEntry(new ZipEntry("fast.txt"));
+      out.write(CONTENTS);
+
+      out.setLevel(Deflater.BEST_COMPRESSION);
+      out.putNextEntry(new ZipEntry("best.txt"));
+      out.write(CONTENTS);
+
+      ZipEntry stored = new ZipEntry("stored.txt");
+      CRC32 crc = new CRC32();
+      crc.update(CONTENTS);
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(CONTENTS.length);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(CONTENTS);
+      out.setComment("A comment after the central directory.");
+    }
+    return zip;
+  }
+}
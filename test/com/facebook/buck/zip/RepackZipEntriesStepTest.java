@@ -17,6 +17,7 @@
 package com.facebook.buck.zip;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.facebook.buck.io.filesystem.ProjectFilesystem;
@@ -25,12 +26,17 @@ import com.facebook.buck.step.TestExecutionContext;
 import com.facebook.buck.testutil.TemporaryPaths;
 import com.facebook.buck.util.zip.ZipCompressionLevel;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import org.junit.Before;
 import org.junit.Rule;
@@ -82,6 +88,49 @@ public class RepackZipEntriesStepTest {
     assertTrue(Files.size(out) < Files.size(zipFile));
   }
 
+  @Test
+  public void entriesThatAreNotRepackedKeepTheirCompression() throws Exception {
+    Path fastZip = parent.resolve("fast.zip");
+    try (ZipOutputStream stream = new ZipOutputStream(Files.newOutputStream(fastZip))) {
+      stream.setLevel(Deflater.BEST_SPEED);
+      stream.putNextEntry(new ZipEntry("file"));
+      stream.write(Files.readAllBytes(zipFile));
+    }
+
+    Path out = parent.resolve("output.zip");
+    RepackZipEntriesStep step =
+        new RepackZipEntriesStep(filesystem, fastZip, out, ImmutableSet.of());
+    step.execute(TestExecutionContext.newInstance());
+
+    assertArrayEquals(Files.readAllBytes(fastZip), Files.readAllBytes(out));
+  }
+
+  @Test
+  public void zipsWithEntriesTheIndexCannotReadAreRepackedAsAStream() throws Exception {
+    // Mark the size in the central directory as stored in zip64 extra data, which the index
+    // doesn't read. Reading the zip as a stream only uses the local file headers.
+    byte[] zip = Files.readAllBytes(zipFile);
+    ByteBuffer buffer = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+    int centralDirectoryHeader = zip.length - 22 - 46 - "file".length();
+    assertEquals(ZipEntry.CENSIG, buffer.getInt(centralDirectoryHeader));
+    buffer.putInt(centralDirectoryHeader + 20, 0xffffffff);
+    Path zip64File = parent.resolve("zip64.zip");
+    Files.write(zip64File, zip);
+
+    Path out = parent.resolve("output.zip");
+    RepackZipEntriesStep step =
+        new RepackZipEntriesStep(filesystem, zip64File, out, ImmutableSet.of("file"));
+    step.execute(TestExecutionContext.newInstance());
+
+    String packageName = getClass().getPackage().getName().replace('.', '/');
+    try (ZipInputStream in = new ZipInputStream(Files.newInputStream(out))) {
+      assertEquals("file", in.getNextEntry().getName());
+      assertArrayEquals(
+          Resources.toByteArray(Resources.getResource(packageName + "/sample-bytes.dat")),
+          ByteStreams.toByteArray(in));
+    }
+  }
+
   @Test
   public void justStoringEntriesLeadsToMoreBytesInOuputZip() throws Exception {
     Path out = parent.resolve("output.zip");